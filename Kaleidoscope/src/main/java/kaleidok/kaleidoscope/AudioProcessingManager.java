@@ -9,10 +9,11 @@
 import javafx.beans.property.BooleanProperty;
 import javafx.beans.property.IntegerProperty;
 import javafx.scene.control.SpinnerValueFactory.IntegerSpinnerValueFactory;
-import kaleidok.audio.ContinuousAudioInputStream;
+import kaleidok.audio.AudioFiles;
 import kaleidok.audio.DummyAudioPlayer;
 import kaleidok.audio.MultiAudioInputStream;
 import kaleidok.audio.OffThreadAudioPlayer;
+import kaleidok.audio.processor.BufferTimestampProcessor;
 import kaleidok.audio.processor.MinimFFTProcessor;
 import kaleidok.audio.processor.VolumeLevelProcessor;
 import kaleidok.google.gson.TypeAdapterManager;
@@ -38,8 +39,8 @@
 import java.io.FileReader;
 import java.io.IOError;
 import java.io.IOException;
-import java.io.InputStream;
 import java.net.URL;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.NoSuchElementException;
 import java.util.Objects;
@@ -66,6 +67,8 @@ public class AudioProcessingManager extends Plugin<Kaleidoscope>
 
   private Thread audioDispatcherThread;
 
+  private BufferTimestampProcessor bufferTimestampProcessor;
+
   private VolumeLevelProcessor volumeLevelProcessor;
 
   private MinimFFTProcessor fftProcessor;
@@ -200,7 +203,25 @@ private synchronized void initAudioDispatcher()
       Runnable dispatcherRunnable = null;
       try
       {
-        if (audioSource == null)
+        if (p.getOfflineRenderer().isPresent())
+        {
+          if (audioSource == null ||
+            Strings.endsWith(audioSource, ".json", true))
+          {
+            throw new IllegalArgumentException(
+              "Offline rendering requires an audio file input instead of " +
+                ((audioSource != null) ? audioSource : "the microphone"));
+          }
+          //noinspection resource,IOResourceOpenedButNotSafelyClosed
+          TarsosDSPAudioInputStream ais =
+            p.getOfflineRenderer().get().wrapAudioInput(
+              AudioFiles.open(Paths.get(audioSource), false));
+          // neither playback nor real-time pacing
+          audioDispatcher =
+            new AudioDispatcher(ais, bufferSize, bufferOverlap);
+          dispatcherRunnable = audioDispatcher;
+        }
+        else if (audioSource == null)
         {
           audioDispatcher =
             fromDefaultMicrophone(sampleRate, bufferSize, bufferOverlap);
@@ -221,7 +242,7 @@ private synchronized void initAudioDispatcher()
           else
           {
             //noinspection resource,IOResourceOpenedButNotSafelyClosed
-            ais = new ContinuousAudioInputStream(audioSource);
+            ais = AudioFiles.open(Paths.get(audioSource), true);
           }
           audioDispatcher =
             new AudioDispatcher(ais, bufferSize, bufferOverlap);
@@ -238,6 +259,7 @@ private synchronized void initAudioDispatcher()
         throw new IOError(ex);
       }
 
+      audioDispatcher.addAudioProcessor(getBufferTimestampProcessor());
       audioDispatcher.addAudioProcessor(getVolumeLevelProcessor());
       audioDispatcher.addAudioProcessor(getFftProcessor());
 
@@ -453,10 +475,26 @@ private void checkCanChangeSamplingParameters()
   }
 
 
+  /**
+   * @return  A processor that timestamps each audio buffer as it arrives
+   *   at the analysing processors, so that the sketch layers can trace the
+   *   age of the audio data they draw
+   */
+  BufferTimestampProcessor getBufferTimestampProcessor()
+  {
+    if (bufferTimestampProcessor == null)
+      bufferTimestampProcessor = new BufferTimestampProcessor();
+    return bufferTimestampProcessor;
+  }
+
+
   VolumeLevelProcessor getVolumeLevelProcessor()
   {
     if (volumeLevelProcessor == null)
+    {
       volumeLevelProcessor = new VolumeLevelProcessor();
+      volumeLevelProcessor.timestampSource = getBufferTimestampProcessor();
+    }
     return volumeLevelProcessor;
   }
 
@@ -464,7 +502,10 @@ VolumeLevelProcessor getVolumeLevelProcessor()
   MinimFFTProcessor getFftProcessor()
   {
     if (fftProcessor == null)
+    {
       fftProcessor = new MinimFFTProcessor(getDispatcherBufferSize());
+      fftProcessor.timestampSource = getBufferTimestampProcessor();
+    }
     return fftProcessor;
   }
 
@@ -592,20 +633,8 @@ private static MultiAudioInputStream makeMultiAudioStream(
         TarsosDSPAudioFormat format = null;
         for (ReplayList.Item item : items)
         {
-          TarsosDSPAudioInputStream ais;
-          {
-            InputStream is = item.url.openStream();
-            try
-            {
-              //noinspection resource,IOResourceOpenedButNotSafelyClosed
-              ais = new ContinuousAudioInputStream(is);
-            }
-            catch (IOException | UnsupportedAudioFileException ex)
-            {
-              closeExceptional(is, ex);
-              throw ex;
-            }
-          }
+          //noinspection resource,IOResourceOpenedButNotSafelyClosed
+          TarsosDSPAudioInputStream ais = AudioFiles.openLooping(item.url);
           if (format == null)
           {
             format = ais.getFormat();
@@ -722,7 +751,7 @@ public void run()
   }
 
 
-  private static class ReplayList
+  static class ReplayList
   {
     @Expose
     public String name;
@@ -4,11 +4,13 @@
 import kaleidok.javafx.beans.property.adapter.preference.PropertyPreferencesAdapter;
 import kaleidok.javafx.beans.property.adapter.preference.ReadOnlyPropertyPreferencesAdapter;
 import kaleidok.processing.ExtPApplet;
+import kaleidok.processing.FrameProfiler;
 import kaleidok.processing.FrameRateDisplay;
 import kaleidok.processing.ProcessingSketchApplication;
 import org.apache.commons.lang3.StringUtils;
 import processing.event.KeyEvent;
 
+import java.nio.file.Paths;
 import java.util.Optional;
 import java.util.logging.Logger;
 import java.util.stream.Stream;
@@ -44,6 +46,11 @@ public class Kaleidoscope extends ExtPApplet
 
   private FrameRateDisplay frameRateDisplay;
 
+  private FrameProfiler frameProfiler;
+
+  @SuppressWarnings("OptionalUsedAsFieldOrParameterType")
+  private volatile Optional<OfflineRenderer> offlineRenderer;
+
 
   public Kaleidoscope( ProcessingSketchApplication<Kaleidoscope> parent )
   {
@@ -72,13 +79,17 @@ public void setup()
     textureMode(NORMAL); // set texture coordinate mode to NORMALIZED (0 to 1)
     ellipseMode(RADIUS);
     noiseDetail(4, 0.6f);
+    getOfflineRenderer().ifPresent(OfflineRenderer::setup);
 
     getLayers();
     getChromasthetiationService();
     getSTT();
     getAudioProcessingManager().getAudioDispatcherThread().start();
     getExportService();
-    getFrameRateDisplay();
+    // the frame rate display would make offline renderings irreproducible
+    if (!getOfflineRenderer().isPresent())
+      getFrameRateDisplay();
+    initFrameProfiler();
   }
 
 
@@ -146,6 +157,17 @@ private synchronized Optional<ExportService> getExportService()
   }
 
 
+  public synchronized Optional<OfflineRenderer> getOfflineRenderer()
+  {
+    if (offlineRenderer == null)
+    {
+      offlineRenderer = Optional.ofNullable(
+        OfflineRenderer.fromConfiguration(this, getParameterMap()));
+    }
+    return offlineRenderer;
+  }
+
+
   public synchronized FrameRateDisplay getFrameRateDisplay()
   {
     if (frameRateDisplay == null)
@@ -158,6 +180,29 @@ public synchronized FrameRateDisplay getFrameRateDisplay()
   }
 
 
+  /**
+   * Instantiates the frame profiler. Its profile is appended to the file
+   * given by the parameter {@code kaleidok.processing.FrameProfiler.dump},
+   * if any. Its overlay goes below the frame rate display.
+   */
+  private synchronized FrameProfiler initFrameProfiler()
+  {
+    if (frameProfiler == null)
+    {
+      frameProfiler = new FrameProfiler(this);
+      frameProfiler.offsetY = getFrameRateDisplay().getBottomOffset();
+      frameProfiler.getPreferenceAdapters()
+        .forEach(PropertyPreferencesAdapter::load);
+      String dumpPath = getParameterMap().get(
+        FrameProfiler.class.getName() + ".dump");
+      if (dumpPath != null && !dumpPath.isEmpty())
+        frameProfiler.setDumpPath(Paths.get(dumpPath));
+      setFrameProfiler(frameProfiler);
+    }
+    return frameProfiler;
+  }
+
+
   @Override
   public void draw()
   {
@@ -166,6 +211,21 @@ public void draw()
   }
 
 
+  /**
+   * @return  The virtual time of the current frame when rendering
+   *   {@link OfflineRenderer offline}; the elapsed real time otherwise
+   */
+  @Override
+  public int millis()
+  {
+    Optional<OfflineRenderer> offlineRenderer = this.offlineRenderer;
+    //noinspection OptionalAssignedToNull
+    return (offlineRenderer != null && offlineRenderer.isPresent()) ?
+      offlineRenderer.get().millis() :
+      super.millis();
+  }
+
+
   @Override
   public void keyTyped( KeyEvent ev )
   {
@@ -234,7 +294,8 @@ public Object getParent()
   {
     return PreferenceBean.getPreferenceAdapters(Stream.of(
       getSTT(), getChromasthetiationService(), getLayers(),
-      getFrameRateDisplay(), getAudioProcessingManager()));
+      getFrameRateDisplay(), initFrameProfiler(),
+      getAudioProcessingManager()));
   }
 
 
@@ -21,8 +21,10 @@
 import kaleidok.util.concurrent.GroupedThreadFactory;
 import kaleidok.flickr.FlickrException;
 import kaleidok.flickr.Photo;
+import kaleidok.net.http.cache.DecodedImageCache;
 import kaleidok.net.http.cache.DiskLruHttpCacheStorage;
 import kaleidok.net.http.cache.ExecutorSchedulingStrategy;
+import kaleidok.net.http.responsehandler.PImageBaseResponseHandler;
 import kaleidok.io.platform.PlatformPaths;
 import kaleidok.util.prefs.DefaultValueParser;
 import org.apache.commons.lang3.tuple.Pair;
@@ -35,6 +37,7 @@
 import synesketch.emotion.Emotion;
 import synesketch.emotion.EmotionalState;
 
+import java.awt.Dimension;
 import java.awt.Image;
 import java.awt.image.RGBImageFilter;
 import java.io.File;
@@ -47,6 +50,7 @@
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.logging.Level;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -65,6 +69,8 @@
 
   public static long DEFAULT_HTTP_CACHE_SIZE = 50L << 20;
 
+  public static long DEFAULT_IMAGE_CACHE_SIZE = 64L << 20;
+
   private static final int HTTP_CACHE_APP_VERSION = 1;
 
 
@@ -83,7 +89,13 @@
   private KaleidoscopeChromasthetiationService( Kaleidoscope parent,
     ExecutorService executor, Executor httpExecutor )
   {
-    super(executor, Async.newInstance().use(executor).use(httpExecutor));
+    /*
+     * Images are drawn at most at the size of the sketch, but the circular
+     * layers crop them differently than the background layer. Therefore we
+     * subsample them to cover the sketch without cropping.
+     */
+    super(executor, Async.newInstance().use(executor).use(httpExecutor),
+      new PImageBaseResponseHandler(getImageTargetSize(parent), null));
     this.parent = parent;
 
     neutralFilter = new AspectedObjectProperty<>(this, "neutral image filter");
@@ -100,6 +112,10 @@ private KaleidoscopeChromasthetiationService( Kaleidoscope parent,
   public void dispose()
   {
     shutdown();
+
+    DecodedImageCache imageCache = getImageCache();
+    if (imageCache != null)
+      logger.log(Level.CONFIG, "Image cache statistics: {0}", imageCache);
   }
 
 
@@ -131,6 +147,8 @@ static KaleidoscopeChromasthetiationService newInstance( Kaleidoscope parent )
     if (aKey != null)
       chromasthetiationService.flickr.setApiKey(aKey[0], aKey[1]);
 
+    chromasthetiationService.setImageCache(getImageCache(parent));
+
     //noinspection SpellCheckingInspection
     String sMaxKeyWords = parent.getParameterMap().get(
       Chromasthetiator.class.getPackage().getName() + ".maxkeywords");
@@ -209,6 +227,27 @@ private static CachingHttpClientBuilder getCachingHttpClientBuilder(
   }
 
 
+  private static Supplier<Dimension> getImageTargetSize( Kaleidoscope parent )
+  {
+    return () -> new Dimension(parent.width, parent.height);
+  }
+
+
+  private static DecodedImageCache getImageCache( Kaleidoscope parent )
+  {
+    long imageCacheSize = DefaultValueParser.parseLong(
+      parent.getParameterMap().get(
+        parent.getClass().getCanonicalName() + ".cache.images.size"),
+      -1);
+    if (imageCacheSize < 0)
+      imageCacheSize = DEFAULT_IMAGE_CACHE_SIZE;
+
+    return (imageCacheSize > 0) ?
+      new DecodedImageCache(imageCacheSize, getImageTargetSize(parent)) :
+      null;
+  }
+
+
   private static ExecutorService getExecutor( Map<String, String> parameters )
   {
     int threadPoolSize = DefaultValueParser.parseInt(
@@ -361,8 +400,10 @@ public void completed( Pair<Image, Pair<ChromatikResponse, EmotionalState>> resp
           !(filter instanceof HSBImageFilter &&
             ((HSBImageFilter) filter).isNeutral()))
         {
+          // Filter into a new image: the pixels may belong to an image in the
+          // decoded image cache, which other layers may still display.
           pImage =
-            PImages.filter(pImage, pImage, (RGBImageFilter) filter.clone());
+            PImages.filter(pImage, null, (RGBImageFilter) filter.clone());
         }
       }
 
@@ -18,6 +18,7 @@
 import kaleidok.javafx.beans.property.binding.MessageFormatBinding;
 import kaleidok.javafx.util.converter.CollectionStringConverter;
 import kaleidok.kaleidoscope.layer.*;
+import kaleidok.processing.FrameProfiler;
 import kaleidok.util.concurrent.ImmediateFuture;
 import kaleidok.util.function.ChangeListener;
 import kaleidok.util.prefs.PropertyLoader;
@@ -287,6 +288,8 @@ private OuterMovingShape getOuterMovingShape()
         audioDispatcher.getFormat().getSampleRate(),
         apm.getDispatcherBufferSize(),
         outerMovingShape.getPitchDetectionHandler()));
+      outerMovingShape.setAudioTimestampSource(
+        apm.getBufferTimestampProcessor());
     }
     return outerMovingShape;
   }
@@ -423,8 +426,9 @@ public void waitForImages()
   public void run()
   {
     final Kaleidoscope parent = this.parent;
+    final FrameProfiler profiler = parent.getFrameProfiler();
 
-    backgroundLayer.run();
+    runLayer(backgroundLayer, profiler);
 
     float
       scale = Math.min(parent.width, parent.height),
@@ -432,16 +436,43 @@ public void run()
     parent.pushMatrix();
     parent.translate(parent.width * 0.5f, parent.height * 0.5f);
     parent.scale(scale);
-    for (Runnable l : this) {
+    for (ImageLayer l : this) {
       if (l != backgroundLayer) {
         parent.strokeWeight(strokeWeight);
-        l.run();
+        runLayer(l, profiler);
       }
     }
     parent.popMatrix();
   }
 
 
+  /**
+   * Runs a layer and records its duration with the frame profiler, if any;
+   * frames in which the layer swapped its image are recorded separately to
+   * tell texture upload costs apart. For layers that draw audio data the
+   * profiler also records the age of that data, i. e. the time since its
+   * audio buffer arrived at the analysing processors.
+   */
+  private static void runLayer( ImageLayer l, FrameProfiler profiler )
+  {
+    if (profiler == null)
+    {
+      l.run();
+      return;
+    }
+
+    long start = System.nanoTime();
+    l.run();
+    long end = profiler.record(
+      l.isImageChanged() ? l.getName() + " (image change)" : l.getName(),
+      start);
+
+    long audioTimestamp = l.getAudioTimestamp();
+    if (audioTimestamp != 0 && audioTimestamp <= end)
+      profiler.record(l.getName() + " audio age", audioTimestamp, end);
+  }
+
+
   private static Map<String, String> loadLayerProperties()
   {
     String propFn = "layer.properties";
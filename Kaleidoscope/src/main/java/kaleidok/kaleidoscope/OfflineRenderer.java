@@ -0,0 +1,197 @@
+package kaleidok.kaleidoscope;
+
+import be.tarsos.dsp.io.TarsosDSPAudioInputStream;
+import kaleidok.audio.SteppedAudioInputStream;
+import kaleidok.processing.Plugin;
+import kaleidok.processing.export.ScreenshotWriter.OverflowPolicy;
+import kaleidok.util.prefs.DefaultValueParser;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+import static kaleidok.kaleidoscope.Kaleidoscope.logger;
+
+
+/**
+ * Renders a Kaleidoscope session from a recorded audio file at a fixed,
+ * virtual frame rate instead of in real time, and saves every frame as a
+ * numbered image file.
+ * <p>
+ * Before each frame the audio dispatcher may read exactly as much audio as
+ * corresponds to the virtual time of that frame, and it processes every
+ * buffer that this audio completes. The sketch's
+ * {@link Kaleidoscope#millis() clock} as well as its random number
+ * generators follow the virtual time and a fixed seed. Hence the same input
+ * yields the same frames regardless of how fast they are rendered. The
+ * sketch exits once the end of the audio input is reached.
+ */
+public class OfflineRenderer extends Plugin<Kaleidoscope>
+{
+  public static double DEFAULT_FRAME_RATE = 30;
+
+  public static long DEFAULT_RANDOM_SEED = 0;
+
+  /**
+   * A {@link String#format(String, Object...) format string} for the paths
+   * of the frame image files with the frame number as its sole argument
+   */
+  public final String outputPathFormat;
+
+  public final double frameRate;
+
+  public final long randomSeed;
+
+  private SteppedAudioInputStream audioInput = null;
+
+  private int frameNumber = 0;
+
+  private boolean finished = false;
+
+
+  public OfflineRenderer( Kaleidoscope sketch, String outputPathFormat,
+    double frameRate, long randomSeed )
+  {
+    super(sketch);
+
+    if (!(frameRate > 0 && frameRate < Double.POSITIVE_INFINITY))
+      throw new IllegalArgumentException("Illegal frame rate: " + frameRate);
+
+    this.outputPathFormat = Objects.requireNonNull(outputPathFormat);
+    this.frameRate = frameRate;
+    this.randomSeed = randomSeed;
+  }
+
+
+  /**
+   * @return  An offline renderer if the parameter
+   *   {@code kaleidok.kaleidoscope.offline.output} is set; {@code null}
+   *   otherwise
+   */
+  public static OfflineRenderer fromConfiguration( Kaleidoscope sketch,
+    Map<String, String> parameters )
+  {
+    String paramBase = sketch.getClass().getPackage().getName() + ".offline.";
+    String outputPathFormat = parameters.get(paramBase + "output");
+    if (outputPathFormat == null || outputPathFormat.isEmpty())
+      return null;
+
+    return new OfflineRenderer(sketch, outputPathFormat,
+      DefaultValueParser.parseDouble(
+        parameters.get(paramBase + "framerate"), DEFAULT_FRAME_RATE),
+      DefaultValueParser.parseLong(
+        parameters.get(paramBase + "seed"), DEFAULT_RANDOM_SEED));
+  }
+
+
+  /**
+   * Wraps the audio input of the sketch so that its processing follows the
+   * virtual time of this renderer.
+   *
+   * @param audioInput  The audio input stream
+   * @return  The wrapped audio input stream
+   */
+  synchronized TarsosDSPAudioInputStream wrapAudioInput(
+    TarsosDSPAudioInputStream audioInput )
+  {
+    if (this.audioInput != null)
+      throw new IllegalStateException("Audio input is already set");
+
+    return this.audioInput = new SteppedAudioInputStream(audioInput);
+  }
+
+
+  /**
+   * Prepares the sketch for deterministic rendering as fast as possible.
+   * This must be called before the sketch layers are initialized.
+   */
+  void setup()
+  {
+    p.randomSeed(randomSeed);
+    p.noiseSeed(randomSeed);
+    p.frameRate(1000);
+    p.getScreenshotWriter().setOverflowPolicy(OverflowPolicy.BLOCK);
+
+    logger.log(Level.CONFIG,
+      "Rendering offline at {0} frames per second to \"{1}\"",
+      new Object[]{ frameRate, outputPathFormat });
+  }
+
+
+  /**
+   * @return  The virtual time of the current frame in milliseconds
+   */
+  public int millis()
+  {
+    return (int) Math.round(frameNumber * 1000 / frameRate);
+  }
+
+
+  public int getFrameNumber()
+  {
+    return frameNumber;
+  }
+
+
+  @Override
+  public void pre()
+  {
+    final SteppedAudioInputStream audioInput;
+    synchronized (this)
+    {
+      audioInput = this.audioInput;
+    }
+    if (audioInput == null || finished)
+      return;
+
+    audioInput.advanceTo(Math.round(
+      (frameNumber + 1) * audioInput.getFormat().getSampleRate() /
+        frameRate));
+    try
+    {
+      audioInput.awaitIdle();
+      if (audioInput.isEndOfStream())
+      {
+        // let the audio dispatcher process the remaining buffer
+        p.getAudioProcessingManager().getAudioDispatcherThread().join();
+        finished = true;
+      }
+    }
+    catch (InterruptedException ex)
+    {
+      Thread.currentThread().interrupt();
+      finished = true;
+    }
+  }
+
+
+  @Override
+  public void draw()
+  {
+    p.save(String.format(outputPathFormat, frameNumber));
+    frameNumber++;
+
+    if (finished)
+    {
+      logger.log(Level.INFO, "Rendered {0} frames offline", frameNumber);
+      p.exit();
+    }
+  }
+
+
+  @Override
+  public void dispose()
+  {
+    try
+    {
+      if (!p.getScreenshotWriter().shutdown(1, TimeUnit.MINUTES))
+        logger.warning("Some offline frames weren't saved in time");
+    }
+    catch (InterruptedException ex)
+    {
+      Thread.currentThread().interrupt();
+    }
+    super.dispose();
+  }
+}
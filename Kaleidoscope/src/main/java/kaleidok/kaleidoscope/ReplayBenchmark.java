@@ -0,0 +1,757 @@
+package kaleidok.kaleidoscope;
+
+import be.tarsos.dsp.AudioDispatcher;
+import be.tarsos.dsp.io.jvm.JVMAudioInputStream;
+import be.tarsos.dsp.pitch.PitchProcessor;
+import be.tarsos.dsp.pitch.PitchProcessor.PitchEstimationAlgorithm;
+import kaleidok.audio.processor.MinimFFTProcessor;
+import kaleidok.audio.processor.VolumeLevelProcessor;
+import kaleidok.exaleads.chromatik.ChromasthetiationService;
+import kaleidok.exaleads.chromatik.SimpleChromasthetiator;
+import kaleidok.exaleads.chromatik.data.ChromatikResponse;
+import kaleidok.exaleads.chromatik.mock.MockImageCorpus;
+import kaleidok.exaleads.chromatik.mock.MockImageSearchService;
+import kaleidok.exaleads.chromatik.mock.MockNetworkConditions;
+import kaleidok.flickr.FlickrAsync;
+import kaleidok.google.gson.TypeAdapterManager;
+import kaleidok.google.speech.STT;
+import kaleidok.google.speech.SttResponse;
+import kaleidok.google.speech.mock.LatencyDistribution;
+import kaleidok.google.speech.mock.MockTranscriptionService;
+import kaleidok.kaleidoscope.AudioProcessingManager.ReplayList;
+import kaleidok.net.http.responsehandler.PImageBaseResponseHandler;
+import kaleidok.processing.image.PImages;
+import kaleidok.util.LatencyHistogram;
+import kaleidok.util.concurrent.GroupedThreadFactory;
+import kaleidok.util.prefs.DefaultValueParser;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.tuple.Pair;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.ResponseHandler;
+import org.apache.http.client.fluent.Async;
+import org.apache.http.client.fluent.Executor;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.entity.BufferedHttpEntity;
+import org.apache.http.impl.client.HttpClientBuilder;
+import synesketch.emotion.EmotionalState;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.UnsupportedAudioFileException;
+import java.awt.Dimension;
+import java.awt.Image;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static kaleidok.util.logging.LoggingUtils.logThrown;
+
+
+/**
+ * Replays a {@link ReplayList replay list} headlessly through the audio
+ * analysis, speech transcription and chromasthetiation pipeline of
+ * Kaleidoscope as fast as possible and reports the throughput and the
+ * latency distribution of each stage.
+ * <p>
+ * Usage: {@code ReplayBenchmark <replay list> [<output file>]}
+ * <p>
+ * The items of the replay list are processed one after another. Each item's
+ * audio runs through the same audio processors as in the sketch and, unless
+ * disabled, is transcribed by the speech-to-text service; afterwards the
+ * <em>recorded</em> transcription of the item is chromasthetiated, so that
+ * all runs issue the same search queries. Images are ready for display once
+ * they are converted to a {@code PImage}; the texture upload of the first
+ * draw call isn't part of this benchmark.
+ * <p>
+ * The benchmark is configured with the following system properties:
+ * <dl>
+ *   <dt>{@code kaleidok.kaleidoscope.benchmark.iterations}</dt>
+ *   <dd>The number of measured passes through the replay list (default
+ *     {@value #DEFAULT_ITERATIONS})</dd>
+ *   <dt>{@code kaleidok.kaleidoscope.benchmark.warmup}</dt>
+ *   <dd>The number of unmeasured passes before those (default
+ *     {@value #DEFAULT_WARMUP_ITERATIONS})</dd>
+ *   <dt>{@code kaleidok.kaleidoscope.benchmark.images}</dt>
+ *   <dd>The number of images to fetch for each item (default
+ *     {@value #DEFAULT_IMAGE_COUNT})</dd>
+ *   <dt>{@code kaleidok.kaleidoscope.benchmark.timeout}</dt>
+ *   <dd>The time limit for the stages of an item in seconds (default
+ *     {@value #DEFAULT_TIMEOUT})</dd>
+ *   <dt>{@code kaleidok.kaleidoscope.benchmark.chromatik},
+ *     {@code kaleidok.kaleidoscope.benchmark.flickr}</dt>
+ *   <dd>The base URIs of the Chromatik search and Flickr API services, e. g.
+ *     of local stand-ins; {@code !MOCK} uses an in-process
+ *     {@link MockImageSearchService}</dd>
+ *   <dt>{@code kaleidok.kaleidoscope.benchmark.mock.corpus}</dt>
+ *   <dd>A directory with the images of the mock service (default: 64
+ *     generated images)</dd>
+ *   <dt>{@code kaleidok.kaleidoscope.benchmark.mock.latency},
+ *     {@code kaleidok.kaleidoscope.benchmark.mock.jitter}</dt>
+ *   <dd>The minimum and the additional random latency of the mock service
+ *     in milliseconds (default 0)</dd>
+ *   <dt>{@code kaleidok.kaleidoscope.benchmark.mock.bandwidth}</dt>
+ *   <dd>The bandwidth of the mock service in bytes per second (default 0,
+ *     i. e. unlimited)</dd>
+ *   <dt>{@code kaleidok.kaleidoscope.benchmark.mock.errors},
+ *     {@code kaleidok.kaleidoscope.benchmark.mock.notfound}</dt>
+ *   <dd>The probabilities of server errors and of photos that Flickr
+ *     doesn't find (default 0)</dd>
+ *   <dt>{@code kaleidok.kaleidoscope.benchmark.mock.stt.latency},
+ *     {@code kaleidok.kaleidoscope.benchmark.mock.stt.sigma}</dt>
+ *   <dd>The median latency of the mock speech-to-text service in
+ *     milliseconds and the standard deviation of its logarithm (default 0)
+ *     </dd>
+ *   <dt>{@code kaleidok.kaleidoscope.benchmark.mock.stt.realtime}</dt>
+ *   <dd>The additional processing time of the mock speech-to-text service
+ *     per second of audio in seconds (default 0)</dd>
+ *   <dt>{@code com.google.developer.api.key}</dt>
+ *   <dd>The access key of the speech-to-text service; the default
+ *     {@code !MOCK} transcribes with an in-process mock service that
+ *     responds with the recorded transcriptions of the items, an empty
+ *     value skips the transcription stage</dd>
+ *   <dt>{@code com.flickr.api.key}</dt>
+ *   <dd>The Flickr API key and secret, separated by a colon</dd>
+ * </dl>
+ * If an output file is given, the results are appended to it as
+ * tab-separated values in the format of the {@code FrameProfiler} dumps,
+ * so that they can be tracked over time.
+ */
+public final class ReplayBenchmark
+{
+  private static final Logger logger =
+    Logger.getLogger(ReplayBenchmark.class.getName());
+
+  private static final String PARAM_BASE =
+    ReplayBenchmark.class.getPackage().getName() + ".benchmark.";
+
+  public static final int
+    DEFAULT_ITERATIONS = 3,
+    DEFAULT_WARMUP_ITERATIONS = 1,
+    DEFAULT_IMAGE_COUNT = 5,
+    DEFAULT_TIMEOUT = 60,
+    DEFAULT_MOCK_IMAGE_COUNT = 64;
+
+  private static final String MOCK = "!MOCK";
+
+  /**
+   * The name of the column of the stage names in the results
+   */
+  private static final String STAGE = "stage";
+
+  public static final String
+    AUDIO = "audio",
+    TRANSCRIPTION = "transcription",
+    SYNESTHETISATION = "synesthetisation",
+    QUERY = "query",
+    PHOTO_SIZES = "photo sizes",
+    IMAGE_FETCH = "image fetch",
+    IMAGE_TRANSFER = "image transfer",
+    IMAGE_DECODE = "image decode",
+    DISPLAY = "display",
+    FIRST_IMAGE = "first image",
+    ALL_IMAGES = "all images";
+
+
+  private final List<Item> items;
+
+  private final int imageCount;
+
+  private final long timeout;
+
+  private final int audioBufferSize =
+    AudioProcessingManager.getDefaultAudioBufferSize();
+
+  private final STT stt;
+
+  private volatile CompletableFuture<SttResponse> pendingTranscription = null;
+
+  private final MockImageSearchService mockImageSearchService;
+
+  private final BenchmarkChromasthetiationService chromasthetiationService;
+
+  private final Map<String, LatencyHistogram> histograms =
+    new LinkedHashMap<>();
+
+  private double audioDuration = 0;
+
+  private int itemCount = 0, imagesDisplayed = 0, failures = 0, timeouts = 0;
+
+
+  private static final class Item
+  {
+    public final byte[] audioData;
+
+    public final double audioDuration;
+
+    public final String transcription;
+
+
+    public Item( ReplayList.Item item )
+      throws IOException, UnsupportedAudioFileException
+    {
+      try (InputStream is = item.url.openStream())
+      {
+        audioData = IOUtils.toByteArray(is);
+      }
+      try (AudioInputStream ais = openAudioInputStream())
+      {
+        AudioFormat format = ais.getFormat();
+        audioDuration = ais.getFrameLength() / (double) format.getFrameRate();
+      }
+      transcription = item.transcription;
+    }
+
+
+    public AudioInputStream openAudioInputStream()
+      throws IOException, UnsupportedAudioFileException
+    {
+      return AudioSystem.getAudioInputStream(
+        new ByteArrayInputStream(audioData));
+    }
+  }
+
+
+  private ReplayBenchmark( ReplayList replayList )
+    throws IOException, UnsupportedAudioFileException
+  {
+    if (replayList.items == null || replayList.items.length == 0)
+      throw new IllegalArgumentException("Empty replay list");
+
+    items = new ArrayList<>(replayList.items.length);
+    for (ReplayList.Item item: replayList.items)
+      items.add(new Item(item));
+
+    imageCount = DefaultValueParser.parseInt(
+      System.getProperty(PARAM_BASE + "images"), DEFAULT_IMAGE_COUNT);
+    timeout = TimeUnit.SECONDS.toNanos(DefaultValueParser.parseLong(
+      System.getProperty(PARAM_BASE + "timeout"), DEFAULT_TIMEOUT));
+
+    String sttKey = System.getProperty("com.google.developer.api.key", MOCK);
+    if (!sttKey.isEmpty())
+    {
+      stt = new STT(new FutureCallback<SttResponse>()
+        {
+          @Override
+          public void completed( SttResponse result )
+          {
+            pendingTranscription.complete(result);
+          }
+
+          @Override
+          public void failed( Exception ex )
+          {
+            pendingTranscription.completeExceptionally(ex);
+          }
+
+          @Override
+          public void cancelled()
+          {
+            pendingTranscription.cancel(false);
+          }
+        },
+        sttKey);
+      if (stt.getTranscriptionService() instanceof MockTranscriptionService)
+      {
+        configureMockTranscriptionService(
+          (MockTranscriptionService) stt.getTranscriptionService());
+      }
+    }
+    else
+    {
+      stt = null;
+    }
+
+    mockImageSearchService =
+      (MOCK.equals(System.getProperty(PARAM_BASE + "chromatik")) ||
+        MOCK.equals(System.getProperty(PARAM_BASE + "flickr"))) ?
+        newMockImageSearchService() :
+        null;
+
+    ExecutorService executor = new ThreadPoolExecutor(
+      ChromasthetiationService.DEFAULT_THREAD_POOL_SIZE,
+      ChromasthetiationService.DEFAULT_THREAD_POOL_SIZE,
+      30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+      new GroupedThreadFactory("Chromasthetiation", false, true));
+    Executor httpExecutor = Executor.newInstance(HttpClientBuilder.create()
+      .disableConnectionState()
+      .disableCookieManagement()
+      .build());
+    chromasthetiationService = new BenchmarkChromasthetiationService(
+      executor, Async.newInstance().use(executor).use(httpExecutor));
+  }
+
+
+  private void configureMockTranscriptionService(
+    MockTranscriptionService mock )
+  {
+    List<String> transcripts = new ArrayList<>(items.size());
+    for (Item item: items)
+      transcripts.add(Objects.toString(item.transcription, ""));
+    mock.setTranscripts(transcripts);
+
+    long latency = DefaultValueParser.parseLong(
+      System.getProperty(PARAM_BASE + "mock.stt.latency"), 0);
+    double sigma = DefaultValueParser.parseDouble(
+        System.getProperty(PARAM_BASE + "mock.stt.sigma"), 0),
+      realTime = DefaultValueParser.parseDouble(
+        System.getProperty(PARAM_BASE + "mock.stt.realtime"), 0);
+    LatencyDistribution latencyDistribution = (latency > 0) ?
+      LatencyDistribution.logNormal(latency, sigma, 0) :
+      LatencyDistribution.NONE;
+    if (realTime > 0)
+      latencyDistribution = latencyDistribution.plusRealTime(realTime);
+    mock.latencyDistribution = latencyDistribution;
+  }
+
+
+  private static MockImageSearchService newMockImageSearchService()
+    throws IOException
+  {
+    String corpusDir = System.getProperty(PARAM_BASE + "mock.corpus");
+    MockImageCorpus corpus = (corpusDir != null && !corpusDir.isEmpty()) ?
+      MockImageCorpus.fromDirectory(Paths.get(corpusDir)) :
+      MockImageCorpus.synthetic(DEFAULT_MOCK_IMAGE_COUNT, 1024, 768, 0);
+
+    MockImageSearchService mock = new MockImageSearchService(corpus, 0);
+    MockNetworkConditions conditions = mock.conditions;
+    conditions.latency = DefaultValueParser.parseLong(
+      System.getProperty(PARAM_BASE + "mock.latency"), 0);
+    conditions.latencyJitter = DefaultValueParser.parseLong(
+      System.getProperty(PARAM_BASE + "mock.jitter"), 0);
+    conditions.bandwidth = DefaultValueParser.parseLong(
+      System.getProperty(PARAM_BASE + "mock.bandwidth"), 0);
+    conditions.errorRate = DefaultValueParser.parseDouble(
+      System.getProperty(PARAM_BASE + "mock.errors"), 0);
+    mock.photoNotFoundRate = DefaultValueParser.parseDouble(
+      System.getProperty(PARAM_BASE + "mock.notfound"), 0);
+    return mock;
+  }
+
+
+  private URI getServiceUri( String name )
+  {
+    String sUri = System.getProperty(PARAM_BASE + name);
+    if (sUri == null || sUri.isEmpty())
+      return null;
+    if (!MOCK.equals(sUri))
+      return URI.create(sUri);
+
+    return "chromatik".equals(name) ?
+      mockImageSearchService.getChromatikUri() :
+      mockImageSearchService.getFlickrUri();
+  }
+
+
+  public static void main( String... args )
+    throws IOException, UnsupportedAudioFileException, InterruptedException
+  {
+    if (args.length < 1 || args.length > 2)
+    {
+      System.err.format(
+        "Usage: %s <replay list> [<output file>]%n",
+        ReplayBenchmark.class.getName());
+      System.exit(2);
+      return;
+    }
+
+    ReplayList replayList;
+    try (Reader r = Files.newBufferedReader(Paths.get(args[0])))
+    {
+      replayList = TypeAdapterManager.getGson().fromJson(r, ReplayList.class);
+    }
+
+    ReplayBenchmark benchmark = new ReplayBenchmark(replayList);
+    try
+    {
+      int
+        warmupIterations = DefaultValueParser.parseInt(
+          System.getProperty(PARAM_BASE + "warmup"),
+          DEFAULT_WARMUP_ITERATIONS),
+        iterations = DefaultValueParser.parseInt(
+          System.getProperty(PARAM_BASE + "iterations"), DEFAULT_ITERATIONS);
+
+      for (int i = 0; i < warmupIterations; i++)
+        benchmark.run();
+      benchmark.reset();
+
+      long start = System.nanoTime();
+      for (int i = 0; i < iterations; i++)
+        benchmark.run();
+      double wallTime = (System.nanoTime() - start) * 1e-9;
+
+      List<String> lines = benchmark.formatHistograms(new Date());
+      System.out.println(LatencyHistogram.getLinesHeader(STAGE));
+      lines.forEach(System.out::println);
+      benchmark.printThroughput(replayList.name, wallTime);
+      if (benchmark.mockImageSearchService != null)
+        System.out.println(benchmark.mockImageSearchService);
+
+      if (args.length >= 2)
+        LatencyHistogram.appendLines(Paths.get(args[1]), STAGE, lines);
+    }
+    finally
+    {
+      benchmark.shutdown();
+    }
+  }
+
+
+  private void run() throws InterruptedException
+  {
+    for (Item item: items)
+    {
+      try
+      {
+        replayItem(item);
+      }
+      catch (IOException | UnsupportedAudioFileException |
+        ExecutionException ex)
+      {
+        synchronized (histograms)
+        {
+          failures++;
+        }
+        logThrown(logger, Level.WARNING,
+          "Replay of \"{0}\" failed", ex, item.transcription);
+      }
+      catch (TimeoutException ex)
+      {
+        synchronized (histograms)
+        {
+          timeouts++;
+        }
+        logger.log(Level.WARNING, "Replay of \"{0}\" timed out",
+          item.transcription);
+      }
+    }
+  }
+
+
+  private void replayItem( Item item )
+    throws IOException, UnsupportedAudioFileException, InterruptedException,
+    ExecutionException, TimeoutException
+  {
+    long start;
+    try (AudioInputStream ais = item.openAudioInputStream())
+    {
+      AudioDispatcher dispatcher = new AudioDispatcher(
+        new JVMAudioInputStream(ais), audioBufferSize, audioBufferSize / 2);
+      dispatcher.addAudioProcessor(new VolumeLevelProcessor());
+      dispatcher.addAudioProcessor(new MinimFFTProcessor(audioBufferSize));
+      dispatcher.addAudioProcessor(new PitchProcessor(
+        PitchEstimationAlgorithm.FFT_YIN,
+        dispatcher.getFormat().getSampleRate(), audioBufferSize,
+        ( result, ev ) -> { }));
+
+      CompletableFuture<SttResponse> transcription = null;
+      if (stt != null)
+      {
+        pendingTranscription = transcription = new CompletableFuture<>();
+        dispatcher.addAudioProcessor(stt.getAudioProcessor());
+        stt.begin(true);
+      }
+
+      start = System.nanoTime();
+      dispatcher.run();
+      start = record(AUDIO, start);
+      audioDuration += item.audioDuration;
+
+      if (transcription != null)
+      {
+        stt.end(true);
+        transcription.get(timeout, TimeUnit.NANOSECONDS);
+        record(TRANSCRIPTION, start);
+      }
+    }
+
+    ItemRun run = new ItemRun(start);
+    chromasthetiationService.submit(item.transcription, run);
+    if (!run.completion.await(timeout, TimeUnit.NANOSECONDS))
+      throw new TimeoutException();
+    if (run.failure != null)
+      throw new ExecutionException(run.failure);
+    itemCount++;
+  }
+
+
+  /**
+   * Tracks the images of the chromasthetiation of a single replay item.
+   */
+  private final class ItemRun
+    implements FutureCallback<Pair<Image, Pair<ChromatikResponse, EmotionalState>>>
+  {
+    private final long startTime;
+
+    private final AtomicBoolean firstImage = new AtomicBoolean(true);
+
+    final CountDownLatch completion = new CountDownLatch(1);
+
+    volatile Exception failure = null;
+
+
+    ItemRun( long startTime )
+    {
+      this.startTime = startTime;
+    }
+
+
+    @Override
+    public void completed(
+      Pair<Image, Pair<ChromatikResponse, EmotionalState>> result )
+    {
+      long start = System.nanoTime();
+      PImages.from(result.getLeft());
+      long end = record(DISPLAY, start);
+      if (firstImage.getAndSet(false))
+        record(FIRST_IMAGE, startTime, end);
+      synchronized (histograms)
+      {
+        imagesDisplayed++;
+      }
+    }
+
+
+    @Override
+    public void failed( Exception ex )
+    {
+      synchronized (histograms)
+      {
+        failures++;
+      }
+      logger.log(Level.FINE, "Image retrieval failed", ex);
+    }
+
+
+    @Override
+    public void cancelled()
+    {
+      synchronized (histograms)
+      {
+        failures++;
+      }
+    }
+
+
+    void imagesCompleted()
+    {
+      record(ALL_IMAGES, startTime);
+      completion.countDown();
+    }
+
+
+    /**
+     * Called if the chromasthetiation fails before any images are
+     * requested.
+     */
+    void chromasthetiationFailed( Exception ex )
+    {
+      failure = (ex != null) ? ex : new IOException("Cancelled");
+      completion.countDown();
+    }
+  }
+
+
+  private final class BenchmarkChromasthetiationService
+    extends ChromasthetiationService
+  {
+    private final SimpleChromasthetiator<FlickrAsync> chromasthetiator =
+      new SimpleChromasthetiator<>();
+
+
+    BenchmarkChromasthetiationService( ExecutorService executor,
+      Async fluentAsync )
+    {
+      super(executor, fluentAsync, new TimingImageResponseHandler(
+        new PImageBaseResponseHandler(() -> new Dimension(1000, 1000), null)));
+
+      stageListener = ( text, stage, startTime, endTime ) -> {
+          switch (stage)
+          {
+          case SYNESTHETISATION:
+            record(ReplayBenchmark.SYNESTHETISATION, startTime, endTime);
+            break;
+
+          case QUERY:
+            record(ReplayBenchmark.QUERY, startTime, endTime);
+            break;
+
+          case PHOTO_SIZES:
+            record(ReplayBenchmark.PHOTO_SIZES, startTime, endTime);
+            break;
+
+          case IMAGE:
+            record(IMAGE_FETCH, startTime, endTime);
+            break;
+          }
+        };
+
+      chromasthetiator.getChromatikQuery().setNHits(10);
+      URI chromatikUri = getServiceUri("chromatik");
+      if (chromatikUri != null)
+        chromasthetiator.getChromatikQuery().setBaseUri(chromatikUri);
+
+      URI flickrUri = getServiceUri("flickr");
+      if (flickrUri != null)
+        flickr.setUriBase(flickrUri);
+      String flickrKey = System.getProperty("com.flickr.api.key");
+      if (flickrKey != null && !flickrKey.isEmpty())
+      {
+        int p = flickrKey.indexOf(':');
+        setFlickrApiKey(
+          (p >= 0) ? flickrKey.substring(0, p) : flickrKey,
+          (p >= 0) ? flickrKey.substring(p + 1) : "");
+      }
+      chromasthetiator.setFlickrApi(flickr);
+    }
+
+
+    void submit( String text, final ItemRun run )
+    {
+      submit(text, chromasthetiator.toSimple(),
+        new FutureCallback<Future<Image>>()
+        {
+          @Override
+          public void completed( Future<Image> result ) { }
+
+          @Override
+          public void failed( Exception ex )
+          {
+            run.chromasthetiationFailed(ex);
+          }
+
+          @Override
+          public void cancelled()
+          {
+            run.chromasthetiationFailed(null);
+          }
+        },
+        run, ( photos ) -> run.imagesCompleted(), imageCount);
+    }
+  }
+
+
+  /**
+   * Buffers the response body before it's decoded to tell the transfer and
+   * decoding durations apart.
+   */
+  private final class TimingImageResponseHandler
+    implements ResponseHandler<Image>
+  {
+    private final ResponseHandler<Image> underlying;
+
+
+    TimingImageResponseHandler( ResponseHandler<Image> underlying )
+    {
+      this.underlying = underlying;
+    }
+
+
+    @Override
+    public Image handleResponse( HttpResponse response ) throws IOException
+    {
+      long start = System.nanoTime();
+      HttpEntity entity = response.getEntity();
+      if (entity != null && !entity.isRepeatable())
+        response.setEntity(new BufferedHttpEntity(entity));
+      start = record(IMAGE_TRANSFER, start);
+      Image image = underlying.handleResponse(response);
+      record(IMAGE_DECODE, start);
+      return image;
+    }
+  }
+
+
+  private long record( String stage, long startTime )
+  {
+    long now = System.nanoTime();
+    record(stage, startTime, now);
+    return now;
+  }
+
+
+  private void record( String stage, long startTime, long endTime )
+  {
+    synchronized (histograms)
+    {
+      histograms.computeIfAbsent(stage, (k) -> new LatencyHistogram())
+        .record(endTime - startTime);
+    }
+  }
+
+
+  private void reset()
+  {
+    synchronized (histograms)
+    {
+      histograms.clear();
+      audioDuration = 0;
+      itemCount = 0;
+      imagesDisplayed = 0;
+      failures = 0;
+      timeouts = 0;
+    }
+  }
+
+
+  private List<String> formatHistograms( Date date )
+  {
+    synchronized (histograms)
+    {
+      return LatencyHistogram.formatLines(date, histograms);
+    }
+  }
+
+
+  private void printThroughput( String name, double wallTime )
+  {
+    synchronized (histograms)
+    {
+      LatencyHistogram audio = histograms.get(AUDIO);
+      double audioProcessingTime =
+        (audio != null) ? audio.getMean() * audio.getTotalCount() * 1e-9 : 0;
+
+      System.out.format(
+        "%nReplay list \"%s\": %d items, %d images, %d failures, " +
+          "%d timeouts in %.3f s%n",
+        name, itemCount, imagesDisplayed, failures, timeouts, wallTime);
+      System.out.format("Throughput: %.3f items/s, %.3f images/s%n",
+        itemCount / wallTime, imagesDisplayed / wallTime);
+      System.out.format("Audio processing: %.1f × real time%n",
+        audioDuration / audioProcessingTime);
+    }
+  }
+
+
+  private void shutdown()
+  {
+    if (stt != null)
+      stt.shutdown();
+    chromasthetiationService.shutdown();
+    if (mockImageSearchService != null)
+      mockImageSearchService.shutdown();
+  }
+}
@@ -1,6 +1,7 @@
 package kaleidok.kaleidoscope;
 
 import javafx.beans.property.BooleanProperty;
+import kaleidok.audio.processor.FeatureVoiceActivityDetector;
 import kaleidok.google.speech.RecorderIcon;
 import kaleidok.google.speech.STT;
 import kaleidok.google.speech.SttResponse;
@@ -9,6 +10,7 @@
 import kaleidok.javafx.beans.property.adapter.preference.PropertyPreferencesAdapter;
 import kaleidok.javafx.beans.property.aspect.PropertyPreferencesAdapterTag;
 import kaleidok.util.Reflection;
+import kaleidok.util.prefs.DefaultValueParser;
 import kaleidok.util.concurrent.AbstractFutureCallback;
 import kaleidok.processing.Plugin;
 import processing.event.KeyEvent;
@@ -48,8 +50,14 @@ public Object getParent()
         }
       };
 
-    sketch.getAudioProcessingManager().getAudioDispatcher()
-      .addAudioProcessor(stt.getAudioProcessor());
+    AudioProcessingManager apm = sketch.getAudioProcessingManager();
+    if (DefaultValueParser.parseBoolean(
+      params.get(STT.class.getName() + ".vad"), false))
+    {
+      stt.setVoiceActivityDetector(
+        new FeatureVoiceActivityDetector(apm.getFftProcessor()));
+    }
+    apm.getAudioDispatcher().addAudioProcessor(stt.getAudioProcessor());
     recorderIcon = new RecorderIcon(sketch, stt.statusProperty(), 0);
 
     enableResponseHandler =
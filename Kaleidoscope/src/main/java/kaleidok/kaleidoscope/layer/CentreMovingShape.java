@@ -6,6 +6,7 @@
 import kaleidok.javafx.beans.property.AspectedDoubleProperty;
 import kaleidok.javafx.beans.property.aspect.PropertyPreferencesAdapterTag;
 import kaleidok.javafx.beans.property.aspect.bounded.BoundedDoubleTag;
+import kaleidok.kaleidoscope.layer.util.CircularMesh;
 import kaleidok.processing.ExtPApplet;
 import kaleidok.util.CyclingList;
 import processing.core.PApplet;
@@ -32,6 +33,8 @@ public class CentreMovingShape extends CircularImageLayer
 
   private VolumeLevelProcessor volumeLevelProcessor;
 
+  private long audioTimestamp = 0;
+
   /**
    * Manages the exponent to adjust the dynamic range of the spectral
    * intensities.
@@ -103,6 +106,13 @@ public DoubleProperty exponentProperty()
   }
 
 
+  @Override
+  public long getAudioTimestamp()
+  {
+    return audioTimestamp;
+  }
+
+
   /**
    * Draws the rotated circle with a volume-dependent radius. The volume level
    * is scaled according to a power function:
@@ -121,6 +131,7 @@ public DoubleProperty exponentProperty()
   @Override
   public void run()
   {
+    audioTimestamp = volumeLevelProcessor.getTimestamp();
     double level = volumeLevelProcessor.getLevel();
     //System.out.println("Volume level: " + level);
     if (!(level > 0))
@@ -144,28 +155,38 @@ public void run()
     parent.scale(outerRadius);
     parent.rotate(parent.frameCount * -0.002f); // rotate around this center --anticlockwise
 
-    parent.beginShape(PConstants.TRIANGLE_FAN); // input the shapeMode in the beginShape() call
-    PImage img;
-    if (wireframe <= 0 && (img = updateAndGetCurrentImage()) != null)
+    PImage img = (wireframe <= 0) ? updateAndGetCurrentImage() : null;
+    CircularMesh mesh = getRetainedMesh(img, 1);
+    if (mesh != null)
     {
-      parent.texture(img); // set the texture to use
-      parent.noStroke(); // turn off stroke
+      updateDiscMesh(mesh, img);
+      mesh.getRadii()[0] = radius;
+      drawRetainedMesh(mesh, img);
     }
     else
     {
-      parent.noFill();
-      parent.stroke(128);
-      parent.strokeWeight(parent.g.strokeWeight * 0.5f / outerRadius);
-    }
-
-    final int segmentCount = this.segmentCount.get();
-    parent.vertex(0, 0, 0.5f, 0.5f); // define a central point for the TRIANGLE_FAN, note the (0.5, 0.5) uv texture coordinates
-    for (int i = 0; i < segmentCount; i++) {
-      drawCircleVertex(i, radius);
+      parent.beginShape(PConstants.TRIANGLE_FAN); // input the shapeMode in the beginShape() call
+      if (img != null)
+      {
+        parent.texture(img); // set the texture to use
+        parent.noStroke(); // turn off stroke
+      }
+      else
+      {
+        parent.noFill();
+        parent.stroke(128);
+        parent.strokeWeight(parent.g.strokeWeight * 0.5f / outerRadius);
+      }
+
+      final int segmentCount = this.segmentCount.get();
+      parent.vertex(0, 0, 0.5f, 0.5f); // define a central point for the TRIANGLE_FAN, note the (0.5, 0.5) uv texture coordinates
+      for (int i = 0; i < segmentCount; i++) {
+        drawCircleVertex(i, radius);
+      }
+      drawCircleVertex(0, radius);
+
+      parent.endShape(); // finalize the Shape
     }
-    drawCircleVertex(0, radius);
-
-    parent.endShape(); // finalize the Shape
     parent.popMatrix(); // use push/popMatrix so each Shape's translation does not affect other drawings
   }
 
@@ -1,20 +1,26 @@
 package kaleidok.kaleidoscope.layer;
 
+import javafx.beans.property.BooleanProperty;
 import javafx.beans.property.DoubleProperty;
 import javafx.beans.property.IntegerProperty;
 import javafx.beans.value.ObservableObjectValue;
 import javafx.scene.control.SpinnerValueFactory.DoubleSpinnerValueFactory;
 import javafx.scene.control.SpinnerValueFactory.IntegerSpinnerValueFactory;
+import kaleidok.javafx.beans.property.AspectedBooleanProperty;
 import kaleidok.javafx.beans.property.AspectedDoubleProperty;
 import kaleidok.javafx.beans.property.AspectedIntegerProperty;
 import kaleidok.javafx.beans.property.aspect.LevelOfDetailTag;
 import kaleidok.javafx.beans.property.aspect.PropertyPreferencesAdapterTag;
 import kaleidok.javafx.beans.property.aspect.bounded.BoundedDoubleTag;
 import kaleidok.javafx.beans.property.aspect.bounded.BoundedIntegerTag;
+import kaleidok.kaleidoscope.layer.util.CircularMesh;
 import kaleidok.kaleidoscope.layer.util.CircularTriangleStripSegmentCoordinatesBinding;
 import kaleidok.processing.ExtPApplet;
 import processing.core.PApplet;
 import processing.core.PConstants;
+import processing.core.PGraphics;
+import processing.core.PImage;
+import processing.opengl.PGraphicsOpenGL;
 
 import javax.annotation.OverridingMethodsMustInvokeSuper;
 
@@ -37,8 +43,12 @@ public abstract class CircularImageLayer extends ImageLayer
 
   protected final AspectedIntegerProperty segmentCount;
 
+  protected final AspectedBooleanProperty retainedGeometry;
+
   private final ObservableObjectValue<float[]> segmentCoords;
 
+  private CircularMesh mesh = null;
+
 
   protected CircularImageLayer( ExtPApplet parent, int segmentCount )
   {
@@ -86,6 +96,11 @@ protected CircularImageLayer( ExtPApplet parent, int segmentCount,
         MIN_SEGMENTS, MAX_SEGMENTS / segmentMultiplier));
     this.segmentCount.addAspect(LevelOfDetailTag.getInstance()).set(10);
     this.segmentCount.addAspect(PropertyPreferencesAdapterTag.getInstance());
+    retainedGeometry =
+      new AspectedBooleanProperty(this, "retained geometry", true);
+    retainedGeometry.addAspect(LevelOfDetailTag.getInstance()).set(101);
+    retainedGeometry.addAspect(PropertyPreferencesAdapterTag.getInstance());
+
     this.segmentCoords = new CircularTriangleStripSegmentCoordinatesBinding(
       (segmentMultiplier != 1) ?
         this.segmentCount.multiply(segmentMultiplier) :
@@ -127,6 +142,83 @@ public DoubleProperty scaleFactorProperty()
   }
 
 
+  /**
+   * Manages whether textured geometry is drawn from a retained
+   * {@link CircularMesh}, if the renderer supports it, instead of being
+   * submitted vertex by vertex on every frame.
+   *
+   * @return  A property object with the above purpose
+   */
+  public BooleanProperty retainedGeometryProperty()
+  {
+    return retainedGeometry;
+  }
+
+
+  /**
+   * @param texture  The texture to draw with
+   * @param radiusSlotCount  The number of radius slots required
+   * @return  The retained mesh of this layer; {@code null} if the
+   *   geometry has to be drawn immediately instead
+   * @see #retainedGeometryProperty()
+   */
+  protected CircularMesh getRetainedMesh( PImage texture, int radiusSlotCount )
+  {
+    if (texture == null || radiusSlotCount > CircularMesh.MAX_RADII ||
+      !retainedGeometry.get())
+    {
+      return null;
+    }
+
+    CircularMesh mesh = this.mesh;
+    if (mesh == null)
+    {
+      PGraphics g = parent.g;
+      if (!CircularMesh.isSupported(g))
+        return null;
+      this.mesh = mesh = new CircularMesh((PGraphicsOpenGL) g);
+    }
+    return mesh;
+  }
+
+
+  /**
+   * @return  The interleaved coordinates of the segment vertices on the
+   *   unit circle; the array instance changes with the segment count
+   */
+  protected float[] getSegmentCoords()
+  {
+    return segmentCoords.get();
+  }
+
+
+  /**
+   * Builds a disc of triangles around the centre from the segment
+   * vertices into the given mesh unless it's up to date already. All
+   * vertices use radius slot 0.
+   */
+  protected void updateDiscMesh( CircularMesh mesh, PImage texture )
+  {
+    final float[] segmentCoords = getSegmentCoords();
+    if (!mesh.isValid(PConstants.TRIANGLE_FAN, segmentCoords))
+    {
+      final int segmentCount = segmentCoords.length / DIMENSIONS;
+      mesh.beginShape(PConstants.TRIANGLE_FAN, segmentCoords, texture);
+      mesh.centreVertex(0);
+      for (int i = 0; i < segmentCount; i++)
+        mesh.vertex(segmentCoords, i, 0);
+      mesh.vertex(segmentCoords, 0, 0);
+      mesh.endShape();
+    }
+  }
+
+
+  protected void drawRetainedMesh( CircularMesh mesh, PImage texture )
+  {
+    mesh.draw(texture, getTextureFactorX(), getTextureFactorY());
+  }
+
+
   protected void drawCircleVertex( int index, float radius )
   {
     final float[] segmentCoords = this.segmentCoords.get();
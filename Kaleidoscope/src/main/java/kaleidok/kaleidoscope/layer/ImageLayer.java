@@ -41,6 +41,8 @@ public abstract class ImageLayer implements Runnable, PreferenceBean
 
   private CurrentImage currentImage = CurrentImage.NULL_IMAGE;
 
+  private int imageChangeFrame = -1;
+
   public ChangeListener<? super ImageLayer, ? super PImage> imageChangeCallback;
 
 
@@ -144,6 +146,7 @@ protected PImage updateAndGetCurrentImage()
       {
         assert parent.isDrawingThread();
         this.currentImage = CurrentImage.newInstance(next);
+        imageChangeFrame = parent.frameCount;
 
         ChangeListener<? super ImageLayer, ? super PImage> callback =
           this.imageChangeCallback;
@@ -155,6 +158,27 @@ protected PImage updateAndGetCurrentImage()
   }
 
 
+  /**
+   * @return  Whether the current image changed during the current frame,
+   *   which usually entails a texture upload
+   */
+  public boolean isImageChanged()
+  {
+    return imageChangeFrame == parent.frameCount;
+  }
+
+
+  /**
+   * @return  The {@link kaleidok.audio.processor.BufferTimestampProcessor
+   *   timestamp} of the audio data that this layer drew during the most
+   *   recent run; 0 if unknown or if the layer doesn't depend on audio data
+   */
+  public long getAudioTimestamp()
+  {
+    return 0;
+  }
+
+
   @SuppressWarnings("OptionalAssignedToNull")
   private Optional<PImage> getNextAvailableImage()
   {
@@ -237,6 +261,28 @@ private CurrentImage( PImage image )
   }
 
 
+  /**
+   * @return  The horizontal factor from vertex positions to texture
+   *   coordinates of the current image
+   * @see #drawVertex(float, float)
+   */
+  protected float getTextureFactorX()
+  {
+    return currentImage.txFactor;
+  }
+
+
+  /**
+   * @return  The vertical factor from vertex positions to texture
+   *   coordinates of the current image
+   * @see #drawVertex(float, float)
+   */
+  protected float getTextureFactorY()
+  {
+    return currentImage.tyFactor;
+  }
+
+
   protected void drawVertex( float x, float y )
   {
     CurrentImage img = currentImage;
@@ -13,12 +13,15 @@
 import kaleidok.javafx.beans.property.aspect.PropertyPreferencesAdapterTag;
 import kaleidok.javafx.beans.property.aspect.bounded.BoundedDoubleTag;
 import kaleidok.javafx.util.converter.DoubleNumberStringConverter;
+import kaleidok.kaleidoscope.layer.util.CircularMesh;
 import kaleidok.processing.ExtPApplet;
 import kaleidok.text.InternationalSystemOfUnitsFormat;
 import processing.core.PApplet;
 import processing.core.PConstants;
 import processing.core.PImage;
 
+import java.util.function.LongSupplier;
+
 import static kaleidok.util.Math.map;
 
 
@@ -48,6 +51,8 @@ public class OuterMovingShape extends CircularImageLayer
 
   private double angle = 0;
 
+  private long audioTimestamp = 0;
+
 
   public OuterMovingShape( ExtPApplet parent, int segmentCount, double radius )
   {
@@ -102,6 +107,26 @@ public PitchDetectionHandler getPitchDetectionHandler()
   }
 
 
+  /**
+   * @param timestampSource  Supplies the timestamp of the audio buffer
+   *   passed to the {@link #getPitchDetectionHandler() pitch detection
+   *   handler}, e. g. a
+   *   {@link kaleidok.audio.processor.BufferTimestampProcessor}; may be
+   *   {@code null}
+   */
+  public void setAudioTimestampSource( LongSupplier timestampSource )
+  {
+    angleStepSizeBinding.timestampSource = timestampSource;
+  }
+
+
+  @Override
+  public long getAudioTimestamp()
+  {
+    return audioTimestamp;
+  }
+
+
   public DoubleProperty pitchToAngleMapMinPitchProperty()
   {
     return pitchToAngleMapMinPitch;
@@ -181,6 +206,7 @@ public void run()
     parent.pushMatrix(); // use push/popMatrix so each Shape's translation does not affect other drawings
     parent.scale(outerRadius);
 
+    audioTimestamp = angleStepSizeBinding.pitchTimestamp;
     double step = angleStepSizeBinding.get();
     if (step != 0)
     {
@@ -193,28 +219,38 @@ public void run()
     }
     parent.rotate((float) angle); // rotate around this center
 
-    parent.beginShape(PConstants.TRIANGLE_FAN); // input the shapeMode in the beginShape() call
-    PImage img;
-    if (wireframe <= 0 && (img = updateAndGetCurrentImage()) != null)
+    PImage img = (wireframe <= 0) ? updateAndGetCurrentImage() : null;
+    CircularMesh mesh = getRetainedMesh(img, 1);
+    if (mesh != null)
     {
-      parent.texture(img); // set the texture to use
-      parent.noStroke(); // turn off stroke
+      updateDiscMesh(mesh, img);
+      mesh.getRadii()[0] = 1;
+      drawRetainedMesh(mesh, img);
     }
     else
     {
-      parent.noFill();
-      parent.stroke(128);
-      parent.strokeWeight(parent.g.strokeWeight * 0.5f / outerRadius);
-    }
-
-    final int segmentCount = this.segmentCount.get();
-    parent.vertex(0, 0, 0.5f, 0.5f); // define a central point for the TRIANGLE_FAN, note the (0.5, 0.5) uv texture coordinates
-    for (int i = 0; i < segmentCount; i++) {
-      drawCircleVertex(i, 1);
+      parent.beginShape(PConstants.TRIANGLE_FAN); // input the shapeMode in the beginShape() call
+      if (img != null)
+      {
+        parent.texture(img); // set the texture to use
+        parent.noStroke(); // turn off stroke
+      }
+      else
+      {
+        parent.noFill();
+        parent.stroke(128);
+        parent.strokeWeight(parent.g.strokeWeight * 0.5f / outerRadius);
+      }
+
+      final int segmentCount = this.segmentCount.get();
+      parent.vertex(0, 0, 0.5f, 0.5f); // define a central point for the TRIANGLE_FAN, note the (0.5, 0.5) uv texture coordinates
+      for (int i = 0; i < segmentCount; i++) {
+        drawCircleVertex(i, 1);
+      }
+      drawCircleVertex(0, 1);
+
+      parent.endShape(); // finalize the Shape
     }
-    drawCircleVertex(0, 1);
-
-    parent.endShape(); // finalize the Shape
     parent.popMatrix(); // use push/popMatrix so each Shape's translation does not affect other drawings
   }
 
@@ -226,6 +262,10 @@ private static class AngleStepSizeBinding extends DoubleBinding
 
     private volatile double pitchValue = Double.NaN;
 
+    volatile LongSupplier timestampSource = null;
+
+    volatile long pitchTimestamp = 0;
+
 
     public AngleStepSizeBinding( ObservableDoubleValue[] bounds )
     {
@@ -256,6 +296,9 @@ protected double computeValue()
     public void handlePitch( PitchDetectionResult pitchDetectionResult,
       AudioEvent audioEvent )
     {
+      LongSupplier timestampSource = this.timestampSource;
+      pitchTimestamp =
+        (timestampSource != null) ? timestampSource.getAsLong() : 0;
       pitchValue =
         pitchDetectionResult.isPitched() ?
           pitchDetectionResult.getPitch() :
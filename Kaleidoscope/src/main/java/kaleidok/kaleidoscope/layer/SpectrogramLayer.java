@@ -2,13 +2,20 @@
 
 import javafx.beans.binding.DoubleBinding;
 import javafx.beans.property.DoubleProperty;
+import javafx.beans.property.IntegerProperty;
 import javafx.scene.control.SpinnerValueFactory.DoubleSpinnerValueFactory;
+import javafx.scene.control.SpinnerValueFactory.IntegerSpinnerValueFactory;
 import kaleidok.audio.processor.MinimFFTProcessor;
 import kaleidok.javafx.beans.property.AspectedDoubleProperty;
+import kaleidok.javafx.beans.property.AspectedIntegerProperty;
+import kaleidok.javafx.beans.property.aspect.LevelOfDetailTag;
 import kaleidok.javafx.beans.property.aspect.PropertyPreferencesAdapterTag;
 import kaleidok.javafx.beans.property.aspect.bounded.BoundedDoubleTag;
+import kaleidok.javafx.beans.property.aspect.bounded.BoundedIntegerTag;
+import kaleidok.kaleidoscope.layer.util.CircularMesh;
 import kaleidok.kaleidoscope.layer.util.SpectrumBandsPerOctaveBinding;
 import kaleidok.processing.ExtPApplet;
+import kaleidok.util.function.PowerFunctionTable;
 import processing.core.PApplet;
 import processing.core.PConstants;
 import processing.core.PImage;
@@ -27,6 +34,8 @@ public class SpectrogramLayer extends CircularImageLayer
 {
   private static final int SEGMENT_MULTIPLIER = 2;
 
+  public static int DEFAULT_EXPONENT_TABLE_RESOLUTION = 1 << 10;
+
   private final MinimFFTProcessor avgSpectrum;
 
   // Keep this field around to prevent the garbage collection on the weak reference of the binding.
@@ -39,6 +48,15 @@ public class SpectrogramLayer extends CircularImageLayer
    */
   protected final AspectedDoubleProperty exponent;
 
+  /**
+   * Manages the number of intervals of the lookup table that approximates
+   * the power function of the spectral intensities; 0 to compute it
+   * exactly.
+   */
+  protected final AspectedIntegerProperty exponentTableResolution;
+
+  private PowerFunctionTable exponentTable = null;
+
 
   public SpectrogramLayer( ExtPApplet parent, int segmentCount,
     double innerRadius, double outerRadius, MinimFFTProcessor spectrum,
@@ -62,6 +80,14 @@ public SpectrogramLayer( ExtPApplet parent, int segmentCount,
         new DoubleSpinnerValueFactory(0, 4))
       .setAmountToStepBy(0.05);
     exponent.addAspect(PropertyPreferencesAdapterTag.getInstance());
+
+    exponentTableResolution = new AspectedIntegerProperty(
+      this, "exponent table resolution", DEFAULT_EXPONENT_TABLE_RESOLUTION);
+    exponentTableResolution.addAspect(BoundedIntegerTag.getIntegerInstance(),
+      new IntegerSpinnerValueFactory(0, PowerFunctionTable.MAX_RESOLUTION));
+    exponentTableResolution.addAspect(LevelOfDetailTag.getInstance()).set(102);
+    exponentTableResolution.addAspect(
+      PropertyPreferencesAdapterTag.getInstance());
   }
 
 
@@ -93,6 +119,36 @@ public DoubleProperty exponentProperty()
   }
 
 
+  public IntegerProperty exponentTableResolutionProperty()
+  {
+    return exponentTableResolution;
+  }
+
+
+  @Override
+  public long getAudioTimestamp()
+  {
+    return avgSpectrum.getTimestamp();
+  }
+
+
+  /**
+   * @return  A lookup table for the current exponent and table resolution;
+   *   {@code null} if the power function is to be computed exactly
+   */
+  private PowerFunctionTable getExponentTable( double exponent )
+  {
+    final int resolution = exponentTableResolution.get();
+    if (resolution <= 0)
+      return null;
+
+    PowerFunctionTable t = exponentTable;
+    if (t == null || t.exponent != exponent || t.getResolution() != resolution)
+      exponentTable = t = new PowerFunctionTable(exponent, resolution);
+    return t;
+  }
+
+
   private final DoubleBinding scaledInnerRadius = innerRadius.divide(outerRadius);
 
 
@@ -107,6 +163,8 @@ public DoubleProperty exponentProperty()
    * <p>
    * {@code l} is more or less assumed to lie between 0 and 1, which holds true
    * for {@code x} between 0 and {@code a} and a non-negative {@code exponent}.
+   * Within that range the power function is approximated by a lookup table
+   * unless its {@link #exponentTableResolutionProperty() resolution} is 0.
    *
    * @see #exponent
    * @see #scaleFactorProperty()
@@ -126,15 +184,17 @@ public void run()
       drawDebugCircle(outerRadius);
     }
 
+    final MinimFFTProcessor avgSpectrum = this.avgSpectrum;
+    avgSpectrum.update();
     if (!avgSpectrum.isReady())
       return;
 
-    final MinimFFTProcessor avgSpectrum = this.avgSpectrum;
     final float
       scaledInnerRadius = this.scaledInnerRadius.floatValue(),
       outerScale = 1 - scaledInnerRadius,
       scaleFactor = this.scaleFactor.floatValue();
     final double exponent = this.exponent.get();
+    final PowerFunctionTable exponentTable = getExponentTable(exponent);
     final int segmentCount = this.segmentCount.get();
     /*
     assert segmentCount <= avgSpectrum.size() :
@@ -144,36 +204,71 @@ public void run()
     parent.pushMatrix(); // use push/popMatrix so each Shape's translation does not affect other drawings
     parent.scale(outerRadius);
 
-    PImage img;
-    if (wireframe <= 0 && (img = updateAndGetCurrentImage()) != null)
+    PImage img = (wireframe <= 0) ? updateAndGetCurrentImage() : null;
+    CircularMesh mesh = getRetainedMesh(img, segmentCount + 1);
+    if (mesh != null)
     {
-      parent.noStroke();
-      parent.beginShape(PConstants.TRIANGLE_STRIP); // input the shapeMode in the beginShape() call
-      parent.texture(img); // set the texture to use
+      // radius slot 0 holds the inner radius, i + 1 the outer one of segment i
+      final float[] segmentCoords = getSegmentCoords();
+      if (!mesh.isValid(PConstants.TRIANGLE_STRIP, segmentCoords))
+      {
+        mesh.beginShape(PConstants.TRIANGLE_STRIP, segmentCoords, img);
+        for (int i = 0; i <= segmentCount; i++)
+        {
+          final int im = i % segmentCount; // make sure the end equals the start
+          mesh.vertex(segmentCoords, im * SEGMENT_MULTIPLIER, 0);
+          mesh.vertex(segmentCoords, im * SEGMENT_MULTIPLIER + 1, im + 1);
+        }
+        mesh.endShape();
+      }
+
+      final float[] radii = mesh.getRadii();
+      radii[0] = scaledInnerRadius;
+      for (int i = 0; i < segmentCount; i++)
+      {
+        float x = avgSpectrum.get(i);
+        // scale the intensity value and adjust its dynamic range:
+        float dynamicOuter = (exponentTable != null) ?
+          exponentTable.applyAsFloat(x * scaleFactor) :
+          (float) pow(x * scaleFactor, exponent);
+        radii[i + 1] = dynamicOuter * outerScale + scaledInnerRadius;
+      }
+      drawRetainedMesh(mesh, img);
     }
     else
     {
-      parent.noFill();
-      parent.stroke(0, 255, 0);
-      parent.strokeWeight(parent.g.strokeWeight * 0.5f / outerRadius);
-      parent.beginShape(PConstants.TRIANGLE_STRIP); // input the shapeMode in the beginShape() call
-    }
+      if (img != null)
+      {
+        parent.noStroke();
+        parent.beginShape(PConstants.TRIANGLE_STRIP); // input the shapeMode in the beginShape() call
+        parent.texture(img); // set the texture to use
+      }
+      else
+      {
+        parent.noFill();
+        parent.stroke(0, 255, 0);
+        parent.strokeWeight(parent.g.strokeWeight * 0.5f / outerRadius);
+        parent.beginShape(PConstants.TRIANGLE_STRIP); // input the shapeMode in the beginShape() call
+      }
 
-    for (int i = 0; i <= segmentCount; i++)
-    {
-      final int im = i % segmentCount; // make sure the end equals the start
+      for (int i = 0; i <= segmentCount; i++)
+      {
+        final int im = i % segmentCount; // make sure the end equals the start
 
-      float x = avgSpectrum.get(im);
-      // scale the intensity value and adjust its dynamic range:
-      float dynamicOuter = (float) pow(x * scaleFactor, exponent);
+        float x = avgSpectrum.get(im);
+        // scale the intensity value and adjust its dynamic range:
+        float dynamicOuter = (exponentTable != null) ?
+          exponentTable.applyAsFloat(x * scaleFactor) :
+          (float) pow(x * scaleFactor, exponent);
 
-      drawCircleVertex(im * SEGMENT_MULTIPLIER,
-        scaledInnerRadius);
-      drawCircleVertex(im * SEGMENT_MULTIPLIER + 1,
-        dynamicOuter * outerScale + scaledInnerRadius);
-    }
+        drawCircleVertex(im * SEGMENT_MULTIPLIER,
+          scaledInnerRadius);
+        drawCircleVertex(im * SEGMENT_MULTIPLIER + 1,
+          dynamicOuter * outerScale + scaledInnerRadius);
+      }
 
-    parent.endShape(); // finalize the Shape
+      parent.endShape(); // finalize the Shape
+    }
     parent.popMatrix(); // use push/popMatrix so each Shape's translation does not affect other drawings
   }
 }
@@ -0,0 +1,208 @@
+package kaleidok.kaleidoscope.layer.util;
+
+import processing.core.PConstants;
+import processing.core.PGraphics;
+import processing.core.PImage;
+import processing.core.PShape;
+import processing.opengl.PGraphicsOpenGL;
+import processing.opengl.PShader;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+import static kaleidok.kaleidoscope.layer.util.CircularTriangleStripSegmentCoordinatesBinding.DIMENSIONS;
+
+
+/**
+ * A retained, textured mesh of vertices on rays from the centre, e. g. a
+ * disc or a ring, for OpenGL renderers.
+ * <p>
+ * The mesh is built once from the unit circle coordinates of
+ * {@link CircularTriangleStripSegmentCoordinatesBinding}, and each vertex is
+ * assigned a radius slot. A vertex shader places the vertices at the radii
+ * of their slots, which are passed as a uniform array on every draw call, so
+ * that changing radii doesn't require any re-tessellation or vertex buffer
+ * updates. Texture coordinates derive from the vertex positions in the same
+ * way as for the immediate drawing methods of
+ * {@link kaleidok.kaleidoscope.layer.CircularImageLayer}.
+ */
+public class CircularMesh
+{
+  /**
+   * The maximum number of radius slots; must match the size of the uniform
+   * array in the vertex shader.
+   */
+  public static final int MAX_RADII = 96 * 4;
+
+  public static final String RADIUS_SLOT_ATTRIBUTE = "radiusSlot";
+
+  private static final String
+    VERTEX_SHADER_RESOURCE = "circular-mesh.vert",
+    FRAGMENT_SHADER_RESOURCE = "circular-mesh.frag";
+
+
+  private final PGraphicsOpenGL g;
+
+  private PShader shader = null;
+
+  private PShape shape = null;
+
+  private int kind = -1;
+
+  private Object geometryKey = null;
+
+  private PImage texture = null;
+
+  private final float[] radii = new float[MAX_RADII];
+
+
+  public CircularMesh( PGraphicsOpenGL g )
+  {
+    this.g = Objects.requireNonNull(g);
+  }
+
+
+  public static boolean isSupported( PGraphics g )
+  {
+    return g instanceof PGraphicsOpenGL;
+  }
+
+
+  /**
+   * @param kind  A Processing shape kind
+   * @param geometryKey  An object identifying the vertex positions and
+   *   radius slots, e. g. the coordinate array of the unit circle
+   * @return  Whether the current mesh matches the given kind and key, so
+   *   that it doesn't need to be rebuilt
+   */
+  public boolean isValid( int kind, Object geometryKey )
+  {
+    return shape != null && kind == this.kind &&
+      geometryKey == this.geometryKey;
+  }
+
+
+  /**
+   * Starts to build a new mesh. Add vertices with
+   * {@link #vertex(float[], int, int)} or {@link #centreVertex(int)} and
+   * finish with {@link #endShape()}.
+   *
+   * @param kind  A Processing shape kind, e. g.
+   *   {@link PConstants#TRIANGLE_FAN} or
+   *   {@link PConstants#TRIANGLE_STRIP}
+   * @param geometryKey  See {@link #isValid(int, Object)}
+   * @param texture  The texture of the mesh
+   */
+  public void beginShape( int kind, Object geometryKey, PImage texture )
+  {
+    PShape shape = g.createShape();
+    shape.beginShape(kind);
+    shape.textureMode(PConstants.NORMAL);
+    shape.texture(texture);
+    shape.noStroke();
+    shape.fill(255);
+
+    this.shape = shape;
+    this.kind = kind;
+    this.geometryKey = geometryKey;
+    this.texture = texture;
+  }
+
+
+  /**
+   * Adds a vertex on the ray to a point on the unit circle.
+   *
+   * @param segmentCoords  The interleaved coordinates of points on the unit
+   *   circle
+   * @param index  The index of the point
+   * @param radiusSlot  The radius slot of the vertex
+   */
+  public void vertex( float[] segmentCoords, int index, int radiusSlot )
+  {
+    vertex(segmentCoords[index * DIMENSIONS],
+      segmentCoords[index * DIMENSIONS + 1], radiusSlot);
+  }
+
+
+  public void centreVertex( int radiusSlot )
+  {
+    vertex(0, 0, radiusSlot);
+  }
+
+
+  private void vertex( float x, float y, int radiusSlot )
+  {
+    if (radiusSlot < 0 || radiusSlot >= MAX_RADII)
+    {
+      throw new IndexOutOfBoundsException(
+        "Radius slot outside of [0, " + MAX_RADII + "): " + radiusSlot);
+    }
+
+    shape.attrib(RADIUS_SLOT_ATTRIBUTE, (float) radiusSlot);
+    shape.vertex(x, y, x * 0.5f + 0.5f, y * 0.5f + 0.5f);
+  }
+
+
+  public void endShape()
+  {
+    shape.endShape();
+    Arrays.fill(radii, 0);
+  }
+
+
+  /**
+   * @return  The radii array to fill before the next call to
+   *   {@link #draw(PImage, float, float)}, indexed by radius slot
+   */
+  public float[] getRadii()
+  {
+    return radii;
+  }
+
+
+  /**
+   * Draws the mesh with the current transformation matrix.
+   *
+   * @param texture  The texture to draw the mesh with
+   * @param txFactor  The horizontal factor from vertex positions to texture
+   *   coordinates
+   * @param tyFactor  The vertical factor from vertex positions to texture
+   *   coordinates
+   */
+  public void draw( PImage texture, float txFactor, float tyFactor )
+  {
+    if (texture != this.texture)
+    {
+      shape.setTexture(texture);
+      this.texture = texture;
+    }
+
+    PShader shader = getShader();
+    shader.set("radii", radii, 4);
+    shader.set("texScale", txFactor, tyFactor);
+
+    final PGraphicsOpenGL g = this.g;
+    g.shader(shader);
+    g.shape(shape);
+    g.resetShader();
+  }
+
+
+  private PShader getShader()
+  {
+    if (shader == null)
+    {
+      shader = g.loadShader(
+        getResourceUrl(FRAGMENT_SHADER_RESOURCE),
+        getResourceUrl(VERTEX_SHADER_RESOURCE));
+    }
+    return shader;
+  }
+
+
+  private static String getResourceUrl( String name )
+  {
+    return Objects.requireNonNull(CircularMesh.class.getResource(name), name)
+      .toExternalForm();
+  }
+}
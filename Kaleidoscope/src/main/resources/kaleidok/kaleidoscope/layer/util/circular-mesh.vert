@@ -0,0 +1,32 @@
+// Places the vertices of a CircularMesh on the unit circle directions of
+// their positions at the radius of their radius slot.
+//
+// The size of the radii array must match CircularMesh.MAX_RADII / 4.
+
+#define PROCESSING_TEXTURE_SHADER
+
+uniform mat4 transformMatrix;
+uniform mat4 texMatrix;
+
+uniform vec2 texScale;
+uniform vec4 radii[96];
+
+attribute vec4 position;
+attribute vec4 color;
+attribute float radiusSlot;
+
+varying vec4 vertColor;
+varying vec4 vertTexCoord;
+
+void main() {
+  int slot = int(radiusSlot + 0.5);
+  int vectorIndex = slot / 4;
+  float component = float(slot - vectorIndex * 4);
+  float radius = dot(radii[vectorIndex],
+    vec4(equal(vec4(component), vec4(0.0, 1.0, 2.0, 3.0))));
+
+  vec2 p = position.xy * radius;
+  gl_Position = transformMatrix * vec4(p, position.zw);
+  vertColor = color;
+  vertTexCoord = texMatrix * vec4(p * texScale + 0.5, 1.0, 1.0);
+}
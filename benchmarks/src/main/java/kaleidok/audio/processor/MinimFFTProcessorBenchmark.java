@@ -0,0 +1,56 @@
+package kaleidok.audio.processor;
+
+import be.tarsos.dsp.AudioEvent;
+import be.tarsos.dsp.io.TarsosDSPAudioFormat;
+import kaleidok.audio.processor.MinimFFTProcessor.AverageType;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class MinimFFTProcessorBenchmark
+{
+  public static final float SAMPLE_RATE = 32000;
+
+  @Param({ "1024", "4096" })
+  public int bufferSize;
+
+  @Param({ "NONE", "LOGARITHMIC" })
+  public AverageType averageType;
+
+  private MinimFFTProcessor processor;
+
+  private AudioEvent audioEvent;
+
+
+  @Setup
+  public void setUp()
+  {
+    processor = new MinimFFTProcessor(bufferSize);
+    if (averageType == AverageType.LOGARITHMIC)
+      processor.setAverageParams(averageType, 86, 32);
+
+    Random rnd = new Random(bufferSize);
+    float[] samples = new float[bufferSize];
+    for (int i = 0; i < samples.length; i++)
+      samples[i] = rnd.nextFloat() * 2 - 1;
+
+    audioEvent = new AudioEvent(
+      new TarsosDSPAudioFormat(SAMPLE_RATE, Short.SIZE, 1, true, false));
+    audioEvent.setFloatBuffer(samples);
+  }
+
+
+  @Benchmark
+  public boolean process()
+  {
+    return processor.process(audioEvent);
+  }
+}
@@ -0,0 +1,165 @@
+package kaleidok.google.gson;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonDeserializer;
+import com.google.gson.TypeAdapter;
+import kaleidok.exaleads.chromatik.data.ChromatikResponse;
+import kaleidok.exaleads.chromatik.data.ChromatikResponseTypeAdapter;
+import kaleidok.flickr.Size;
+import kaleidok.flickr.SizeMap;
+import kaleidok.flickr.SizeMapTypeAdapter;
+import org.apache.commons.io.IOUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Compares buffering a response body in a string and parsing it to a tree,
+ * parsing the response stream to a tree, and reading it with a streaming
+ * type adapter. Run with {@code -prof gc} to see the allocation per
+ * response ({@code gc.alloc.rate.norm}).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class JsonStreamingBenchmark
+{
+  @Param({ "chromatik", "flickr" })
+  public String payload;
+
+  @Param({ "100", "1000" })
+  public int items;
+
+  private byte[] content;
+
+  private Class<?> type;
+
+  private TypeAdapter<?> streamingAdapter;
+
+  private Gson treeGson;
+
+
+  @SuppressWarnings("SpellCheckingInspection")
+  @Setup
+  public void setUp()
+  {
+    StringBuilder sb = new StringBuilder(items * 512);
+    switch (payload)
+    {
+    case "chromatik":
+      type = ChromatikResponse.class;
+      streamingAdapter = ChromatikResponseTypeAdapter.INSTANCE;
+      sb.append('[').append(items * 10);
+      for (int i = 0; i < items; i++)
+      {
+        sb.append(",{\"ind\":").append(i)
+          .append(",\"id\":\"").append(1000000 + i)
+          .append("\",\"title\":\"Result number ").append(i)
+          .append("\",\"tags\":[\"summer\",\"beach\",\"sea\",\"sun\"]")
+          .append(",\"width\":500,\"height\":375")
+          .append(",\"thumbnailurl\":\"https://farm1.staticflickr.com/1/")
+          .append(1000000 + i).append("_abcdef_t.jpg\"")
+          .append(",\"squarethumbnailurl\":\"https://farm1.staticflickr.com/1/")
+          .append(1000000 + i).append("_abcdef_s.jpg\"")
+          .append(",\"colors\":{\"Red\":[0.25,0.5],\"Blue\":[0.125,0.75]}")
+          .append(",\"description\":\"")
+          .append("Lorem ipsum dolor sit amet, consectetur adipiscing elit. ")
+          .append("\"}");
+      }
+      sb.append(']');
+      break;
+
+    case "flickr":
+      type = SizeMap.class;
+      streamingAdapter = SizeMapTypeAdapter.INSTANCE;
+      // one entry per size label, padded with fields that aren't needed
+      Size.Label[] labels = Size.Label.values();
+      sb.append("{\"sizes\":{\"canblog\":0,\"canprint\":0,\"candownload\":1,\"size\":[");
+      for (int i = 0; i < labels.length; i++)
+      {
+        if (i != 0)
+          sb.append(',');
+        int width = 75 << (i / 2);
+        sb.append("{\"label\":\"").append(labels[i])
+          .append("\",\"width\":").append(width)
+          .append(",\"height\":").append(width * 3 / 4)
+          .append(",\"source\":\"https://farm1.staticflickr.com/1/2_3_")
+          .append(i).append(".jpg\"")
+          .append(",\"url\":\"https://www.flickr.com/photos/x/2/sizes/")
+          .append(i).append("/\",\"media\":\"photo\",\"exif\":[");
+        for (int j = items / labels.length; j > 0; j--)
+        {
+          sb.append("{\"tag\":\"ExposureTime\",\"raw\":\"1/")
+            .append(j).append("\"}");
+          if (j != 1)
+            sb.append(',');
+        }
+        sb.append("]}");
+      }
+      sb.append("]},\"stat\":\"ok\"}");
+      break;
+
+    default:
+      throw new IllegalArgumentException(payload);
+    }
+    content = sb.toString().getBytes(StandardCharsets.UTF_8);
+
+    treeGson = new GsonBuilder()
+      .registerTypeAdapter(ChromatikResponse.class,
+        (JsonDeserializer<ChromatikResponse>) ChromatikResponse::deserialize)
+      .registerTypeAdapter(SizeMap.class,
+        (JsonDeserializer<SizeMap>) SizeMap::deserialize)
+      .registerTypeAdapter(Size.Label.class,
+        (JsonDeserializer<Size.Label>) Size.Label::deserialize)
+      .create();
+  }
+
+
+  private Reader newReader()
+  {
+    return new InputStreamReader(
+      new ByteArrayInputStream(content), StandardCharsets.UTF_8);
+  }
+
+
+  @Benchmark
+  public Object bufferedTree() throws IOException
+  {
+    String body;
+    try (Reader r = newReader())
+    {
+      body = IOUtils.toString(r);
+    }
+    return treeGson.fromJson(body, type);
+  }
+
+
+  @Benchmark
+  public Object tree() throws IOException
+  {
+    try (Reader r = newReader())
+    {
+      return treeGson.fromJson(r, type);
+    }
+  }
+
+
+  @Benchmark
+  public Object streaming() throws IOException
+  {
+    try (Reader r = newReader())
+    {
+      return JsonStreams.read(r, streamingAdapter);
+    }
+  }
+}
@@ -0,0 +1,49 @@
+package kaleidok.google.speech;
+
+import be.tarsos.dsp.AudioEvent;
+import be.tarsos.dsp.io.TarsosDSPAudioFormat;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class AudioTranscriptionProcessorBenchmark
+{
+  @Param({ "1024", "4096" })
+  public int bufferSize;
+
+  private AudioEvent audioEvent;
+
+  private int[] conversionBuffer;
+
+
+  @Setup
+  public void setUp()
+  {
+    Random rnd = new Random(bufferSize);
+    float[] samples = new float[bufferSize];
+    for (int i = 0; i < samples.length; i++)
+      samples[i] = rnd.nextFloat() * 2 - 1;
+
+    audioEvent = new AudioEvent(
+      new TarsosDSPAudioFormat(16000, Short.SIZE, 1, true, false));
+    audioEvent.setFloatBuffer(samples);
+    audioEvent.setOverlap(bufferSize / 2);
+    conversionBuffer = new int[bufferSize];
+  }
+
+
+  @Benchmark
+  public int[] convertTo16Bit()
+  {
+    return AudioTranscriptionProcessor.convertTo16Bit(
+      audioEvent, conversionBuffer);
+  }
+}
@@ -0,0 +1,68 @@
+package kaleidok.image.filter;
+
+import kaleidok.image.filter.HSBAdjustFilter.FilterMode;
+import kaleidok.util.function.BinaryFloatFunction;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class HSBImageFilterBenchmark
+{
+  public static final int PIXEL_COUNT = 1 << 16;
+
+  @Param({ "ADD", "MULTIPLY", "POWER" })
+  public FilterMode filterMode;
+
+  /**
+   * Whether to use the lookup tables of {@link HSBAdjustFilter}; otherwise
+   * the filter mode is wrapped so that it's applied to every pixel.
+   */
+  @Param({ "true", "false" })
+  public boolean lookupTables;
+
+  private HSBAdjustFilter filter;
+
+  private int[] pixels;
+
+
+  @Setup
+  public void setUp()
+  {
+    BinaryFloatFunction filterMode =
+      lookupTables ? this.filterMode : this.filterMode::applyAsFloat;
+    filter =
+      (this.filterMode == FilterMode.ADD || this.filterMode == FilterMode.SUBTRACT) ?
+        new HSBAdjustFilter(0.1f, -0.2f, 0.05f, filterMode) :
+        new HSBAdjustFilter(1, 0.75f, 1.1f, filterMode);
+
+    Random rnd = new Random(PIXEL_COUNT);
+    pixels = new int[PIXEL_COUNT];
+    for (int i = 0; i < pixels.length; i++)
+      pixels[i] = rnd.nextInt();
+  }
+
+
+  /**
+   * @return  A checksum of all filtered pixels to defeat dead-code
+   *   elimination
+   */
+  @Benchmark
+  @OperationsPerInvocation(PIXEL_COUNT)
+  public int filterRGB()
+  {
+    final HSBAdjustFilter filter = this.filter;
+    final int[] pixels = this.pixels;
+    int checksum = 0;
+    for (int i = 0; i < pixels.length; i++)
+      checksum += filter.filterRGB(i & 0xff, i >>> 8, pixels[i] & 0xffffff);
+    return checksum;
+  }
+}
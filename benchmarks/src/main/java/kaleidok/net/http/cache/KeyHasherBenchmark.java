@@ -0,0 +1,48 @@
+package kaleidok.net.http.cache;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.TimeUnit;
+
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class KeyHasherBenchmark
+{
+  @SuppressWarnings("SpellCheckingInspection")
+  public static final String[] KEYS = {
+      "https://farm8.staticflickr.com/7367/12745212553_3c4dbe4a4b_z.jpg",
+      "https://api.flickr.com/services/rest/?method=flickr.photos.getSizes&api_key=e0b92403f258c35c6b43d2e21c640f9f&photo_id=12745212553&format=json&nojsoncallback=1",
+    };
+
+  @Param({ "SHA-384", "MD5" })
+  public String algorithm;
+
+  @Param({ "0", "1" })
+  public int keyIndex;
+
+  private KeyHasher keyHasher;
+
+  private String key;
+
+
+  @Setup
+  public void setUp() throws NoSuchAlgorithmException
+  {
+    keyHasher = new KeyHasher(MessageDigest.getInstance(algorithm));
+    key = KEYS[keyIndex];
+  }
+
+
+  @Benchmark
+  public String toInternalKey()
+  {
+    return keyHasher.toInternalKey(key);
+  }
+}
@@ -0,0 +1,127 @@
+package kaleidok.net.http.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.apache.commons.collections4.map.LRUMap;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+
+/**
+ * Compares the key map implementations of {@link DiskLruHttpCacheStorage}
+ * under contention: the synchronized {@link LRUMap} used previously and the
+ * current {@link Caffeine} cache. Run it with {@code -t} to vary the number
+ * of threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@Threads(4)
+public class KeyMapBenchmark
+{
+  public enum Implementation
+  {
+    SYNCHRONIZED_LRU
+      {
+        @Override
+        Function<String, String> newKeyMap( int size )
+        {
+          Map<String, String> map =
+            Collections.synchronizedMap(new LRUMap<String, String>(size));
+          return (externalKey) -> {
+              String internalKey = map.get(externalKey);
+              if (internalKey == null)
+              {
+                internalKey = hashKey(externalKey);
+                map.put(externalKey, internalKey);
+              }
+              return internalKey;
+            };
+        }
+      },
+
+    CAFFEINE
+      {
+        @Override
+        Function<String, String> newKeyMap( int size )
+        {
+          Cache<String, String> cache =
+            Caffeine.newBuilder().maximumSize(size).build();
+          return (externalKey) ->
+            cache.get(externalKey, KeyMapBenchmark::hashKey);
+        }
+      };
+
+
+    abstract Function<String, String> newKeyMap( int size );
+  }
+
+
+  @Param({ "SYNCHRONIZED_LRU", "CAFFEINE" })
+  public Implementation implementation;
+
+  /**
+   * The number of distinct keys as a multiple of the key map size in
+   * percent; values above 100 cause evictions.
+   */
+  @Param({ "50", "200" })
+  public int keySpacePercent;
+
+  private Function<String, String> keyMap;
+
+  private String[] keys;
+
+
+  @Setup
+  public void setUp()
+  {
+    keyMap = implementation.newKeyMap(DiskLruHttpCacheStorage.KEY_MAP_SIZE);
+    keys = new String[
+      DiskLruHttpCacheStorage.KEY_MAP_SIZE * keySpacePercent / 100];
+    for (int i = 0; i < keys.length; i++)
+    {
+      keys[i] = String.format(
+        "https://farm%d.staticflickr.com:443/%d/%d_%08x_z.jpg",
+        i % 9 + 1, i * 7 + 1000, i * 104729L + 100000000L, i * 0x9e3779b9);
+    }
+  }
+
+
+  /**
+   * Stands in for the comparatively expensive SHA-384 hash of the actual key
+   * map, so that the benchmark measures the map itself.
+   */
+  static String hashKey( String externalKey )
+  {
+    return Integer.toHexString(externalKey.hashCode());
+  }
+
+
+  @State(Scope.Thread)
+  public static class ThreadState
+  {
+    final SplittableRandom random = new SplittableRandom();
+  }
+
+
+  @Benchmark
+  public String toInternalKey( ThreadState state )
+  {
+    final String[] keys = this.keys;
+    /*
+     * Skew the access distribution towards low indices, similar to
+     * repeatedly requested search results.
+     */
+    int a = state.random.nextInt(keys.length),
+      b = state.random.nextInt(keys.length);
+    return keyMap.apply(keys[Math.min(a, b)]);
+  }
+}
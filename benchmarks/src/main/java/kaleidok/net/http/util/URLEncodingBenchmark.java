@@ -0,0 +1,57 @@
+package kaleidok.net.http.util;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class URLEncodingBenchmark
+{
+  @SuppressWarnings("SpellCheckingInspection")
+  @Param({
+      "happy summer day",
+      "¿Föøbår…‽ – «Übermäßig» große Grüße",
+      "keywords=sad%20rain&colors=%23aa0000%2C0.25&start=0&rows=100"
+    })
+  public String input;
+
+  private String encoded;
+
+  private final StringBuilder buffer = new StringBuilder(1 << 8);
+
+
+  @Setup
+  public void setUp()
+  {
+    encoded = URLEncoding.encode(input);
+  }
+
+
+  @Benchmark
+  public String encode()
+  {
+    return URLEncoding.encode(input);
+  }
+
+
+  @Benchmark
+  public CharSequence appendEncoded()
+  {
+    StringBuilder buffer = this.buffer;
+    buffer.setLength(0);
+    return URLEncoding.appendEncoded(input, buffer);
+  }
+
+
+  @Benchmark
+  public String decode()
+  {
+    return URLEncoding.decode(encoded);
+  }
+}
@@ -0,0 +1,54 @@
+package kaleidok.processing.image;
+
+import kaleidok.image.filter.HSBAdjustFilter;
+import kaleidok.image.filter.HSBAdjustFilter.FilterMode;
+import org.openjdk.jmh.annotations.*;
+import processing.core.PConstants;
+import processing.core.PImage;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class PImagesBenchmark
+{
+  @Param({ "640", "2048" })
+  public int size;
+
+  @Param({ "false", "true" })
+  public boolean parallel;
+
+  private PImage src, dst;
+
+  private HSBAdjustFilter filter;
+
+
+  @Setup
+  public void setUp()
+  {
+    src = new PImage(size, size * 3 / 4, PConstants.ARGB);
+    Random rnd = new Random(size);
+    int[] pixels = src.pixels;
+    for (int i = 0; i < pixels.length; i++)
+      pixels[i] = rnd.nextInt();
+    src.updatePixels();
+
+    dst = new PImage();
+    filter = new HSBAdjustFilter(0, 0.5f, 1, FilterMode.MULTIPLY);
+  }
+
+
+  @Benchmark
+  public PImage filter()
+  {
+    return PImages.filter(src, dst, filter,
+      parallel ? ForkJoinPool.commonPool() : null);
+  }
+}
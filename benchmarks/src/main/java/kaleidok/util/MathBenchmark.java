@@ -0,0 +1,38 @@
+package kaleidok.util;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class MathBenchmark
+{
+  @Param({ "1024", "4096" })
+  public int size;
+
+  private float[] samples;
+
+
+  @Setup
+  public void setUp()
+  {
+    Random rnd = new Random(size);
+    samples = new float[size];
+    for (int i = 0; i < samples.length; i++)
+      samples[i] = rnd.nextFloat() * 2 - 1;
+  }
+
+
+  @Benchmark
+  public float sumOfSquares()
+  {
+    return Math.sumOfSquares(samples);
+  }
+}
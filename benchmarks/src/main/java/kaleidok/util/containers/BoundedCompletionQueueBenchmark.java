@@ -0,0 +1,68 @@
+package kaleidok.util.containers;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Compares the throughput of the synchronized and the lock-free bounded
+ * completion queue while many threads offer items, take them and return
+ * their permits at once, like the callbacks of concurrent photo requests.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@Threads(8)
+public class BoundedCompletionQueueBenchmark
+{
+  @Param({ "synchronized", "concurrent" })
+  public String implementation;
+
+  @Param({ "16" })
+  public int permits;
+
+  private Queue<Integer> queue;
+
+  private Runnable release;
+
+
+  @Setup(Level.Iteration)
+  public void setUp()
+  {
+    switch (implementation)
+    {
+    case "synchronized":
+      BoundedCompletionQueue<Integer> synchronizedQueue =
+        new BoundedCompletionQueue<>(permits);
+      queue = synchronizedQueue;
+      release = synchronizedQueue::release;
+      break;
+
+    case "concurrent":
+      ConcurrentBoundedCompletionQueue<Integer> concurrentQueue =
+        new ConcurrentBoundedCompletionQueue<>(permits);
+      queue = concurrentQueue;
+      release = concurrentQueue::release;
+      break;
+
+    default:
+      throw new IllegalArgumentException(implementation);
+    }
+  }
+
+
+  @Benchmark
+  public Integer offerPollRelease()
+  {
+    queue.offer(1);
+    Integer item = queue.poll();
+    if (item != null)
+      release.run();
+    return item;
+  }
+}
@@ -0,0 +1,68 @@
+package kaleidok.util.function;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Compares the per-frame spectrum-to-radius mapping of the spectrogram layer
+ * with {@link Math#pow(double, double)} and with a {@link PowerFunctionTable}
+ * of the default resolution.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class PowerFunctionTableBenchmark
+{
+  @Param({ "256", "1024" })
+  public int segments;
+
+  @Param({ "0.5", "1.125", "2" })
+  public double exponent;
+
+  @Param({ "1024" })
+  public int resolution;
+
+  private PowerFunctionTable table;
+
+  private float[] spectrum, radii;
+
+
+  @Setup
+  public void setUp()
+  {
+    table = new PowerFunctionTable(exponent, resolution);
+    Random rnd = new Random(segments);
+    spectrum = new float[segments];
+    radii = new float[segments];
+    for (int i = 0; i < spectrum.length; i++)
+      spectrum[i] = rnd.nextFloat();
+  }
+
+
+  @Benchmark
+  public float[] pow()
+  {
+    final float[] spectrum = this.spectrum, radii = this.radii;
+    final double exponent = this.exponent;
+    for (int i = 0; i < spectrum.length; i++)
+      radii[i] = (float) Math.pow(spectrum[i], exponent) * 0.75f + 0.25f;
+    return radii;
+  }
+
+
+  @Benchmark
+  public float[] table()
+  {
+    final float[] spectrum = this.spectrum, radii = this.radii;
+    final PowerFunctionTable table = this.table;
+    for (int i = 0; i < spectrum.length; i++)
+      radii[i] = table.applyAsFloat(spectrum[i]) * 0.75f + 0.25f;
+    return radii;
+  }
+}
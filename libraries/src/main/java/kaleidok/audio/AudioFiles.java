@@ -0,0 +1,97 @@
+package kaleidok.audio;
+
+import javax.sound.sampled.UnsupportedAudioFileException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.FileSystemNotFoundException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+
+public final class AudioFiles
+{
+  private AudioFiles() { }
+
+
+  private static final Logger logger =
+    Logger.getLogger(AudioFiles.class.getName());
+
+
+  /**
+   * Opens an audio file without loading it into the heap. WAVE files with
+   * PCM samples are memory-mapped; all other formats are streamed.
+   *
+   * @param path  The path to an audio file
+   * @param loop  Whether to continue at the beginning at the end of the
+   *   audio data
+   * @return  An audio stream
+   * @throws UnsupportedAudioFileException  if the file format isn't
+   *   supported
+   * @throws IOException  if the file couldn't be read
+   * @see MappedAudioInputStream
+   * @see StreamingAudioInputStream
+   */
+  public static ResettableAudioStream open( Path path, boolean loop )
+    throws IOException, UnsupportedAudioFileException
+  {
+    try
+    {
+      return new MappedAudioInputStream(path, loop);
+    }
+    catch (UnsupportedAudioFileException ex)
+    {
+      logger.log(Level.FINEST, "Streaming audio file \"{0}\": {1}",
+        new Object[]{ path, ex.getLocalizedMessage() });
+    }
+    return new StreamingAudioInputStream(path, loop);
+  }
+
+
+  /**
+   * Opens an audio resource like {@link #open(Path, boolean)} if it's
+   * located in the file system and loads it into the heap as a
+   * {@link ContinuousAudioInputStream} otherwise.
+   *
+   * @param url  The location of an audio resource
+   * @return  An audio stream that loops
+   * @throws UnsupportedAudioFileException  if the file format isn't
+   *   supported
+   * @throws IOException  if the resource couldn't be read
+   */
+  public static ResettableAudioStream openLooping( URL url )
+    throws IOException, UnsupportedAudioFileException
+  {
+    Path path = toPath(url);
+    if (path != null)
+      return open(path, true);
+
+    InputStream is = url.openStream();
+    try
+    {
+      return new ContinuousAudioInputStream(is);
+    }
+    catch (IOException | UnsupportedAudioFileException | RuntimeException ex)
+    {
+      is.close();
+      throw ex;
+    }
+  }
+
+
+  private static Path toPath( URL url )
+  {
+    try
+    {
+      return Paths.get(url.toURI());
+    }
+    catch (URISyntaxException | IllegalArgumentException |
+      FileSystemNotFoundException ex)
+    {
+      return null;
+    }
+  }
+}
@@ -0,0 +1,270 @@
+package kaleidok.audio;
+
+import be.tarsos.dsp.io.TarsosDSPAudioFormat;
+import be.tarsos.dsp.io.jvm.JVMAudioInputStream;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.UnsupportedAudioFileException;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+
+/**
+ * Reads the PCM samples of a WAVE file from a memory mapping of that file
+ * instead of the heap, so that even long recordings can be looped and
+ * sought through without loading them in advance.
+ * <p>
+ * Looping streams continue seamlessly at the beginning of the audio data
+ * within the same read operation once they reach its end.
+ *
+ * @see AudioFiles#open(Path, boolean)
+ */
+public class MappedAudioInputStream implements ResettableAudioStream
+{
+  /**
+   * The maximum size of a single memory-mapped segment of the audio data
+   */
+  static int MAX_SEGMENT_SIZE = 1 << 30;
+
+  private final FileChannel channel;
+
+  private final TarsosDSPAudioFormat format;
+
+  private final int frameSize, segmentSize;
+
+  private final long dataLength;
+
+  private final ByteBuffer[] segments;
+
+  public final boolean loop;
+
+  private long position = 0;
+
+  private boolean closed = false;
+
+
+  /**
+   * @param path  The path to a WAVE file with PCM samples
+   * @param loop  Whether to continue at the beginning at the end of the
+   *   audio data
+   * @throws UnsupportedAudioFileException  if the file isn't a WAVE file or
+   *   its samples aren't PCM encoded
+   * @throws IOException  if the file couldn't be read or mapped
+   */
+  public MappedAudioInputStream( Path path, boolean loop )
+    throws IOException, UnsupportedAudioFileException
+  {
+    AudioFileFormat fileFormat = AudioSystem.getAudioFileFormat(path.toFile());
+    AudioFormat audioFormat = fileFormat.getFormat();
+    if (fileFormat.getType() != AudioFileFormat.Type.WAVE ||
+      !isPcm(audioFormat.getEncoding()))
+    {
+      throw new UnsupportedAudioFileException(
+        "Not a WAVE file with PCM samples: " + path);
+    }
+    format = JVMAudioInputStream.toTarsosDSPFormat(audioFormat);
+    frameSize = audioFormat.getFrameSize();
+    if (frameSize <= 0)
+      throw new UnsupportedAudioFileException("Non-positive audio frame size");
+    this.loop = loop;
+
+    channel = FileChannel.open(path, StandardOpenOption.READ);
+    try
+    {
+      long[] dataChunk = findDataChunk(channel);
+      long dataLength =
+        Math.min(dataChunk[1], channel.size() - dataChunk[0]);
+      this.dataLength = dataLength - dataLength % frameSize;
+      if (this.dataLength <= 0 && loop)
+        throw new IOException("Cannot loop empty audio data: " + path);
+
+      segmentSize = MAX_SEGMENT_SIZE - MAX_SEGMENT_SIZE % frameSize;
+      segments = new ByteBuffer[
+        (int) ((this.dataLength + segmentSize - 1) / segmentSize)];
+      for (int i = 0; i < segments.length; i++)
+      {
+        long offset = (long) i * segmentSize;
+        segments[i] = channel.map(FileChannel.MapMode.READ_ONLY,
+          dataChunk[0] + offset, Math.min(segmentSize, this.dataLength - offset));
+      }
+    }
+    catch (IOException | UnsupportedAudioFileException | RuntimeException ex)
+    {
+      channel.close();
+      throw ex;
+    }
+  }
+
+
+  static boolean isPcm( AudioFormat.Encoding encoding )
+  {
+    return encoding == AudioFormat.Encoding.PCM_SIGNED ||
+      encoding == AudioFormat.Encoding.PCM_UNSIGNED ||
+      encoding == AudioFormat.Encoding.PCM_FLOAT;
+  }
+
+
+  /**
+   * Locates the "data" chunk of a RIFF WAVE file.
+   *
+   * @return  The offset and the declared length of the chunk content
+   */
+  private static long[] findDataChunk( FileChannel channel )
+    throws IOException, UnsupportedAudioFileException
+  {
+    ByteBuffer header = ByteBuffer.allocate(12).order(ByteOrder.LITTLE_ENDIAN);
+    readFully(channel, header, 0);
+    if (header.getInt(0) != fourCC("RIFF") || header.getInt(8) != fourCC("WAVE"))
+      throw new UnsupportedAudioFileException("Not a RIFF WAVE file");
+
+    long offset = 12, size = channel.size();
+    while (offset + 8 <= size)
+    {
+      header.clear().limit(8);
+      readFully(channel, header, offset);
+      long chunkLength = header.getInt(4) & 0xffffffffL;
+      offset += 8;
+      if (header.getInt(0) == fourCC("data"))
+        return new long[]{ offset, chunkLength };
+      offset += chunkLength + (chunkLength & 1);
+    }
+    throw new UnsupportedAudioFileException("WAVE file without data chunk");
+  }
+
+
+  private static int fourCC( String s )
+  {
+    return s.charAt(0) | s.charAt(1) << 8 | s.charAt(2) << 16 |
+      s.charAt(3) << 24;
+  }
+
+
+  private static void readFully( FileChannel channel, ByteBuffer dst,
+    long position ) throws IOException
+  {
+    while (dst.hasRemaining())
+    {
+      int count = channel.read(dst, position);
+      if (count < 0)
+        throw new EOFException();
+      position += count;
+    }
+  }
+
+
+  @Override
+  public synchronized int read( byte[] b, int off, int len )
+    throws IOException
+  {
+    if (closed)
+      throw new IOException("Stream closed");
+    if (len <= 0)
+      return 0;
+
+    int total = 0;
+    while (len > 0)
+    {
+      if (position >= dataLength)
+      {
+        if (!loop || dataLength == 0)
+          break;
+        position = 0;
+      }
+
+      int segmentIdx = (int) (position / segmentSize);
+      ByteBuffer segment = segments[segmentIdx];
+      segment.position((int) (position - (long) segmentIdx * segmentSize));
+      int count = Math.min(len, segment.remaining());
+      segment.get(b, off, count);
+      position += count;
+      off += count;
+      len -= count;
+      total += count;
+    }
+    return (total != 0) ? total : -1;
+  }
+
+
+  @Override
+  public synchronized long skip( long bytesToSkip )
+  {
+    if (bytesToSkip <= 0)
+      return 0;
+
+    if (loop)
+    {
+      position = (position + bytesToSkip % dataLength) % dataLength;
+      return bytesToSkip;
+    }
+
+    long skipped = Math.min(bytesToSkip, dataLength - position);
+    position += skipped;
+    return skipped;
+  }
+
+
+  /**
+   * @return  The position of the next audio frame to read
+   */
+  public synchronized long getFramePosition()
+  {
+    return position / frameSize;
+  }
+
+
+  /**
+   * Moves to another audio frame.
+   *
+   * @param framePosition  The position of the next audio frame to read
+   * @throws IndexOutOfBoundsException  if the position lies outside the audio
+   *   data
+   */
+  public synchronized void setFramePosition( long framePosition )
+  {
+    if (framePosition < 0 || framePosition > getFrameLength())
+    {
+      throw new IndexOutOfBoundsException(
+        "Frame position out of range: " + framePosition);
+    }
+    position = framePosition * frameSize;
+  }
+
+
+  @Override
+  public synchronized void reset()
+  {
+    position = 0;
+  }
+
+
+  @Override
+  public void close() throws IOException
+  {
+    synchronized (this)
+    {
+      closed = true;
+    }
+    channel.close();
+  }
+
+
+  @Override
+  public TarsosDSPAudioFormat getFormat()
+  {
+    return format;
+  }
+
+
+  @Override
+  public long getFrameLength()
+  {
+    return dataLength / frameSize;
+  }
+}
@@ -16,6 +16,13 @@ public class MultiAudioInputStream implements TarsosDSPAudioInputStream
    */
   public List<TarsosDSPAudioInputStream> streams;
 
+  /**
+   * Whether reading continues with the next stream at the end of the
+   * current one; otherwise the end of the current stream is the end of this
+   * stream.
+   */
+  public volatile boolean concatenate = false;
+
   public MultiAudioInputStream()
   {
     this(new ArrayList<>());
@@ -80,7 +87,13 @@ public long skip( long bytesToSkip ) throws IOException
   @Override
   public int read( byte[] b, int off, int len ) throws IOException
   {
-    return getCurrentStream().read(b, off, len);
+    int count = getCurrentStream().read(b, off, len);
+    while (count < 0 && concatenate && currentIdx + 1 < streams.size())
+    {
+      skipToNext(false);
+      count = getCurrentStream().read(b, off, len);
+    }
+    return count;
   }
 
 
@@ -0,0 +1,173 @@
+package kaleidok.audio;
+
+import be.tarsos.dsp.io.TarsosDSPAudioFormat;
+import be.tarsos.dsp.io.TarsosDSPAudioInputStream;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Objects;
+
+
+/**
+ * Releases the audio frames of an underlying stream only as far as a
+ * controlling thread permits, e. g. to process audio in lockstep with a
+ * virtual clock instead of in real time.
+ * <p>
+ * Reads beyond the permitted position block until the controller
+ * {@link #advanceTo(long) advances} it. Since an
+ * {@link be.tarsos.dsp.AudioDispatcher} finishes the processing of each
+ * buffer before it reads the next one, every buffer that was completed by
+ * the permitted audio has been processed once the reader blocks;
+ * {@link #awaitIdle()} waits for that moment. The frames of the buffer that
+ * the dispatcher has only partly filled at that point are processed after a
+ * later advance completes it.
+ */
+public class SteppedAudioInputStream implements TarsosDSPAudioInputStream
+{
+  private final TarsosDSPAudioInputStream underlying;
+
+  private final int frameSize;
+
+  private long permittedBytes = 0, readBytes = 0;
+
+  private boolean readerWaiting = false, endOfStream = false, closed = false;
+
+
+  public SteppedAudioInputStream( TarsosDSPAudioInputStream underlying )
+  {
+    this.underlying = Objects.requireNonNull(underlying);
+    frameSize = underlying.getFormat().getFrameSize();
+    if (frameSize <= 0)
+      throw new IllegalArgumentException("Non-positive audio frame size");
+  }
+
+
+  /**
+   * Permits the reader to consume the audio stream up to the given frame
+   * position.
+   *
+   * @param framePosition  The permitted position in audio frames; positions
+   *   before the current one are ignored
+   */
+  public synchronized void advanceTo( long framePosition )
+  {
+    long bytes = framePosition * frameSize;
+    if (bytes > permittedBytes)
+    {
+      permittedBytes = bytes;
+      readerWaiting = false;
+      notifyAll();
+    }
+  }
+
+
+  /**
+   * Waits until the reader consumed all permitted audio frames and waits for
+   * more, or until the end of the stream.
+   *
+   * @throws InterruptedException  if interrupted while waiting
+   */
+  public synchronized void awaitIdle() throws InterruptedException
+  {
+    while (!(readerWaiting || endOfStream || closed))
+      wait();
+  }
+
+
+  /**
+   * @return  Whether the reader reached the end of the underlying stream
+   */
+  public synchronized boolean isEndOfStream()
+  {
+    return endOfStream;
+  }
+
+
+  /**
+   * @return  The number of audio frames consumed by the reader
+   */
+  public synchronized long getFramePosition()
+  {
+    return readBytes / frameSize;
+  }
+
+
+  @Override
+  public int read( byte[] b, int off, int len ) throws IOException
+  {
+    if (len <= 0)
+      return 0;
+
+    int permitted;
+    synchronized (this)
+    {
+      while (readBytes >= permittedBytes && !closed)
+      {
+        readerWaiting = true;
+        notifyAll();
+        try
+        {
+          wait();
+        }
+        catch (InterruptedException ex)
+        {
+          throw new InterruptedIOException(ex.getMessage());
+        }
+      }
+      if (closed)
+        return -1;
+      permitted = (int) Math.min(len, permittedBytes - readBytes);
+    }
+
+    int count = underlying.read(b, off, permitted);
+    synchronized (this)
+    {
+      if (count < 0) {
+        endOfStream = true;
+        notifyAll();
+      } else {
+        readBytes += count;
+      }
+    }
+    return count;
+  }
+
+
+  @Override
+  public long skip( long bytesToSkip ) throws IOException
+  {
+    long skipped = underlying.skip(bytesToSkip);
+    synchronized (this)
+    {
+      if (skipped > 0)
+        readBytes += skipped;
+    }
+    return skipped;
+  }
+
+
+  @Override
+  public void close() throws IOException
+  {
+    synchronized (this)
+    {
+      closed = true;
+      notifyAll();
+    }
+    underlying.close();
+  }
+
+
+  @Override
+  public TarsosDSPAudioFormat getFormat()
+  {
+    return underlying.getFormat();
+  }
+
+
+  @Override
+  public long getFrameLength()
+  {
+    return underlying.getFrameLength();
+  }
+}
@@ -0,0 +1,221 @@
+package kaleidok.audio;
+
+import be.tarsos.dsp.io.TarsosDSPAudioFormat;
+import be.tarsos.dsp.io.jvm.JVMAudioInputStream;
+
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.UnsupportedAudioFileException;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+
+/**
+ * Streams an audio file of any format supported by
+ * {@link AudioSystem#getAudioInputStream(InputStream)} and re-opens it to
+ * loop or to seek backwards, so that only a constant amount of memory is
+ * needed regardless of the length of the file.
+ * <p>
+ * Looping streams continue seamlessly at the beginning of the audio data
+ * within the same read operation once they reach its end.
+ *
+ * @see AudioFiles#open(Path, boolean)
+ */
+public class StreamingAudioInputStream implements ResettableAudioStream
+{
+  private final Path path;
+
+  private final TarsosDSPAudioFormat format;
+
+  private final int frameSize;
+
+  private final long frameLength;
+
+  public final boolean loop;
+
+  private AudioInputStream underlying;
+
+  private long position = 0;
+
+
+  /**
+   * @param path  The path to an audio file
+   * @param loop  Whether to continue at the beginning at the end of the
+   *   audio data
+   * @throws UnsupportedAudioFileException  if the file format isn't
+   *   supported
+   * @throws IOException  if the file couldn't be read
+   */
+  public StreamingAudioInputStream( Path path, boolean loop )
+    throws IOException, UnsupportedAudioFileException
+  {
+    this.path = path;
+    this.loop = loop;
+    underlying = open(path);
+    try
+    {
+      format = JVMAudioInputStream.toTarsosDSPFormat(underlying.getFormat());
+      frameSize = format.getFrameSize();
+      if (frameSize <= 0)
+      {
+        throw new UnsupportedAudioFileException(
+          "Non-positive audio frame size");
+      }
+    }
+    catch (UnsupportedAudioFileException | RuntimeException ex)
+    {
+      underlying.close();
+      throw ex;
+    }
+    frameLength = underlying.getFrameLength();
+  }
+
+
+  private static AudioInputStream open( Path path )
+    throws IOException, UnsupportedAudioFileException
+  {
+    InputStream is = new BufferedInputStream(Files.newInputStream(path));
+    try
+    {
+      return AudioSystem.getAudioInputStream(is);
+    }
+    catch (IOException | UnsupportedAudioFileException | RuntimeException ex)
+    {
+      is.close();
+      throw ex;
+    }
+  }
+
+
+  private void reopen() throws IOException
+  {
+    underlying.close();
+    try
+    {
+      underlying = open(path);
+    }
+    catch (UnsupportedAudioFileException ex)
+    {
+      throw new IOException(ex);
+    }
+    position = 0;
+  }
+
+
+  @Override
+  public synchronized int read( byte[] b, int off, int len )
+    throws IOException
+  {
+    len -= len % frameSize;
+    if (len <= 0)
+      return 0;
+
+    int total = 0;
+    boolean reopened = false;
+    while (len > 0)
+    {
+      int count = underlying.read(b, off, len);
+      if (count < 0)
+      {
+        // stop at empty or unreadable files that would loop indefinitely
+        if (!loop || reopened && total == 0)
+          break;
+        reopen();
+        reopened = true;
+        continue;
+      }
+      position += count;
+      off += count;
+      len -= count;
+      total += count;
+      if (count == 0)
+        break;
+    }
+    return (total != 0) ? total : -1;
+  }
+
+
+  @Override
+  public synchronized long skip( long bytesToSkip ) throws IOException
+  {
+    if (bytesToSkip <= 0)
+      return 0;
+
+    long skipped = underlying.skip(bytesToSkip);
+    if (skipped > 0)
+      position += skipped;
+    return skipped;
+  }
+
+
+  /**
+   * @return  The position of the next audio frame to read
+   */
+  public synchronized long getFramePosition()
+  {
+    return position / frameSize;
+  }
+
+
+  /**
+   * Moves to another audio frame. Moving backwards re-opens the file and
+   * moving forwards skips the frames in between.
+   *
+   * @param framePosition  The position of the next audio frame to read
+   * @throws IOException  if the file couldn't be re-opened or the frames
+   *   couldn't be skipped
+   */
+  public synchronized void setFramePosition( long framePosition )
+    throws IOException
+  {
+    if (framePosition < 0 ||
+      (frameLength != AudioSystem.NOT_SPECIFIED && framePosition > frameLength))
+    {
+      throw new IndexOutOfBoundsException(
+        "Frame position out of range: " + framePosition);
+    }
+
+    long target = framePosition * frameSize;
+    if (target < position)
+      reopen();
+    while (position < target)
+    {
+      long skipped = underlying.skip(target - position);
+      if (skipped <= 0)
+        throw new IOException("Couldn't skip to frame " + framePosition);
+      position += skipped;
+    }
+  }
+
+
+  @Override
+  public synchronized void reset() throws IOException
+  {
+    if (position != 0)
+      reopen();
+  }
+
+
+  @Override
+  public synchronized void close() throws IOException
+  {
+    underlying.close();
+  }
+
+
+  @Override
+  public TarsosDSPAudioFormat getFormat()
+  {
+    return format;
+  }
+
+
+  @Override
+  public long getFrameLength()
+  {
+    return frameLength;
+  }
+}
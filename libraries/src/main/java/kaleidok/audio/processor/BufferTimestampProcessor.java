@@ -0,0 +1,44 @@
+package kaleidok.audio.processor;
+
+import be.tarsos.dsp.AudioEvent;
+import be.tarsos.dsp.AudioProcessor;
+
+import java.util.function.LongSupplier;
+
+
+/**
+ * Timestamps each audio buffer as it passes through an
+ * {@link be.tarsos.dsp.AudioDispatcher}, so that processors further down
+ * the chain can attach the timestamp to the data that they derive from the
+ * buffer, and consumers of that data can determine its age.
+ * <p>
+ * Add this processor before all processors that use its timestamps. Its
+ * {@link #getAsLong() timestamp} is the {@link System#nanoTime()} at which
+ * the current buffer reached this processor; 0 before the first buffer.
+ */
+public class BufferTimestampProcessor implements AudioProcessor, LongSupplier
+{
+  private volatile long timestamp = 0;
+
+
+  @Override
+  public boolean process( AudioEvent audioEvent )
+  {
+    timestamp = System.nanoTime();
+    return true;
+  }
+
+
+  @Override
+  public long getAsLong()
+  {
+    return timestamp;
+  }
+
+
+  @Override
+  public void processingFinished()
+  {
+    // nothing to do here
+  }
+}
@@ -0,0 +1,155 @@
+package kaleidok.audio.processor;
+
+import be.tarsos.dsp.AudioEvent;
+
+
+/**
+ * Detects voice activity based on the short-term energy and the
+ * zero-crossing rate of each audio buffer, and on the spectral flatness of
+ * its spectrum as computed by a {@link MinimFFTProcessor} earlier in the
+ * dispatcher chain.
+ * <p>
+ * An audio buffer is considered a speech frame if its RMS level exceeds the
+ * current noise floor by {@link #energyRatio} and {@link #minLevel}, unless
+ * both its spectral flatness and zero-crossing rate indicate broadband
+ * noise. The noise floor follows the RMS level of non-speech frames. Voice
+ * activity starts after {@link #onsetDuration} of speech frames and persists
+ * for {@link #hangoverDuration} after the last speech frame, to bridge short
+ * pauses and unvoiced sounds.
+ */
+public class FeatureVoiceActivityDetector implements VoiceActivityDetector
+{
+  public static float SPEECH_BAND_MIN_FREQUENCY = 250;
+
+  public static float SPEECH_BAND_MAX_FREQUENCY = 4000;
+
+
+  private final MinimFFTProcessor fftProcessor;
+
+  public volatile double energyRatio = 3;
+
+  public volatile double minLevel = 1e-3;
+
+  public volatile double maxSpectralFlatness = 0.5;
+
+  public volatile double maxZeroCrossingRate = 0.3;
+
+  public volatile double onsetDuration = 0.05;
+
+  public volatile double hangoverDuration = 0.6;
+
+  /**
+   * The factor by which the noise floor approaches the level of each
+   * non-speech frame per second.
+   */
+  public volatile double noiseFloorAdaptationRate = 0.5;
+
+  // owned by the audio thread
+  private double noiseFloor = Double.NaN;
+
+  private double speechDuration = 0, silenceDuration = 0;
+
+  private boolean isActive = false;
+
+
+  /**
+   * @param fftProcessor  The processor that transforms the same audio
+   *   events before this detector is queried; may be {@code null} to skip
+   *   the spectral flatness criterion
+   */
+  public FeatureVoiceActivityDetector( MinimFFTProcessor fftProcessor )
+  {
+    this.fftProcessor = fftProcessor;
+  }
+
+
+  @Override
+  public boolean isVoiceActive( AudioEvent audioEvent )
+  {
+    final float[] buf = audioEvent.getFloatBuffer();
+    final int offset = audioEvent.getOverlap();
+    final double frameDuration =
+      (buf.length - offset) / (double) audioEvent.getSampleRate();
+    final double level = getLevel(buf);
+
+    if (Double.isNaN(noiseFloor))
+      noiseFloor = level;
+
+    boolean isSpeechFrame = level >= minLevel &&
+      level >= noiseFloor * energyRatio && !isNoise(buf);
+
+    if (isSpeechFrame)
+    {
+      speechDuration += frameDuration;
+      silenceDuration = 0;
+      if (speechDuration >= onsetDuration)
+        isActive = true;
+    }
+    else
+    {
+      speechDuration = 0;
+      silenceDuration += frameDuration;
+      if (silenceDuration >= hangoverDuration)
+        isActive = false;
+
+      // Noise floor drops immediately but rises slowly.
+      double adaptation =
+        Math.min(noiseFloorAdaptationRate * frameDuration, 1);
+      noiseFloor = (level < noiseFloor) ?
+        level :
+        noiseFloor + (level - noiseFloor) * adaptation;
+    }
+
+    return isActive;
+  }
+
+
+  private boolean isNoise( float[] buf )
+  {
+    if (getZeroCrossingRate(buf) <= maxZeroCrossingRate)
+      return false;
+
+    if (fftProcessor == null)
+      return true;
+
+    double flatness = fftProcessor.getSpectralFlatness(
+      SPEECH_BAND_MIN_FREQUENCY, SPEECH_BAND_MAX_FREQUENCY);
+    return !(flatness <= maxSpectralFlatness);
+  }
+
+
+  static double getLevel( float[] buf )
+  {
+    return (buf.length != 0) ?
+      Math.sqrt((double) kaleidok.util.Math.sumOfSquares(buf) / buf.length) :
+      0;
+  }
+
+
+  /**
+   * @param buf  An audio buffer
+   * @return  The fraction of adjacent sample pairs with differing signs
+   */
+  static double getZeroCrossingRate( float[] buf )
+  {
+    if (buf.length < 2)
+      return 0;
+
+    int crossings = 0;
+    boolean wasNegative = buf[0] < 0;
+    for (int i = 1; i < buf.length; i++)
+    {
+      boolean isNegative = buf[i] < 0;
+      if (isNegative != wasNegative)
+        crossings++;
+      wasNegative = isNegative;
+    }
+    return (double) crossings / (buf.length - 1);
+  }
+
+
+  public double getNoiseFloor()
+  {
+    return noiseFloor;
+  }
+}
@@ -6,7 +6,23 @@
 import kaleidok.audio.spectrum.Spectrum;
 import org.apache.commons.lang3.ArrayUtils;
 
-
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongSupplier;
+
+
+/**
+ * Computes the (averaged) spectrum of the audio signal of an
+ * {@link be.tarsos.dsp.AudioDispatcher}.
+ * <p>
+ * The spectral averages are published through a lock-free triple buffer:
+ * the audio thread fills a back buffer after each FFT and swaps it with the
+ * pending middle buffer, while a <em>single</em> consumer thread (usually
+ * the renderer) calls {@link #update()} to swap the pending buffer with its
+ * front buffer. All spectrum accessors read from the front buffer, so the
+ * consumer never observes a partially computed spectrum and the audio
+ * thread never waits on it.
+ */
 public class MinimFFTProcessor implements AudioProcessor, Spectrum
 {
   public enum AverageType {
@@ -24,6 +40,35 @@ public enum AverageType {
 
   private int[] avgParams = ArrayUtils.EMPTY_INT_ARRAY;
 
+  /**
+   * Supplies the timestamp of the current audio buffer, e. g. a
+   * {@link BufferTimestampProcessor}; may be {@code null}.
+   */
+  public volatile LongSupplier timestampSource = null;
+
+
+  private static final class Frame
+  {
+    float[] averages = ArrayUtils.EMPTY_FLOAT_ARRAY;
+
+    long sequenceNumber = 0;
+
+    long timestamp = 0;
+  }
+
+  // owned by the audio thread
+  private Frame backFrame = new Frame();
+
+  private long lastSequenceNumber = 0;
+
+  private final AtomicReference<Frame> pendingFrame =
+    new AtomicReference<>(new Frame());
+
+  private volatile long publishedSequenceNumber = 0;
+
+  // owned by the consumer thread
+  private Frame frontFrame = new Frame();
+
 
   public MinimFFTProcessor( int bufferSize )
   {
@@ -66,9 +111,69 @@ public void setAverageParams( AverageType type, int... params )
   }
 
 
+  /**
+   * @return  Whether the consumer thread has acquired at least one spectrum
+   *   frame through {@link #update()}
+   */
   public boolean isReady()
   {
-    return fft != null;
+    return frontFrame.sequenceNumber != 0;
+  }
+
+
+  /**
+   * Acquires the most recently published spectrum frame for subsequent
+   * calls to the spectrum accessors of this object. This method and the
+   * accessors must only be called from one and the same consumer thread.
+   *
+   * @return  Whether a new frame arrived since the last call
+   */
+  public boolean update()
+  {
+    Frame front = frontFrame;
+    /*
+     * The audio thread swaps a new frame in before it announces its sequence
+     * number, so the front frame may already be newer than the published
+     * sequence number; swapping again would bring back an older frame.
+     */
+    if (publishedSequenceNumber <= front.sequenceNumber)
+      return false;
+
+    frontFrame = pendingFrame.getAndSet(front);
+    return true;
+  }
+
+
+  /**
+   * @return  The sequence number of the spectrum frame currently acquired by
+   *   the consumer thread; 0 if there is none
+   * @see #update()
+   */
+  public long getSequenceNumber()
+  {
+    return frontFrame.sequenceNumber;
+  }
+
+
+  /**
+   * @return  The timestamp of the audio buffer of the spectrum frame
+   *   currently acquired by the consumer thread; 0 if unknown
+   * @see #timestampSource
+   * @see #update()
+   */
+  public long getTimestamp()
+  {
+    return frontFrame.timestamp;
+  }
+
+
+  /**
+   * @return  The sequence number of the most recently published spectrum
+   *   frame; 0 if there is none. This method may be called from any thread.
+   */
+  public long getPublishedSequenceNumber()
+  {
+    return publishedSequenceNumber;
   }
 
 
@@ -86,10 +191,69 @@ public boolean process( AudioEvent audioEvent )
     System.arraycopy(
       audioEvent.getFloatBuffer(), 0, sampleBuffer, 0, sampleBuffer.length);
     fft.forward(sampleBuffer);
+    publishAverages(fft);
     return true;
   }
 
 
+  private void publishAverages( final FFT fft )
+  {
+    final Frame back = backFrame;
+    final int avgSize = fft.avgSize();
+    float[] averages = back.averages;
+    if (averages.length != avgSize)
+      back.averages = averages = new float[avgSize];
+    for (int i = 0; i < avgSize; i++)
+      averages[i] = fft.getAvg(i);
+
+    LongSupplier timestampSource = this.timestampSource;
+    back.timestamp =
+      (timestampSource != null) ? timestampSource.getAsLong() : 0;
+    long sequenceNumber = ++lastSequenceNumber;
+    back.sequenceNumber = sequenceNumber;
+    backFrame = pendingFrame.getAndSet(back);
+    publishedSequenceNumber = sequenceNumber;
+  }
+
+
+  /**
+   * Computes the spectral flatness (the ratio of the geometric and the
+   * arithmetic mean of the power spectrum) of the most recently transformed
+   * audio buffer in a frequency band. Values near 1 indicate noise-like
+   * signals, values near 0 tonal ones.
+   * <p>
+   * Unlike the spectrum accessors this method must only be called from the
+   * audio thread, e. g. by a processor further down the dispatcher chain.
+   *
+   * @param minFreq  The lower bound of the frequency band
+   * @param maxFreq  The upper bound of the frequency band
+   * @return  The spectral flatness; {@link Double#NaN} if there is no
+   *   spectrum yet
+   */
+  public double getSpectralFlatness( float minFreq, float maxFreq )
+  {
+    final FFT fft = this.fft;
+    if (fft == null)
+      return Double.NaN;
+
+    final int
+      first = Math.max(fft.freqToIndex(minFreq), 1),
+      last = Math.min(fft.freqToIndex(maxFreq), fft.specSize() - 1);
+    if (first > last)
+      return Double.NaN;
+
+    double logSum = 0, sum = 0;
+    for (int i = first; i <= last; i++)
+    {
+      double power = (double) fft.getBand(i) * fft.getBand(i) + 1e-12;
+      logSum += Math.log(power);
+      sum += power;
+    }
+    int n = last - first + 1;
+    return Math.exp(logSum / n) / (sum / n);
+  }
+
+
   @Override
   public void processingFinished()
   {
@@ -100,16 +264,20 @@ public void processingFinished()
   @Override
   public float get( int n )
   {
-    return fft.getAvg(n);
+    final float[] averages = frontFrame.averages;
+    return (averages.length != 0) ? averages[n] : 0;
   }
 
 
   @Override
   public float[] get( final float[] a, int offset, int first, int length )
   {
-    final FFT fft = this.fft;
-    for (final int last = first + length; first < last; first++, offset++)
-      a[offset] = fft.getAvg(first);
+    final float[] averages = frontFrame.averages;
+    if (averages.length != 0) {
+      System.arraycopy(averages, first, a, offset, length);
+    } else {
+      Arrays.fill(a, offset, offset + length, 0);
+    }
     return a;
   }
 
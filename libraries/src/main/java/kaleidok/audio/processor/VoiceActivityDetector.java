@@ -0,0 +1,21 @@
+package kaleidok.audio.processor;
+
+import be.tarsos.dsp.AudioEvent;
+
+
+/**
+ * Decides whether audio events contain speech, e. g. to gate the recording
+ * of speech for transcription.
+ * <p>
+ * Implementations are queried from the audio thread once per audio event,
+ * after all processors preceding the querying processor in the dispatcher
+ * chain have processed it.
+ */
+public interface VoiceActivityDetector
+{
+  /**
+   * @param audioEvent  The current audio event
+   * @return  Whether the audio event is part of an utterance
+   */
+  boolean isVoiceActive( AudioEvent audioEvent );
+}
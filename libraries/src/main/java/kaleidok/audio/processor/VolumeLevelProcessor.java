@@ -3,11 +3,21 @@
 import be.tarsos.dsp.AudioEvent;
 import be.tarsos.dsp.AudioProcessor;
 
+import java.util.function.LongSupplier;
+
 
 public class VolumeLevelProcessor implements AudioProcessor
 {
   private volatile double level = Double.NaN;
 
+  private volatile long timestamp = 0;
+
+  /**
+   * Supplies the timestamp of the current audio buffer, e. g. a
+   * {@link BufferTimestampProcessor}; may be {@code null}.
+   */
+  public volatile LongSupplier timestampSource = null;
+
 
   public double getLevel()
   {
@@ -15,6 +25,17 @@ public double getLevel()
   }
 
 
+  /**
+   * @return  The timestamp of the audio buffer of the current
+   *   {@link #getLevel() level}; 0 if unknown
+   * @see #timestampSource
+   */
+  public long getTimestamp()
+  {
+    return timestamp;
+  }
+
+
   @Override
   public boolean process( AudioEvent audioEvent )
   {
@@ -23,6 +44,8 @@ public boolean process( AudioEvent audioEvent )
      * We could simply use AudioEvent#getRMS() here, but it relies on a
      * numerically unstable sum of squares implementation.
      */
+    LongSupplier timestampSource = this.timestampSource;
+    timestamp = (timestampSource != null) ? timestampSource.getAsLong() : 0;
     level = Math.sqrt((double) kaleidok.util.Math.sumOfSquares(buf) / buf.length);
     return true;
   }
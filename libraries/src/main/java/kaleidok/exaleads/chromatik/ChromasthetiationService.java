@@ -2,14 +2,17 @@
 
 import kaleidok.exaleads.chromatik.Chromasthetiator.FlickrPhoto;
 import kaleidok.exaleads.chromatik.data.ChromatikResponse;
+import kaleidok.net.http.cache.DecodedImageCache;
 import kaleidok.net.http.responsehandler.PImageBaseResponseHandler;
 import kaleidok.util.Threads;
 import kaleidok.flickr.*;
+import kaleidok.util.concurrent.ImmediateFuture;
 import kaleidok.util.concurrent.NestedFutureCallback;
-import kaleidok.util.containers.BoundedCompletionQueue;
+import kaleidok.util.containers.ConcurrentBoundedCompletionQueue;
 import kaleidok.net.http.async.ImageAsync;
 import kaleidok.net.http.async.JsonAsync;
 import org.apache.commons.lang3.tuple.Pair;
+import org.apache.http.client.ResponseHandler;
 import org.apache.http.client.fluent.Async;
 import org.apache.http.client.fluent.Request;
 import org.apache.http.concurrent.FutureCallback;
@@ -34,6 +37,9 @@
 {
   public static int DEFAULT_THREAD_POOL_SIZE = 4;
 
+  public static int DEFAULT_SIZE_PREFETCH_COUNT =
+    ChromatikQuery.QUERY_NHITS_DEFAULT;
+
   private final ExecutorService executor;
 
   private final JsonAsync jsonAsync;
@@ -42,6 +48,72 @@
 
   protected final FlickrAsync flickr;
 
+  protected final SizeResolver sizeResolver;
+
+  /**
+   * The number of results of each search whose photo sizes are resolved
+   * ahead of their dispatch
+   */
+  public volatile int sizePrefetchCount = DEFAULT_SIZE_PREFETCH_COUNT;
+
+  private volatile DecodedImageCache imageCache = null;
+
+
+  /**
+   * The stages of a chromasthetiation that are reported to a
+   * {@link StageListener}.
+   */
+  public enum Stage
+  {
+    /**
+     * The emotional analysis of the text
+     */
+    SYNESTHETISATION,
+
+    /**
+     * A Chromatik search query; a chromasthetiation may issue several
+     * queries if the first ones yield no results
+     */
+    QUERY,
+
+    /**
+     * The resolution of the available sizes of a Flickr photo; this
+     * includes only the time after the photo was dispatched, so prefetched
+     * sizes take little or no time
+     */
+    PHOTO_SIZES,
+
+    /**
+     * The download and decoding of an image that isn't in the
+     * {@link #getImageCache() image cache}
+     */
+    IMAGE
+  }
+
+
+  @FunctionalInterface
+  public interface StageListener
+  {
+    /**
+     * Called on the thread that completed a stage.
+     *
+     * @param text  The chromasthetiated text
+     * @param stage  The completed stage
+     * @param startTime  The {@link System#nanoTime()} at the start of the
+     *   stage
+     * @param endTime  The {@link System#nanoTime()} at the end of the stage
+     */
+    void stageCompleted( String text, Stage stage, long startTime,
+      long endTime );
+  }
+
+
+  /**
+   * A listener that is notified of the durations of the stages of each
+   * chromasthetiation, e. g. for benchmarks; may be {@code null}
+   */
+  public volatile StageListener stageListener = null;
+
 
   public ChromasthetiationService( ExecutorService executor,
     JsonAsync jsonAsync, ImageAsync imageAsync, FlickrAsync flickrAsync )
@@ -50,6 +122,7 @@ public ChromasthetiationService( ExecutorService executor,
     this.jsonAsync = jsonAsync;
     this.imageAsync = imageAsync;
     this.flickr = flickrAsync;
+    this.sizeResolver = new SizeResolver(flickrAsync);
   }
 
 
@@ -61,9 +134,16 @@ public ChromasthetiationService( ExecutorService executor,
 
 
   public ChromasthetiationService( ExecutorService executor, Async fluentAsync )
+  {
+    this(executor, fluentAsync, PImageBaseResponseHandler.INSTANCE);
+  }
+
+
+  public ChromasthetiationService( ExecutorService executor,
+    Async fluentAsync, ResponseHandler<Image> imageResponseHandler )
   {
     this(executor, new JsonAsync(fluentAsync),
-      new ImageAsync(fluentAsync, PImageBaseResponseHandler.INSTANCE));
+      new ImageAsync(fluentAsync, imageResponseHandler));
   }
 
 
@@ -88,6 +168,24 @@ protected void submit( String text,
   }
 
 
+  public DecodedImageCache getImageCache()
+  {
+    return imageCache;
+  }
+
+
+  /**
+   * Sets a cache for decoded images, that is consulted before images are
+   * requested from the HTTP client.
+   *
+   * @param imageCache  An image cache; may be {@code null} to disable caching
+   */
+  protected void setImageCache( DecodedImageCache imageCache )
+  {
+    this.imageCache = imageCache;
+  }
+
+
   protected void setFlickrApiKey( String key, String secret )
   {
     if (key != null)
@@ -95,6 +193,18 @@ protected void setFlickrApiKey( String key, String secret )
   }
 
 
+  private void notifyStageCompleted( String text, Stage stage,
+    long startTime )
+  {
+    StageListener stageListener = this.stageListener;
+    if (stageListener != null)
+    {
+      stageListener.stageCompleted(
+        text, stage, startTime, System.nanoTime());
+    }
+  }
+
+
   private class Chromasthetiation
     implements Runnable, FutureCallback<Pair<ChromatikResponse, EmotionalState>>
   {
@@ -106,7 +216,9 @@ protected void setFlickrApiKey( String key, String secret )
 
     private final FutureCallback<Pair<Image, Pair<ChromatikResponse, EmotionalState>>> imageCallback;
 
-    private final BoundedCompletionQueue<Pair<Photo, Pair<ChromatikResponse, EmotionalState>>> photoQueue;
+    private final ConcurrentBoundedCompletionQueue<Pair<Photo, Pair<ChromatikResponse, EmotionalState>>> photoQueue;
+
+    private volatile long queryStartTime;
 
 
     /**
@@ -138,8 +250,7 @@ public Chromasthetiation(
       this.futureImageCallback = futureImageCallback;
       this.imageCallback = imageCallback;
       photoQueue =
-        new BoundedCompletionQueue<>(maxCount,
-          chromasthetiator.getChromatikQuery().getNHits());
+        new ConcurrentBoundedCompletionQueue<>(maxCount);
       if (imageQueueCompletionCallback != null)
       {
         photoQueue.completionCallback =
@@ -154,6 +265,7 @@ public Chromasthetiation(
     public void run()
     {
       EmotionalState emoState;
+      long startTime = System.nanoTime();
       try
       {
         emoState = chromasthetiator.synesthetiator.synesthetiseDirect(text);
@@ -168,6 +280,7 @@ public void run()
           Threads.handleUncaught(ex);
         return;
       }
+      notifyStageCompleted(text, Stage.SYNESTHETISATION, startTime);
       //noinspection HardcodedLineSeparator
       logger.log(Level.FINE, "Synesthetiation result:\n{0}", emoState);
 
@@ -198,6 +311,7 @@ private void runChromatikQuery( final EmotionalState emoState )
       logger.log(Level.FINER,
         "Requesting search results from: {0}", chromatikUri);
 
+      queryStartTime = System.nanoTime();
       jsonAsync.execute(Request.Get(chromatikUri), ChromatikResponse.class,
         NestedFutureCallback.getInstance(this,
           (response, cb) -> cb.completed(Pair.of(response, emoState))));
@@ -207,6 +321,7 @@ private void runChromatikQuery( final EmotionalState emoState )
     @Override
     public void completed( Pair<ChromatikResponse, EmotionalState> o )
     {
+      notifyStageCompleted(text, Stage.QUERY, queryStartTime);
       ChromatikResponse response = o.getLeft();
       logger.log(Level.FINE, "Chromatik found {0} results", response.hits);
 
@@ -219,33 +334,29 @@ public void completed( Pair<ChromatikResponse, EmotionalState> o )
       }
 
       Flickr flickr = chromasthetiator.flickr;
-      synchronized (photoQueue) {
-        for (ChromatikResponse.Result imgInfo : response.results) {
-          final FlickrPhoto flickrPhoto =
-            FlickrPhoto.fromChromatikResponseResult(flickr, imgInfo);
-          imgInfo.flickrPhoto = flickrPhoto;
-          photoQueue.add(Pair.of(flickrPhoto, o));
-        }
-
-        dispatchQueue();
+      int prefetchCount = sizePrefetchCount;
+      for (ChromatikResponse.Result imgInfo : response.results) {
+        final FlickrPhoto flickrPhoto =
+          FlickrPhoto.fromChromatikResponseResult(flickr, imgInfo);
+        imgInfo.flickrPhoto = flickrPhoto;
+        photoQueue.add(Pair.of(flickrPhoto, o));
+        if (prefetchCount-- > 0)
+          sizeResolver.prefetch(flickrPhoto);
       }
+
+      dispatchQueue();
     }
 
 
     private void dispatchQueue()
     {
-      FlickrAsync flickr = chromasthetiator.flickr;
-      synchronized (photoQueue)
+      Pair<Photo, Pair<ChromatikResponse, EmotionalState>> o;
+      while ((o = photoQueue.poll()) != null)
       {
-        Pair<Photo, Pair<ChromatikResponse, EmotionalState>> o;
-        while ((o = photoQueue.poll()) != null)
-        {
-          Photo photo = o.getLeft();
-          logger.log(Level.FINEST,
-            "Received a download ticket for {0}", photo);
-          flickr.getPhotoSizes(
-            photo.id, new PhotoSizesCallback(o));
-        }
+        Photo photo = o.getLeft();
+        logger.log(Level.FINEST,
+          "Received a download ticket for {0}", photo);
+        sizeResolver.resolve(photo, new PhotoSizesCallback(o));
       }
     }
 
@@ -256,10 +367,8 @@ private void releaseQueuePermit()
        * TODO: Wait until all pictures are actually displayed on the screen so
        * they appear in a screenshot at that time.
        */
-      synchronized (photoQueue) {
-        photoQueue.release();
-        dispatchQueue();
-      }
+      photoQueue.release();
+      dispatchQueue();
     }
 
 
@@ -267,6 +376,8 @@ private final class PhotoSizesCallback implements FutureCallback<SizeMap>
     {
       private final Pair<Photo, Pair<ChromatikResponse, EmotionalState>> previousResults;
 
+      private final long startTime = System.nanoTime();
+
 
       private PhotoSizesCallback(
         Pair<Photo, Pair<ChromatikResponse, EmotionalState>> previousResults )
@@ -278,14 +389,36 @@ private PhotoSizesCallback(
       @Override
       public void completed( SizeMap sizes )
       {
+        notifyStageCompleted(text, Stage.PHOTO_SIZES, startTime);
         Photo photo = previousResults.getLeft();
         photo.setSizes(sizes);
-        Future<Image> fImage = imageAsync.execute(
-          Request.Get(photo.getLargestImageSize().source),
-          new ImageCallbackWrapper(previousResults));
+        String imageUrl = photo.getLargestImageSize().source;
+        DecodedImageCache imageCache = ChromasthetiationService.this.imageCache;
+        DecodedImageCache.Key cacheKey =
+          (imageCache != null) ? imageCache.newKey(imageUrl) : null;
+        ImageCallbackWrapper imageCallback =
+          new ImageCallbackWrapper(previousResults, imageCache, cacheKey);
+
+        Image cachedImage =
+          (cacheKey != null) ? imageCache.get(cacheKey) : null;
+        Future<Image> fImage;
+        if (cachedImage != null)
+        {
+          logger.log(Level.FINEST, "Found decoded image {0} in cache",
+            cacheKey);
+          fImage = ImmediateFuture.of(cachedImage);
+        }
+        else
+        {
+          imageCallback.downloadStartTime = System.nanoTime();
+          fImage = imageAsync.execute(Request.Get(imageUrl), imageCallback);
+        }
 
         if (futureImageCallback != null)
           futureImageCallback.completed(fImage);
+        // Hand out cached images in the same order as downloaded ones.
+        if (cachedImage != null)
+          imageCallback.completed(cachedImage);
       }
 
 
@@ -293,8 +426,10 @@ public void completed( SizeMap sizes )
       public void failed( Exception ex )
       {
         if (ex instanceof FlickrException) {
-          ((FlickrException) ex).setPertainingObject(
-            previousResults.getLeft().getMediumUrl());
+          // failures may be shared through the size resolver cache
+          FlickrException fex = (FlickrException) ex;
+          if (fex.getPertainingObject() == null)
+            fex.setPertainingObject(previousResults.getLeft().getMediumUrl());
         } else if (ex instanceof IOException) {
           ex = new IOException(
             "Couldn’t load sizes of " + previousResults.getLeft(), ex);
@@ -318,11 +453,23 @@ private final class ImageCallbackWrapper implements FutureCallback<Image>
     {
       private final Pair<Photo, Pair<ChromatikResponse, EmotionalState>> previousResults;
 
+      private final DecodedImageCache imageCache;
+
+      private final DecodedImageCache.Key cacheKey;
+
+      /**
+       * The start time of the download; 0 for cached images
+       */
+      long downloadStartTime = 0;
+
 
       private ImageCallbackWrapper(
-        Pair<Photo, Pair<ChromatikResponse, EmotionalState>> previousResults )
+        Pair<Photo, Pair<ChromatikResponse, EmotionalState>> previousResults,
+        DecodedImageCache imageCache, DecodedImageCache.Key cacheKey )
       {
         this.previousResults = previousResults;
+        this.imageCache = imageCache;
+        this.cacheKey = cacheKey;
       }
 
 
@@ -335,8 +482,19 @@ private Photo getPhoto()
       @Override
       public void completed( Image image )
       {
-        logger.log(Level.FINE, "Downloaded image {0}",
-          getPhoto().getLargestImageSize().source);
+        if (downloadStartTime != 0)
+        {
+          notifyStageCompleted(text, Stage.IMAGE, downloadStartTime);
+          logger.log(Level.FINE, "Downloaded image {0}",
+            getPhoto().getLargestImageSize().source);
+          if (cacheKey != null)
+            imageCache.put(cacheKey, image);
+        }
+        else
+        {
+          logger.log(Level.FINE, "Reused cached image {0}",
+            getPhoto().getLargestImageSize().source);
+        }
         photoQueue.completeItem();
         imageCallback.completed(Pair.of(image, previousResults.getRight()));
       }
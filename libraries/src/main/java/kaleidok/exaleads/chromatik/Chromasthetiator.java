@@ -225,6 +225,8 @@ public static FlickrPhoto fromChromatikResponseResult( Flickr flickr,
     {
       FlickrPhoto photo = new FlickrPhoto(flickr);
       photo.parseUrl(imgInfo.squareThumbnailUrl);
+      photo.width = imgInfo.width;
+      photo.height = imgInfo.height;
       return photo;
     }
 
@@ -2,7 +2,9 @@
 
 import kaleidok.exaleads.chromatik.data.ChromatikColor;
 import kaleidok.exaleads.chromatik.data.ChromatikResponse;
+import kaleidok.exaleads.chromatik.data.ChromatikResponseTypeAdapter;
 import kaleidok.google.gson.TypeAdapterManager;
+import kaleidok.net.http.HttpConnectionPool;
 import kaleidok.net.http.JsonHttpConnection;
 import kaleidok.util.Objects;
 import kaleidok.util.Strings;
@@ -29,7 +31,7 @@
   static
   {
     TypeAdapterManager.registerTypeAdapter(
-      ChromatikResponse.class, ChromatikResponse::deserialize);
+      ChromatikResponse.class, ChromatikResponseTypeAdapter.INSTANCE);
   }
 
 
@@ -96,7 +98,8 @@ public int hashCode()
 
   protected static ChromatikResponse fetch( URL url ) throws IOException
   {
-    try (JsonHttpConnection con = JsonHttpConnection.openURL(url))
+    try (JsonHttpConnection con =
+      HttpConnectionPool.getDefault().open(url, JsonHttpConnection.class))
     {
       return con.get(ChromatikResponse.class, TypeAdapterManager.getGson());
     }
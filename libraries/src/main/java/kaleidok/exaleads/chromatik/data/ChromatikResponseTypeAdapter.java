@@ -0,0 +1,179 @@
+package kaleidok.exaleads.chromatik.data;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * Reads Chromatik search results straight from a JSON stream without
+ * building an intermediate tree like {@link ChromatikResponse#deserialize}.
+ * Result fields that aren't needed are skipped.
+ */
+public class ChromatikResponseTypeAdapter extends TypeAdapter<ChromatikResponse>
+{
+  public static final ChromatikResponseTypeAdapter INSTANCE =
+    new ChromatikResponseTypeAdapter();
+
+
+  @Override
+  public ChromatikResponse read( JsonReader in ) throws IOException
+  {
+    if (in.peek() == JsonToken.NULL)
+    {
+      in.nextNull();
+      return null;
+    }
+
+    ChromatikResponse response = new ChromatikResponse();
+    List<ChromatikResponse.Result> results = new ArrayList<>();
+    in.beginArray();
+    response.hits = in.nextInt();
+    while (in.hasNext())
+      results.add(readResult(in));
+    in.endArray();
+
+    response.results =
+      results.toArray(new ChromatikResponse.Result[results.size()]);
+    return response;
+  }
+
+
+  private static ChromatikResponse.Result readResult( JsonReader in )
+    throws IOException
+  {
+    ChromatikResponse.Result result = new ChromatikResponse.Result();
+    in.beginObject();
+    while (in.hasNext())
+    {
+      //noinspection SpellCheckingInspection
+      switch (in.nextName())
+      {
+      case "ind":
+        result.ind = in.nextInt();
+        break;
+
+      case "id":
+        result.id = nextString(in);
+        break;
+
+      case "title":
+        result.title = nextString(in);
+        break;
+
+      case "tags":
+        result.tags = readTags(in);
+        break;
+
+      case "width":
+        result.width = in.nextInt();
+        break;
+
+      case "height":
+        result.height = in.nextInt();
+        break;
+
+      case "thumbnailurl":
+        result.thumbnailUrl = nextString(in);
+        break;
+
+      case "squarethumbnailurl":
+        result.squareThumbnailUrl = nextString(in);
+        break;
+
+      default:
+        in.skipValue();
+        break;
+      }
+    }
+    in.endObject();
+    return result;
+  }
+
+
+  private static String[] readTags( JsonReader in ) throws IOException
+  {
+    if (in.peek() == JsonToken.NULL)
+    {
+      in.nextNull();
+      return null;
+    }
+
+    List<String> tags = new ArrayList<>();
+    in.beginArray();
+    while (in.hasNext())
+      tags.add(nextString(in));
+    in.endArray();
+    return tags.toArray(new String[tags.size()]);
+  }
+
+
+  private static String nextString( JsonReader in ) throws IOException
+  {
+    if (in.peek() == JsonToken.NULL)
+    {
+      in.nextNull();
+      return null;
+    }
+    return in.nextString();
+  }
+
+
+  /**
+   * Writes a response in the format of the Chromatik search service, so that
+   * {@link #read(JsonReader)} yields the same fields again.
+   */
+  @Override
+  public void write( JsonWriter out, ChromatikResponse value )
+    throws IOException
+  {
+    if (value == null)
+    {
+      out.nullValue();
+      return;
+    }
+
+    out.beginArray().value(value.hits);
+    if (value.results != null)
+    {
+      for (ChromatikResponse.Result result : value.results)
+        writeResult(out, result);
+    }
+    out.endArray();
+  }
+
+
+  @SuppressWarnings("SpellCheckingInspection")
+  private static void writeResult( JsonWriter out,
+    ChromatikResponse.Result result )
+    throws IOException
+  {
+    out.beginObject()
+      .name("ind").value(result.ind)
+      .name("id").value(result.id)
+      .name("title").value(result.title)
+      .name("tags");
+    if (result.tags != null)
+    {
+      out.beginArray();
+      for (String tag : result.tags)
+        out.value(tag);
+      out.endArray();
+    }
+    else
+    {
+      out.nullValue();
+    }
+    out
+      .name("width").value(result.width)
+      .name("height").value(result.height)
+      .name("thumbnailurl").value(result.thumbnailUrl)
+      .name("squarethumbnailurl").value(result.squareThumbnailUrl)
+      .endObject();
+  }
+}
@@ -0,0 +1,124 @@
+package kaleidok.exaleads.chromatik.mock;
+
+import com.google.gson.stream.JsonWriter;
+import com.sun.net.httpserver.HttpExchange;
+import kaleidok.net.http.util.Parsers;
+import org.apache.http.entity.ContentType;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import static kaleidok.net.http.util.URLEncoding.DEFAULT_CHARSET;
+
+
+/**
+ * Answers Chromatik search queries with the images of the corpus whose tags
+ * match a query keyword. Queries without matches return the whole corpus in
+ * an order that depends on the query, so that different texts yield
+ * different images.
+ */
+class MockChromatikSearchHandler extends MockImageSearchHandlerBase
+{
+  /**
+   * The long edge of the reported image dimensions
+   */
+  static final int MEDIUM_SIZE = 500;
+
+
+  MockChromatikSearchHandler( MockImageSearchService service )
+  {
+    super(service);
+  }
+
+
+  @SuppressWarnings("SpellCheckingInspection")
+  @Override
+  protected void handleGet( HttpExchange t ) throws IOException
+  {
+    Map<String, String> q =
+      Parsers.getQueryMap(t.getRequestURI(), DEFAULT_CHARSET);
+    if (q == null)
+      q = Collections.emptyMap();
+    int start = Integer.parseInt(q.getOrDefault("start", "0")),
+      nHits = Integer.parseInt(q.getOrDefault("nhits", "40"));
+    assert start >= 0 && nHits >= 0 : "Negative start or hit count";
+
+    List<MockImageCorpus.Entry> hits = search(q.getOrDefault("q", ""));
+
+    StringWriter buf = new StringWriter(nHits * 256 + 16);
+    try (JsonWriter w = new JsonWriter(buf))
+    {
+      w.beginArray().value(hits.size());
+      for (int i = start, end = Math.min(start + nHits, hits.size()); i < end;
+        i++)
+      {
+        MockImageCorpus.Entry e = hits.get(i);
+        double scale =
+          Math.min((double) MEDIUM_SIZE / Math.max(e.width, e.height), 1);
+        String thumbnailUrlBase = "https://farm1.staticflickr.com/1/" +
+          e.id + '_' + getSecret(e) + '_';
+        w.beginObject()
+          .name("ind").value(i)
+          .name("id").value(e.id)
+          .name("title").value(String.join(" ", e.tags))
+          .name("tags").beginArray();
+        for (String tag : e.tags)
+          w.value(tag);
+        w.endArray();
+        if (!service.conditions.nextBoolean(service.missingDimensionsRate))
+        {
+          w.name("width").value(Math.round(e.width * scale))
+            .name("height").value(Math.round(e.height * scale));
+        }
+        w.name("thumbnailurl").value(thumbnailUrlBase + "t." + e.extension)
+          .name("squarethumbnailurl").value(thumbnailUrlBase + "s." + e.extension)
+          .endObject();
+      }
+      w.endArray();
+    }
+
+    send(t, ContentType.APPLICATION_JSON,
+      buf.toString().getBytes(ContentType.APPLICATION_JSON.getCharset()));
+  }
+
+
+  private List<MockImageCorpus.Entry> search( String query )
+  {
+    List<MockImageCorpus.Entry> entries = service.corpus.entries,
+      hits = new ArrayList<>();
+    // skip the color and other options that follow the keywords
+    String keywords = query;
+    int p = keywords.indexOf('(');
+    if (p >= 0)
+      keywords = keywords.substring(0, p);
+    for (String keyword : keywords.toLowerCase(Locale.ROOT).split("\\s+"))
+    {
+      if (keyword.isEmpty() || keyword.indexOf(':') >= 0)
+        continue;
+      for (MockImageCorpus.Entry e : entries)
+      {
+        if (e.tags.contains(keyword) && !hits.contains(e))
+          hits.add(e);
+      }
+    }
+
+    if (hits.isEmpty())
+    {
+      int offset = Math.floorMod(query.hashCode(), entries.size());
+      hits.addAll(entries.subList(offset, entries.size()));
+      hits.addAll(entries.subList(0, offset));
+    }
+    return hits;
+  }
+
+
+  static String getSecret( MockImageCorpus.Entry e )
+  {
+    return Integer.toHexString(e.id.hashCode() | 0x10000000);
+  }
+}
@@ -0,0 +1,98 @@
+package kaleidok.exaleads.chromatik.mock;
+
+import com.google.gson.stream.JsonWriter;
+import com.sun.net.httpserver.HttpExchange;
+import kaleidok.net.http.util.Parsers;
+import org.apache.http.entity.ContentType;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.net.HttpURLConnection;
+import java.util.Map;
+
+import static kaleidok.net.http.util.URLEncoding.DEFAULT_CHARSET;
+
+
+/**
+ * Answers {@code flickr.photos.getSizes} requests for the images of the
+ * corpus with a single, original size that is served by the same
+ * {@link MockImageSearchService}.
+ */
+class MockFlickrHandler extends MockImageSearchHandlerBase
+{
+  MockFlickrHandler( MockImageSearchService service )
+  {
+    super(service);
+  }
+
+
+  @SuppressWarnings("SpellCheckingInspection")
+  @Override
+  protected void handleGet( HttpExchange t ) throws IOException
+  {
+    if (!getPathWithinContext(t).isEmpty())
+    {
+      t.sendResponseHeaders(HttpURLConnection.HTTP_NOT_FOUND, -1);
+      return;
+    }
+
+    Map<String, String> q =
+      Parsers.getQueryMap(t.getRequestURI(), DEFAULT_CHARSET);
+    assert q != null : "No request parameters";
+    assert "json".equals(q.get("format")) :
+      "Invalid request parameter value: format=" + q.get("format");
+    assert "1".equals(q.get("nojsoncallback")) :
+      "Invalid request parameter value: nojsoncallback=" +
+        q.get("nojsoncallback");
+
+    StringWriter buf = new StringWriter(256);
+    try (JsonWriter w = new JsonWriter(buf))
+    {
+      String method = q.get("method");
+      MockImageCorpus.Entry e;
+      if (!"flickr.photos.getSizes".equals(method))
+      {
+        writeFailure(w, 112, "Method \"" + method + "\" not found");
+      }
+      else if ((e = service.corpus.get(q.get("photo_id"))) == null ||
+        service.conditions.nextBoolean(service.photoNotFoundRate))
+      {
+        writeFailure(w, 1, "Photo not found");
+      }
+      else
+      {
+        w.beginObject()
+          .name("sizes").beginObject()
+            .name("canblog").value(0)
+            .name("canprint").value(0)
+            .name("candownload").value(1)
+            .name("size").beginArray()
+              .beginObject()
+                .name("label").value("Original")
+                .name("width").value(e.width)
+                .name("height").value(e.height)
+                .name("source").value(service.getImageUri(e).toString())
+                .name("media").value("photo")
+              .endObject()
+            .endArray()
+          .endObject()
+          .name("stat").value("ok")
+          .endObject();
+      }
+    }
+
+    send(t, ContentType.APPLICATION_JSON,
+      buf.toString().getBytes(ContentType.APPLICATION_JSON.getCharset()));
+  }
+
+
+  private static void writeFailure( JsonWriter w, int code, String message )
+    throws IOException
+  {
+    w.beginObject()
+      .name("stat").value("fail")
+      .name("code").value(code)
+      .name("message").value(message)
+      .endObject();
+  }
+}
@@ -0,0 +1,240 @@
+package kaleidok.exaleads.chromatik.mock;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+
+/**
+ * The images served by a {@link MockImageSearchService}, held in memory.
+ */
+public class MockImageCorpus
+{
+  public static final class Entry
+  {
+    /**
+     * The numeric photo ID, which is unique within its corpus
+     */
+    public final String id;
+
+    public final String mimeType, extension;
+
+    public final int width, height;
+
+    /**
+     * Words that a search query can match, e. g. from the file name
+     */
+    public final List<String> tags;
+
+    private final byte[] data;
+
+
+    Entry( String id, byte[] data, String mimeType, String extension,
+      int width, int height, List<String> tags )
+    {
+      this.id = id;
+      this.data = data;
+      this.mimeType = mimeType;
+      this.extension = extension;
+      this.width = width;
+      this.height = height;
+      this.tags = Collections.unmodifiableList(tags);
+    }
+
+
+    public int size()
+    {
+      return data.length;
+    }
+
+
+    byte[] getData()
+    {
+      return data;
+    }
+
+
+    @Override
+    public String toString()
+    {
+      return id + '.' + extension + '[' + width + 'x' + height + ", " +
+        data.length + " bytes]";
+    }
+  }
+
+
+  public final List<Entry> entries;
+
+
+  public MockImageCorpus( List<Entry> entries )
+  {
+    if (entries.isEmpty())
+      throw new IllegalArgumentException("Empty image corpus");
+
+    this.entries = Collections.unmodifiableList(new ArrayList<>(entries));
+  }
+
+
+  public Entry get( String id )
+  {
+    try
+    {
+      int i = Integer.parseInt(id) - FIRST_ID;
+      return (i >= 0 && i < entries.size()) ? entries.get(i) : null;
+    }
+    catch (NumberFormatException ignored)
+    {
+      return null;
+    }
+  }
+
+
+  public int size()
+  {
+    return entries.size();
+  }
+
+
+  private static final int FIRST_ID = 1000000;
+
+  private static final String[] EXTENSIONS = { "jpg", "png", "gif" };
+
+
+  /**
+   * Loads the JPEG, PNG and GIF images of a directory in the order of their
+   * file names. The words of the file names become the tags of the images.
+   *
+   * @param dir  A directory
+   * @return  A new corpus
+   * @throws IOException  if the directory or an image can't be read
+   */
+  public static MockImageCorpus fromDirectory( Path dir ) throws IOException
+  {
+    List<Path> files = new ArrayList<>();
+    try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir,
+      "*.{jpg,jpeg,png,gif,JPG,JPEG,PNG,GIF}"))
+    {
+      for (Path file : ds)
+      {
+        if (Files.isRegularFile(file))
+          files.add(file);
+      }
+    }
+    Collections.sort(files);
+
+    List<Entry> entries = new ArrayList<>(files.size());
+    for (Path file : files)
+    {
+      String fileName = file.getFileName().toString();
+      int p = fileName.lastIndexOf('.');
+      entries.add(newEntry(FIRST_ID + entries.size(), Files.readAllBytes(file),
+        fileName.substring(0, p).toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")));
+    }
+    return new MockImageCorpus(entries);
+  }
+
+
+  private static Entry newEntry( int id, byte[] data, String... tags )
+    throws IOException
+  {
+    try (ImageInputStream iis =
+      ImageIO.createImageInputStream(new ByteArrayInputStream(data)))
+    {
+      Iterator<ImageReader> it = ImageIO.getImageReaders(iis);
+      if (!it.hasNext())
+        throw new IOException("Unsupported image format in " + id);
+      ImageReader reader = it.next();
+      try
+      {
+        reader.setInput(iis, true, true);
+        String formatName = reader.getFormatName().toLowerCase(Locale.ROOT),
+          extension = "jpeg".equals(formatName) ? "jpg" : formatName;
+        if (!Arrays.asList(EXTENSIONS).contains(extension))
+          throw new IOException("Unsupported image format: " + formatName);
+        return new Entry(Integer.toString(id), data, "image/" + formatName,
+          extension, reader.getWidth(0), reader.getHeight(0),
+          Arrays.asList(tags));
+      }
+      finally
+      {
+        reader.dispose();
+      }
+    }
+  }
+
+
+  /**
+   * Generates a corpus of plain JPEG images with random colors.
+   *
+   * @param count  The number of images
+   * @param width  The image width
+   * @param height  The image height
+   * @param seed  The seed of the random colors
+   * @return  A new corpus
+   */
+  public static MockImageCorpus synthetic( int count, int width, int height,
+    long seed )
+  {
+    Random random = new Random(seed);
+    List<Entry> entries = new ArrayList<>(count);
+    BufferedImage img =
+      new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+    ByteArrayOutputStream buf = new ByteArrayOutputStream(width * height / 4);
+    for (int i = 0; i < count; i++)
+    {
+      float hue = random.nextFloat();
+      Graphics2D g = img.createGraphics();
+      try
+      {
+        g.setColor(Color.getHSBColor(hue, 0.8f, 0.9f));
+        g.fillRect(0, 0, width, height);
+        // some detail, so that the images don't compress to nothing
+        for (int j = 0; j < 32; j++)
+        {
+          g.setColor(Color.getHSBColor(
+            hue + random.nextFloat() * 0.2f, random.nextFloat(),
+            random.nextFloat()));
+          g.fillOval(random.nextInt(width), random.nextInt(height),
+            random.nextInt(width / 2 + 1) + 1,
+            random.nextInt(height / 2 + 1) + 1);
+        }
+      }
+      finally
+      {
+        g.dispose();
+      }
+
+      buf.reset();
+      try
+      {
+        if (!ImageIO.write(img, "jpeg", buf))
+          throw new AssertionError("No JPEG writer available");
+      }
+      catch (IOException ex)
+      {
+        throw new UncheckedIOException(ex);
+      }
+      entries.add(new Entry(Integer.toString(FIRST_ID + i), buf.toByteArray(),
+        "image/jpeg", "jpg", width, height,
+        Collections.singletonList(String.format("color%03d", (int) (hue * 360)))));
+    }
+    return new MockImageCorpus(entries);
+  }
+}
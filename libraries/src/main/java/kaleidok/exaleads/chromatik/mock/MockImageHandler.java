@@ -0,0 +1,42 @@
+package kaleidok.exaleads.chromatik.mock;
+
+import com.sun.net.httpserver.HttpExchange;
+import org.apache.http.entity.ContentType;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+
+/**
+ * Serves the image data of the corpus at
+ * {@code /images/<photo id>_<size suffix>.<extension>}.
+ */
+class MockImageHandler extends MockImageSearchHandlerBase
+{
+  private static final Pattern PATH_PATTERN =
+    Pattern.compile("(\\d+)_\\p{Alpha}\\.(\\p{Alpha}+)");
+
+
+  MockImageHandler( MockImageSearchService service )
+  {
+    super(service);
+  }
+
+
+  @Override
+  protected void handleGet( HttpExchange t ) throws IOException
+  {
+    Matcher m = PATH_PATTERN.matcher(getPathWithinContext(t));
+    MockImageCorpus.Entry e =
+      m.matches() ? service.corpus.get(m.group(1)) : null;
+    if (e == null || !e.extension.equals(m.group(2)))
+    {
+      t.sendResponseHeaders(HttpURLConnection.HTTP_NOT_FOUND, -1);
+      return;
+    }
+
+    send(t, ContentType.create(e.mimeType), e.getData());
+  }
+}
@@ -0,0 +1,77 @@
+package kaleidok.exaleads.chromatik.mock;
+
+import com.sun.net.httpserver.HttpExchange;
+import kaleidok.net.http.requesthandler.MockRequestHandlerBase;
+import org.apache.http.entity.ContentType;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+
+
+/**
+ * Applies the {@link MockNetworkConditions} of a
+ * {@link MockImageSearchService} to each request.
+ */
+abstract class MockImageSearchHandlerBase extends MockRequestHandlerBase
+{
+  protected final MockImageSearchService service;
+
+
+  protected MockImageSearchHandlerBase( MockImageSearchService service )
+  {
+    this.service = service;
+  }
+
+
+  @Override
+  protected final void doHandle( HttpExchange t ) throws IOException
+  {
+    service.requestCount.increment();
+    MockNetworkConditions conditions = service.conditions;
+    try
+    {
+      conditions.delay();
+
+      if (!"GET".equals(t.getRequestMethod()))
+      {
+        t.sendResponseHeaders(HttpURLConnection.HTTP_BAD_METHOD, -1);
+      }
+      else if (conditions.injectError())
+      {
+        service.injectedErrorCount.increment();
+        t.sendResponseHeaders(HttpURLConnection.HTTP_UNAVAILABLE, -1);
+      }
+      else
+      {
+        handleGet(t);
+      }
+    }
+    catch (InterruptedIOException ex)
+    {
+      // The service interrupts delayed responses when it shuts down.
+      if (!service.isShutdown())
+        throw ex;
+    }
+  }
+
+
+  protected abstract void handleGet( HttpExchange t ) throws IOException;
+
+
+  protected void send( HttpExchange t, ContentType contentType, byte[] data )
+    throws IOException
+  {
+    setContentType(t, contentType);
+    t.sendResponseHeaders(HttpURLConnection.HTTP_OK, data.length);
+    service.conditions.write(t, data);
+    service.bytesSent.add(data.length);
+  }
+
+
+  protected static String getPathWithinContext( HttpExchange t )
+  {
+    return t.getRequestURI().getPath()
+      .substring(t.getHttpContext().getPath().length());
+  }
+}
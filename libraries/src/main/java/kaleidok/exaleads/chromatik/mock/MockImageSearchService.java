@@ -0,0 +1,182 @@
+package kaleidok.exaleads.chromatik.mock;
+
+import com.sun.net.httpserver.HttpServer;
+import kaleidok.exaleads.chromatik.ChromatikQuery;
+import kaleidok.flickr.Flickr;
+import kaleidok.util.concurrent.DaemonThreadFactory;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static kaleidok.net.http.HttpConnection.HTTP_PROTOCOL;
+
+
+/**
+ * A loopback stand-in for the Chromatik search, the Flickr API and the
+ * Flickr image servers to run the image pipeline offline. It serves the
+ * images of a {@link MockImageCorpus} under {@link #conditions simulated
+ * network conditions}.
+ * <p>
+ * Point {@link ChromatikQuery#setBaseUri(URI)} to
+ * {@link #getChromatikUri()} and {@link Flickr#setUriBase(URI)} to
+ * {@link #getFlickrUri()}.
+ * <p>
+ * Search results report the dimensions of a medium rendition of 500 pixels
+ * like Chromatik did, unless they {@link #missingDimensionsRate lack them}.
+ * Their thumbnail URLs point to the real Flickr servers to satisfy
+ * {@link kaleidok.flickr.Photo#URL_PATTERN}, so sizes inferred
+ * from them would leave the loopback; keep
+ * {@link kaleidok.flickr.SizeResolver#minInferredSize} above
+ * {@link kaleidok.flickr.Size.Label#Medium Medium}, as by default.
+ */
+public class MockImageSearchService
+{
+  private static final Logger logger =
+    Logger.getLogger(MockImageSearchService.class.getName());
+
+  static final String IMAGE_PATH = "/images/";
+
+
+  public final MockImageCorpus corpus;
+
+  public final MockNetworkConditions conditions;
+
+  /**
+   * The probability that Flickr claims a photo doesn't exist, which is
+   * common for the stale search results of Chromatik
+   */
+  public volatile double photoNotFoundRate = 0;
+
+  /**
+   * The probability that a search result lacks the image dimensions, so
+   * that the sizes of the photo can only be looked up
+   */
+  public volatile double missingDimensionsRate = 0;
+
+  private final HttpServer server;
+
+  private final ExecutorService executor;
+
+  private volatile boolean shutdown = false;
+
+  final LongAdder
+    requestCount = new LongAdder(),
+    injectedErrorCount = new LongAdder(),
+    bytesSent = new LongAdder();
+
+
+  /**
+   * Starts a new service on an ephemeral loopback port.
+   *
+   * @param corpus  The images to serve
+   * @param seed  The seed of the simulated latencies and errors
+   * @throws IOException  if the server socket can't be bound
+   */
+  public MockImageSearchService( MockImageCorpus corpus, long seed )
+    throws IOException
+  {
+    this.corpus = corpus;
+    this.conditions = new MockNetworkConditions(seed);
+
+    server = HttpServer.create(
+      new InetSocketAddress(InetAddress.getByName(null), 0), 0);
+    server.createContext(ChromatikQuery.DEFAULT_URI.getPath(),
+      new MockChromatikSearchHandler(this));
+    server.createContext(Flickr.DEFAULT_URI_BASE.getPath(),
+      new MockFlickrHandler(this));
+    server.createContext(IMAGE_PATH, new MockImageHandler(this));
+    // simulated latencies mustn't hold up other requests
+    executor = Executors.newCachedThreadPool(
+      new DaemonThreadFactory(getClass().getSimpleName(), true));
+    server.setExecutor(executor);
+    server.start();
+
+    logger.log(Level.CONFIG, "Serving {0} images at {1}",
+      new Object[]{ corpus.size(), getUri("/") });
+  }
+
+
+  /**
+   * Stops the service. Responses that are still delayed are interrupted and
+   * dropped.
+   */
+  public void shutdown()
+  {
+    shutdown = true;
+    server.stop(0);
+    executor.shutdownNow();
+  }
+
+
+  public boolean isShutdown()
+  {
+    return shutdown;
+  }
+
+
+  private URI getUri( String path )
+  {
+    InetSocketAddress addr = server.getAddress();
+    try {
+      return new URI(
+        HTTP_PROTOCOL, null, addr.getHostString(), addr.getPort(), path,
+        null, null);
+    } catch (URISyntaxException ex) {
+      throw new AssertionError(ex);
+    }
+  }
+
+
+  public URI getChromatikUri()
+  {
+    return getUri(ChromatikQuery.DEFAULT_URI.getPath());
+  }
+
+
+  public URI getFlickrUri()
+  {
+    return getUri(Flickr.DEFAULT_URI_BASE.getPath());
+  }
+
+
+  public URI getImageUri( MockImageCorpus.Entry entry )
+  {
+    return getUri(IMAGE_PATH + entry.id + "_o." + entry.extension);
+  }
+
+
+  public long getRequestCount()
+  {
+    return requestCount.sum();
+  }
+
+
+  public long getInjectedErrorCount()
+  {
+    return injectedErrorCount.sum();
+  }
+
+
+  public long getBytesSent()
+  {
+    return bytesSent.sum();
+  }
+
+
+  @Override
+  public String toString()
+  {
+    return String.format(
+      "%s[%s, %d images, %d requests, %d injected errors, %d bytes sent, %s]",
+      getClass().getSimpleName(), getUri("/"), corpus.size(),
+      getRequestCount(), getInjectedErrorCount(), getBytesSent(), conditions);
+  }
+}
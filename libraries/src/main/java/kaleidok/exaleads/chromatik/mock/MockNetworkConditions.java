@@ -0,0 +1,152 @@
+package kaleidok.exaleads.chromatik.mock;
+
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Simulates the latency, bandwidth and failures of a remote service for the
+ * handlers of a {@link MockImageSearchService}. All settings may be changed
+ * while the service is running.
+ */
+public class MockNetworkConditions
+{
+  /**
+   * The minimum delay before each response in milliseconds
+   */
+  public volatile long latency = 0;
+
+  /**
+   * The maximum additional, uniformly distributed delay before each response
+   * in milliseconds
+   */
+  public volatile long latencyJitter = 0;
+
+  /**
+   * The transfer rate of response bodies in bytes per second; 0 means
+   * unlimited
+   */
+  public volatile long bandwidth = 0;
+
+  /**
+   * The probability of a response with
+   * {@value java.net.HttpURLConnection#HTTP_UNAVAILABLE} instead of the
+   * requested resource
+   */
+  public volatile double errorRate = 0;
+
+  private final Random random;
+
+
+  public MockNetworkConditions( long seed )
+  {
+    random = new Random(seed);
+  }
+
+
+  /**
+   * Waits for the simulated latency of a response.
+   *
+   * @throws InterruptedIOException  if the current thread was interrupted
+   */
+  public void delay() throws InterruptedIOException
+  {
+    long delay = latency, jitter = latencyJitter;
+    if (jitter > 0)
+      delay += (long) (random.nextDouble() * jitter);
+    if (delay > 0)
+      sleep(TimeUnit.MILLISECONDS.toNanos(delay));
+  }
+
+
+  /**
+   * @return  Whether the current request shall fail
+   */
+  public boolean injectError()
+  {
+    double errorRate = this.errorRate;
+    return errorRate > 0 && random.nextDouble() < errorRate;
+  }
+
+
+  /**
+   * @param probability  A probability
+   * @return  Whether an event of the given probability occurs
+   */
+  public boolean nextBoolean( double probability )
+  {
+    return probability > 0 && random.nextDouble() < probability;
+  }
+
+
+  private static final int CHUNK_SIZE = 1 << 12;
+
+
+  /**
+   * Sends a response body at the simulated bandwidth. The response headers
+   * must have been sent already.
+   *
+   * @param t  An HTTP exchange
+   * @param data  The response body
+   * @throws IOException  if the body can't be written
+   */
+  public void write( HttpExchange t, byte[] data ) throws IOException
+  {
+    long bandwidth = this.bandwidth;
+    try (OutputStream out = t.getResponseBody())
+    {
+      if (bandwidth <= 0)
+      {
+        out.write(data);
+        return;
+      }
+
+      long start = System.nanoTime();
+      for (int offset = 0; offset < data.length; )
+      {
+        int len = Math.min(CHUNK_SIZE, data.length - offset);
+        out.write(data, offset, len);
+        out.flush();
+        offset += len;
+
+        long due = start +
+          (long) (offset * (double) TimeUnit.SECONDS.toNanos(1) / bandwidth);
+        sleep(due - System.nanoTime());
+      }
+    }
+  }
+
+
+  private static void sleep( long nanos ) throws InterruptedIOException
+  {
+    if (nanos <= 0)
+      return;
+    try
+    {
+      TimeUnit.NANOSECONDS.sleep(nanos);
+    }
+    catch (InterruptedException ex)
+    {
+      Thread.currentThread().interrupt();
+      InterruptedIOException ex2 =
+        new InterruptedIOException("Interrupted while simulating a delay");
+      ex2.initCause(ex);
+      throw ex2;
+    }
+  }
+
+
+  @Override
+  public String toString()
+  {
+    return String.format(
+      "%s[latency=%d+%d ms, bandwidth=%d B/s, errorRate=%s]",
+      getClass().getSimpleName(), latency, latencyJitter, bandwidth,
+      errorRate);
+  }
+}
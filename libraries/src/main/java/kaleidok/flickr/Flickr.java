@@ -7,6 +7,7 @@
 import javafx.beans.property.ObjectProperty;
 import javafx.beans.property.ReadOnlyStringProperty;
 import kaleidok.google.gson.TypeAdapterManager;
+import kaleidok.net.http.HttpConnectionPool;
 import kaleidok.net.http.JsonHttpConnection;
 import kaleidok.javafx.beans.property.AspectedObjectProperty;
 import kaleidok.javafx.beans.property.AspectedStringProperty;
@@ -40,7 +41,7 @@ public class Flickr implements PreferenceBean
     }
 
     TypeAdapterManager.registerTypeAdapter(
-      SizeMap.class, SizeMap::deserialize);
+      SizeMap.class, SizeMapTypeAdapter.INSTANCE);
     TypeAdapterManager.registerTypeAdapter(
       Size.Label.class, Size.Label::deserialize);
   }
@@ -155,8 +156,8 @@ protected URL getPhotoSizesUrl( String photoId )
   public SizeMap getPhotoSizes( String photoId )
     throws FlickrException, IOException
   {
-    try (JsonHttpConnection con =
-      JsonHttpConnection.openURL(getPhotoSizesUrl(photoId)))
+    try (JsonHttpConnection con = HttpConnectionPool.getDefault().open(
+      getPhotoSizesUrl(photoId), JsonHttpConnection.class))
     {
       return con.get(SizeMap.class);
     } catch (JsonParseException ex) {
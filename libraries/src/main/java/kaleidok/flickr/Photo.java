@@ -11,6 +11,11 @@ public abstract class Photo implements Serializable
 
   public String farm, server, id, secret, extension;
 
+  /**
+   * The dimensions of some rendition of this photo, if known; 0 otherwise
+   */
+  public int width, height;
+
   private SizeMap sizes;
 
 
@@ -38,8 +43,23 @@ public void parseUrl( CharSequence url )
 
   public String getMediumUrl()
   {
-    return "https://farm" + farm + ".static.flickr.com/" +
-      server + '/' + id + '_' + secret + '.' + extension;
+    return getStaticUrl(null);
+  }
+
+
+  /**
+   * @param suffix  The size suffix of a static photo URL; may be
+   *   {@code null} for the medium size
+   * @return  The static URL of this photo in the given size
+   */
+  public String getStaticUrl( String suffix )
+  {
+    StringBuilder sb = new StringBuilder(64)
+      .append("https://farm").append(farm).append(".static.flickr.com/")
+      .append(server).append('/').append(id).append('_').append(secret);
+    if (suffix != null)
+      sb.append('_').append(suffix);
+    return sb.append('.').append(extension).toString();
   }
 
 
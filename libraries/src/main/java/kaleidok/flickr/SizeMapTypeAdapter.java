@@ -0,0 +1,232 @@
+package kaleidok.flickr;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import kaleidok.util.Strings;
+
+import java.io.IOException;
+import java.util.regex.Pattern;
+
+
+/**
+ * Reads the response of {@code flickr.photos.getSizes} straight from a JSON
+ * stream without building an intermediate tree like
+ * {@link SizeMap#deserialize}. Fields that aren't needed are skipped, and
+ * reading stops as soon as the sizes and a successful status were seen.
+ * Therefore this adapter only works on whole responses, not on nested
+ * values.
+ */
+public class SizeMapTypeAdapter extends TypeAdapter<SizeMap>
+{
+  public static final SizeMapTypeAdapter INSTANCE = new SizeMapTypeAdapter();
+
+
+  @Override
+  public SizeMap read( JsonReader in ) throws IOException
+  {
+    if (in.peek() == JsonToken.NULL)
+    {
+      in.nextNull();
+      return null;
+    }
+
+    SizeMap sizes = null;
+    String stat = null, message = null;
+    int code = 0;
+    in.beginObject();
+    while (in.hasNext())
+    {
+      switch (in.nextName())
+      {
+      case "sizes":
+        sizes = readSizes(in);
+        break;
+
+      case "stat":
+        stat = in.nextString();
+        break;
+
+      case "code":
+        code = in.nextInt();
+        break;
+
+      case "message":
+        message = in.nextString();
+        break;
+
+      default:
+        in.skipValue();
+        break;
+      }
+
+      if (sizes != null && "ok".equals(stat))
+        return sizes;
+    }
+    in.endObject();
+
+    if (stat == null)
+      throw new JsonParseException("Missing status code");
+    switch (stat)
+    {
+    case "ok":
+      throw new JsonParseException("Missing sizes");
+
+    case "fail":
+      throw new JsonParseException(new FlickrException(message, code, null));
+
+    default:
+      throw new JsonParseException("Invalid status code: " + stat);
+    }
+  }
+
+
+  private static SizeMap readSizes( JsonReader in ) throws IOException
+  {
+    SizeMap sizes = new SizeMap();
+    in.beginObject();
+    while (in.hasNext())
+    {
+      //noinspection SpellCheckingInspection
+      switch (in.nextName())
+      {
+      case "size":
+        in.beginArray();
+        while (in.hasNext())
+        {
+          Size size = readSize(in);
+          sizes.put(size.label, size);
+        }
+        in.endArray();
+        break;
+
+      case "canblog":
+        sizes.canBlog = nextFlag(in);
+        break;
+
+      case "canprint":
+        sizes.canPrint = nextFlag(in);
+        break;
+
+      case "candownload":
+        sizes.canDownload = nextFlag(in);
+        break;
+
+      default:
+        in.skipValue();
+        break;
+      }
+    }
+    in.endObject();
+    return sizes;
+  }
+
+
+  private static Size readSize( JsonReader in ) throws IOException
+  {
+    Size size = new Size();
+    in.beginObject();
+    while (in.hasNext())
+    {
+      switch (in.nextName())
+      {
+      case "label":
+        size.label = toLabel(in.nextString());
+        break;
+
+      case "width":
+        size.width = in.nextInt();
+        break;
+
+      case "height":
+        size.height = in.nextInt();
+        break;
+
+      case "source":
+        size.source = in.nextString();
+        break;
+
+      default:
+        in.skipValue();
+        break;
+      }
+    }
+    in.endObject();
+
+    if (size.label == null)
+      throw new JsonParseException("Size without label");
+    return size;
+  }
+
+
+  private static Size.Label toLabel( String s )
+  {
+    try
+    {
+      return Size.Label.valueOf(Strings.toCamelCase(s).toString());
+    }
+    catch (IllegalArgumentException ex)
+    {
+      throw new JsonParseException(ex);
+    }
+  }
+
+
+  private static boolean nextFlag( JsonReader in ) throws IOException
+  {
+    return (in.peek() == JsonToken.BOOLEAN) ?
+      in.nextBoolean() :
+      in.nextInt() != 0;
+  }
+
+
+  /**
+   * Writes a successful {@code flickr.photos.getSizes} response, so that
+   * {@link #read(JsonReader)} yields the same sizes again.
+   */
+  @SuppressWarnings("SpellCheckingInspection")
+  @Override
+  public void write( JsonWriter out, SizeMap value ) throws IOException
+  {
+    if (value == null)
+    {
+      out.nullValue();
+      return;
+    }
+
+    out.beginObject()
+      .name("sizes").beginObject()
+        .name("canblog").value(value.canBlog ? 1 : 0)
+        .name("canprint").value(value.canPrint ? 1 : 0)
+        .name("candownload").value(value.canDownload ? 1 : 0)
+        .name("size").beginArray();
+    for (Size size : value.values())
+    {
+      out.beginObject()
+        .name("label").value(toLabelString(size.label))
+        .name("width").value(size.width)
+        .name("height").value(size.height)
+        .name("source").value(size.source)
+        .endObject();
+    }
+    out.endArray()
+      .endObject()
+      .name("stat").value("ok")
+      .endObject();
+  }
+
+
+  private static final Pattern LABEL_WORD_BOUNDARY =
+    Pattern.compile("(?<=\\p{javaLowerCase})(?=\\p{javaUpperCase}|\\d)");
+
+  /**
+   * @return  The label as Flickr spells it, e. g. "Large Square" for
+   *   {@link Size.Label#LargeSquare}
+   */
+  private static String toLabelString( Size.Label label )
+  {
+    return LABEL_WORD_BOUNDARY.matcher(label.name()).replaceAll(" ");
+  }
+}
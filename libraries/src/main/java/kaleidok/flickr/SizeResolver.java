@@ -0,0 +1,427 @@
+package kaleidok.flickr;
+
+import org.apache.http.concurrent.FutureCallback;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Objects;
+
+
+/**
+ * Resolves the available sizes of Flickr photos. Lookups of the same photo
+ * share a single request and their results are kept in a size-bounded,
+ * least-recently-used cache. Callers may {@link #prefetch(Photo) prefetch}
+ * the sizes of a whole page of search results to have them ready when the
+ * photos are dispatched.
+ * <p>
+ * The URLs of the smaller sizes follow from the fields of a {@link Photo}.
+ * If the photo dimensions are known and large enough for
+ * {@link #minInferredSize}, its sizes are inferred without a lookup.
+ * <p>
+ * Instances of this class are thread-safe.
+ */
+public class SizeResolver
+{
+  public static int DEFAULT_MAX_ENTRIES = 1024;
+
+  public static Size.Label DEFAULT_MIN_INFERRED_SIZE = Size.Label.Large;
+
+
+  @FunctionalInterface
+  public interface Lookup
+  {
+    void getPhotoSizes( String photoId, FutureCallback<SizeMap> callback );
+  }
+
+
+  private final Lookup lookup;
+
+  private final LinkedHashMap<String, Entry> entries =
+    new LinkedHashMap<>(16, 0.75f, true);
+
+  private int maxEntries;
+
+  /**
+   * The smallest size that an inferred size map needs to contain to be used
+   * instead of a lookup; {@code null} disables inference
+   */
+  public volatile Size.Label minInferredSize = DEFAULT_MIN_INFERRED_SIZE;
+
+  private long hitCount = 0, lookupCount = 0, inferredCount = 0;
+
+
+  public SizeResolver( FlickrAsync flickr )
+  {
+    this(flickr::getPhotoSizes, DEFAULT_MAX_ENTRIES);
+  }
+
+
+  public SizeResolver( Lookup lookup, int maxEntries )
+  {
+    if (maxEntries < 0)
+      throw new IllegalArgumentException("Negative maximum size: " + maxEntries);
+
+    this.lookup = Objects.requireNonNull(lookup);
+    this.maxEntries = maxEntries;
+  }
+
+
+  /**
+   * Starts the lookup of the sizes of a photo unless they're known already.
+   *
+   * @param photo  A photo
+   */
+  public void prefetch( Photo photo )
+  {
+    resolve(photo, null);
+  }
+
+
+  /**
+   * Passes the sizes of a photo to a callback as soon as they're known. The
+   * callback may be called on the current thread. Failed lookups are only
+   * cached if Flickr answered that the photo wasn't found or isn't
+   * accessible, so callbacks may receive the same {@link FlickrException}
+   * instance. Other errors, e. g. an unavailable service or an invalid API
+   * key, are retried like I/O errors.
+   *
+   * @param photo  A photo
+   * @param callback  A callback for the sizes of the photo; may be
+   *   {@code null}
+   */
+  public void resolve( Photo photo, FutureCallback<SizeMap> callback )
+  {
+    SizeMap sizes = inferSizes(photo);
+    if (sizes != null)
+    {
+      if (callback != null)
+        callback.completed(sizes);
+      return;
+    }
+
+    Entry entry;
+    boolean newEntry;
+    synchronized (this)
+    {
+      entry = entries.get(photo.id);
+      newEntry = entry == null;
+      if (newEntry)
+      {
+        entry = new Entry(photo.id);
+        entries.put(photo.id, entry);
+        lookupCount++;
+        trimToSize(maxEntries);
+      }
+      else
+      {
+        hitCount++;
+      }
+    }
+
+    if (callback != null)
+      entry.addCallback(callback);
+    if (newEntry)
+      lookup.getPhotoSizes(photo.id, entry);
+  }
+
+
+  /**
+   * Infers the sizes with static URLs of a photo from its dimensions. Every
+   * size up to the known dimensions exists, since those are the dimensions
+   * of an existing rendition.
+   *
+   * @param photo  A photo
+   * @return  The inferred sizes, or {@code null} if they don't reach
+   *   {@link #minInferredSize}
+   */
+  public SizeMap inferSizes( Photo photo )
+  {
+    Size.Label minInferredSize = this.minInferredSize;
+    int longEdge = Math.max(photo.width, photo.height),
+      shortEdge = Math.min(photo.width, photo.height);
+    if (minInferredSize == null || shortEdge <= 0 ||
+      minInferredSize.ordinal() >= STATIC_SIZES.length ||
+      !STATIC_SIZES[minInferredSize.ordinal()].fits(longEdge, shortEdge))
+    {
+      return null;
+    }
+
+    SizeMap sizes = new SizeMap();
+    for (StaticSize ss : STATIC_SIZES)
+    {
+      if (!ss.fits(longEdge, shortEdge))
+        continue;
+
+      Size size = new Size();
+      size.label = ss.label;
+      if (ss.square)
+      {
+        size.width = size.height = ss.edge;
+      }
+      else
+      {
+        double scale = (double) ss.edge / longEdge;
+        size.width = Math.max((int) Math.round(photo.width * scale), 1);
+        size.height = Math.max((int) Math.round(photo.height * scale), 1);
+      }
+      size.source = photo.getStaticUrl(ss.suffix);
+      sizes.put(ss.label, size);
+    }
+    synchronized (this)
+    {
+      inferredCount++;
+    }
+    return sizes;
+  }
+
+
+  private static final class StaticSize
+  {
+    final Size.Label label;
+
+    final String suffix;
+
+    final int edge;
+
+    final boolean square;
+
+
+    StaticSize( Size.Label label, String suffix, int edge, boolean square )
+    {
+      this.label = label;
+      this.suffix = suffix;
+      this.edge = edge;
+      this.square = square;
+    }
+
+
+    boolean fits( int longEdge, int shortEdge )
+    {
+      return edge <= (square ? shortEdge : longEdge);
+    }
+  }
+
+
+  /**
+   * The sizes whose static URLs use the same secret, in the order of
+   * {@link Size.Label}
+   */
+  @SuppressWarnings("SpellCheckingInspection")
+  private static final StaticSize[] STATIC_SIZES = {
+      new StaticSize(Size.Label.Square, "s", 75, true),
+      new StaticSize(Size.Label.LargeSquare, "q", 150, true),
+      new StaticSize(Size.Label.Thumbnail, "t", 100, false),
+      new StaticSize(Size.Label.Small, "m", 240, false),
+      new StaticSize(Size.Label.Small320, "n", 320, false),
+      new StaticSize(Size.Label.Medium, null, 500, false),
+      new StaticSize(Size.Label.Medium640, "z", 640, false),
+      new StaticSize(Size.Label.Medium800, "c", 800, false),
+      new StaticSize(Size.Label.Large, "b", 1024, false),
+    };
+
+  static {
+    for (int i = 0; i < STATIC_SIZES.length; i++)
+      assert STATIC_SIZES[i].label.ordinal() == i;
+  }
+
+
+  private synchronized void remove( Entry entry )
+  {
+    entries.remove(entry.photoId, entry);
+  }
+
+
+  public synchronized void clear()
+  {
+    entries.clear();
+  }
+
+
+  private void trimToSize( int maxEntries )
+  {
+    Iterator<Entry> it = entries.values().iterator();
+    while (entries.size() > maxEntries && it.hasNext())
+    {
+      it.next();
+      it.remove();
+    }
+  }
+
+
+  public synchronized int getMaxEntries()
+  {
+    return maxEntries;
+  }
+
+  public synchronized void setMaxEntries( int maxEntries )
+  {
+    if (maxEntries < 0)
+      throw new IllegalArgumentException("Negative maximum size: " + maxEntries);
+
+    this.maxEntries = maxEntries;
+    trimToSize(maxEntries);
+  }
+
+
+  public synchronized int getEntryCount()
+  {
+    return entries.size();
+  }
+
+
+  /**
+   * @return  The number of resolutions that were answered by a cached or
+   *   pending lookup
+   */
+  public synchronized long getHitCount()
+  {
+    return hitCount;
+  }
+
+
+  public synchronized long getLookupCount()
+  {
+    return lookupCount;
+  }
+
+
+  public synchronized long getInferredCount()
+  {
+    return inferredCount;
+  }
+
+
+  @Override
+  public synchronized String toString()
+  {
+    return String.format(
+      "%s[%d entries, %d hits, %d lookups, %d inferred]",
+      getClass().getSimpleName(), entries.size(), hitCount, lookupCount,
+      inferredCount);
+  }
+
+
+  /**
+   * Flickr error codes that won't change when the lookup is repeated
+   */
+  private static final int
+    ERROR_PHOTO_NOT_FOUND = 1,
+    ERROR_PERMISSION_DENIED = 2;
+
+  static boolean isPermanent( Exception ex )
+  {
+    if (!(ex instanceof FlickrException))
+      return false;
+    switch (((FlickrException) ex).getErrorCode())
+    {
+    case ERROR_PHOTO_NOT_FOUND:
+    case ERROR_PERMISSION_DENIED:
+      return true;
+
+    default:
+      return false;
+    }
+  }
+
+
+  /**
+   * A pending or completed lookup; evicted entries still complete the
+   * callbacks that were waiting for them.
+   */
+  private final class Entry implements FutureCallback<SizeMap>
+  {
+    final String photoId;
+
+    private List<FutureCallback<SizeMap>> callbacks = new ArrayList<>(1);
+
+    private SizeMap sizes = null;
+
+    private Exception failure = null;
+
+    private boolean cancelled = false;
+
+
+    Entry( String photoId )
+    {
+      this.photoId = photoId;
+    }
+
+
+    void addCallback( FutureCallback<SizeMap> callback )
+    {
+      synchronized (this)
+      {
+        if (callbacks != null)
+        {
+          callbacks.add(callback);
+          return;
+        }
+      }
+      notifyCallback(callback);
+    }
+
+
+    private void notifyCallback( FutureCallback<SizeMap> callback )
+    {
+      if (sizes != null) {
+        callback.completed(sizes);
+      } else if (failure != null) {
+        callback.failed(failure);
+      } else {
+        assert cancelled;
+        callback.cancelled();
+      }
+    }
+
+
+    private void finish()
+    {
+      List<FutureCallback<SizeMap>> callbacks;
+      synchronized (this)
+      {
+        callbacks = this.callbacks;
+        this.callbacks = null;
+      }
+      for (FutureCallback<SizeMap> callback : callbacks)
+        notifyCallback(callback);
+    }
+
+
+    @Override
+    public void completed( SizeMap sizes )
+    {
+      synchronized (this)
+      {
+        this.sizes = sizes;
+      }
+      finish();
+    }
+
+
+    @Override
+    public void failed( Exception ex )
+    {
+      synchronized (this)
+      {
+        failure = ex;
+      }
+      if (!isPermanent(ex))
+        remove(this);
+      finish();
+    }
+
+
+    @Override
+    public void cancelled()
+    {
+      synchronized (this)
+      {
+        cancelled = true;
+      }
+      remove(this);
+      finish();
+    }
+  }
+}
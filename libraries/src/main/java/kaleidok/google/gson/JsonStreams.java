@@ -0,0 +1,81 @@
+package kaleidok.google.gson;
+
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.MalformedJsonException;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.Reader;
+
+
+public final class JsonStreams
+{
+  private JsonStreams() { }
+
+
+  /**
+   * Reads a single JSON value from a character stream with the given type
+   * adapter. Unlike {@link com.google.gson.Gson#fromJson(Reader, Class)},
+   * this neither requires the value to be followed by the end of the
+   * document nor buffers anything beyond what the adapter consumes, so that
+   * adapters may stop reading as soon as they have extracted what they need.
+   *
+   * @param source  A character stream
+   * @param adapter  A type adapter
+   * @param <T>  The type of the result
+   * @return  The deserialized value or {@code null} for an empty document
+   * @throws IOException  if the stream couldn't be read
+   * @throws JsonSyntaxException  if the stream contains malformed or
+   *   truncated JSON or JSON unsuitable for the adapter
+   */
+  public static <T> T read( Reader source, TypeAdapter<T> adapter )
+    throws IOException
+  {
+    return read(newReader(source), adapter);
+  }
+
+
+  /**
+   * @see #read(Reader, TypeAdapter)
+   */
+  public static <T> T read( JsonReader in, TypeAdapter<T> adapter )
+    throws IOException
+  {
+    boolean empty = true;
+    try
+    {
+      if (in.peek() == JsonToken.END_DOCUMENT)
+        return null;
+      empty = false;
+      return adapter.read(in);
+    }
+    catch (EOFException ex)
+    {
+      // Only a document that ends before its first token is empty; anything
+      // else was cut off.
+      if (empty)
+        return null;
+      throw new JsonSyntaxException(ex);
+    }
+    catch (MalformedJsonException | IllegalStateException |
+      NumberFormatException ex)
+    {
+      throw new JsonSyntaxException(ex);
+    }
+  }
+
+
+  /**
+   * @param source  A character stream
+   * @return  A lenient JSON reader, like the ones that {@code Gson} uses
+   */
+  public static JsonReader newReader( Reader source )
+  {
+    JsonReader in = new JsonReader(source);
+    in.setLenient(true);
+    return in;
+  }
+}
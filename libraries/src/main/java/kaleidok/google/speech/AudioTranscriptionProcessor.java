@@ -6,32 +6,90 @@
 import javaFlacEncoder.FLACOutputStream;
 import javaFlacEncoder.FLACStreamOutputStream;
 import javaFlacEncoder.StreamConfiguration;
+import kaleidok.audio.processor.VoiceActivityDetector;
 import kaleidok.util.Arrays;
+import kaleidok.util.concurrent.GroupedThreadFactory;
 
 import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.logging.Level;
 
 import static kaleidok.google.speech.STT.logger;
-
-
+import static kaleidok.util.logging.LoggingUtils.logThrown;
+
+
+/**
+ * Records speech and streams it as FLAC to the speech-to-text service.
+ * <p>
+ * Encoding runs in a pipeline, so that it overlaps the recording: the audio
+ * thread only converts the samples of each audio event to 16 bit and hands
+ * them over to a dedicated encoder thread. That thread collects full blocks
+ * until there is one for each of the encoder's worker threads (see
+ * {@link #ENCODER_THREAD_COUNT}), encodes them to FLAC frames in parallel
+ * and writes them to the chunked HTTP request. Once the recording ends only
+ * the blocks of the last, incomplete batch remain to be encoded before the
+ * request is sent.
+ */
 public class AudioTranscriptionProcessor implements AudioProcessor
 {
+  /**
+   * The number of threads that the FLAC encoder uses to encode blocks in
+   * parallel. Changes apply to encoders configured afterwards.
+   */
+  public static int ENCODER_THREAD_COUNT =
+    Math.max(Math.min(Runtime.getRuntime().availableProcessors() - 1, 2), 1);
+
+  /**
+   * The maximum number of sample conversion buffers kept for reuse.
+   */
+  public static int SAMPLE_BUFFER_POOL_SIZE = 32;
+
+  /**
+   * The default duration of audio in seconds preceding the onset of voice
+   * activity that is included in recordings.
+   */
+  public static double DEFAULT_PRE_ROLL_DURATION = 0.3;
+
+
   private final STT stt;
 
+  // owned by the audio thread
+  private boolean isRecording = false;
+
+  private int transcriptionSequenceNumber = 0;
+
+  private double transcriptionEndTimestamp = Double.POSITIVE_INFINITY;
+
+  private int intervalSequenceCount = 0;
+
+  private ExecutorService encoderExecutor = null;
+
+  private final ArrayDeque<int[]> preRoll = new ArrayDeque<>();
+
+  // owned by the encoder thread
   private StreamConfiguration streamConfiguration = null;
 
-  private FLACEncoder encoder = new FLACEncoder();
+  private final FLACEncoder encoder = new FLACEncoder();
 
   private FlacTranscription task = null;
 
-  private int[] audioConversionBuffer = null;
+  private final BlockingQueue<int[]> sampleBufferPool =
+    new ArrayBlockingQueue<>(SAMPLE_BUFFER_POOL_SIZE);
 
-  private double transcriptionEndTimestamp = Double.POSITIVE_INFINITY;
+  private volatile int failedTranscriptionSequenceNumber = 0;
 
-  private int intervalSequenceCount = 0;
+  private volatile long lastRequestLatency = -1;
 
   public volatile boolean shouldRecord = false;
 
+  private volatile VoiceActivityDetector voiceActivityDetector = null;
+
+  private volatile double preRollDuration = DEFAULT_PRE_ROLL_DURATION;
+
 
   protected AudioTranscriptionProcessor( STT stt )
   {
@@ -42,54 +100,108 @@ protected AudioTranscriptionProcessor( STT stt )
   @Override
   public boolean process( AudioEvent audioEvent )
   {
+    final VoiceActivityDetector vad = voiceActivityDetector;
+    final boolean isVoiceActive =
+      vad == null || vad.isVoiceActive(audioEvent);
+
     if (shouldRecord)
     {
-      int[] audioInt = audioConversionBuffer =
-        convertTo16Bit(audioEvent, audioConversionBuffer);
-      try
+      if (isRecording ?
+        failedTranscriptionSequenceNumber != transcriptionSequenceNumber :
+        isVoiceActive)
       {
         ensureEncoderReady(audioEvent);
-        encoder.addSamples(audioInt,
-          audioEvent.getBufferSize() - audioEvent.getOverlap());
-        encoder.t_encodeSamples(
-          encoder.fullBlockSamplesAvailableToEncode(),
-          false, Integer.MAX_VALUE);
+        int[] audioInt =
+          convertTo16Bit(audioEvent, sampleBufferPool.poll());
+        encodeAsync(audioInt, audioEvent);
 
-        if (audioEvent.getEndTimeStamp() < transcriptionEndTimestamp)
+        if (isVoiceActive &&
+          audioEvent.getEndTimeStamp() < transcriptionEndTimestamp)
+        {
           return true;
+        }
       }
-      catch (IOException ex)
+      else if (!isRecording)
       {
-        ex.printStackTrace();
-        if (task != null) {
-          task.dispose();
-          task = null;
-        }
+        // Listen for the onset of speech.
+        bufferPreRoll(audioEvent);
+        return true;
+      }
+      else
+      {
+        // The encoder thread disposed of the failed transcription already.
+        isRecording = false;
       }
 
-      if (task != null) {
-        logger.log(Level.FINER,
-          "Speech recording interrupted at {0} of up to {1} intervals after " +
-            "excess of the max. interval of {2,number,0.###} s",
-          new Object[]{
-            intervalSequenceCount, getIntervalSequenceCountMaxString(),
-            stt.getMaxTranscriptionInterval()
-          });
+      if (isRecording) {
+        if (isVoiceActive) {
+          logger.log(Level.FINER,
+            "Speech recording interrupted at {0} of up to {1} intervals " +
+              "after excess of the max. interval of {2,number,0.###} s",
+            new Object[]{
+              intervalSequenceCount, getIntervalSequenceCountMaxString(),
+              stt.getMaxTranscriptionInterval()
+            });
+        } else {
+          logger.log(Level.FINER,
+            "Speech recording ended at {0} of up to {1} intervals after " +
+              "voice activity ceased",
+            new Object[]{
+              intervalSequenceCount, getIntervalSequenceCountMaxString()
+            });
+        }
       }
 
-      if (task != null && intervalSequenceCount < getIntervalSequenceCountMax()) {
+      if (isRecording && intervalSequenceCount < getIntervalSequenceCountMax()) {
         intervalSequenceCount++;
+        if (!isVoiceActive)
+          stt.onVoiceActivityChange(false);
       } else {
         stt.end(false);
         intervalSequenceCount = 0;
       }
     }
+    else if (vad != null)
+    {
+      bufferPreRoll(audioEvent);
+    }
 
     finishEncoding();
     return true;
   }
 
 
+  private void encodeAsync( int[] samples, AudioEvent ev )
+  {
+    int sampleCount = ev.getBufferSize() - ev.getOverlap();
+    int sequenceNumber = transcriptionSequenceNumber;
+    encoderExecutor.execute(
+      () -> encodeSamples(sequenceNumber, samples, sampleCount));
+  }
+
+
+  /**
+   * Retains the samples of the given audio event in the pre-roll ring
+   * buffer, so that they can be encoded retroactively when voice activity
+   * starts.
+   */
+  private void bufferPreRoll( AudioEvent ev )
+  {
+    final ArrayDeque<int[]> preRoll = this.preRoll;
+    int capacity = (int) Math.ceil(
+      preRollDuration * ev.getSampleRate() /
+        (ev.getBufferSize() - ev.getOverlap()));
+    if (capacity > 0) {
+      while (preRoll.size() >= capacity)
+        sampleBufferPool.offer(preRoll.removeFirst());
+      preRoll.addLast(convertTo16Bit(ev, sampleBufferPool.poll()));
+    } else {
+      for (int[] samples; (samples = preRoll.pollFirst()) != null; )
+        sampleBufferPool.offer(samples);
+    }
+  }
+
+
   private int getIntervalSequenceCountMax()
   {
     int n = stt.getIntervalSequenceCountMax();
@@ -106,26 +218,39 @@ private Object getIntervalSequenceCountMaxString()
   }
 
 
-  private void ensureEncoderConfigured( AudioEvent ev )
+  private void ensureEncoderConfigured( float sampleRate, int blockSize )
   {
     if (streamConfiguration == null) {
-      int blockSize = ev.getBufferSize() - ev.getOverlap();
       streamConfiguration =
         new StreamConfiguration(1, blockSize,
           Math.max(blockSize, StreamConfiguration.DEFAULT_MAX_BLOCK_SIZE),
-          (int) ev.getSampleRate(), Short.SIZE);
+          (int) sampleRate, Short.SIZE);
       encoder.setStreamConfiguration(streamConfiguration);
-      encoder.setThreadCount(1);
+      encoder.setThreadCount(ENCODER_THREAD_COUNT);
     }
   }
 
 
-  private void ensureEncoderReady( AudioEvent ev ) throws IOException
+  private void ensureEncoderReady( AudioEvent ev )
   {
-    ensureEncoderConfigured(ev);
+    if (encoderExecutor == null) {
+      encoderExecutor = Executors.newSingleThreadExecutor(
+        new GroupedThreadFactory("FLAC encoder", true, true));
+    }
+
+    if (!isRecording) {
+      isRecording = true;
+      int sequenceNumber = ++transcriptionSequenceNumber;
+      float sampleRate = ev.getSampleRate();
+      int blockSize = ev.getBufferSize() - ev.getOverlap();
+      encoderExecutor.execute(
+        () -> startTranscription(sequenceNumber, sampleRate, blockSize));
 
-    if (task == null) {
-      task = new FlacTranscription(ev.getSampleRate());
+      for (int[] samples: preRoll)
+        encodeAsync(samples, ev);
+      preRoll.clear();
+      if (voiceActivityDetector != null)
+        stt.onVoiceActivityChange(true);
 
       double maxTranscriptionInterval = stt.getMaxTranscriptionInterval();
       transcriptionEndTimestamp =
@@ -142,11 +267,112 @@ private void ensureEncoderReady( AudioEvent ev ) throws IOException
   private void finishEncoding()
   {
     transcriptionEndTimestamp = Double.POSITIVE_INFINITY;
+    if (isRecording) {
+      isRecording = false;
+      long lastSampleTime = System.nanoTime();
+      encoderExecutor.execute(() -> finishTranscription(lastSampleTime));
+    }
+  }
+
+
+  @Override
+  public void processingFinished()
+  {
+    //volumeThresholdTracker.processingFinished();
+    finishEncoding();
+    if (encoderExecutor != null) {
+      encoderExecutor.shutdown();
+      encoderExecutor = null;
+    }
+  }
+
+
+  public VoiceActivityDetector getVoiceActivityDetector()
+  {
+    return voiceActivityDetector;
+  }
+
+  /**
+   * Sets a detector that gates the recording: while recording is enabled,
+   * transcriptions start only at the onset of voice activity (including a
+   * pre-roll of the preceding audio) and end when it ceases.
+   *
+   * @param vad  A voice activity detector; {@code null} to record
+   *   continuously while recording is enabled
+   */
+  public void setVoiceActivityDetector( VoiceActivityDetector vad )
+  {
+    voiceActivityDetector = vad;
+  }
+
+
+  public double getPreRollDuration()
+  {
+    return preRollDuration;
+  }
+
+  public void setPreRollDuration( double seconds )
+  {
+    if (!(seconds >= 0))
+      throw new IllegalArgumentException("Invalid duration: " + seconds);
+    preRollDuration = seconds;
+  }
+
+
+  /**
+   * @return  The duration between the end of the most recent recording and
+   *   the moment its last FLAC frame was sent to the speech-to-text service
+   *   in nanoseconds; -1 if there was no such request yet
+   */
+  public long getLastRequestLatency()
+  {
+    return lastRequestLatency;
+  }
+
+
+  private void startTranscription( int sequenceNumber, float sampleRate,
+    int blockSize )
+  {
+    ensureEncoderConfigured(sampleRate, blockSize);
+    try {
+      task = new FlacTranscription(sequenceNumber, sampleRate);
+    } catch (IOException ex) {
+      failTranscription(sequenceNumber, ex);
+    }
+  }
+
+
+  private void encodeSamples( int sequenceNumber, int[] samples, int count )
+  {
+    try {
+      FlacTranscription task = this.task;
+      if (task != null && task.sequenceNumber == sequenceNumber) {
+        encoder.addSamples(samples, count);
+        int available = encoder.fullBlockSamplesAvailableToEncode();
+        // Wait for a block per worker thread, so that they run in parallel.
+        if (available >=
+          encoder.getThreadCount() * streamConfiguration.getMaxBlockSize())
+        {
+          encoder.t_encodeSamples(available, false, Integer.MAX_VALUE);
+        }
+      }
+    } catch (IOException ex) {
+      failTranscription(sequenceNumber, ex);
+    } finally {
+      // The encoder copies the samples.
+      sampleBufferPool.offer(samples);
+    }
+  }
+
+
+  private void finishTranscription( long lastSampleTime )
+  {
     if (task != null) {
       try {
-        task.finishEncoding();
+        task.finishEncoding(lastSampleTime);
       } catch (IOException ex) {
         ex.printStackTrace();
+        task.dispose();
       } finally {
         task = null;
       }
@@ -154,29 +380,44 @@ private void finishEncoding()
   }
 
 
-  @Override
-  public void processingFinished()
+  private void failTranscription( int sequenceNumber, IOException ex )
   {
-    //volumeThresholdTracker.processingFinished();
-    finishEncoding();
+    logThrown(logger, Level.WARNING, "Transcription {0} failed", ex,
+      sequenceNumber);
+    if (task != null) {
+      task.dispose();
+      task = null;
+    }
+    encoder.clear();
+    failedTranscriptionSequenceNumber = sequenceNumber;
   }
 
 
   private class FlacTranscription extends Transcription
   {
+    final int sequenceNumber;
+
     private final FLACOutputStream outputStream;
 
-    public FlacTranscription( float sampleRate ) throws IOException
+    public FlacTranscription( int sequenceNumber, float sampleRate )
+      throws IOException
     {
       super(stt.service.getServiceUri().toURL(), "audio/x-flac", sampleRate);
+      this.sequenceNumber = sequenceNumber;
       callback = stt.service.resultHandler;
       logfilePathFormat = stt.getLogfilePathFormat();
-      outputStream = new FLACStreamOutputStream(getOutputStream());
-      encoder.setOutputStream(outputStream);
-      encoder.openFLACStream();
+      try {
+        outputStream = new FLACStreamOutputStream(getOutputStream());
+        encoder.setOutputStream(outputStream);
+        encoder.openFLACStream();
+      } catch (IOException | RuntimeException ex) {
+        // Nobody else can dispose of a transcription that failed to start.
+        dispose();
+        throw ex;
+      }
     }
 
-    public void finishEncoding() throws IOException
+    public void finishEncoding( long lastSampleTime ) throws IOException
     {
       assert !stt.service.isInQueue(this) :
         this + " mustn’t be in the queue of " + stt.service;
@@ -191,6 +432,14 @@ public void finishEncoding() throws IOException
       logExcessDuration(encodingStartTime, stt.getMaxTranscriptionInterval(),
         "Encoding the remaining samples took too long");
 
+      // Push out the last, partially filled chunk of the request body.
+      getOutputStream().flush();
+      long latency = lastRequestLatency = System.nanoTime() - lastSampleTime;
+      logger.log(Level.FINE,
+        "Sent the speech request {0,number,0.000} seconds after the last " +
+          "recorded sample",
+        latency * 1e-9);
+
       stt.service.execute(this);
     }
 
@@ -199,7 +448,8 @@ public void finishEncoding() throws IOException
     public void dispose()
     {
       try {
-        outputStream.close();
+        if (outputStream != null)
+          outputStream.close();
       } catch (IOException ex) {
         ex.printStackTrace();
       } finally {
@@ -223,7 +473,7 @@ private static void logExcessDuration( long startTimeNanos, double maxDuration,
 
   private static final float maxSample = 2;
 
-  private static int[] convertTo16Bit( AudioEvent ev, int[] conversionBuffer )
+  static int[] convertTo16Bit( AudioEvent ev, int[] conversionBuffer )
   {
     final float[] audioFloat = ev.getFloatBuffer();
     final int offset = ev.getOverlap();
@@ -8,6 +8,7 @@
 import javafx.beans.value.ObservableObjectValue;
 import javafx.scene.control.SpinnerValueFactory.DoubleSpinnerValueFactory;
 import javafx.scene.control.SpinnerValueFactory.IntegerSpinnerValueFactory;
+import kaleidok.audio.processor.VoiceActivityDetector;
 import kaleidok.google.speech.mock.MockTranscriptionService;
 import kaleidok.javafx.beans.property.AspectedDoubleProperty;
 import kaleidok.javafx.beans.property.AspectedIntegerProperty;
@@ -105,6 +106,26 @@ public AudioTranscriptionProcessor getAudioProcessor()
   }
 
 
+  public VoiceActivityDetector getVoiceActivityDetector()
+  {
+    return processor.getVoiceActivityDetector();
+  }
+
+  /**
+   * @see AudioTranscriptionProcessor#setVoiceActivityDetector(VoiceActivityDetector)
+   */
+  public void setVoiceActivityDetector( VoiceActivityDetector vad )
+  {
+    processor.setVoiceActivityDetector(vad);
+  }
+
+
+  public TranscriptionServiceBase getTranscriptionService()
+  {
+    return service;
+  }
+
+
   public URI getApiBase()
   {
     return service.getApiBase();
@@ -246,7 +267,10 @@ public State getStatus()
 
   private synchronized void onBegin()
   {
-    status.set(State.RECORDING);
+    status.set(
+      (processor.getVoiceActivityDetector() != null) ?
+        State.LISTENING :
+        State.RECORDING);
     processor.shouldRecord = true;
     startListening();
 
@@ -270,6 +294,21 @@ public synchronized void onSpeechFinish()
   }
 
 
+  /**
+   * Called by the audio processor when voice activity starts or ceases
+   * while recording is enabled and gated by a voice activity detector.
+   */
+  synchronized void onVoiceActivityChange( boolean isVoiceActive )
+  {
+    if (isActive)
+    {
+      status.set(isVoiceActive ? State.RECORDING : State.LISTENING);
+      logger.log(statusLoggingLevel, status.get().name());
+      signalChange();
+    }
+  }
+
+
   private void startListening()
   {
     recordingTimer.start();
@@ -2,13 +2,17 @@
 
 import com.google.gson.JsonIOException;
 import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
 import com.google.gson.stream.JsonReader;
 import com.google.gson.stream.JsonToken;
+import kaleidok.net.http.HttpConnectionPool;
 import kaleidok.net.http.JsonHttpConnection;
+import kaleidok.google.gson.JsonStreams;
 import kaleidok.google.gson.TypeAdapterManager;
 import kaleidok.io.platform.PlatformPaths;
 import kaleidok.text.IMessageFormat;
 import kaleidok.util.Threads;
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.io.output.TeeOutputStream;
 import org.apache.http.concurrent.FutureCallback;
 
@@ -42,12 +46,18 @@ public class Transcription implements Runnable
   protected Transcription( URL url, String mimeType, float sampleRate )
     throws IOException
   {
-    this(JsonHttpConnection.openURL(url));
-    connection.setRequestMethod("POST");
-    connection.setRequestProperty("Content-Type",
-      String.format(Locale.ROOT, "%s; rate=%.0f;", mimeType, sampleRate));
-    connection.setDoOutput(true);
-    connection.setChunkedStreamingMode(0);
+    this(HttpConnectionPool.getDefault().open(url, JsonHttpConnection.class));
+    try {
+      connection.setRequestMethod("POST");
+      connection.setRequestProperty("Content-Type",
+        String.format(Locale.ROOT, "%s; rate=%.0f;", mimeType, sampleRate));
+      connection.setDoOutput(true);
+      connection.setChunkedStreamingMode(0);
+    } catch (IOException | RuntimeException ex) {
+      // give the connection back to the pool
+      connection.close();
+      throw ex;
+    }
   }
 
   protected Transcription( JsonHttpConnection connection )
@@ -59,9 +69,16 @@ protected Transcription( JsonHttpConnection connection )
   public OutputStream getOutputStream() throws IOException
   {
     if (outputStream == null) {
-      OutputStream
-        connOs = connection.getOutputStream(),
+      OutputStream connOs, copyOs;
+      try {
+        connOs = connection.getOutputStream();
         copyOs = openLogOutputStream();
+      } catch (IOException | RuntimeException ex) {
+        // The transcription is unusable now; give the connection back to the
+        // pool even if nobody disposes of it.
+        connection.close();
+        throw ex;
+      }
       outputStream =
         (copyOs != null) ? new TeeOutputStream(connOs, copyOs) : connOs;
     }
@@ -142,12 +159,12 @@ public SttResponse transcribe() throws IOException, JsonSyntaxException
   protected static SttResponse parse( Reader source )
     throws IOException, JsonSyntaxException
   {
-    try (JsonReader jsonReader = new JsonReader(source)) {
-      jsonReader.setLenient(true);
+    TypeAdapter<SttResponse> adapter =
+      TypeAdapterManager.getGson().getAdapter(SttResponse.class);
+    try (JsonReader jsonReader = JsonStreams.newReader(source)) {
       SttResponse response;
       do {
-        response =
-          TypeAdapterManager.getGson().fromJson(jsonReader, SttResponse.class);
+        response = JsonStreams.read(jsonReader, adapter);
       } while ((response == null || response.isEmpty()) && jsonReader.peek() != JsonToken.END_DOCUMENT);
       return response;
     } catch (JsonIOException ex) {
@@ -178,16 +195,26 @@ public void dispose()
       } catch (IOException ex) {
         ex.printStackTrace();
       }
+      boolean complete = false;
       try {
         if (connection.getResponseCode() == HttpURLConnection.HTTP_OK)
         {
+          // read the response to the end to keep the connection alive
           //noinspection resource
-          connection.getInputStream().close();
+          IOUtils.skip(connection.getInputStream(), Long.MAX_VALUE);
+          complete = true;
         }
       } catch (IOException ex) {
         ex.printStackTrace();
       }
-      connection.disconnect();
+      if (complete) {
+        connection.release();
+      } else {
+        connection.disconnect();
+      }
+    } else {
+      // Unconnected connections hold a pool lease too.
+      connection.close();
     }
   }
 }
@@ -0,0 +1,286 @@
+package kaleidok.google.speech.mock;
+
+/**
+ * Parses the STREAMINFO metadata block at the start of a FLAC stream and
+ * the header of its last frame to validate uploads to the mock speech
+ * service without an external process.
+ *
+ * @see <a href="https://xiph.org/flac/format.html">FLAC format</a>
+ */
+public final class FlacStreamInfo
+{
+  public final int minBlockSize, maxBlockSize, sampleRate, channels,
+    bitsPerSample;
+
+  /**
+   * The number of samples per channel according to STREAMINFO; 0 if the
+   * encoder didn't know it, which is common for streamed encodings
+   */
+  public final long totalSamples;
+
+  /**
+   * The offset of the first audio frame
+   */
+  public final int framesOffset;
+
+
+  private FlacStreamInfo( int minBlockSize, int maxBlockSize, int sampleRate,
+    int channels, int bitsPerSample, long totalSamples, int framesOffset )
+  {
+    this.minBlockSize = minBlockSize;
+    this.maxBlockSize = maxBlockSize;
+    this.sampleRate = sampleRate;
+    this.channels = channels;
+    this.bitsPerSample = bitsPerSample;
+    this.totalSamples = totalSamples;
+    this.framesOffset = framesOffset;
+  }
+
+
+  private static final int
+    STREAMINFO = 0,
+    STREAMINFO_LENGTH = 34,
+    BLOCK_TYPE_INVALID = 127;
+
+
+  /**
+   * @param data  The beginning of a FLAC stream
+   * @return  The stream information
+   * @throws IllegalArgumentException  if the data doesn't start with a valid
+   *   FLAC stream header
+   */
+  public static FlacStreamInfo read( byte[] data )
+    throws IllegalArgumentException
+  {
+    if (data.length < 8 || data[0] != 'f' || data[1] != 'L' ||
+      data[2] != 'a' || data[3] != 'C')
+    {
+      throw new IllegalArgumentException("No FLAC stream marker");
+    }
+
+    int offset = 4;
+    boolean last;
+    FlacStreamInfo streamInfo = null;
+    do
+    {
+      if (offset + 4 > data.length)
+        throw new IllegalArgumentException("Truncated metadata block header");
+      int header = data[offset] & 0xff;
+      last = (header & 0x80) != 0;
+      int type = header & 0x7f,
+        length = (int) readBits(data, (offset + 1) * 8, 24);
+      offset += 4;
+      if (offset + length > data.length)
+        throw new IllegalArgumentException("Truncated metadata block");
+      if (type == BLOCK_TYPE_INVALID)
+        throw new IllegalArgumentException("Invalid metadata block type");
+
+      if (streamInfo == null)
+      {
+        if (type != STREAMINFO || length != STREAMINFO_LENGTH)
+        {
+          throw new IllegalArgumentException(
+            "The first metadata block isn't STREAMINFO");
+        }
+        streamInfo = readStreamInfo(data, offset);
+      }
+      offset += length;
+    }
+    while (!last);
+
+    return new FlacStreamInfo(streamInfo.minBlockSize,
+      streamInfo.maxBlockSize, streamInfo.sampleRate, streamInfo.channels,
+      streamInfo.bitsPerSample, streamInfo.totalSamples, offset);
+  }
+
+
+  private static FlacStreamInfo readStreamInfo( byte[] data, int offset )
+  {
+    int bitOffset = offset * 8;
+    int minBlockSize = (int) readBits(data, bitOffset, 16),
+      maxBlockSize = (int) readBits(data, bitOffset + 16, 16),
+      sampleRate = (int) readBits(data, bitOffset + 80, 20),
+      channels = (int) readBits(data, bitOffset + 100, 3) + 1,
+      bitsPerSample = (int) readBits(data, bitOffset + 103, 5) + 1;
+    long totalSamples = readBits(data, bitOffset + 108, 36);
+
+    if (minBlockSize < 16 || maxBlockSize < minBlockSize)
+    {
+      throw new IllegalArgumentException(String.format(
+        "Invalid block sizes: %d–%d", minBlockSize, maxBlockSize));
+    }
+    if (sampleRate == 0)
+      throw new IllegalArgumentException("Invalid sample rate: 0");
+    if (bitsPerSample < 4)
+    {
+      throw new IllegalArgumentException(
+        "Invalid bits per sample: " + bitsPerSample);
+    }
+
+    return new FlacStreamInfo(minBlockSize, maxBlockSize, sampleRate,
+      channels, bitsPerSample, totalSamples, -1);
+  }
+
+
+  /**
+   * Determines the number of samples per channel, either from STREAMINFO or
+   * from the position of the last frame of the stream.
+   *
+   * @param data  The complete FLAC stream
+   * @return  The number of samples, or -1 if the stream has no frames
+   */
+  public long getSampleCount( byte[] data )
+  {
+    if (totalSamples > 0)
+      return totalSamples;
+
+    for (int i = data.length - 2; i >= framesOffset; i--)
+    {
+      if ((data[i] & 0xff) == 0xff && (data[i + 1] & 0xfe) == 0xf8)
+      {
+        long samples = readFrameEnd(data, i);
+        if (samples >= 0)
+          return samples;
+      }
+    }
+    return -1;
+  }
+
+
+  /**
+   * @param data  The complete FLAC stream
+   * @return  The duration in seconds, or {@link Double#NaN} if the stream
+   *   has no frames
+   */
+  public double getDuration( byte[] data )
+  {
+    long sampleCount = getSampleCount(data);
+    return (sampleCount >= 0) ? (double) sampleCount / sampleRate : Double.NaN;
+  }
+
+
+  /**
+   * Parses a frame header candidate.
+   *
+   * @return  The number of samples up to the end of the frame, or -1 if
+   *   there's no valid frame header at the offset
+   */
+  private long readFrameEnd( byte[] data, int offset )
+  {
+    boolean variableBlockSize = (data[offset + 1] & 0x01) != 0;
+    int p = offset + 2;
+    if (p + 2 > data.length)
+      return -1;
+    int blockSizeCode = (data[p] >> 4) & 0xf,
+      sampleRateCode = data[p] & 0xf,
+      channelCode = (data[p + 1] >> 4) & 0xf,
+      sampleSizeCode = (data[p + 1] >> 1) & 0x7;
+    if (blockSizeCode == 0 || sampleRateCode == 15 || channelCode > 10 ||
+      sampleSizeCode == 3 || (data[p + 1] & 0x01) != 0)
+    {
+      return -1;
+    }
+    p += 2;
+
+    // UTF-8-like coded frame or sample number
+    if (p >= data.length)
+      return -1;
+    int first = data[p++] & 0xff, extraBytes;
+    long number;
+    if ((first & 0x80) == 0) {
+      extraBytes = 0;
+      number = first;
+    } else if ((first & 0xe0) == 0xc0) {
+      extraBytes = 1;
+      number = first & 0x1f;
+    } else if ((first & 0xf0) == 0xe0) {
+      extraBytes = 2;
+      number = first & 0x0f;
+    } else if ((first & 0xf8) == 0xf0) {
+      extraBytes = 3;
+      number = first & 0x07;
+    } else if ((first & 0xfc) == 0xf8) {
+      extraBytes = 4;
+      number = first & 0x03;
+    } else if ((first & 0xfe) == 0xfc) {
+      extraBytes = 5;
+      number = first & 0x01;
+    } else if (first == 0xfe && variableBlockSize) {
+      extraBytes = 6;
+      number = 0;
+    } else {
+      return -1;
+    }
+    if (p + extraBytes > data.length)
+      return -1;
+    for (int i = 0; i < extraBytes; i++)
+    {
+      int b = data[p++] & 0xff;
+      if ((b & 0xc0) != 0x80)
+        return -1;
+      number = (number << 6) | (b & 0x3f);
+    }
+
+    int blockSize;
+    if (blockSizeCode == 1) {
+      blockSize = 192;
+    } else if (blockSizeCode <= 5) {
+      blockSize = 576 << (blockSizeCode - 2);
+    } else if (blockSizeCode == 6) {
+      if (p + 1 > data.length)
+        return -1;
+      blockSize = (data[p++] & 0xff) + 1;
+    } else if (blockSizeCode == 7) {
+      if (p + 2 > data.length)
+        return -1;
+      blockSize = (int) readBits(data, p * 8, 16) + 1;
+      p += 2;
+    } else {
+      blockSize = 256 << (blockSizeCode - 8);
+    }
+
+    if (sampleRateCode == 12) {
+      p += 1;
+    } else if (sampleRateCode == 13 || sampleRateCode == 14) {
+      p += 2;
+    }
+    if (p >= data.length || crc8(data, offset, p) != (data[p] & 0xff))
+      return -1;
+
+    return variableBlockSize ?
+      number + blockSize :
+      number * maxBlockSize + blockSize;
+  }
+
+
+  private static int crc8( byte[] data, int from, int to )
+  {
+    int crc = 0;
+    for (int i = from; i < to; i++)
+    {
+      crc ^= data[i] & 0xff;
+      for (int j = 0; j < 8; j++)
+        crc = ((crc & 0x80) != 0) ? ((crc << 1) ^ 0x07) & 0xff : (crc << 1) & 0xff;
+    }
+    return crc;
+  }
+
+
+  private static long readBits( byte[] data, int bitOffset, int bitCount )
+  {
+    long value = 0;
+    for (int i = bitOffset, end = bitOffset + bitCount; i < end; i++)
+      value = (value << 1) | ((data[i >> 3] >> (7 - (i & 7))) & 1);
+    return value;
+  }
+
+
+  @Override
+  public String toString()
+  {
+    return String.format(
+      "FLAC[%d Hz, %d channels, %d bits, block size %d–%d, %d samples]",
+      sampleRate, channels, bitsPerSample, minBlockSize, maxBlockSize,
+      totalSamples);
+  }
+}
@@ -0,0 +1,101 @@
+package kaleidok.google.speech.mock;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * Determines how long the {@link MockTranscriptionService} takes to answer a
+ * transcription request.
+ */
+@FunctionalInterface
+public interface LatencyDistribution
+{
+  /**
+   * @param audioDuration  The duration of the submitted audio record in
+   *   seconds, or {@link Double#NaN} if unknown
+   * @return  The latency of the response in milliseconds
+   */
+  long nextLatency( double audioDuration );
+
+
+  LatencyDistribution NONE = constant(0);
+
+
+  static LatencyDistribution constant( long latency )
+  {
+    if (latency < 0)
+      throw new IllegalArgumentException("Negative latency");
+    return ( audioDuration ) -> latency;
+  }
+
+
+  /**
+   * A log-normal distribution, which approximates the long-tailed response
+   * times of remote services well.
+   *
+   * @param median  The median latency in milliseconds
+   * @param sigma  The standard deviation of the logarithm of the latency
+   * @param seed  The seed of the random number generator
+   */
+  static LatencyDistribution logNormal( long median, double sigma, long seed )
+  {
+    if (median <= 0)
+      throw new IllegalArgumentException("Non-positive median");
+    if (!(sigma >= 0) || Double.isInfinite(sigma))
+      throw new IllegalArgumentException("Invalid sigma: " + sigma);
+
+    Random random = new Random(seed);
+    double mu = Math.log(median);
+    return ( audioDuration ) -> {
+        double gaussian;
+        synchronized (random) {
+          gaussian = random.nextGaussian();
+        }
+        return Math.round(Math.exp(mu + sigma * gaussian));
+      };
+  }
+
+
+  /**
+   * Plays back recorded latencies in a cycle, e. g. from a log of the remote
+   * service.
+   *
+   * @param latencies  Latencies in milliseconds
+   */
+  static LatencyDistribution playback( long... latencies )
+  {
+    if (latencies.length == 0)
+      throw new IllegalArgumentException("No latencies");
+    for (long latency : latencies)
+    {
+      if (latency < 0)
+        throw new IllegalArgumentException("Negative latency");
+    }
+
+    long[] copy = latencies.clone();
+    AtomicInteger index = new AtomicInteger();
+    return ( audioDuration ) ->
+      copy[Math.floorMod(index.getAndIncrement(), copy.length)];
+  }
+
+
+  /**
+   * Adds processing time proportional to the duration of the audio record to
+   * this distribution.
+   *
+   * @param factor  The processing time per second of audio in seconds
+   */
+  default LatencyDistribution plusRealTime( double factor )
+  {
+    if (!(factor >= 0) || Double.isInfinite(factor))
+      throw new IllegalArgumentException("Invalid factor: " + factor);
+
+    return ( audioDuration ) -> {
+        long latency = nextLatency(audioDuration);
+        return Double.isNaN(audioDuration) ?
+          latency :
+          latency + Math.round(audioDuration * factor * 1000);
+      };
+  }
+}
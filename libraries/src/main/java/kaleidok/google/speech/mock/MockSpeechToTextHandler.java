@@ -1,5 +1,6 @@
 package kaleidok.google.speech.mock;
 
+import com.google.gson.stream.JsonWriter;
 import kaleidok.google.speech.STT;
 import com.sun.net.httpserver.HttpExchange;
 import kaleidok.net.http.requesthandler.MockRequestHandlerBase;
@@ -21,14 +22,11 @@
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.regex.*;
 
 import static kaleidok.net.http.util.URLEncoding.DEFAULT_CHARSET;
 import static kaleidok.io.Files.NO_ATTRIBUTES;
-import static kaleidok.util.logging.LoggingUtils.logThrown;
 
 
-@SuppressWarnings("DynamicRegexReplaceableByCompiledPattern")
 public class MockSpeechToTextHandler extends MockRequestHandlerBase
 {
   private static final Logger logger =
@@ -134,14 +132,20 @@ protected boolean handleRecognize( HttpExchange t ) throws IOException
       }
     }
 
-    double duration = testFlacFile(flacBuffer, sampleRate);
+    double duration = testFlacStream(flacBuffer, sampleRate);
     if (!Double.isNaN(duration)) {
       assert duration <= stt.getMaxTranscriptionInterval() : "FLAC stream duration exceeds maximum transcription interval";
     } else {
       logger.finest("Couldn’t determine duration of the submitted audio record");
     }
 
-    byte[] transcriptionResult = normalTranscriptionResult;
+    long latency =
+      transcriptionService.latencyDistribution.nextLatency(duration);
+    if (latency > 0)
+      sleep(latency);
+
+    byte[] transcriptionResult =
+      transcriptionService.nextTranscriptionResult();
     assert transcriptionResult.length != 0;
     setContentType(t, ContentType.APPLICATION_JSON);
     t.sendResponseHeaders(HttpURLConnection.HTTP_OK, transcriptionResult.length);
@@ -153,111 +157,44 @@ protected boolean handleRecognize( HttpExchange t ) throws IOException
   }
 
 
-  private static final ProcessBuilder pbFlacFileTest =
-    new ProcessBuilder("file", "-")
-      .redirectOutput(ProcessBuilder.Redirect.PIPE)
-      .redirectInput(ProcessBuilder.Redirect.PIPE)
-      .redirectError(ProcessBuilder.Redirect.INHERIT);
-  static {
-    pbFlacFileTest.environment().put("LC_MESSAGES", "C");
-  }
-
-  private static final Pattern
-    SAMPLE_RATE_PATTERN = Pattern.compile("(\\d+(?:\\.\\d*)?) (k)?Hz"),
-    SAMPLE_COUNT_PATTERN = Pattern.compile("(\\d+) samples");
-
-  private static double testFlacFile( byte[] flacData, double expectedSampleRate )
+  private static double testFlacStream( byte[] flacData,
+    double expectedSampleRate )
   {
-    Process pr;
-    String fileOutput;
+    FlacStreamInfo streamInfo;
     try
     {
-      pr = pbFlacFileTest.start();
-      try (OutputStream os = pr.getOutputStream()) {
-        os.write(flacData);
-      }
-      try (BufferedReader r =
-        new BufferedReader(new InputStreamReader(pr.getInputStream())))
-      {
-        fileOutput = r.readLine();
-        assert fileOutput == null || r.read() == -1;
-      }
+      streamInfo = FlacStreamInfo.read(flacData);
     }
-    catch (IOException ex)
+    catch (IllegalArgumentException ex)
     {
-      logger.log(Level.WARNING,
-        "Your system configuration doesn’t permit the validation of submitted audio data",
+      throw new AssertionError(
+        "The sent data doesn’t look like a FLAC stream: " + ex.getMessage(),
         ex);
-      return Double.NaN;
     }
+    logger.log(Level.FINEST, "Received {0}", streamInfo);
 
-    while (true)
-    {
-      try
-      {
-        assert pr.waitFor() == 0;
-        break;
-      }
-      catch (InterruptedException ex)
-      {
-        logThrown(logger, Level.FINEST,
-          "Waiting for termination of {0} was interrupted", ex, pr);
-      }
-    }
+    assert streamInfo.sampleRate == expectedSampleRate :
+      String.format("Sample rate of submitted audio stream (%d) doesn’t match expectation (%f)",
+        streamInfo.sampleRate, expectedSampleRate);
 
-    assert fileOutput != null : "The type of the sent data is unknown";
-    int p = fileOutput.indexOf(':');
-    assert p >= 0;
-    fileOutput = fileOutput.substring(p + 2);
-    String[] fileSpec = fileOutput.split(", ");
-    assert fileSpec[0].startsWith("FLAC") :
-      "The sent data doesn’t look like a FLAC stream: " + fileOutput;
-
-    double sampleRate = Double.NaN;
-    long sampleCount = -1;
-    for (int i = 1; i < fileSpec.length; i++)
-    {
-      String s = fileSpec[i];
-      Matcher m;
-      if ((m = SAMPLE_RATE_PATTERN.matcher(s)).matches())
-      {
-        try {
-          sampleRate = Double.parseDouble(m.group(1));
-        } catch (NumberFormatException ex) {
-          throw new AssertionError(s, ex);
-        }
+    return streamInfo.getDuration(flacData);
+  }
 
-        if (m.groupCount() >= 2)
-        {
-          switch (s.charAt(m.start(2)))
-          {
-          case 'k':
-            sampleRate *= 1000;
-            break;
 
-          default:
-            throw new AssertionError(
-              "Unsupported magnitude prefix: " + m.group(2));
-          }
-        }
-      }
-      else if ((m = SAMPLE_COUNT_PATTERN.matcher(s)).matches())
-      {
-        try {
-          sampleCount = Long.parseLong(m.group(1));
-        } catch (NumberFormatException ex) {
-          throw new AssertionError(s, ex);
-        }
-      }
+  private static void sleep( long millis ) throws InterruptedIOException
+  {
+    try
+    {
+      Thread.sleep(millis);
+    }
+    catch (InterruptedException ex)
+    {
+      Thread.currentThread().interrupt();
+      InterruptedIOException ex2 = new InterruptedIOException(
+        "Interrupted while simulating transcription latency");
+      ex2.initCause(ex);
+      throw ex2;
     }
-
-    assert sampleRate > 0 && Double.isFinite(sampleRate) :
-      "Couldn’t determine sample rate of submitted audio stream";
-    assert sampleRate == expectedSampleRate :
-      String.format("Sample rate of submitted audio stream (%f) doesn’t match expectation (%f)",
-        sampleRate, expectedSampleRate);
-
-    return (sampleCount >= 0) ? sampleCount / sampleRate : Double.NaN;
   }
 
 
@@ -317,8 +254,52 @@ protected static Path getTempDir() throws IOException
   }
 
 
-  @SuppressWarnings({ "unused", "HardcodedLineSeparator" })
-  private static final byte[] normalTranscriptionResult = (
+  /**
+   * Encodes a transcription result in the format of the Google Speech API,
+   * i. e. an empty result followed by the final result with the given
+   * transcript.
+   *
+   * @param transcript  A transcript; an empty string yields no result
+   * @return  The encoded response body
+   */
+  @SuppressWarnings("HardcodedLineSeparator")
+  static byte[] encodeTranscriptionResult( String transcript )
+  {
+    StringWriter buf = new StringWriter(transcript.length() + 128);
+    buf.write("{\"result\":[]}\n");
+    if (!transcript.isEmpty())
+    {
+      try (JsonWriter w = new JsonWriter(buf))
+      {
+        w.beginObject()
+          .name("result").beginArray()
+            .beginObject()
+              .name("alternative").beginArray()
+                .beginObject()
+                  .name("transcript").value(transcript)
+                  .name("confidence").value(DEFAULT_CONFIDENCE)
+                .endObject()
+              .endArray()
+              .name("final").value(true)
+            .endObject()
+          .endArray()
+          .name("result_index").value(0)
+          .endObject();
+      }
+      catch (IOException ex)
+      {
+        throw new AssertionError(ex);
+      }
+      buf.write('\n');
+    }
+    return buf.toString().getBytes(ContentType.APPLICATION_JSON.getCharset());
+  }
+
+
+  private static final double DEFAULT_CONFIDENCE = 0.95803052;
+
+  @SuppressWarnings("HardcodedLineSeparator")
+  static final byte[] normalTranscriptionResult = (
         "{\"result\":[]}\n" +
         "{\"result\":[{" +
         "\"alternative\":[" +
@@ -332,9 +313,4 @@ protected static Path getTempDir() throws IOException
         "}]," +
         "\"result_index\":0}\n"
       ).getBytes(ContentType.APPLICATION_JSON.getCharset());
-
-  @SuppressWarnings({ "unused", "HardcodedLineSeparator" })
-  private static final byte[] emptyTranscriptionResult =
-      "{\"result\":[]}"
-        .getBytes(ContentType.APPLICATION_JSON.getCharset());
 }
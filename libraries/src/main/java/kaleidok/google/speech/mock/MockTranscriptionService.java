@@ -14,6 +14,7 @@
 import kaleidok.javafx.beans.property.adapter.preference.StringConversionPropertyPreferencesAdapter;
 import kaleidok.javafx.beans.property.aspect.PropertyPreferencesAdapterTag;
 import kaleidok.javafx.util.converter.UriStringConverter;
+import kaleidok.util.concurrent.DaemonThreadFactory;
 import org.apache.http.concurrent.FutureCallback;
 
 import java.io.IOError;
@@ -22,7 +23,12 @@
 import java.net.InetSocketAddress;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Stream;
@@ -31,12 +37,30 @@
 import static kaleidok.net.http.HttpConnection.HTTP_PROTOCOL;
 
 
+/**
+ * Answers transcription requests with a local HTTP server. Uploads are
+ * handled concurrently, validated in-process and answered after a delay
+ * according to {@link #latencyDistribution} with the next of the
+ * {@link #setTranscripts(List) configured transcripts}.
+ */
 public class MockTranscriptionService extends TranscriptionServiceBase
 {
   private static final Logger logger =
     Logger.getLogger(MockTranscriptionService.class.getPackage().getName());
 
 
+  /**
+   * Determines the delay of the responses; may be changed while the service
+   * is running.
+   */
+  public volatile LatencyDistribution latencyDistribution =
+    LatencyDistribution.NONE;
+
+  private volatile byte[][] transcriptionResults = null;
+
+  private final AtomicInteger transcriptionResultIndex = new AtomicInteger();
+
+
   private final HttpContext context;
 
   private final AspectedBooleanProperty logAudioData;
@@ -50,6 +74,9 @@ public static MockTranscriptionService newInstance( String accessKey,
     {
       HttpServer server = HttpServer.create(
         new InetSocketAddress(InetAddress.getByName(null), 0), 0);
+      server.setExecutor(Executors.newCachedThreadPool(
+        new DaemonThreadFactory(MockTranscriptionService.class.getSimpleName(),
+          true)));
       context = server.createContext(
         DEFAULT_API_BASE.getPath(), new MockSpeechToTextHandler(stt));
     }
@@ -149,11 +176,58 @@ public void setLogAudioData( boolean logAudioData )
   }
 
 
+  /**
+   * Sets the transcripts of the responses to consecutive requests, e. g. the
+   * recorded transcriptions of the items of a replay list. The transcripts
+   * repeat once they're exhausted; an empty transcript results in a response
+   * without result.
+   *
+   * @param transcripts  A list of transcripts, or {@code null} to respond
+   *   with a fixed transcript
+   */
+  public void setTranscripts( List<String> transcripts )
+  {
+    byte[][] transcriptionResults;
+    if (transcripts != null && !transcripts.isEmpty())
+    {
+      transcriptionResults = new byte[transcripts.size()][];
+      for (int i = 0; i < transcriptionResults.length; i++)
+      {
+        transcriptionResults[i] =
+          MockSpeechToTextHandler.encodeTranscriptionResult(
+            Objects.requireNonNull(transcripts.get(i)));
+      }
+    }
+    else
+    {
+      transcriptionResults = null;
+    }
+
+    this.transcriptionResults = transcriptionResults;
+    transcriptionResultIndex.set(0);
+  }
+
+
+  byte[] nextTranscriptionResult()
+  {
+    byte[][] transcriptionResults = this.transcriptionResults;
+    return (transcriptionResults != null) ?
+      transcriptionResults[Math.floorMod(
+        transcriptionResultIndex.getAndIncrement(),
+        transcriptionResults.length)] :
+      MockSpeechToTextHandler.normalTranscriptionResult;
+  }
+
+
   @Override
   public void shutdownNow()
   {
     super.shutdownNow();
-    context.getServer().stop(0);
+    HttpServer server = context.getServer();
+    server.stop(0);
+    Executor executor = server.getExecutor();
+    if (executor instanceof ExecutorService)
+      ((ExecutorService) executor).shutdownNow();
   }
 
 
@@ -1,8 +1,10 @@
 package kaleidok.image.filter;
 
 import kaleidok.util.function.BinaryFloatFunction;
+import kaleidok.util.function.PowerFunctionTable;
 import org.apache.commons.lang3.StringEscapeUtils;
 
+import java.awt.Color;
 import java.util.Objects;
 
 import static kaleidok.util.Math.clamp;
@@ -100,6 +102,12 @@ public static FilterMode fromSymbol( char symbol )
 
   public BinaryFloatFunction filterMode;
 
+  /**
+   * Immutable once constructed, so concurrent callers may race on this field
+   * without harm.
+   */
+  private LookupTables lookupTables = null;
+
 
   public HSBAdjustFilter( float hue, float saturation, float brightness,
     FilterMode filterMode )
@@ -156,13 +164,152 @@ public boolean isNeutral()
   public float[] filterHSB( int x, int y, float[] hsb )
   {
     BinaryFloatFunction filterMode = this.filterMode;
-    hsb[0] = normalizeHue(filterMode.applyAsFloat(hsb[0], hue));
+    hsb[0] = normalizeHue(adjustHue(filterMode, hsb[0], hue));
     hsb[1] = clamp(filterMode.applyAsFloat(hsb[1], saturation), 0, 1);
     hsb[2] = clamp(filterMode.applyAsFloat(hsb[2], brightness), 0, 1);
     return hsb;
   }
 
 
+  /**
+   * If the filter mode is one of the built-in {@link FilterMode}s, this
+   * method looks up the adjusted hue, saturation, and brightness components
+   * in tables precomputed for the current filter parameters instead of
+   * applying the filter mode to every pixel. Brightness values are looked up
+   * exactly; hue and saturation values are linearly interpolated between
+   * {@value #LOOKUP_TABLE_RESOLUTION} table entries. The result may thus
+   * deviate slightly from {@link HSBImageFilter#filterRGB(int, int, int, float[])}.
+   * <p>
+   * Other filter modes are applied to every pixel as usual.
+   */
+  @Override
+  public int filterRGB( int x, int y, int rgb, float[] hsbBuf )
+  {
+    if (!(filterMode instanceof FilterMode))
+      return super.filterRGB(x, y, rgb, hsbBuf);
+
+    final LookupTables lut = getLookupTables();
+    final int r = (rgb >>> 16) & 0xff, g = (rgb >>> 8) & 0xff, b = rgb & 0xff;
+    final int cmax = Math.max(Math.max(r, g), b),
+      cmin = Math.min(Math.min(r, g), b);
+
+    float hue, saturation;
+    if (cmax != cmin)
+    {
+      // same as in Color.RGBtoHSB()
+      final float delta = cmax - cmin;
+      float redc = (cmax - r) / delta, greenc = (cmax - g) / delta,
+        bluec = (cmax - b) / delta;
+      hue =
+        (r == cmax) ? bluec - greenc :
+        (g == cmax) ? 2 + redc - bluec :
+          4 + greenc - redc;
+      hue /= 6;
+      if (hue < 0)
+        hue += 1;
+      saturation = delta / cmax;
+    }
+    else
+    {
+      hue = 0;
+      saturation = 0;
+    }
+
+    return Color.HSBtoRGB(
+      normalizeHue(interpolate(lut.hue, hue)),
+      interpolate(lut.saturation, saturation),
+      lut.brightness[cmax]);
+  }
+
+
+  private LookupTables getLookupTables()
+  {
+    LookupTables lut = lookupTables;
+    if (lut == null || !lut.matches(this))
+      lookupTables = lut = new LookupTables(this);
+    return lut;
+  }
+
+
+  private static float interpolate( float[] table, float x )
+  {
+    return PowerFunctionTable.interpolate(table, clamp(x, 0, 1));
+  }
+
+
+  /**
+   * The number of intervals in the interpolated hue and saturation lookup
+   * tables
+   */
+  public static final int LOOKUP_TABLE_RESOLUTION = 1 << 12;
+
+
+  /**
+   * Immutable lookup tables for a given set of filter parameters; the
+   * saturation and brightness values are clamped to [0, 1] in advance.
+   */
+  private static final class LookupTables
+  {
+    private final BinaryFloatFunction filterMode;
+
+    private final int hueBits, saturationBits, brightnessBits;
+
+    final float[] hue, saturation, brightness;
+
+
+    LookupTables( HSBAdjustFilter filter )
+    {
+      final BinaryFloatFunction filterMode = this.filterMode = filter.filterMode;
+      final float hueParam = filter.hue,
+        saturationParam = filter.saturation,
+        brightnessParam = filter.brightness;
+      hueBits = Float.floatToIntBits(hueParam);
+      saturationBits = Float.floatToIntBits(saturationParam);
+      brightnessBits = Float.floatToIntBits(brightnessParam);
+
+      final int n = LOOKUP_TABLE_RESOLUTION;
+      final float[] hue = this.hue = new float[n + 1],
+        saturation = this.saturation = new float[n + 1];
+      for (int i = 0; i <= n; i++)
+      {
+        float x = (float) i / n;
+        hue[i] = adjustHue(filterMode, x, hueParam);
+        saturation[i] =
+          clamp(filterMode.applyAsFloat(x, saturationParam), 0, 1);
+      }
+
+      final float[] brightness = this.brightness = new float[256];
+      for (int i = 0; i < brightness.length; i++)
+      {
+        brightness[i] =
+          clamp(filterMode.applyAsFloat(i / 255f, brightnessParam), 0, 1);
+      }
+    }
+
+
+    boolean matches( HSBAdjustFilter filter )
+    {
+      return filterMode == filter.filterMode &&
+        hueBits == Float.floatToIntBits(filter.hue) &&
+        saturationBits == Float.floatToIntBits(filter.saturation) &&
+        brightnessBits == Float.floatToIntBits(filter.brightness);
+    }
+  }
+
+
+  /**
+   * Adjusts a hue value and keeps it if the result is infinite or
+   * undefined, as e. g. for {@link FilterMode#POWER} with a negative
+   * parameter and a hue of 0.
+   */
+  private static float adjustHue( BinaryFloatFunction filterMode, float hue,
+    float param )
+  {
+    float adjusted = filterMode.applyAsFloat(hue, param);
+    return Float.isFinite(adjusted) ? adjusted : hue;
+  }
+
+
   private static float normalizeHue( float hue )
   {
     return hue % (float)(Math.PI * 2);
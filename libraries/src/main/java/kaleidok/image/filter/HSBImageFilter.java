@@ -18,6 +18,24 @@ public abstract float[] filterHSB( @SuppressWarnings("unused") int x,
 
   @Override
   public int filterRGB( int x, int y, int rgb )
+  {
+    return filterRGB(x, y, rgb, hsbBuf);
+  }
+
+
+  /**
+   * Like {@link #filterRGB(int, int, int)} but uses a caller-supplied buffer
+   * for the intermediate HSB values instead of the one shared by all callers
+   * of this filter instance. Thus, this method is thread-safe as long as
+   * {@link #filterHSB(int, int, float[])} is.
+   *
+   * @param x  The x coordinate of the pixel
+   * @param y  The y coordinate of the pixel
+   * @param rgb  The pixel value in the default RGB color model
+   * @param hsbBuf  A buffer of at least 3 elements
+   * @return  The filtered pixel value in the default RGB color model
+   */
+  public int filterRGB( int x, int y, int rgb, float[] hsbBuf )
   {
     float[] transformedHSB = filterHSB(x, y, Color.RGBtoHSB(
       (rgb >>> 16) & 0xff, (rgb >>> 8) & 0xff, rgb & 0xff, hsbBuf));
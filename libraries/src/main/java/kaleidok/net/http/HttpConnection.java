@@ -17,6 +17,7 @@
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static kaleidok.net.http.HttpConnection.ConnectionState.CONNECTED;
 import static kaleidok.net.http.HttpConnection.ConnectionState.DISCONNECTED;
@@ -41,6 +42,9 @@ public class HttpConnection implements Closeable
 
   private volatile String body;
 
+  private final AtomicReference<HttpConnectionPool.Lease> lease =
+    new AtomicReference<>();
+
 
   public enum ConnectionState
   {
@@ -450,13 +454,15 @@ public synchronized String getBody() throws IOException
   {
     if (body == null)
     {
+      boolean complete = false;
       try (Reader r = getReader())
       {
         body = IOUtils.toString(r);
+        complete = true;
       }
       finally
       {
-        disconnect();
+        finish(complete);
       }
     }
     return body;
@@ -570,13 +576,80 @@ public void disconnect()
   {
     state = DISCONNECTED;
     c.disconnect();
+    releaseLease(false);
+  }
+
+
+  /**
+   * Ends the exchange after the response was read. Connections from a
+   * {@link HttpConnectionPool} close the response stream without
+   * disconnecting, so that {@link HttpURLConnection} can reuse the socket
+   * for the next request to the same host. Other connections disconnect.
+   */
+  public synchronized void release()
+  {
+    if (lease.get() == null || inputStream == null)
+    {
+      disconnect();
+      return;
+    }
+
+    state = DISCONNECTED;
+    try
+    {
+      if (reader != null) {
+        reader.close();
+      } else {
+        inputStream.close();
+      }
+    }
+    catch (IOException ex)
+    {
+      disconnect();
+      return;
+    }
+    releaseLease(true);
   }
 
 
+  /**
+   * Releases the connection after a response was read completely and
+   * disconnects otherwise.
+   */
+  protected void finish( boolean complete )
+  {
+    if (complete) {
+      release();
+    } else {
+      disconnect();
+    }
+  }
+
+
+  void setLease( HttpConnectionPool.Lease lease )
+  {
+    if (!this.lease.compareAndSet(null, lease))
+      throw new IllegalStateException("Connection was already leased");
+  }
+
+
+  private void releaseLease( boolean keptAlive )
+  {
+    HttpConnectionPool.Lease lease = this.lease.getAndSet(null);
+    if (lease != null)
+      lease.release(keptAlive);
+  }
+
+
+  /**
+   * Disconnects unless the connection was already {@link #release() released}
+   * or disconnected.
+   */
   @Override
   public void close()
   {
-    disconnect();
+    if (state != DISCONNECTED)
+      disconnect();
   }
 
 
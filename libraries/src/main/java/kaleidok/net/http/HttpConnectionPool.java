@@ -0,0 +1,354 @@
+package kaleidok.net.http;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.lang.reflect.InvocationTargetException;
+import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * Hands out {@link HttpConnection} instances with a limit on the number of
+ * concurrent connections to each host and keeps their sockets alive between
+ * requests.
+ * <p>
+ * The sockets themselves are cached by {@link java.net.HttpURLConnection}.
+ * A socket can be reused only if its response was read completely and
+ * closed without disconnecting. Connections from this pool do exactly that
+ * on {@link HttpConnection#release()}. The JDK keeps up to
+ * {@code http.maxConnections} idle sockets per host (default: 5). It closes
+ * them after the keep-alive timeout announced by the server, or after
+ * 5 seconds if there is none. The pool evicts its own per-host bookkeeping
+ * for hosts that were idle longer than {@link #idleTimeout}.
+ */
+public class HttpConnectionPool
+{
+  public static int DEFAULT_MAX_CONNECTIONS_PER_HOST = 8;
+
+  public static long DEFAULT_ACQUIRE_TIMEOUT = TimeUnit.SECONDS.toMillis(30);
+
+  public static long DEFAULT_IDLE_TIMEOUT = TimeUnit.MINUTES.toMillis(1);
+
+
+  private static volatile HttpConnectionPool defaultInstance = null;
+
+  public static HttpConnectionPool getDefault()
+  {
+    HttpConnectionPool pool = defaultInstance;
+    if (pool == null)
+    {
+      synchronized (HttpConnectionPool.class)
+      {
+        pool = defaultInstance;
+        if (pool == null)
+        {
+          defaultInstance = pool =
+            new HttpConnectionPool(DEFAULT_MAX_CONNECTIONS_PER_HOST);
+        }
+      }
+    }
+    return pool;
+  }
+
+
+  public final int maxConnectionsPerHost;
+
+  /**
+   * Maximum time in milliseconds to wait for a connection to a host whose
+   * limit is reached
+   */
+  public volatile long acquireTimeout = DEFAULT_ACQUIRE_TIMEOUT;
+
+  /**
+   * Time in milliseconds after which the state of unused hosts is evicted
+   */
+  public volatile long idleTimeout = DEFAULT_IDLE_TIMEOUT;
+
+  private final ConcurrentMap<String, Host> hosts = new ConcurrentHashMap<>();
+
+  private volatile long lastEviction = System.nanoTime();
+
+  private final LongAdder
+    leaseCount = new LongAdder(),
+    keptAliveCount = new LongAdder(),
+    disconnectedCount = new LongAdder(),
+    waitCount = new LongAdder(),
+    evictedHostCount = new LongAdder();
+
+
+  public HttpConnectionPool( int maxConnectionsPerHost )
+  {
+    if (maxConnectionsPerHost <= 0)
+    {
+      throw new IllegalArgumentException(
+        "Non-positive connection limit: " + maxConnectionsPerHost);
+    }
+    this.maxConnectionsPerHost = maxConnectionsPerHost;
+  }
+
+
+  public HttpConnection open( URL url ) throws IOException
+  {
+    return open(url, HttpConnection.class);
+  }
+
+
+  /**
+   * Opens a connection once fewer than {@link #maxConnectionsPerHost}
+   * connections to the same host are in use. The connection counts towards
+   * that limit until it's released or disconnected.
+   *
+   * @param url  The URL to connect to
+   * @param clazz  The connection type
+   * @param <T>  The connection type
+   * @return  A new, unconnected connection
+   * @throws IOException  if the URL isn't supported or no connection became
+   *   available within {@link #acquireTimeout}
+   */
+  public <T extends HttpConnection> T open( URL url, Class<T> clazz )
+    throws IOException
+  {
+    evictIdleHostsIfDue();
+
+    Host host = acquire(url);
+    T con = null;
+    try
+    {
+      con = HttpConnection.openURL(url, clazz);
+      con.setLease(new Lease(host));
+      leaseCount.increment();
+    }
+    catch (InstantiationException | NoSuchMethodException |
+      InvocationTargetException ex)
+    {
+      throw new AssertionError(ex);
+    }
+    finally
+    {
+      if (con == null)
+        host.release();
+    }
+    return con;
+  }
+
+
+  /**
+   * Waits for a permit of the host of the given URL. Evicted hosts have all
+   * of their permits taken, so waiters look up the host again from time to
+   * time in case theirs was evicted in the meantime.
+   */
+  private Host acquire( URL url ) throws IOException
+  {
+    String hostKey = getHostKey(url);
+    long deadline =
+      System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(acquireTimeout);
+    boolean waited = false;
+    while (true)
+    {
+      Host host = hosts.computeIfAbsent(hostKey, ( key ) -> new Host());
+      if (host.permits.tryAcquire())
+        return host;
+
+      if (!waited)
+      {
+        waitCount.increment();
+        waited = true;
+      }
+      long remaining = deadline - System.nanoTime();
+      if (remaining <= 0)
+      {
+        throw new IOException(String.format(
+          "No connection to %s available within %d ms",
+          url.getAuthority(), acquireTimeout));
+      }
+      try
+      {
+        if (host.permits.tryAcquire(
+          Math.min(remaining, HOST_LOOKUP_INTERVAL), TimeUnit.NANOSECONDS))
+        {
+          return host;
+        }
+      }
+      catch (InterruptedException ex)
+      {
+        Thread.currentThread().interrupt();
+        InterruptedIOException ex2 = new InterruptedIOException(
+          "Interrupted while waiting for a connection to " +
+            url.getAuthority());
+        ex2.initCause(ex);
+        throw ex2;
+      }
+    }
+  }
+
+
+  private static final long HOST_LOOKUP_INTERVAL =
+    TimeUnit.MILLISECONDS.toNanos(100);
+
+
+  static String getHostKey( URL url )
+  {
+    int port = url.getPort();
+    if (port < 0)
+      port = url.getDefaultPort();
+    return url.getProtocol() + "://" + url.getHost() + ':' + port;
+  }
+
+
+  private void evictIdleHostsIfDue()
+  {
+    if (System.nanoTime() - lastEviction >
+      TimeUnit.MILLISECONDS.toNanos(idleTimeout))
+    {
+      evictIdleHosts();
+    }
+  }
+
+
+  /**
+   * Forgets the hosts without connections in use that haven't been used
+   * for longer than {@link #idleTimeout}.
+   *
+   * @return  The number of evicted hosts
+   */
+  public int evictIdleHosts()
+  {
+    long now = System.nanoTime(), timeout =
+      TimeUnit.MILLISECONDS.toNanos(idleTimeout);
+    lastEviction = now;
+
+    int evicted = 0;
+    for (Map.Entry<String, Host> e : hosts.entrySet())
+    {
+      Host host = e.getValue();
+      // taking all permits ensures that nobody uses or acquires this host
+      if (now - host.lastUsed > timeout &&
+        host.permits.tryAcquire(maxConnectionsPerHost))
+      {
+        hosts.remove(e.getKey(), host);
+        evicted++;
+      }
+    }
+    evictedHostCount.add(evicted);
+    return evicted;
+  }
+
+
+  public Statistics getStatistics()
+  {
+    int leased = 0;
+    for (Host host : hosts.values())
+      leased += maxConnectionsPerHost - host.permits.availablePermits();
+
+    return new Statistics(
+      leaseCount.sum(), keptAliveCount.sum(), disconnectedCount.sum(),
+      waitCount.sum(), evictedHostCount.sum(), hosts.size(), leased);
+  }
+
+
+  private final class Host
+  {
+    final Semaphore permits = new Semaphore(maxConnectionsPerHost);
+
+    volatile long lastUsed = System.nanoTime();
+
+
+    void release()
+    {
+      lastUsed = System.nanoTime();
+      permits.release();
+    }
+  }
+
+
+  final class Lease
+  {
+    private final Host host;
+
+
+    private Lease( Host host )
+    {
+      this.host = host;
+    }
+
+
+    void release( boolean keptAlive )
+    {
+      host.release();
+      (keptAlive ? keptAliveCount : disconnectedCount).increment();
+    }
+  }
+
+
+  public static final class Statistics
+  {
+    /**
+     * The number of connections handed out
+     */
+    public final long leases;
+
+    /**
+     * The number of connections released with a completely read response,
+     * whose sockets may be reused
+     */
+    public final long keptAlive;
+
+    /**
+     * The number of connections that were disconnected, e. g. after errors
+     */
+    public final long disconnected;
+
+    /**
+     * The number of connection requests that had to wait for a per-host
+     * limit
+     */
+    public final long waits;
+
+    public final long evictedHosts;
+
+    public final int hosts;
+
+    /**
+     * The number of connections currently in use
+     */
+    public final int leased;
+
+
+    Statistics( long leases, long keptAlive, long disconnected, long waits,
+      long evictedHosts, int hosts, int leased )
+    {
+      this.leases = leases;
+      this.keptAlive = keptAlive;
+      this.disconnected = disconnected;
+      this.waits = waits;
+      this.evictedHosts = evictedHosts;
+      this.hosts = hosts;
+      this.leased = leased;
+    }
+
+
+    /**
+     * @return  The share of released connections that could be kept alive
+     */
+    public double getKeepAliveRatio()
+    {
+      long released = keptAlive + disconnected;
+      return (released != 0) ? (double) keptAlive / released : Double.NaN;
+    }
+
+
+    @Override
+    public String toString()
+    {
+      return String.format(
+        "%d leases, %d kept alive, %d disconnected, %d waits, " +
+          "%d in use on %d hosts, %d hosts evicted",
+        leases, keptAlive, disconnected, waits, leased, hosts, evictedHosts);
+    }
+  }
+}
@@ -2,10 +2,13 @@
 
 import com.google.gson.Gson;
 import com.google.gson.JsonElement;
+import com.google.gson.TypeAdapter;
 import kaleidok.net.http.responsehandler.JsonElementResponseHandler;
 import kaleidok.net.http.responsehandler.JsonMimeTypeChecker;
+import kaleidok.google.gson.JsonStreams;
 import kaleidok.google.gson.TypeAdapterManager;
 import kaleidok.net.http.util.URLEncoding;
+import org.apache.commons.io.IOUtils;
 
 import java.io.*;
 import java.net.HttpURLConnection;
@@ -39,16 +42,18 @@ public static JsonHttpConnection openURL( URL url ) throws IOException
 
   public JsonElement get() throws IOException
   {
-    if (json != null) {
+    if (json == null) {
       synchronized (this) {
         if (json == null) {
+          boolean complete = false;
           try (Reader reader = getReader()) {
             JsonElement json =
               JsonElementResponseHandler.getDefaultJsonParser().parse(reader);
             this.json = json;
+            complete = true;
             return json;
           } finally {
-            disconnect();
+            finish(complete);
           }
         }
       }
@@ -66,22 +71,43 @@ public <T> T get( Class<T> clazz ) throws IOException
 
 
   public <T> T get( Class<T> clazz, Gson gson ) throws IOException
+  {
+    T json = get(gson.getAdapter(clazz));
+    if (json != null && !clazz.isInstance(json))
+      throw getPreviouslyParsedException();
+    return json;
+  }
+
+
+  /**
+   * Feeds the decoded response stream straight into the given type adapter.
+   * Whatever the adapter leaves unread is skipped without parsing before the
+   * connection is released, so that it may be kept alive.
+   *
+   * @param adapter  A type adapter for the response
+   * @param <T>  The type of the result
+   * @return  The deserialized response
+   * @throws IOException  if the response couldn't be read
+   * @see JsonStreams#read(Reader, TypeAdapter)
+   */
+  public <T> T get( TypeAdapter<T> adapter ) throws IOException
   {
     if (json == null) {
       synchronized (this) {
         if (json == null) {
+          boolean complete = false;
           try (Reader reader = getReader()) {
-            T json = gson.fromJson(reader, clazz);
+            T json = JsonStreams.read(reader, adapter);
             this.json = json;
+            IOUtils.skip(reader, Long.MAX_VALUE);
+            complete = true;
             return json;
           } finally {
-            disconnect();
+            finish(complete);
           }
         }
       }
     }
-    if (!clazz.isInstance(json))
-      throw getPreviouslyParsedException();
     //noinspection unchecked
     return (T) json;
   }
@@ -0,0 +1,151 @@
+package kaleidok.net.http.cache;
+
+import org.apache.http.client.cache.Resource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Objects;
+
+
+/**
+ * A cache resource backed by a byte buffer, e. g. a memory-mapped region of
+ * a cache file.
+ * <p>
+ * Serialization copies the buffer content to the stream and deserialized
+ * instances are backed by a heap buffer.
+ */
+public class ByteBufferResource implements Resource
+{
+  private static final long serialVersionUID = 2304583493487650215L;
+
+  private transient ByteBuffer buffer;
+
+
+  /**
+   * @param buffer  The resource content between the buffer's position and
+   *   its limit; the buffer is not copied and shouldn't be modified
+   *   afterwards
+   */
+  public ByteBufferResource( ByteBuffer buffer )
+  {
+    this.buffer = Objects.requireNonNull(buffer).slice();
+  }
+
+
+  @Override
+  public InputStream getInputStream()
+  {
+    ByteBuffer buffer = this.buffer;
+    if (buffer == null)
+      throw new IllegalStateException("Resource has been disposed");
+    return new ByteBufferInputStream(buffer.duplicate());
+  }
+
+
+  @Override
+  public long length()
+  {
+    ByteBuffer buffer = this.buffer;
+    return (buffer != null) ? buffer.remaining() : 0;
+  }
+
+
+  /**
+   * Drops the reference to the underlying buffer. Memory-mapped buffers are
+   * unmapped once they are garbage-collected.
+   */
+  @Override
+  public void dispose()
+  {
+    buffer = null;
+  }
+
+
+  private void writeObject( ObjectOutputStream out ) throws IOException
+  {
+    out.defaultWriteObject();
+    ByteBuffer buffer = this.buffer;
+    buffer = (buffer != null) ? buffer.duplicate() : ByteBuffer.allocate(0);
+    out.writeInt(buffer.remaining());
+    if (buffer.hasArray())
+    {
+      out.write(buffer.array(), buffer.arrayOffset() + buffer.position(),
+        buffer.remaining());
+    }
+    else
+    {
+      byte[] tmp = new byte[Math.min(buffer.remaining(), 1 << 13)];
+      while (buffer.hasRemaining())
+      {
+        int len = Math.min(buffer.remaining(), tmp.length);
+        buffer.get(tmp, 0, len);
+        out.write(tmp, 0, len);
+      }
+    }
+  }
+
+
+  private void readObject( ObjectInputStream in )
+    throws IOException, ClassNotFoundException
+  {
+    in.defaultReadObject();
+    byte[] a = new byte[in.readInt()];
+    in.readFully(a);
+    buffer = ByteBuffer.wrap(a);
+  }
+
+
+  private static final class ByteBufferInputStream extends InputStream
+  {
+    private final ByteBuffer buffer;
+
+
+    ByteBufferInputStream( ByteBuffer buffer )
+    {
+      this.buffer = buffer;
+    }
+
+
+    @Override
+    public int read()
+    {
+      return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+    }
+
+
+    @Override
+    public int read( byte[] b, int off, int len )
+    {
+      if (len == 0)
+        return 0;
+
+      ByteBuffer buffer = this.buffer;
+      if (!buffer.hasRemaining())
+        return -1;
+
+      len = Math.min(len, buffer.remaining());
+      buffer.get(b, off, len);
+      return len;
+    }
+
+
+    @Override
+    public long skip( long n )
+    {
+      ByteBuffer buffer = this.buffer;
+      int skipped = (int) Math.max(Math.min(n, buffer.remaining()), 0);
+      buffer.position(buffer.position() + skipped);
+      return skipped;
+    }
+
+
+    @Override
+    public int available()
+    {
+      return buffer.remaining();
+    }
+  }
+}
@@ -0,0 +1,242 @@
+package kaleidok.net.http.cache;
+
+import java.awt.Dimension;
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+
+/**
+ * A size-bounded, least-recently-used, in-memory cache of decoded images,
+ * that sits in front of an HTTP cache to avoid repeated decoding of the same
+ * resources. Cache entries are keyed by the resource URL and the target
+ * size that the images were decoded (and subsampled) for.
+ * <p>
+ * Instances of this class are thread-safe.
+ */
+public class DecodedImageCache
+{
+  public static final class Key
+  {
+    public final String url;
+
+    public final int width, height;
+
+
+    public Key( String url, int width, int height )
+    {
+      this.url = Objects.requireNonNull(url);
+      this.width = width;
+      this.height = height;
+    }
+
+
+    @Override
+    public boolean equals( Object obj )
+    {
+      if (obj == this)
+        return true;
+      if (!(obj instanceof Key))
+        return false;
+      Key other = (Key) obj;
+      return width == other.width && height == other.height &&
+        url.equals(other.url);
+    }
+
+
+    @Override
+    public int hashCode()
+    {
+      return (url.hashCode() * 31 + width) * 31 + height;
+    }
+
+
+    @Override
+    public String toString()
+    {
+      return url + " @ " + width + '×' + height;
+    }
+  }
+
+
+  private final LinkedHashMap<Key, Image> entries =
+    new LinkedHashMap<>(16, 0.75f, true);
+
+  private final Supplier<? extends Dimension> targetSize;
+
+  private long maxSize, size = 0;
+
+  private long hitCount = 0, missCount = 0, evictionCount = 0;
+
+
+  /**
+   * @param maxSize  The maximum total size of the cached images in bytes
+   * @param targetSize  Supplies the size that images are currently decoded
+   *   for; may be {@code null} or supply {@code null} if they aren't
+   *   subsampled
+   */
+  public DecodedImageCache( long maxSize,
+    Supplier<? extends Dimension> targetSize )
+  {
+    if (maxSize < 0)
+      throw new IllegalArgumentException("Negative maximum size: " + maxSize);
+
+    this.maxSize = maxSize;
+    this.targetSize = targetSize;
+  }
+
+
+  /**
+   * Constructs a cache key for the given resource and the current target
+   * size. Callers should retain the key to store the decoded image later,
+   * since the target size may have changed in the meantime.
+   *
+   * @param url  A resource URL
+   * @return  A cache key
+   */
+  public Key newKey( String url )
+  {
+    Dimension size = (targetSize != null) ? targetSize.get() : null;
+    return (size != null) ?
+      new Key(url, size.width, size.height) :
+      new Key(url, 0, 0);
+  }
+
+
+  public synchronized Image get( Key key )
+  {
+    Image img = entries.get(key);
+    if (img != null) {
+      hitCount++;
+    } else {
+      missCount++;
+    }
+    return img;
+  }
+
+
+  public synchronized void put( Key key, Image img )
+  {
+    long imgSize = sizeOf(img);
+    if (imgSize > maxSize)
+      return;
+
+    Image previous = entries.put(key, img);
+    if (previous != null)
+      size -= sizeOf(previous);
+    size += imgSize;
+    trimToSize(maxSize);
+  }
+
+
+  public synchronized void remove( Key key )
+  {
+    Image previous = entries.remove(key);
+    if (previous != null)
+      size -= sizeOf(previous);
+  }
+
+
+  public synchronized void clear()
+  {
+    entries.clear();
+    size = 0;
+  }
+
+
+  private void trimToSize( long maxSize )
+  {
+    Iterator<Map.Entry<Key, Image>> it = entries.entrySet().iterator();
+    while (size > maxSize && it.hasNext())
+    {
+      size -= sizeOf(it.next().getValue());
+      it.remove();
+      evictionCount++;
+    }
+  }
+
+
+  /**
+   * Estimates the amount of memory occupied by the pixel data of an image.
+   *
+   * @param img  An image
+   * @return  The estimated size in bytes
+   */
+  protected static long sizeOf( Image img )
+  {
+    int bytesPerPixel = (img instanceof BufferedImage) ?
+      (((BufferedImage) img).getColorModel().getPixelSize() + 7) / 8 :
+      Integer.BYTES;
+    return (long) Math.max(img.getWidth(null), 0) *
+      Math.max(img.getHeight(null), 0) * bytesPerPixel;
+  }
+
+
+  public synchronized long getMaxSize()
+  {
+    return maxSize;
+  }
+
+  public synchronized void setMaxSize( long maxSize )
+  {
+    if (maxSize < 0)
+      throw new IllegalArgumentException("Negative maximum size: " + maxSize);
+
+    this.maxSize = maxSize;
+    trimToSize(maxSize);
+  }
+
+
+  public synchronized long size()
+  {
+    return size;
+  }
+
+
+  public synchronized int getEntryCount()
+  {
+    return entries.size();
+  }
+
+
+  public synchronized long getHitCount()
+  {
+    return hitCount;
+  }
+
+
+  public synchronized long getMissCount()
+  {
+    return missCount;
+  }
+
+
+  public synchronized long getEvictionCount()
+  {
+    return evictionCount;
+  }
+
+
+  /**
+   * @return  The ratio of cache hits to all lookups; {@link Double#NaN} if
+   *   there were no lookups yet
+   */
+  public synchronized double getHitRate()
+  {
+    return (double) hitCount / (hitCount + missCount);
+  }
+
+
+  @Override
+  public synchronized String toString()
+  {
+    return String.format(
+      "%s[%d entries, %d of %d bytes, %d hits, %d misses, %d evictions]",
+      getClass().getSimpleName(), entries.size(), size, maxSize,
+      hitCount, missCount, evictionCount);
+  }
+}
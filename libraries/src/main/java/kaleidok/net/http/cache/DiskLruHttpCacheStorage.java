@@ -1,30 +1,71 @@
 package kaleidok.net.http.cache;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.jakewharton.disklrucache.DiskLruCache;
 import kaleidok.io.platform.PlatformPaths;
-import org.apache.commons.collections4.map.LRUMap;
+import org.apache.commons.io.IOUtils;
+import org.apache.http.Header;
+import org.apache.http.HttpVersion;
+import org.apache.http.ProtocolVersion;
+import org.apache.http.StatusLine;
 import org.apache.http.client.cache.HttpCacheEntry;
 import org.apache.http.client.cache.HttpCacheStorage;
 import org.apache.http.client.cache.HttpCacheUpdateCallback;
 import org.apache.http.client.cache.HttpCacheUpdateException;
-
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
-import java.io.Closeable;
-import java.io.File;
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
-import java.io.OutputStream;
+import org.apache.http.client.cache.Resource;
+import org.apache.http.message.BasicHeader;
+import org.apache.http.message.BasicStatusLine;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
-import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
 import java.util.Map;
-
-
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static kaleidok.util.logging.LoggingUtils.logThrown;
+
+
+/**
+ * Stores HTTP cache entries in a {@link DiskLruCache}.
+ * <p>
+ * Each entry is stored in a custom binary format (see
+ * {@link #serialize(String, HttpCacheEntry, OutputStream)}), where a
+ * length-prefixed header section precedes the raw response body. Thus, the
+ * body doesn't need to be parsed and large bodies are
+ * {@link FileChannel#map(FileChannel.MapMode, long, long) memory-mapped}
+ * directly from the cache file. Entries written by earlier versions of this
+ * class through Java object serialization are still readable and converted
+ * to the current format when they're read.
+ */
 public class DiskLruHttpCacheStorage implements HttpCacheStorage, Closeable
 {
+  private static final Logger logger =
+    Logger.getLogger(DiskLruHttpCacheStorage.class.getName());
+
+  /**
+   * Marks entries in the current format: "KHCE" followed by the format
+   * version
+   */
+  static final int FORMAT_MAGIC = 0x4b484345, FORMAT_VERSION = 1;
+
+  /**
+   * The minimum body size in bytes to memory-map instead of reading it onto
+   * the heap. Windows doesn't allow the deletion of files with mapped
+   * regions, which would break the eviction of cache entries, so the default
+   * disables memory-mapping there.
+   */
+  public static long MEMORY_MAP_THRESHOLD =
+    System.getProperty("os.name").startsWith("Windows") ?
+      Long.MAX_VALUE :
+      1L << 16;
+
   /*
    * The current collision resolution method simply replaces existing colliding
    * cache entries, which is probably fine in a key space of 2^(5*64).
@@ -37,14 +78,15 @@ public class DiskLruHttpCacheStorage implements HttpCacheStorage, Closeable
    */
   private final DiskLruCache diskCache;
 
+  public static final int KEY_MAP_SIZE = 500;
+
   /**
-   * Caches mapping from external to internal keys.
-   * <p>
-   * TODO: Use <a href="https://github.com/ben-manes/caffeine">Caffeine</a>
-   * instead of {@link LRUMap}, when switching to JDK 1.8.
+   * Caches mapping from external to internal keys. Unlike a synchronized
+   * {@link org.apache.commons.collections4.map.LRUMap}, lookups don't
+   * contend on a single lock.
    */
-  private final Map<String, String> keyMap =
-    Collections.synchronizedMap(new LRUMap<String, String>(500));
+  private final Cache<String, String> keyMap =
+    Caffeine.newBuilder().maximumSize(KEY_MAP_SIZE).build();
 
   private static final ThreadLocal<KeyHasher> keyHasher =
     ThreadLocal.withInitial(() -> {
@@ -98,10 +140,52 @@ public void putEntry( String key, HttpCacheEntry entry ) throws IOException
   @Override
   public HttpCacheEntry getEntry( String key ) throws IOException
   {
+    HttpCacheEntry entry;
+    boolean legacy;
     try (DiskLruCache.Snapshot snapshot = diskCache.get(toInternalKey(key))) {
-      return (snapshot != null)  ?
-        deserialize(key, snapshot.getInputStream(0)) :
-        null;
+      if (snapshot == null)
+        return null;
+
+      InputStream is = snapshot.getInputStream(0);
+      int magic = readMagic(is);
+      legacy = isLegacyFormat(magic);
+      entry = legacy ?
+        deserializeLegacy(key, withMagic(magic, is)) :
+        deserialize(key, magic, is);
+      if (legacy && entry != null)
+        migrate(key, entry, snapshot);
+    }
+    return entry;
+  }
+
+
+  /**
+   * Rewrites a cache entry read in the legacy format in the current format.
+   */
+  private static void migrate( String key, HttpCacheEntry entry,
+    DiskLruCache.Snapshot snapshot )
+  {
+    try
+    {
+      DiskLruCache.Editor editor = snapshot.edit();
+      if (editor != null)
+      {
+        try
+        {
+          serialize(key, entry, editor.newOutputStream(0));
+          editor.commit();
+        }
+        finally
+        {
+          editor.abortUnlessCommitted();
+        }
+      }
+    }
+    catch (IOException ex)
+    {
+      logThrown(logger, Level.WARNING,
+        "Couldn’t convert cache entry for {0} to the current format",
+        ex, key);
     }
   }
 
@@ -130,8 +214,14 @@ public void updateEntry( String key, HttpCacheUpdateCallback callback )
       InputStream is = editor.newInputStream(0);
       HttpCacheEntry entry;
       if (is != null) {
-        entry = deserialize(key, is);
-        is.close();
+        try {
+          int magic = readMagic(is);
+          entry = isLegacyFormat(magic) ?
+            deserializeLegacy(key, withMagic(magic, is)) :
+            deserialize(key, magic, is);
+        } finally {
+          is.close();
+        }
       } else {
         entry = null;
       }
@@ -160,21 +250,245 @@ protected String toInternalKey( String externalKey )
 
   protected String toInternalKey( String externalKey, boolean remove )
   {
-    String internalKey = remove ?
-      keyMap.remove(externalKey) :
-      keyMap.get(externalKey);
-    if (internalKey == null) {
-      internalKey = keyHasher.get().toInternalKey(externalKey);
-      if (!remove)
-        keyMap.put(externalKey, internalKey);
-    }
-    return internalKey;
+    if (!remove)
+      return keyMap.get(externalKey, DiskLruHttpCacheStorage::hashKey);
+
+    String internalKey = keyMap.asMap().remove(externalKey);
+    return (internalKey != null) ? internalKey : hashKey(externalKey);
   }
 
 
+  private static String hashKey( String externalKey )
+  {
+    return keyHasher.get().toInternalKey(externalKey);
+  }
+
+
+  /**
+   * Writes a cache entry in the following format, in network byte order:
+   * <ol>
+   *   <li>{@link #FORMAT_MAGIC} and {@link #FORMAT_VERSION} (8 bytes);</li>
+   *   <li>the length of the header section (4 bytes);</li>
+   *   <li>the header section: the external key, request and response date,
+   *     request method, status line, response headers, variant map, and the
+   *     body length or -1 if there is no body;</li>
+   *   <li>the body.</li>
+   * </ol>
+   * Strings are encoded as their UTF-8 length (4 bytes, -1 for
+   * {@code null}) followed by their UTF-8 representation.
+   *
+   * @param externalKey  The key of the cache entry
+   * @param entry  The cache entry
+   * @param os  The output stream; it's closed afterwards
+   * @throws IOException  If the stream throws
+   */
   protected static void serialize( String externalKey, HttpCacheEntry entry,
     OutputStream os )
     throws IOException
+  {
+    Resource resource = entry.getResource();
+    byte[] header = serializeHeader(externalKey, entry,
+      (resource != null) ? resource.length() : -1);
+
+    if (!(os instanceof BufferedOutputStream))
+      os = new BufferedOutputStream(os);
+    try (DataOutputStream dos = new DataOutputStream(os)) {
+      dos.writeInt(FORMAT_MAGIC);
+      dos.writeInt(FORMAT_VERSION);
+      dos.writeInt(header.length);
+      dos.write(header);
+      if (resource != null) {
+        try (InputStream body = resource.getInputStream()) {
+          IOUtils.copyLarge(body, dos);
+        }
+      }
+    }
+  }
+
+
+  private static byte[] serializeHeader( String externalKey,
+    HttpCacheEntry entry, long bodyLength )
+    throws IOException
+  {
+    ByteArrayOutputStream buf = new ByteArrayOutputStream(1 << 10);
+    try (DataOutputStream dos = new DataOutputStream(buf)) {
+      writeString(dos, externalKey);
+      dos.writeLong(entry.getRequestDate().getTime());
+      dos.writeLong(entry.getResponseDate().getTime());
+      writeString(dos, entry.getRequestMethod());
+
+      StatusLine statusLine = entry.getStatusLine();
+      ProtocolVersion protocolVersion = statusLine.getProtocolVersion();
+      writeString(dos, protocolVersion.getProtocol());
+      dos.writeInt(protocolVersion.getMajor());
+      dos.writeInt(protocolVersion.getMinor());
+      dos.writeInt(statusLine.getStatusCode());
+      writeString(dos, statusLine.getReasonPhrase());
+
+      Header[] headers = entry.getAllHeaders();
+      dos.writeInt(headers.length);
+      for (Header h : headers) {
+        writeString(dos, h.getName());
+        writeString(dos, h.getValue());
+      }
+
+      Map<String, String> variantMap = entry.getVariantMap();
+      dos.writeInt(variantMap.size());
+      for (Map.Entry<String, String> v : variantMap.entrySet()) {
+        writeString(dos, v.getKey());
+        writeString(dos, v.getValue());
+      }
+
+      dos.writeLong(bodyLength);
+    }
+    return buf.toByteArray();
+  }
+
+
+  /**
+   * Reads a cache entry in the format written by
+   * {@link #serialize(String, HttpCacheEntry, OutputStream)}. If the input
+   * stream is a {@link FileInputStream} and the body is at least
+   * {@link #MEMORY_MAP_THRESHOLD} bytes long, it's memory-mapped instead of
+   * read onto the heap.
+   *
+   * @param externalKey  The key of the cache entry
+   * @param magic  The first 4 bytes of the stream
+   * @param is  The remainder of the stream; it's not buffered to keep track
+   *   of the body offset
+   * @return  The cache entry; or {@code null} if it belongs to a different
+   *   key
+   * @throws IOException  If the stream throws or has an unknown format
+   */
+  protected static HttpCacheEntry deserialize( String externalKey,
+    int magic, InputStream is )
+    throws IOException
+  {
+    DataInputStream dis = new DataInputStream(is);
+    if (magic != FORMAT_MAGIC)
+      throw new IOException(String.format(
+        "Unknown cache entry format: %08x", magic));
+    int version = dis.readInt();
+    if (version != FORMAT_VERSION)
+      throw new IOException("Unknown cache entry format version: " + version);
+
+    byte[] header = new byte[dis.readInt()];
+    dis.readFully(header);
+    dis = new DataInputStream(new ByteArrayInputStream(header));
+
+    if (!externalKey.equals(readString(dis)))
+      return null;
+
+    Date requestDate = new Date(dis.readLong()),
+      responseDate = new Date(dis.readLong());
+    String requestMethod = readString(dis);
+
+    String protocol = readString(dis);
+    int major = dis.readInt(), minor = dis.readInt();
+    ProtocolVersion protocolVersion =
+      HttpVersion.HTTP.equals(protocol) ?
+        HttpVersion.HTTP_1_1.forVersion(major, minor) :
+        new ProtocolVersion(protocol, major, minor);
+    StatusLine statusLine = new BasicStatusLine(
+      protocolVersion, dis.readInt(), readString(dis));
+
+    Header[] headers = new Header[dis.readInt()];
+    for (int i = 0; i < headers.length; i++)
+      headers[i] = new BasicHeader(readString(dis), readString(dis));
+
+    int variantCount = dis.readInt();
+    Map<String, String> variantMap = new HashMap<>(variantCount * 2);
+    for (int i = 0; i < variantCount; i++)
+      variantMap.put(readString(dis), readString(dis));
+
+    long bodyLength = dis.readLong();
+
+    return new HttpCacheEntry(requestDate, responseDate, statusLine,
+      headers, (bodyLength >= 0) ? readBody(is, bodyLength) : null,
+      variantMap, requestMethod);
+  }
+
+
+  private static Resource readBody( InputStream is, long bodyLength )
+    throws IOException
+  {
+    ByteBuffer body;
+    if (bodyLength >= MEMORY_MAP_THRESHOLD && is instanceof FileInputStream)
+    {
+      FileChannel fc = ((FileInputStream) is).getChannel();
+      body = fc.map(FileChannel.MapMode.READ_ONLY, fc.position(), bodyLength);
+    }
+    else
+    {
+      if (bodyLength > Integer.MAX_VALUE)
+        throw new IOException("Cache entry body too large: " + bodyLength);
+      byte[] a = new byte[(int) bodyLength];
+      IOUtils.readFully(is, a);
+      body = ByteBuffer.wrap(a);
+    }
+    return new ByteBufferResource(body);
+  }
+
+
+  private static void writeString( DataOutput out, String s )
+    throws IOException
+  {
+    if (s != null) {
+      byte[] a = s.getBytes(StandardCharsets.UTF_8);
+      out.writeInt(a.length);
+      out.write(a);
+    } else {
+      out.writeInt(-1);
+    }
+  }
+
+
+  private static String readString( DataInput in ) throws IOException
+  {
+    int len = in.readInt();
+    if (len < 0)
+      return null;
+    byte[] a = new byte[len];
+    in.readFully(a);
+    return new String(a, StandardCharsets.UTF_8);
+  }
+
+
+  private static int readMagic( InputStream is ) throws IOException
+  {
+    return new DataInputStream(is).readInt();
+  }
+
+
+  private static boolean isLegacyFormat( int magic )
+  {
+    return (magic >>> 16) == (ObjectStreamConstants.STREAM_MAGIC & 0xffff);
+  }
+
+
+  private static InputStream withMagic( int magic, InputStream is )
+  {
+    return new SequenceInputStream(new ByteArrayInputStream(new byte[]{
+        (byte)(magic >>> 24), (byte)(magic >>> 16),
+        (byte)(magic >>> 8), (byte) magic
+      }), is);
+  }
+
+
+  /**
+   * Writes a cache entry in the legacy format through Java object
+   * serialization.
+   *
+   * @param externalKey  The key of the cache entry
+   * @param entry  The cache entry
+   * @param os  The output stream; it's closed afterwards
+   * @throws IOException  If the stream throws
+   * @deprecated  Use {@link #serialize(String, HttpCacheEntry, OutputStream)}
+   */
+  @Deprecated
+  protected static void serializeLegacy( String externalKey,
+    HttpCacheEntry entry, OutputStream os )
+    throws IOException
   {
     if (!(os instanceof BufferedOutputStream))
       os = new BufferedOutputStream(os);
@@ -185,7 +499,7 @@ protected static void serialize( String externalKey, HttpCacheEntry entry,
   }
 
 
-  protected static HttpCacheEntry deserialize( String externalKey,
+  protected static HttpCacheEntry deserializeLegacy( String externalKey,
     InputStream is )
     throws IOException
   {
@@ -235,13 +549,13 @@ public void flush() throws IOException
   public void close() throws IOException
   {
     diskCache.close();
-    keyMap.clear();
+    keyMap.invalidateAll();
   }
 
 
   public void delete() throws IOException
   {
     diskCache.delete();
-    keyMap.clear();
+    keyMap.invalidateAll();
   }
 }
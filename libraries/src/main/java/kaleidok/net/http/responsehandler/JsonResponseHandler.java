@@ -1,6 +1,7 @@
 package kaleidok.net.http.responsehandler;
 
 import com.google.gson.Gson;
+import kaleidok.google.gson.JsonStreams;
 import kaleidok.google.gson.TypeAdapterManager;
 import org.apache.http.HttpResponse;
 import org.apache.http.client.ResponseHandler;
@@ -47,7 +48,7 @@ public Gson getGson()
   public T handleResponse( HttpResponse httpResponse ) throws IOException
   {
     try (Reader in = getReader(httpResponse)) {
-      return getGson().fromJson(in, targetClass);
+      return JsonStreams.read(in, getGson().getAdapter(targetClass));
     }
   }
 }
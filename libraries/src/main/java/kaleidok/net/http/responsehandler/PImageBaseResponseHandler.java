@@ -1,12 +1,14 @@
 package kaleidok.net.http.responsehandler;
 
 
+import kaleidok.processing.image.ImageResizeMode;
 import kaleidok.processing.image.PImages;
 
 import javax.imageio.ImageReadParam;
 import javax.imageio.ImageReader;
-import javax.imageio.ImageTypeSpecifier;
+import java.awt.Dimension;
 import java.io.IOException;
+import java.util.function.Supplier;
 
 
 public class PImageBaseResponseHandler extends ImageResponseHandler
@@ -15,21 +17,43 @@ public class PImageBaseResponseHandler extends ImageResponseHandler
     new PImageBaseResponseHandler();
 
 
-  protected PImageBaseResponseHandler() { }
+  private final Supplier<? extends Dimension> targetSize;
+
+  private final ImageResizeMode resizeMode;
+
+
+  protected PImageBaseResponseHandler()
+  {
+    this(null, null);
+  }
+
+
+  /**
+   * Constructs a response handler that subsamples decoded images to the
+   * size of the area they are going to be drawn into.
+   *
+   * @param targetSize  Supplies the size of the drawing area at the time of
+   *   decoding; may be {@code null} or supply {@code null} to disable
+   *   subsampling
+   * @param resizeMode  The resize mode to draw the images with; may be
+   *   {@code null} to keep the entire image
+   * @see PImages#getReadParam(ImageReader, int, int, int, ImageResizeMode)
+   */
+  public PImageBaseResponseHandler( Supplier<? extends Dimension> targetSize,
+    ImageResizeMode resizeMode )
+  {
+    this.targetSize = targetSize;
+    this.resizeMode = resizeMode;
+  }
 
 
   @Override
   protected ImageReadParam getReadParam( ImageReader r, int imageIndex )
     throws IOException
   {
-    ImageTypeSpecifier type =
-      PImages.getPreferredType(r.getImageTypes(imageIndex));
-    if (type != null)
-    {
-      ImageReadParam param = r.getDefaultReadParam();
-      param.setDestinationType(type);
-      return param;
-    }
-    return null;
+    Dimension size = (targetSize != null) ? targetSize.get() : null;
+    return (size != null) ?
+      PImages.getReadParam(r, imageIndex, size.width, size.height, resizeMode) :
+      PImages.getReadParam(r, imageIndex, 0, 0, null);
   }
 }
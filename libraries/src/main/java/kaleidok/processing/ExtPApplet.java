@@ -18,14 +18,13 @@
 import kaleidok.processing.event.KeyEventSupport;
 import kaleidok.processing.event.KeyStroke;
 import kaleidok.processing.export.ImageSaveSet;
-import kaleidok.processing.image.ImageIO;
+import kaleidok.processing.export.ScreenshotWriter;
 import kaleidok.processing.image.ImageResizeMode;
 import kaleidok.processing.image.PImageFutures;
 import kaleidok.processing.support.FrameRateSwitcherProperty;
 import kaleidok.processing.support.GeometryPreferences;
 import kaleidok.util.Arrays;
 import kaleidok.util.Reflection;
-import kaleidok.util.Strings;
 import kaleidok.util.prefs.DefaultValueParser;
 import kaleidok.util.Threads;
 import kaleidok.util.concurrent.GroupedThreadFactory;
@@ -38,13 +37,10 @@
 
 import javax.annotation.Nullable;
 import javax.annotation.OverridingMethodsMustInvokeSuper;
-import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.function.Consumer;
@@ -54,7 +50,6 @@
 
 import static org.apache.commons.lang3.ArrayUtils.EMPTY_CLASS_ARRAY;
 import static org.apache.commons.lang3.ArrayUtils.EMPTY_OBJECT_ARRAY;
-import static org.apache.commons.lang3.ArrayUtils.EMPTY_STRING_ARRAY;
 
 
 /**
@@ -68,6 +63,10 @@ public class ExtPApplet extends PApplet
 
   protected ExecutorService executorService;
 
+  private ScreenshotWriter screenshotWriter = null;
+
+  private volatile FrameProfiler frameProfiler = null;
+
   private volatile CountDownLatch showSurfaceLatch = new CountDownLatch(1);
 
   @SuppressWarnings({ "unchecked", "rawtypes" })
@@ -264,6 +263,11 @@ public void dispose()
     saveFilenames.clear();
     if (executorService != null)
       executorService.shutdownNow();
+    synchronized (this)
+    {
+      if (screenshotWriter != null)
+        screenshotWriter.shutdown();
+    }
     super.dispose();
   }
 
@@ -376,41 +380,69 @@ public void save( String filename, boolean fullFrame )
   }
 
 
+  /**
+   * Copies the current frame and saves it on a background thread through
+   * the {@link #getScreenshotWriter() screenshot writer}, so the next frame
+   * can neither overwrite the pixels while they are encoded nor wait for
+   * the encoder.
+   */
   @Override
   public void save( final String filename )
   {
     loadPixels();
-    thread(() ->
+    try
     {
-      switch (g.format)
-      {
-      case RGB:
-      case ARGB:
-        if (Strings.endsWith(filename, ".bmp", true))
-        {
-          Path filePath = Paths.get(savePath(filename), EMPTY_STRING_ARRAY);
-          try
-          {
-            ImageIO.saveBmp32(filePath, width, height, pixels, 0).force();
-            break;
-          }
-          catch (UnsupportedOperationException ignored)
-          {
-            // try again with default code path
-          }
-          catch (IOException ex)
-          {
-            Threads.handleUncaught(ex);
-            break;
-          }
-        }
-        // fall through
+      getScreenshotWriter().submit(
+        savePath(filename), pixels, pixelWidth, pixelHeight, g.format);
+    }
+    catch (InterruptedException ex)
+    {
+      Thread.currentThread().interrupt();
+    }
+  }
 
-      default:
-        super.save(filename);
-        break;
-      }
-    });
+
+  /**
+   * @return  The frame profiler of this sketch; {@code null} unless one was
+   *   {@link #setFrameProfiler(FrameProfiler) set}
+   */
+  public FrameProfiler getFrameProfiler()
+  {
+    return frameProfiler;
+  }
+
+
+  public void setFrameProfiler( FrameProfiler frameProfiler )
+  {
+    this.frameProfiler = frameProfiler;
+  }
+
+
+  /**
+   * Records the durations of the plugin hook phases of each frame with the
+   * {@link #getFrameProfiler() frame profiler}, if any.
+   */
+  @Override
+  protected void handleMethods( String methodName )
+  {
+    final FrameProfiler frameProfiler = this.frameProfiler;
+    if (frameProfiler == null)
+    {
+      super.handleMethods(methodName);
+      return;
+    }
+
+    frameProfiler.beforeHooks(methodName);
+    super.handleMethods(methodName);
+    frameProfiler.afterHooks(methodName);
+  }
+
+
+  public synchronized ScreenshotWriter getScreenshotWriter()
+  {
+    if (screenshotWriter == null)
+      screenshotWriter = new ScreenshotWriter();
+    return screenshotWriter;
   }
 
 
@@ -0,0 +1,291 @@
+package kaleidok.processing;
+
+import javafx.beans.property.IntegerProperty;
+import javafx.scene.control.SpinnerValueFactory.IntegerSpinnerValueFactory;
+import kaleidok.javafx.beans.property.AspectedIntegerProperty;
+import kaleidok.javafx.beans.property.adapter.preference.PreferenceBean;
+import kaleidok.javafx.beans.property.adapter.preference.PropertyPreferencesAdapter;
+import kaleidok.javafx.beans.property.aspect.PropertyPreferencesAdapterTag;
+import kaleidok.javafx.beans.property.aspect.bounded.BoundedIntegerTag;
+import kaleidok.util.LatencyHistogram;
+import processing.core.PApplet;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+import static kaleidok.util.Math.clamp;
+import static kaleidok.util.logging.LoggingUtils.logThrown;
+
+
+/**
+ * Records the durations of the phases of each frame of a Processing sketch
+ * in latency histograms, shows their percentiles in an overlay and
+ * periodically appends them to a file.
+ * <p>
+ * {@link ExtPApplet} records its plugin hook phases ({@link #PRE_HOOKS},
+ * {@link #DRAW}, {@link #DRAW_HOOKS}, {@link #END_DRAW},
+ * {@link #POST_HOOKS}) as well as the {@link #FRAME} interval; sketches may
+ * record further phases with {@link #record(String, long)}. All methods
+ * except {@link #getDumpPath()} and {@link #setDumpPath(Path)} must be
+ * called on the animation thread.
+ */
+public class FrameProfiler extends Plugin<ExtPApplet>
+  implements PreferenceBean
+{
+  private static final Logger logger =
+    Logger.getLogger(FrameProfiler.class.getName());
+
+  public static final String
+    FRAME = "frame",
+    PRE_HOOKS = "pre hooks",
+    DRAW = "draw",
+    DRAW_HOOKS = "draw hooks",
+    END_DRAW = "end draw",
+    POST_HOOKS = "post hooks";
+
+  public static long DEFAULT_DUMP_INTERVAL = TimeUnit.SECONDS.toNanos(10);
+
+
+  private final AspectedIntegerProperty overlayEnabled;
+
+  public float offsetX = 4, offsetY = 4, textSize = 8;
+
+  public int textColor = 0xff00ff00;
+
+  public long dumpInterval = DEFAULT_DUMP_INTERVAL;
+
+  private volatile Path dumpPath = null;
+
+  private final Map<String, LatencyHistogram> histograms =
+    new LinkedHashMap<>();
+
+  private long lastPhaseEnd = 0, lastFrameStart = 0, lastDumpTime = 0;
+
+
+  public FrameProfiler( ExtPApplet sketch )
+  {
+    this(sketch, 0);
+  }
+
+
+  public FrameProfiler( ExtPApplet sketch, int overlayEnabled )
+  {
+    super(sketch);
+
+    for (String phase: new String[]{
+      FRAME, PRE_HOOKS, DRAW, DRAW_HOOKS, END_DRAW, POST_HOOKS })
+    {
+      histograms.put(phase, new LatencyHistogram());
+    }
+
+    IntegerSpinnerValueFactory bounds = new IntegerSpinnerValueFactory(0, 1);
+    this.overlayEnabled =
+      new AspectedIntegerProperty(this, "overlay enabled",
+        clamp(overlayEnabled, bounds.getMin(), bounds.getMax()));
+    this.overlayEnabled.addAspect(
+      BoundedIntegerTag.getIntegerInstance(), bounds);
+    this.overlayEnabled.addAspect(PropertyPreferencesAdapterTag.getInstance());
+  }
+
+
+  /**
+   * Records the duration of a phase that ended now.
+   *
+   * @param phase  The name of the phase
+   * @param startTime  The {@link System#nanoTime()} at the start of the phase
+   * @return  The current {@link System#nanoTime()}
+   */
+  public long record( String phase, long startTime )
+  {
+    long now = System.nanoTime();
+    record(phase, startTime, now);
+    return now;
+  }
+
+
+  /**
+   * Records the duration of a phase or the age of some data.
+   *
+   * @param phase  The name of the phase
+   * @param startTime  The {@link System#nanoTime()} at the start of the phase
+   * @param endTime  The {@link System#nanoTime()} at the end of the phase
+   */
+  public void record( String phase, long startTime, long endTime )
+  {
+    histograms.computeIfAbsent(phase, (k) -> new LatencyHistogram())
+      .record(endTime - startTime);
+  }
+
+
+  /**
+   * Called by {@link ExtPApplet} around the invocation of plugin hooks.
+   */
+  void beforeHooks( String hook )
+  {
+    long now = System.nanoTime();
+    switch (hook)
+    {
+    case "pre":
+      if (lastFrameStart != 0)
+        histograms.get(FRAME).record(now - lastFrameStart);
+      lastFrameStart = now;
+      break;
+
+    case "draw":
+      histograms.get(DRAW).record(now - lastPhaseEnd);
+      break;
+
+    case "post":
+      histograms.get(END_DRAW).record(now - lastPhaseEnd);
+      break;
+    }
+    lastPhaseEnd = now;
+  }
+
+
+  /**
+   * Called by {@link ExtPApplet} after the invocation of plugin hooks.
+   */
+  void afterHooks( String hook )
+  {
+    String phase;
+    switch (hook)
+    {
+    case "pre":
+      phase = PRE_HOOKS;
+      break;
+
+    case "draw":
+      phase = DRAW_HOOKS;
+      break;
+
+    case "post":
+      phase = POST_HOOKS;
+      break;
+
+    default:
+      return;
+    }
+    lastPhaseEnd = record(phase, lastPhaseEnd);
+
+    if (hook.equals("post"))
+      dumpIfDue(lastPhaseEnd);
+  }
+
+
+  @Override
+  public void draw()
+  {
+    if (overlayEnabled.get() <= 0)
+      return;
+
+    final PApplet p = this.p;
+    p.textSize(textSize);
+    p.fill(textColor);
+    float y = textSize + offsetY;
+    p.text("phase: p50 / p99 / max [ms]", offsetX, y);
+    for (Map.Entry<String, LatencyHistogram> e: histograms.entrySet())
+    {
+      LatencyHistogram h = e.getValue();
+      if (h.getTotalCount() != 0)
+      {
+        y += textSize;
+        p.text(String.format("%s: %.1f / %.1f / %.1f", e.getKey(),
+          h.getValueAtPercentile(50) * 1e-6,
+          h.getValueAtPercentile(99) * 1e-6, h.getMax() * 1e-6),
+          offsetX, y);
+      }
+    }
+  }
+
+
+  private void dumpIfDue( long now )
+  {
+    if (lastDumpTime == 0)
+    {
+      lastDumpTime = now;
+    }
+    else if (now - lastDumpTime >= dumpInterval)
+    {
+      lastDumpTime = now;
+      Path dumpPath = this.dumpPath;
+      if (dumpPath != null)
+      {
+        final List<String> lines =
+          LatencyHistogram.formatLines(new Date(), histograms);
+        p.thread(() -> appendLines(dumpPath, lines));
+      }
+      histograms.values().forEach(LatencyHistogram::reset);
+    }
+  }
+
+
+  private static void appendLines( Path path, List<String> lines )
+  {
+    try
+    {
+      LatencyHistogram.appendLines(path, "phase", lines);
+    }
+    catch (IOException ex)
+    {
+      logThrown(logger, Level.WARNING,
+        "Couldn't write frame profile to \"{0}\"", ex, path);
+    }
+  }
+
+
+  /**
+   * @return  The histograms of all phases recorded since the last dump, in
+   *   the order of their first occurrence; the map and the histograms must
+   *   not be modified
+   */
+  public Map<String, LatencyHistogram> getHistograms()
+  {
+    return histograms;
+  }
+
+
+  public Path getDumpPath()
+  {
+    return dumpPath;
+  }
+
+  /**
+   * @param dumpPath  The path of a file to append the histograms to every
+   *   {@link #dumpInterval} nanoseconds; {@code null} to disable dumps
+   */
+  public void setDumpPath( Path dumpPath )
+  {
+    this.dumpPath = dumpPath;
+  }
+
+
+  @Override
+  public String getName()
+  {
+    return "frame profiler";
+  }
+
+
+  @Override
+  public Stream<? extends PropertyPreferencesAdapter<?, ?>>
+  getPreferenceAdapters()
+  {
+    return Stream.of(overlayEnabled.getAspect(
+      PropertyPreferencesAdapterTag.getWritableInstance()));
+  }
+
+
+  public IntegerProperty overlayEnabledProperty()
+  {
+    return overlayEnabled;
+  }
+}
@@ -115,6 +115,16 @@ public void draw()
   }
 
 
+  /**
+   * @return  The vertical offset of the bottom of the text lines of this
+   *   display, e. g. to place other overlays below them
+   */
+  public float getBottomOffset()
+  {
+    return offsetY + 2 * textSize;
+  }
+
+
   @Override
   public String getName()
   {
@@ -0,0 +1,251 @@
+package kaleidok.processing.export;
+
+import kaleidok.util.Threads;
+import kaleidok.util.concurrent.GroupedThreadFactory;
+import processing.core.PApplet;
+import processing.core.PGraphics;
+
+import javax.annotation.OverridingMethodsMustInvokeSuper;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.apache.commons.lang3.ArrayUtils.EMPTY_INT_ARRAY;
+
+
+/**
+ * A frame recorder that copies the pixels of recorded frames and hands them
+ * to a dedicated writer thread, so that the animation thread doesn't pay for
+ * the serialization of its output.
+ * <p>
+ * The number of frames that may be pending at the same time is bounded by
+ * a pool of pixel buffers. Once all of them are in use, the animation
+ * thread waits for the writer to catch up.
+ */
+public abstract class AsyncFrameRecorder extends AbstractFrameRecorder
+{
+  public static int DEFAULT_MAX_PENDING_FRAMES = 4;
+
+
+  /**
+   * The pixels and associated data of a recorded frame.
+   */
+  protected static final class RasterFrame
+  {
+    public final int[] pixels;
+
+    /**
+     * The size of the sketch; may differ from the size of the pixel data
+     * with a pixel density other than 1
+     */
+    public final int width, height;
+
+    public final int pixelWidth, pixelHeight, frameCount;
+
+    /**
+     * The result of {@link #captureFrameContext()} for this frame
+     */
+    public final Object context;
+
+
+    RasterFrame( int[] pixels, int width, int height, int pixelWidth,
+      int pixelHeight, int frameCount, Object context )
+    {
+      this.pixels = pixels;
+      this.width = width;
+      this.height = height;
+      this.pixelWidth = pixelWidth;
+      this.pixelHeight = pixelHeight;
+      this.frameCount = frameCount;
+      this.context = context;
+    }
+  }
+
+
+  private final BlockingQueue<int[]> bufferPool;
+
+  private final ExecutorService writerExecutor;
+
+  private final AtomicInteger pendingFrameCount = new AtomicInteger();
+
+  private volatile long lastWriteTime = 0;
+
+
+  protected AsyncFrameRecorder( PApplet sketch )
+  {
+    this(sketch, DEFAULT_MAX_PENDING_FRAMES);
+  }
+
+
+  protected AsyncFrameRecorder( PApplet sketch, int maxPendingFrames )
+  {
+    super(sketch);
+
+    if (maxPendingFrames <= 0)
+    {
+      throw new IllegalArgumentException(
+        "Non-positive maximum pending frame count: " + maxPendingFrames);
+    }
+
+    bufferPool = new ArrayBlockingQueue<>(maxPendingFrames);
+    for (int i = 0; i < maxPendingFrames; i++)
+      bufferPool.add(EMPTY_INT_ARRAY);
+    writerExecutor = Executors.newSingleThreadExecutor(
+      new GroupedThreadFactory(getClass().getSimpleName() + " writer",
+        false, false));
+  }
+
+
+  @Override
+  protected void doEndRecord()
+  {
+    final PGraphics g = p.g;
+    int[] buffer;
+    try
+    {
+      buffer = bufferPool.take();
+    }
+    catch (InterruptedException ex)
+    {
+      Thread.currentThread().interrupt();
+      return;
+    }
+
+    g.loadPixels();
+    final int len = g.pixelWidth * g.pixelHeight;
+    if (buffer.length != len)
+      buffer = new int[len];
+    System.arraycopy(g.pixels, 0, buffer, 0, len);
+
+    final RasterFrame frame = new RasterFrame(
+      buffer, g.width, g.height, g.pixelWidth, g.pixelHeight, p.frameCount,
+      captureFrameContext());
+    pendingFrameCount.incrementAndGet();
+    try
+    {
+      writerExecutor.execute(() -> write(frame));
+    }
+    catch (RejectedExecutionException ex)
+    {
+      pendingFrameCount.decrementAndGet();
+      bufferPool.offer(buffer);
+      throw ex;
+    }
+  }
+
+
+  private void write( RasterFrame frame )
+  {
+    long start = System.nanoTime();
+    try
+    {
+      writeFrame(frame);
+    }
+    catch (Exception ex)
+    {
+      Threads.handleUncaught(ex);
+    }
+    finally
+    {
+      bufferPool.offer(frame.pixels);
+      pendingFrameCount.decrementAndGet();
+      lastWriteTime = System.nanoTime() - start;
+    }
+  }
+
+
+  /**
+   * Captures additional state on the animation thread that the writer
+   * thread needs to write the current frame.
+   *
+   * @return  Some frame context object or {@code null}
+   * @see RasterFrame#context
+   */
+  protected Object captureFrameContext()
+  {
+    return null;
+  }
+
+
+  /**
+   * Writes a recorded frame. This method is called on the writer thread;
+   * the pixel buffer is reused once it returns.
+   *
+   * @param frame  The recorded frame
+   * @throws Exception  if the frame couldn't be written
+   */
+  protected abstract void writeFrame( RasterFrame frame ) throws Exception;
+
+
+  /**
+   * Waits until all pending frames are written.
+   *
+   * @throws InterruptedException  if interrupted while waiting
+   */
+  public void flush() throws InterruptedException
+  {
+    runOnWriterThread(() -> { });
+  }
+
+
+  /**
+   * Runs an action on the writer thread after all pending frames, and waits
+   * for it to finish. Subclasses may use this to access their output
+   * safely from other threads. If the writer has already been shut down,
+   * the action runs on the calling thread.
+   *
+   * @param action  An action
+   * @throws InterruptedException  if interrupted while waiting
+   */
+  protected void runOnWriterThread( Runnable action )
+    throws InterruptedException
+  {
+    try
+    {
+      writerExecutor.submit(action).get();
+    }
+    catch (RejectedExecutionException ex)
+    {
+      action.run();
+    }
+    catch (ExecutionException ex)
+    {
+      Threads.handleUncaught(ex.getCause());
+    }
+  }
+
+
+  /**
+   * @return  The number of frames that wait to be written or are being
+   *   written
+   */
+  public int getPendingFrameCount()
+  {
+    return pendingFrameCount.get();
+  }
+
+
+  /**
+   * @return  The duration of the most recent frame write in nanoseconds
+   */
+  public long getLastWriteTime()
+  {
+    return lastWriteTime;
+  }
+
+
+  /**
+   * Stops the writer thread once all pending frames are written.
+   */
+  @Override
+  @OverridingMethodsMustInvokeSuper
+  public void dispose()
+  {
+    writerExecutor.shutdown();
+    super.dispose();
+  }
+}
@@ -0,0 +1,359 @@
+package kaleidok.processing.export;
+
+import kaleidok.processing.image.ImageIO;
+import kaleidok.util.Strings;
+import kaleidok.util.concurrent.GroupedThreadFactory;
+import processing.core.PConstants;
+import processing.core.PImage;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static kaleidok.util.logging.LoggingUtils.logThrown;
+import static org.apache.commons.lang3.ArrayUtils.EMPTY_INT_ARRAY;
+import static org.apache.commons.lang3.ArrayUtils.EMPTY_STRING_ARRAY;
+
+
+/**
+ * Saves screenshots on a background thread.
+ * <p>
+ * {@link #submit(String, int[], int, int, int)} copies the given pixels into
+ * a buffer from a fixed-size pool, so that the caller may overwrite them
+ * immediately afterwards, and queues the copy for encoding. The pool size
+ * bounds the number of pending screenshots; if all buffers are in use, the
+ * {@link OverflowPolicy} decides whether the screenshot is dropped or
+ * whether the caller waits for a buffer to become available.
+ * <p>
+ * Instances of this class are thread-safe.
+ */
+public class ScreenshotWriter
+{
+  private static final Logger logger =
+    Logger.getLogger(ScreenshotWriter.class.getName());
+
+  public enum OverflowPolicy
+  {
+    /**
+     * Drop screenshots that arrive while all buffers are in use.
+     */
+    DROP,
+
+    /**
+     * Block the submitting thread until a buffer becomes available.
+     */
+    BLOCK
+  }
+
+
+  public static int DEFAULT_BUFFER_COUNT = 3;
+
+  public static OverflowPolicy DEFAULT_OVERFLOW_POLICY = OverflowPolicy.DROP;
+
+
+  private final BlockingQueue<int[]> bufferPool;
+
+  private final ExecutorService executor;
+
+  private volatile OverflowPolicy overflowPolicy;
+
+  private final AtomicInteger queueDepth = new AtomicInteger();
+
+  private final AtomicLong
+    submittedCount = new AtomicLong(),
+    droppedCount = new AtomicLong(),
+    failedCount = new AtomicLong(),
+    encodedCount = new AtomicLong(),
+    totalEncodeTime = new AtomicLong(),
+    maxEncodeTime = new AtomicLong();
+
+  private volatile long lastEncodeTime = 0, lastCopyTime = 0;
+
+
+  public ScreenshotWriter()
+  {
+    this(DEFAULT_BUFFER_COUNT, DEFAULT_OVERFLOW_POLICY);
+  }
+
+
+  /**
+   * @param bufferCount  The number of pixel buffers and thus the maximum
+   *   number of pending screenshots
+   * @param overflowPolicy  The behaviour when all buffers are in use
+   */
+  public ScreenshotWriter( int bufferCount, OverflowPolicy overflowPolicy )
+  {
+    if (bufferCount <= 0)
+    {
+      throw new IllegalArgumentException(
+        "Non-positive buffer count: " + bufferCount);
+    }
+
+    bufferPool = new ArrayBlockingQueue<>(bufferCount);
+    for (int i = 0; i < bufferCount; i++)
+      bufferPool.add(EMPTY_INT_ARRAY);
+    this.overflowPolicy = Objects.requireNonNull(overflowPolicy);
+    executor = Executors.newSingleThreadExecutor(
+      new GroupedThreadFactory("Screenshot writer", false, false));
+  }
+
+
+  /**
+   * Copies the pixels of a frame and queues them for encoding.
+   *
+   * @param path  The absolute path of the image file; files ending in
+   *   {@code .bmp} are memory-mapped and written directly, all others are
+   *   encoded by {@link PImage#save(String)}
+   * @param pixels  The pixel data in row-major order
+   * @param width  The frame width in pixels
+   * @param height  The frame height in pixels
+   * @param format  The Processing image format of the pixel data
+   * @return  Whether the screenshot was queued; {@code false} if it was
+   *   dropped according to the overflow policy
+   * @throws InterruptedException  if the caller was interrupted while
+   *   waiting for a buffer
+   */
+  public boolean submit( String path, int[] pixels, int width, int height,
+    int format )
+    throws InterruptedException
+  {
+    Objects.requireNonNull(path, "path");
+    final int len = width * height;
+    if (width <= 0 || height <= 0 || len > pixels.length)
+    {
+      throw new IllegalArgumentException(String.format(
+        "Illegal frame size %d×%d for %d pixels",
+        width, height, pixels.length));
+    }
+
+    submittedCount.incrementAndGet();
+    int[] buffer = bufferPool.poll();
+    if (buffer == null)
+    {
+      if (overflowPolicy == OverflowPolicy.DROP)
+      {
+        droppedCount.incrementAndGet();
+        logger.log(Level.FINE,
+          "Dropped screenshot \"{0}\" with {1} screenshots pending",
+          new Object[]{ path, queueDepth.get() });
+        return false;
+      }
+      buffer = bufferPool.take();
+    }
+
+    long copyStart = System.nanoTime();
+    if (buffer.length != len)
+      buffer = new int[len];
+    System.arraycopy(pixels, 0, buffer, 0, len);
+    lastCopyTime = System.nanoTime() - copyStart;
+
+    final int[] frame = buffer;
+    queueDepth.incrementAndGet();
+    try
+    {
+      executor.execute(() -> encode(path, frame, width, height, format));
+    }
+    catch (RuntimeException ex)
+    {
+      queueDepth.decrementAndGet();
+      bufferPool.offer(frame);
+      throw ex;
+    }
+    return true;
+  }
+
+
+  private void encode( String path, int[] pixels, int width, int height,
+    int format )
+  {
+    long start = System.nanoTime();
+    try
+    {
+      if (!encode(Paths.get(path, EMPTY_STRING_ARRAY), pixels, width, height,
+        format))
+      {
+        failedCount.incrementAndGet();
+        return;
+      }
+    }
+    catch (IOException | RuntimeException ex)
+    {
+      failedCount.incrementAndGet();
+      logThrown(logger, Level.WARNING, "Couldn't save screenshot \"{0}\"",
+        ex, path);
+      return;
+    }
+    finally
+    {
+      bufferPool.offer(pixels);
+      queueDepth.decrementAndGet();
+    }
+
+    long duration = System.nanoTime() - start;
+    lastEncodeTime = duration;
+    totalEncodeTime.addAndGet(duration);
+    maxEncodeTime.accumulateAndGet(duration, Math::max);
+    encodedCount.incrementAndGet();
+    logger.log(Level.FINE, "Saved screenshot \"{0}\" in {1} ms",
+      new Object[]{ path, duration * 1e-6 });
+  }
+
+
+  protected boolean encode( Path path, int[] pixels, int width, int height,
+    int format )
+    throws IOException
+  {
+    if ((format == PConstants.RGB || format == PConstants.ARGB) &&
+      Strings.endsWith(path.toString(), ".bmp", true))
+    {
+      try
+      {
+        ImageIO.saveBmp32(path, width, height, pixels, 0).force();
+        return true;
+      }
+      catch (UnsupportedOperationException ignored)
+      {
+        // try again with default code path
+      }
+    }
+
+    PImage img = new PImage();
+    img.format = format;
+    img.width = img.pixelWidth = width;
+    img.height = img.pixelHeight = height;
+    img.pixels = pixels;
+    return img.save(path.toAbsolutePath().toString());
+  }
+
+
+  public OverflowPolicy getOverflowPolicy()
+  {
+    return overflowPolicy;
+  }
+
+  public void setOverflowPolicy( OverflowPolicy overflowPolicy )
+  {
+    this.overflowPolicy = Objects.requireNonNull(overflowPolicy);
+  }
+
+
+  /**
+   * @return  The number of screenshots waiting for or undergoing encoding
+   */
+  public int getQueueDepth()
+  {
+    return queueDepth.get();
+  }
+
+
+  public long getSubmittedCount()
+  {
+    return submittedCount.get();
+  }
+
+
+  public long getDroppedCount()
+  {
+    return droppedCount.get();
+  }
+
+
+  public long getFailedCount()
+  {
+    return failedCount.get();
+  }
+
+
+  public long getEncodedCount()
+  {
+    return encodedCount.get();
+  }
+
+
+  /**
+   * @return  The duration of the most recent successful encoding in
+   *   nanoseconds; 0 if there was none yet
+   */
+  public long getLastEncodeTime()
+  {
+    return lastEncodeTime;
+  }
+
+
+  /**
+   * @return  The maximum duration of all successful encodings in nanoseconds
+   */
+  public long getMaxEncodeTime()
+  {
+    return maxEncodeTime.get();
+  }
+
+
+  /**
+   * @return  The mean duration of all successful encodings in nanoseconds;
+   *   {@link Double#NaN} if there were none yet
+   */
+  public double getMeanEncodeTime()
+  {
+    return (double) totalEncodeTime.get() / encodedCount.get();
+  }
+
+
+  /**
+   * @return  The duration of the most recent pixel copy on the submitting
+   *   thread in nanoseconds
+   */
+  public long getLastCopyTime()
+  {
+    return lastCopyTime;
+  }
+
+
+  /**
+   * Stops accepting new screenshots and waits for the pending ones to be
+   * saved.
+   *
+   * @param timeout  The maximum time to wait
+   * @param unit  The unit of the timeout argument
+   * @return  Whether all pending screenshots were saved in time
+   * @throws InterruptedException  if interrupted while waiting
+   */
+  public boolean shutdown( long timeout, TimeUnit unit )
+    throws InterruptedException
+  {
+    executor.shutdown();
+    return executor.awaitTermination(timeout, unit);
+  }
+
+
+  /**
+   * Stops accepting new screenshots; pending ones are still saved in the
+   * background.
+   */
+  public void shutdown()
+  {
+    executor.shutdown();
+  }
+
+
+  @Override
+  public String toString()
+  {
+    return String.format(
+      "%s[%d pending, %d submitted, %d dropped, %d failed, %d encoded, " +
+        "mean %.1f ms, max %.1f ms]",
+      getClass().getSimpleName(), getQueueDepth(), getSubmittedCount(),
+      getDroppedCount(), getFailedCount(), getEncodedCount(),
+      getMeanEncodeTime() * 1e-6, getMaxEncodeTime() * 1e-6);
+  }
+}
@@ -0,0 +1,22 @@
+package kaleidok.processing.export.itext;
+
+import com.itextpdf.layout.Document;
+
+import java.util.function.Consumer;
+
+
+/**
+ * A page hook that depends on state of the animation thread, while pages
+ * are written on the writer thread of {@link ITextExport}.
+ */
+public interface CapturingPageHook extends Consumer<Document>
+{
+  /**
+   * Captures the state that this hook depends on. It is called on the
+   * animation thread whenever a frame is recorded.
+   *
+   * @return  A hook to apply to the page of the recorded frame on the writer
+   *   thread
+   */
+  Consumer<Document> capture();
+}
@@ -8,21 +8,30 @@
 import com.itextpdf.kernel.pdf.canvas.PdfCanvas;
 import com.itextpdf.layout.Document;
 import com.itextpdf.layout.element.AreaBreak;
-import kaleidok.processing.export.AbstractFrameRecorder;
+import kaleidok.processing.export.AsyncFrameRecorder;
 import processing.core.PApplet;
-import processing.core.PGraphics;
 
 import javax.annotation.OverridingMethodsMustInvokeSuper;
-import java.awt.Image;
+import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.function.Consumer;
 
 
-public class ITextExport extends AbstractFrameRecorder
+/**
+ * Records frames as pages of a PDF document. Pages are assembled and
+ * serialized on the writer thread; the document must not be accessed from
+ * other threads while frames are pending. Each frame goes to the document
+ * that was set when it was recorded.
+ */
+public class ITextExport extends AsyncFrameRecorder
 {
-  private Document doc;
+  private volatile Document doc;
 
+  /**
+   * Applied to the document after each page; if it is a
+   * {@link CapturingPageHook} its state is captured along with the frame.
+   */
   public Consumer<Document> pageHook = null;
 
 
@@ -32,9 +41,23 @@ public ITextExport( PApplet sketch )
   }
 
   public void close()
+  {
+    try
+    {
+      runOnWriterThread(this::closeImpl);
+    }
+    catch (InterruptedException ex)
+    {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+
+  private void closeImpl()
   {
     Document doc = this.doc;
-    if (doc != null && doc.getPdfDocument().getNumberOfPages() > 0)
+    if (doc != null && !doc.getPdfDocument().isClosed() &&
+      doc.getPdfDocument().getNumberOfPages() > 0)
     {
       System.out.println("Closing document...");
       doc.close();
@@ -64,40 +87,67 @@ public void setOutput( OutputStream ost )
   @Override
   public boolean isReady()
   {
+    Document doc = this.doc;
     return doc != null && !doc.getPdfDocument().isClosed();
   }
 
 
+  /**
+   * The document and the page hook at the time a frame was recorded
+   */
+  private static final class FrameContext
+  {
+    final Document doc;
+
+    final Consumer<Document> pageHook;
+
+
+    FrameContext( Document doc, Consumer<Document> pageHook )
+    {
+      this.doc = doc;
+      this.pageHook = pageHook;
+    }
+  }
+
+
+  @Override
+  protected Object captureFrameContext()
+  {
+    Consumer<Document> pageHook = this.pageHook;
+    return new FrameContext(doc,
+      (pageHook instanceof CapturingPageHook) ?
+        ((CapturingPageHook) pageHook).capture() :
+        pageHook);
+  }
+
+
   @SuppressWarnings("resource")
   @Override
-  protected void doEndRecord()
+  protected void writeFrame( RasterFrame frame ) throws IOException
   {
-    Document doc = this.doc;
-    if (doc != null)
+    FrameContext context = (FrameContext) frame.context;
+    Document doc = context.doc;
+    if (doc != null && !doc.getPdfDocument().isClosed())
     {
-      System.out.format("Exporting frame %d...%n", p.frameCount);
+      System.out.format("Exporting frame %d...%n", frame.frameCount);
 
-      PGraphics g = this.p.g;
       PdfDocument pdfDoc = doc.getPdfDocument();
-      PageSize pageSize = new PageSize(g.width, g.height);
+      PageSize pageSize = new PageSize(frame.width, frame.height);
       PdfPage page = (pdfDoc.getNumberOfPages() == 0) ?
         pdfDoc.addNewPage(pageSize) :
         doc.add(new AreaBreak(pageSize)).getPdfDocument().getLastPage();
       //doc.setMargins(0, 0, 0, 0);
 
-      PdfCanvas canvas = new PdfCanvas(page);
-      try
-      {
-        canvas.addImage(
-          ImageDataFactory.create((Image) g.getNative(), null), 0, 0, false);
-      } catch (IOException ex)
-      {
-        ex.printStackTrace();
-      }
-
-      Consumer<Document> pageHook = this.pageHook;
-      if (pageHook != null)
-        pageHook.accept(doc);
+      BufferedImage img = new BufferedImage(
+        frame.pixelWidth, frame.pixelHeight, BufferedImage.TYPE_INT_RGB);
+      img.getRaster().setDataElements(
+        0, 0, frame.pixelWidth, frame.pixelHeight, frame.pixels);
+      // scale images of high pixel densities to the page
+      new PdfCanvas(page).addImage(
+        ImageDataFactory.create(img, null), pageSize, false);
+
+      if (context.pageHook != null)
+        context.pageHook.accept(doc);
     }
   }
 
@@ -106,7 +156,7 @@ protected void doEndRecord()
   @OverridingMethodsMustInvokeSuper
   public void dispose()
   {
-    super.dispose();
     close();
+    super.dispose();
   }
 }
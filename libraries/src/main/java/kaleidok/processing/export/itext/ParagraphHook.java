@@ -8,7 +8,7 @@
 import java.util.function.Supplier;
 
 
-public class ParagraphHook implements Consumer<Document>
+public class ParagraphHook implements CapturingPageHook
 {
   public Supplier<String> textSource;
 
@@ -28,10 +28,24 @@ public ParagraphHook( Supplier<String> textSource )
   @Override
   public void accept( Document doc )
   {
-    String text = (textSource != null) ? textSource.get() : null;
+    addParagraph(doc, (textSource != null) ? textSource.get() : null);
+  }
+
+
+  @SuppressWarnings("resource")
+  private static void addParagraph( Document doc, String text )
+  {
     if (!StringUtils.isEmpty(text))
     {
       doc.add(new Paragraph(text));
     }
   }
+
+
+  @Override
+  public Consumer<Document> capture()
+  {
+    final String text = (textSource != null) ? textSource.get() : null;
+    return (doc) -> addParagraph(doc, text);
+  }
 }
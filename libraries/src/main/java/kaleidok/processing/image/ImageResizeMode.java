@@ -4,6 +4,8 @@
 import processing.core.PConstants;
 import processing.core.PImage;
 
+import java.awt.Rectangle;
+
 
 public enum ImageResizeMode
 {
@@ -16,6 +18,14 @@ public void drawImage( PApplet p, PImage img,
     {
       drawImageNormalTextureCoords(p, img, x1, y1, x2, y2, 0, 0, 1, 1);
     }
+
+
+    @Override
+    public Rectangle getSourceRegion( int srcWidth, int srcHeight,
+      float dstWidth, float dstHeight )
+    {
+      return new Rectangle(srcWidth, srcHeight);
+    }
   },
 
 
@@ -43,6 +53,27 @@ else if (imgRatio < drawRatio)
 
       drawImageNormalTextureCoords(p, img, x1, y1, x2, y2, u1, v1, u2, v2);
     }
+
+
+    @Override
+    public Rectangle getSourceRegion( int srcWidth, int srcHeight,
+      float dstWidth, float dstHeight )
+    {
+      Rectangle r = new Rectangle(srcWidth, srcHeight);
+      float drawRatio = dstWidth / dstHeight;
+      float imgRatio = (float) srcWidth / srcHeight;
+      if (imgRatio > drawRatio)
+      {
+        r.width = Math.max(Math.round(srcHeight * drawRatio), 1);
+        r.x = (srcWidth - r.width) / 2;
+      }
+      else if (imgRatio < drawRatio)
+      {
+        r.height = Math.max(Math.round(srcWidth / drawRatio), 1);
+        r.y = (srcHeight - r.height) / 2;
+      }
+      return r;
+    }
   };
 
 
@@ -50,6 +81,20 @@ public abstract void drawImage( PApplet p, PImage img,
     float x1, float y1, float x2, float y2 );
 
 
+  /**
+   * Computes the region of a source image that this resize mode displays
+   * when drawing it into an area of the given size.
+   *
+   * @param srcWidth  The width of the source image
+   * @param srcHeight  The height of the source image
+   * @param dstWidth  The width of the drawing area
+   * @param dstHeight  The height of the drawing area
+   * @return  The visible region of the source image
+   */
+  public abstract Rectangle getSourceRegion( int srcWidth, int srcHeight,
+    float dstWidth, float dstHeight );
+
+
   protected static void drawImageNormalTextureCoords( PApplet p, PImage img,
     float x1, float y1, float x2, float y2,
     float u1, float v1, float u2, float v2 )
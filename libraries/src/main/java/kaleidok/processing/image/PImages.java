@@ -1,5 +1,6 @@
 package kaleidok.processing.image;
 
+import kaleidok.image.filter.HSBImageFilter;
 import org.apache.commons.lang3.ArrayUtils;
 import processing.core.PImage;
 
@@ -9,6 +10,7 @@
 import javax.imageio.ImageTypeSpecifier;
 import javax.imageio.stream.ImageInputStream;
 import java.awt.Image;
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
 import java.awt.image.RGBImageFilter;
 import java.io.File;
@@ -18,6 +20,8 @@
 import java.net.URL;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import static java.awt.image.BufferedImage.*;
 import static org.apache.commons.lang3.ArrayUtils.INDEX_NOT_FOUND;
@@ -83,23 +87,102 @@ public static ImageTypeSpecifier getPreferredType(
   public static BufferedImage getSuitableImage( ImageReader r,
     ImageInputStream iis )
     throws IOException
+  {
+    return getSuitableImage(r, iis, 0, 0, null);
+  }
+
+
+  /**
+   * Like {@link #getSuitableImage(ImageReader, ImageInputStream)} but
+   * decodes only as many pixels as necessary to draw the result into an area
+   * of the given size.
+   *
+   * @param r  An image reader capable to decoding the image source
+   * @param iis  An image source
+   * @param targetWidth  The width of the drawing area; non-positive values
+   *   disable subsampling
+   * @param targetHeight  The height of the drawing area; non-positive values
+   *   disable subsampling
+   * @param resizeMode  The resize mode to draw the image with; may be
+   *   {@code null} to keep the entire image
+   * @return  An AWT image object suitable for conversion to a Processing image
+   *   object
+   * @throws IOException on I/O or decoder error
+   * @see #getReadParam(ImageReader, int, int, int, ImageResizeMode)
+   */
+  public static BufferedImage getSuitableImage( ImageReader r,
+    ImageInputStream iis, int targetWidth, int targetHeight,
+    ImageResizeMode resizeMode )
+    throws IOException
   {
     r.setInput(iis, true, true);
     int imageIndex = Math.max(r.getNumImages(false) - 1, 0);
+    return r.read(imageIndex,
+      getReadParam(r, imageIndex, targetWidth, targetHeight, resizeMode));
+  }
+
 
+  /**
+   * Constructs read parameters for the most suitable destination type (see
+   * {@link #getPreferredType(Iterator)}) that let the image reader decode
+   * only the region of the source image visible with the given resize mode
+   * and subsample it to (at least) the given target size. Since subsampling
+   * is restricted to integer factors, the decoded image may be up to twice
+   * as large as the target size in either dimension, but it is never smaller
+   * unless the source image itself is.
+   * <p>
+   * If the resize mode is {@code null}, the entire source image is decoded
+   * and subsampled uniformly, such that it covers the target area.
+   *
+   * @param r  An image reader with its input set
+   * @param imageIndex  The index of the image to read
+   * @param targetWidth  The width of the drawing area; non-positive values
+   *   disable subsampling
+   * @param targetHeight  The height of the drawing area; non-positive values
+   *   disable subsampling
+   * @param resizeMode  The resize mode to draw the image with; may be
+   *   {@code null}
+   * @return  A set of image read parameters
+   * @throws IOException on I/O or decoder error
+   */
+  public static ImageReadParam getReadParam( ImageReader r, int imageIndex,
+    int targetWidth, int targetHeight, ImageResizeMode resizeMode )
+    throws IOException
+  {
+    ImageReadParam param = r.getDefaultReadParam();
     ImageTypeSpecifier type = getPreferredType(r.getImageTypes(imageIndex));
-    ImageReadParam param;
     if (type != null)
-    {
-      param = r.getDefaultReadParam();
       param.setDestinationType(type);
-    }
-    else
+
+    if (targetWidth > 0 && targetHeight > 0)
     {
-      param = null;
+      int srcWidth = r.getWidth(imageIndex),
+        srcHeight = r.getHeight(imageIndex);
+      Rectangle region;
+      if (resizeMode != null)
+      {
+        region = resizeMode.getSourceRegion(
+          srcWidth, srcHeight, targetWidth, targetHeight);
+        if (region.width != srcWidth || region.height != srcHeight)
+          param.setSourceRegion(region);
+      }
+      else
+      {
+        region = new Rectangle(srcWidth, srcHeight);
+      }
+
+      int xSubsampling = Math.max(region.width / targetWidth, 1),
+        ySubsampling = Math.max(region.height / targetHeight, 1);
+      if (resizeMode != ImageResizeMode.STRETCH)
+      {
+        // preserve the aspect ratio
+        xSubsampling = ySubsampling = Math.min(xSubsampling, ySubsampling);
+      }
+      if (xSubsampling != 1 || ySubsampling != 1)
+        param.setSourceSubsampling(xSubsampling, ySubsampling, 0, 0);
     }
 
-    return r.read(imageIndex, param);
+    return param;
   }
 
 
@@ -197,8 +280,61 @@ static ImageReader getFirstImageReader( Iterator<ImageReader> readers )
 
   public static final int RGB_MASK = (1 << (3 * Byte.SIZE)) - 1;
 
-  @SuppressWarnings("AssignmentToForLoopParameter")
+  /**
+   * The minimum amount of pixels of an image that
+   * {@link #filter(PImage, PImage, RGBImageFilter)} filters in parallel. It's
+   * also the approximate amount of pixels processed by each parallel task.
+   */
+  public static final int PARALLEL_FILTER_TILE_SIZE = 1 << 15;
+
+
+  /**
+   * Applies an RGB image filter to every pixel of an image. The source and
+   * the destination image may be the same.
+   * <p>
+   * Images with more than {@link #PARALLEL_FILTER_TILE_SIZE} pixels are split
+   * into tiles of horizontal bands, which are filtered in parallel on the
+   * {@link ForkJoinPool#commonPool() common fork-join pool}, if that has more
+   * than one thread.
+   *
+   * @param src  The source image
+   * @param dst  The destination image; may be {@code null} to create a new
+   *   one
+   * @param filter  The filter to apply
+   * @return  The destination image
+   * @see #filter(PImage, PImage, RGBImageFilter, ForkJoinPool)
+   */
   public static PImage filter( PImage src, PImage dst, RGBImageFilter filter )
+  {
+    return filter(src, dst, filter,
+      (ForkJoinPool.getCommonPoolParallelism() > 1) ?
+        ForkJoinPool.commonPool() :
+        null);
+  }
+
+
+  /**
+   * Applies an RGB image filter to every pixel of an image. The source and
+   * the destination image may be the same.
+   * <p>
+   * If a pool is given, images with more than
+   * {@link #PARALLEL_FILTER_TILE_SIZE} pixels are split into tiles of
+   * horizontal bands, which are filtered in parallel on that pool. Each tile
+   * task uses its own {@link RGBImageFilter#clone() clone} of the filter,
+   * except for instances of {@link HSBImageFilter}, which are used through
+   * their thread-safe method
+   * {@link HSBImageFilter#filterRGB(int, int, int, float[])}.
+   *
+   * @param src  The source image
+   * @param dst  The destination image; may be {@code null} to create a new
+   *   one
+   * @param filter  The filter to apply
+   * @param pool  The pool to run filter tasks on; {@code null} to filter on
+   *   the calling thread only
+   * @return  The destination image
+   */
+  public static PImage filter( PImage src, PImage dst, RGBImageFilter filter,
+    ForkJoinPool pool )
   {
     if (filter ==  null)
       throw new NullPointerException("filter");
@@ -216,16 +352,96 @@ public static PImage filter( PImage src, PImage dst, RGBImageFilter filter )
     }
     int[] dpx = dst.pixels;
 
-    for (int i = 0, y = 0; y < height; y++)
+    if (pool != null && (long) width * height > PARALLEL_FILTER_TILE_SIZE)
     {
-      for (int x = 0; x < width; x++, i++)
-      {
-        int px = spx[i];
-        dpx[i] = filter.filterRGB(x, y, px & RGB_MASK) | (px & ~RGB_MASK);
-      }
+      pool.invoke(new FilterTask(spx, dpx, width, 0, height, filter));
+    }
+    else
+    {
+      FilterTask.filterRows(spx, dpx, width, 0, height, filter);
     }
 
     dst.updatePixels();
     return dst;
   }
+
+
+  private static final class FilterTask extends RecursiveAction
+  {
+    private static final long serialVersionUID = -4296409218549722377L;
+
+    private final int[] spx, dpx;
+
+    private final int width, yStart, yEnd;
+
+    private final RGBImageFilter filter;
+
+
+    FilterTask( int[] spx, int[] dpx, int width, int yStart, int yEnd,
+      RGBImageFilter filter )
+    {
+      this.spx = spx;
+      this.dpx = dpx;
+      this.width = width;
+      this.yStart = yStart;
+      this.yEnd = yEnd;
+      this.filter = filter;
+    }
+
+
+    @Override
+    protected void compute()
+    {
+      int rowCount = yEnd - yStart;
+      if (rowCount > 1 && rowCount * width > PARALLEL_FILTER_TILE_SIZE)
+      {
+        int yMid = (yStart + yEnd) >>> 1;
+        invokeAll(
+          new FilterTask(spx, dpx, width, yStart, yMid, filter),
+          new FilterTask(spx, dpx, width, yMid, yEnd, filter));
+      }
+      else
+      {
+        RGBImageFilter filter = this.filter;
+        filterRows(spx, dpx, width, yStart, yEnd,
+          (filter instanceof HSBImageFilter) ?
+            filter :
+            (RGBImageFilter) filter.clone());
+      }
+    }
+
+
+    @SuppressWarnings("AssignmentToForLoopParameter")
+    static void filterRows( final int[] spx, final int[] dpx,
+      final int width, final int yStart, final int yEnd,
+      final RGBImageFilter filter )
+    {
+      if (filter instanceof HSBImageFilter)
+      {
+        final HSBImageFilter hsbFilter = (HSBImageFilter) filter;
+        final float[] hsbBuf = new float[3];
+        for (int i = yStart * width, y = yStart; y < yEnd; y++)
+        {
+          for (int x = 0; x < width; x++, i++)
+          {
+            int px = spx[i];
+            dpx[i] =
+              hsbFilter.filterRGB(x, y, px & RGB_MASK, hsbBuf) |
+                (px & ~RGB_MASK);
+          }
+        }
+      }
+      else
+      {
+        for (int i = yStart * width, y = yStart; y < yEnd; y++)
+        {
+          for (int x = 0; x < width; x++, i++)
+          {
+            int px = spx[i];
+            dpx[i] = filter.filterRGB(x, y, px & RGB_MASK) | (px & ~RGB_MASK);
+          }
+        }
+      }
+    }
+  }
 }
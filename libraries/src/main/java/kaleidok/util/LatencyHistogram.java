@@ -0,0 +1,250 @@
+package kaleidok.util;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.Math;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * Records non-negative durations in a log-linear histogram similar to
+ * HdrHistogram: every power-of-two range of values is divided into
+ * {@value #SUB_BUCKET_COUNT} buckets of equal width, so that the recorded
+ * values and percentiles are accurate to within about 3 %. Recording is
+ * allocation-free and takes constant time.
+ * <p>
+ * Instances of this class aren't thread-safe.
+ */
+public class LatencyHistogram
+{
+  private static final int SUB_BUCKET_BITS = 5;
+
+  public static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+  private static final int BUCKET_COUNT =
+    (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT;
+
+
+  private final long[] counts = new long[BUCKET_COUNT];
+
+  private long totalCount = 0, sum = 0, min = Long.MAX_VALUE, max = 0;
+
+
+  static int indexOf( long value )
+  {
+    int msb = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+    if (msb < SUB_BUCKET_BITS)
+      return (int) value;
+
+    int shift = msb - SUB_BUCKET_BITS;
+    return ((shift + 1) << SUB_BUCKET_BITS) |
+      (int) ((value >>> shift) & (SUB_BUCKET_COUNT - 1));
+  }
+
+
+  static long lowestValueAt( int index )
+  {
+    if (index < SUB_BUCKET_COUNT)
+      return index;
+
+    int shift = (index >>> SUB_BUCKET_BITS) - 1;
+    return ((long) (SUB_BUCKET_COUNT | (index & (SUB_BUCKET_COUNT - 1))))
+      << shift;
+  }
+
+
+  static long highestValueAt( int index )
+  {
+    return (index < SUB_BUCKET_COUNT) ?
+      index :
+      lowestValueAt(index) + (1L << ((index >>> SUB_BUCKET_BITS) - 1)) - 1;
+  }
+
+
+  /**
+   * @param value  A non-negative value, e. g. a duration in nanoseconds
+   */
+  public void record( long value )
+  {
+    if (value < 0)
+      throw new IllegalArgumentException("Negative value: " + value);
+
+    counts[indexOf(value)]++;
+    totalCount++;
+    sum += value;
+    if (value < min)
+      min = value;
+    if (value > max)
+      max = value;
+  }
+
+
+  public long getTotalCount()
+  {
+    return totalCount;
+  }
+
+
+  /**
+   * @return  The smallest recorded value; 0 if there is none
+   */
+  public long getMin()
+  {
+    return (totalCount != 0) ? min : 0;
+  }
+
+
+  /**
+   * @return  The largest recorded value; 0 if there is none
+   */
+  public long getMax()
+  {
+    return max;
+  }
+
+
+  /**
+   * @return  The mean of the recorded values; {@link Double#NaN} if there
+   *   are none
+   */
+  public double getMean()
+  {
+    return (double) sum / totalCount;
+  }
+
+
+  /**
+   * @param percentile  A percentile between 0 and 100
+   * @return  The (highest value equivalent to the) value below or at which
+   *   the given percentage of the recorded values lie; 0 if there are none
+   */
+  public long getValueAtPercentile( double percentile )
+  {
+    if (!(percentile >= 0 && percentile <= 100))
+    {
+      throw new IllegalArgumentException(
+        "Percentile out of range: " + percentile);
+    }
+    if (totalCount == 0)
+      return 0;
+
+    long target =
+      Math.max((long) Math.ceil(percentile * 0.01 * totalCount), 1);
+    final long[] counts = this.counts;
+    long cumulative = 0;
+    for (int i = indexOf(getMin()); i < counts.length; i++)
+    {
+      cumulative += counts[i];
+      if (cumulative >= target)
+        return Math.min(highestValueAt(i), max);
+    }
+    return max;
+  }
+
+
+  /**
+   * Adds the recorded values of another histogram to this one.
+   *
+   * @param other  Another histogram
+   */
+  public void add( LatencyHistogram other )
+  {
+    final long[] counts = this.counts, otherCounts = other.counts;
+    for (int i = 0; i < counts.length; i++)
+      counts[i] += otherCounts[i];
+    totalCount += other.totalCount;
+    sum += other.sum;
+    min = Math.min(min, other.min);
+    max = Math.max(max, other.max);
+  }
+
+
+  public LatencyHistogram copy()
+  {
+    LatencyHistogram copy = new LatencyHistogram();
+    copy.add(this);
+    return copy;
+  }
+
+
+  public void reset()
+  {
+    Arrays.fill(counts, 0);
+    totalCount = 0;
+    sum = 0;
+    min = Long.MAX_VALUE;
+    max = 0;
+  }
+
+
+  /**
+   * @param keyName  The name of the column of the histogram names
+   * @return  The header line of {@link #formatLines(Date, Map)}
+   */
+  public static String getLinesHeader( String keyName )
+  {
+    return "time\t" + keyName + "\tcount\tmean_ms\tp50_ms\tp90_ms\tp99_ms\tmax_ms";
+  }
+
+
+  /**
+   * Formats histograms of nanosecond durations as tab-separated lines with
+   * their mean and percentiles in milliseconds.
+   *
+   * @param date  The time stamp of the lines
+   * @param histograms  The histograms by name
+   * @return  One line for each histogram
+   */
+  public static List<String> formatLines( Date date,
+    Map<String, LatencyHistogram> histograms )
+  {
+    List<String> lines = new ArrayList<>(histograms.size());
+    for (Map.Entry<String, LatencyHistogram> e: histograms.entrySet())
+    {
+      LatencyHistogram h = e.getValue();
+      lines.add(String.format(
+        "%tFT%<tT\t%s\t%d\t%.3f\t%.3f\t%.3f\t%.3f\t%.3f",
+        date, e.getKey(), h.getTotalCount(), h.getMean() * 1e-6,
+        h.getValueAtPercentile(50) * 1e-6, h.getValueAtPercentile(90) * 1e-6,
+        h.getValueAtPercentile(99) * 1e-6, h.getMax() * 1e-6));
+    }
+    return lines;
+  }
+
+
+  /**
+   * Appends lines of {@link #formatLines(Date, Map)} to a file and writes
+   * the header first if the file didn't exist.
+   */
+  public static void appendLines( Path path, String keyName,
+    List<String> lines )
+    throws IOException
+  {
+    boolean writeHeader = !Files.exists(path);
+    try (Writer w = Files.newBufferedWriter(path, StandardCharsets.UTF_8,
+      StandardOpenOption.CREATE, StandardOpenOption.APPEND))
+    {
+      if (writeHeader)
+        w.append(getLinesHeader(keyName)).append('\n');
+      for (String line: lines)
+        w.append(line).append('\n');
+    }
+  }
+
+
+  @Override
+  public String toString()
+  {
+    return String.format("%s[count=%d, p50=%d, p99=%d, max=%d]",
+      getClass().getSimpleName(), totalCount, getValueAtPercentile(50),
+      getValueAtPercentile(99), max);
+  }
+}
@@ -0,0 +1,290 @@
+package kaleidok.util.containers;
+
+import java.util.AbstractQueue;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import static org.apache.commons.collections4.iterators.UnmodifiableIterator.unmodifiableIterator;
+
+
+/**
+ * A lock-free variant of {@link BoundedCompletionQueue} for producers and
+ * consumers that complete concurrently, e. g. the callbacks of many
+ * asynchronous requests.
+ * <p>
+ * The permit and completion counters share a single atomic word, so that
+ * the completion condition can be checked consistently without a lock. The
+ * completion callback runs at most once, on the thread whose release or
+ * completion satisfies the condition, and receives all items removed with
+ * {@link #poll()} or {@link #remove()} while a callback was set.
+ *
+ * @param <E>  The type of the queue items
+ */
+public class ConcurrentBoundedCompletionQueue<E> extends AbstractQueue<E>
+{
+  private final Queue<E> underlying = new ConcurrentLinkedQueue<>();
+
+  private final Queue<E> removedItems = new ConcurrentLinkedQueue<>();
+
+  public final int maxPermits;
+
+  /**
+   * The available permits in the upper and the completed items in the lower
+   * 32 bits
+   */
+  private final AtomicLong state;
+
+  private final AtomicLong additions = new AtomicLong();
+
+  private final AtomicBoolean done = new AtomicBoolean();
+
+  public volatile Consumer<Collection<E>> completionCallback = null;
+
+
+  public ConcurrentBoundedCompletionQueue( int permits )
+  {
+    if (permits < 0)
+      throw new IllegalArgumentException(Integer.toString(permits));
+
+    this.maxPermits = permits;
+    this.state = new AtomicLong(pack(permits, 0));
+  }
+
+  public ConcurrentBoundedCompletionQueue( int permits,
+    Collection<? extends E> other )
+  {
+    this(permits);
+    addAll(other);
+  }
+
+
+  private static long pack( int permits, int completed )
+  {
+    return (long) permits << 32 | completed & 0xffffffffL;
+  }
+
+  private static int permits( long state )
+  {
+    return (int) (state >>> 32);
+  }
+
+  private static int completed( long state )
+  {
+    return (int) state;
+  }
+
+
+  public int availablePermits()
+  {
+    return permits(state.get());
+  }
+
+
+  public int getCompleted()
+  {
+    return completed(state.get());
+  }
+
+
+  public void release( int n )
+  {
+    if (n < 0)
+      throw new IllegalArgumentException(Integer.toString(n));
+
+    long s, newPermits;
+    do
+    {
+      s = state.get();
+      newPermits = (long) permits(s) + n;
+      if (newPermits > maxPermits)
+      {
+        throw new IllegalStateException(String.format(
+          "Too many permits returned: %d (max. %d)", n, maxPermits));
+      }
+    }
+    while (!state.compareAndSet(s, pack((int) newPermits, completed(s))));
+
+    checkCompletion();
+  }
+
+  public void release()
+  {
+    release(1);
+  }
+
+
+  public void completeItems( int n )
+  {
+    if (n < 0)
+      throw new IllegalArgumentException(Integer.toString(n));
+
+    long s, newCompleted;
+    do
+    {
+      s = state.get();
+      newCompleted = (long) completed(s) + n;
+      if (newCompleted > maxPermits)
+      {
+        throw new IllegalStateException(String.format(
+          "More items completed (%d) than permitted (%d)",
+          n, maxPermits - completed(s)));
+      }
+    }
+    while (!state.compareAndSet(s, pack(permits(s), (int) newCompleted)));
+
+    if (newCompleted == maxPermits && n != 0)
+    {
+      clear();
+      doCompletionCallback();
+    }
+  }
+
+  public void completeItem()
+  {
+    completeItems(1);
+  }
+
+
+  /**
+   * Runs the completion callback if no items are in flight and none are
+   * left in the queue. The state and the addition count are read again after
+   * the queue was found empty; if neither changed in between, both
+   * conditions held at the same time.
+   */
+  private void checkCompletion()
+  {
+    long a = additions.get(), s = state.get();
+    if ((long) permits(s) + completed(s) == maxPermits &&
+      underlying.isEmpty() && state.get() == s && additions.get() == a)
+    {
+      doCompletionCallback();
+    }
+  }
+
+
+  protected void doCompletionCallback()
+  {
+    if (done.compareAndSet(false, true))
+    {
+      Consumer<Collection<E>> completionCallback =
+        this.completionCallback;
+      if (completionCallback != null)
+        completionCallback.accept(Collections.unmodifiableCollection(removedItems));
+    }
+  }
+
+
+  @Override
+  public int size()
+  {
+    return underlying.size();
+  }
+
+  @Override
+  public boolean isEmpty()
+  {
+    return underlying.isEmpty();
+  }
+
+  @Override
+  public boolean contains( Object o )
+  {
+    return underlying.contains(o);
+  }
+
+  @Override
+  public Iterator<E> iterator()
+  {
+    return unmodifiableIterator(underlying.iterator());
+  }
+
+  @Override
+  public Object[] toArray()
+  {
+    return underlying.toArray();
+  }
+
+  @SuppressWarnings("SuspiciousToArrayCall")
+  @Override
+  public <T> T[] toArray( T[] a )
+  {
+    return underlying.toArray(a);
+  }
+
+  @Override
+  public boolean remove( Object o )
+  {
+    return underlying.remove(o);
+  }
+
+  @Override
+  public boolean removeAll( Collection<?> c )
+  {
+    return underlying.removeAll(c);
+  }
+
+  @Override
+  public boolean retainAll( Collection<?> c )
+  {
+    return underlying.retainAll(c);
+  }
+
+  @Override
+  public void clear()
+  {
+    underlying.clear();
+  }
+
+  @Override
+  public boolean offer( E e )
+  {
+    /*
+     * Insert before counting, so that every addition counted by
+     * checkCompletion() is already in the queue when it looks there.
+     */
+    boolean added = underlying.offer(e);
+    additions.incrementAndGet();
+    return added;
+  }
+
+  @Override
+  public E poll()
+  {
+    if (underlying.isEmpty())
+      return null;
+
+    long s;
+    do
+    {
+      s = state.get();
+      if (permits(s) <= 0)
+        return null;
+    }
+    while (!state.compareAndSet(s, s - (1L << 32)));
+
+    E item = underlying.poll();
+    if (item != null)
+    {
+      if (completionCallback != null)
+        removedItems.add(item);
+    }
+    else
+    {
+      // another consumer took the last item; return the permit
+      release(1);
+    }
+    return item;
+  }
+
+  @Override
+  public E peek()
+  {
+    return underlying.peek();
+  }
+}
@@ -0,0 +1,157 @@
+package kaleidok.util.function;
+
+/**
+ * Approximates the power function <code>x<sup>exponent</sup></code> by
+ * linear interpolation between values precomputed at equidistant points of
+ * the interval [0, 1]. Arguments outside of that interval (including NaN)
+ * are passed to {@link Math#pow(double, double)}.
+ * <p>
+ * The approximation error is bounded by {@link #getMaxError()}, which is
+ * determined analytically for each table interval at construction time.
+ * <p>
+ * Instances of this class are immutable.
+ */
+public final class PowerFunctionTable
+{
+  public static final int MAX_RESOLUTION = 1 << 20;
+
+
+  public final double exponent;
+
+  private final float[] table;
+
+  private final double maxError;
+
+
+  /**
+   * @param exponent  The non-negative exponent of the power function
+   * @param resolution  The number of table intervals
+   */
+  public PowerFunctionTable( double exponent, int resolution )
+  {
+    if (resolution < 1 || resolution > MAX_RESOLUTION)
+    {
+      throw new IllegalArgumentException(
+        "Resolution outside of [1, " + MAX_RESOLUTION + "]: " + resolution);
+    }
+    if (!(exponent >= 0 && exponent < Double.POSITIVE_INFINITY))
+    {
+      throw new IllegalArgumentException(
+        "Negative or non-finite exponent: " + exponent);
+    }
+
+    this.exponent = exponent;
+    final float[] table = this.table = new float[resolution + 1];
+    for (int i = 0; i <= resolution; i++)
+      table[i] = (float) Math.pow((double) i / resolution, exponent);
+    maxError = computeMaxError(table, exponent) + Math.ulp(1f);
+  }
+
+
+  /**
+   * Constructs a table with the lowest power-of-2 resolution whose
+   * approximation error doesn't exceed the given bound.
+   *
+   * @param exponent  The exponent of the power function
+   * @param maxError  The maximum approximation error
+   * @return  A power function table
+   * @throws IllegalArgumentException  if the bound cannot be met with at
+   *   most {@link #MAX_RESOLUTION} intervals
+   */
+  public static PowerFunctionTable forMaxError( double exponent,
+    double maxError )
+  {
+    for (int resolution = 1; resolution <= MAX_RESOLUTION; resolution <<= 1)
+    {
+      PowerFunctionTable t = new PowerFunctionTable(exponent, resolution);
+      if (t.maxError <= maxError)
+        return t;
+    }
+    throw new IllegalArgumentException(String.format(
+      "Cannot approximate x^%g with a maximum error of %g", exponent,
+      maxError));
+  }
+
+
+  /**
+   * Computes the greatest deviation of the linear interpolation from the
+   * power function over all table intervals. Since the power function is
+   * either convex or concave on [0, 1], the deviation in an interval peaks
+   * where the function's slope equals that of the secant.
+   */
+  private static double computeMaxError( float[] table, double exponent )
+  {
+    final int n = table.length - 1;
+    double maxError = 0;
+    for (int i = 0; i < n; i++)
+    {
+      final double a = (double) i / n, b = (double) (i + 1) / n;
+      final double slope = (table[i + 1] - table[i]) * (double) n;
+      double x = (exponent != 1 && slope > 0) ?
+        Math.pow(slope / exponent, 1 / (exponent - 1)) :
+        a;
+      if (!(x >= a && x <= b))
+        x = a;
+
+      maxError = Math.max(maxError,
+        Math.max(
+          Math.abs(table[i] - Math.pow(a, exponent)),
+          Math.abs(table[i] + (x - a) * slope - Math.pow(x, exponent))));
+    }
+    return Math.max(maxError, Math.abs(table[n] - 1));
+  }
+
+
+  public float applyAsFloat( float x )
+  {
+    return (x >= 0 && x <= 1) ?
+      interpolate(table, x) :
+      (float) Math.pow(x, exponent);
+  }
+
+
+  /**
+   * Linearly interpolates between the values of a function precomputed at
+   * equidistant points of the interval [0, 1], the first and the last of
+   * which lie on the interval boundaries.
+   *
+   * @param table  The function values; at least 2
+   * @param x  A function argument in [0, 1]
+   * @return  The interpolated function value
+   */
+  public static float interpolate( float[] table, float x )
+  {
+    final int lastIndex = table.length - 2;
+    x *= lastIndex + 1;
+    int i = Math.min((int) x, lastIndex);
+    float a = table[i];
+    return a + (x - i) * (table[i + 1] - a);
+  }
+
+
+  /**
+   * @return  The number of table intervals
+   */
+  public int getResolution()
+  {
+    return table.length - 1;
+  }
+
+
+  /**
+   * @return  An upper bound of the absolute approximation error for
+   *   arguments in [0, 1]
+   */
+  public double getMaxError()
+  {
+    return maxError;
+  }
+
+
+  @Override
+  public String toString()
+  {
+    return String.format("%s[x^%g, %d intervals, max. error %.3g]",
+      getClass().getSimpleName(), exponent, getResolution(), maxError);
+  }
+}
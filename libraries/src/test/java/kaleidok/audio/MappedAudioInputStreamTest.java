@@ -0,0 +1,227 @@
+package kaleidok.audio;
+
+import be.tarsos.dsp.io.TarsosDSPAudioInputStream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+
+public class MappedAudioInputStreamTest
+{
+  private static final int FRAME_COUNT = 1000, FRAME_SIZE = 4;
+
+  private static final AudioFormat FORMAT =
+    new AudioFormat(8000, 16, 2, true, false);
+
+  private final byte[] samples = new byte[FRAME_COUNT * FRAME_SIZE];
+
+  private Path wavePath, aiffPath;
+
+  private int defaultMaxSegmentSize;
+
+
+  @Before
+  public void setUp() throws IOException
+  {
+    for (int i = 0; i < samples.length; i++)
+      samples[i] = (byte) (i * 7 + i / 256);
+
+    wavePath = Files.createTempFile(getClass().getSimpleName(), ".wav");
+    writeWaveWithListChunk(wavePath);
+    aiffPath = Files.createTempFile(getClass().getSimpleName(), ".aiff");
+    AudioSystem.write(
+      new AudioInputStream(new ByteArrayInputStream(samples), FORMAT,
+        FRAME_COUNT),
+      AudioFileFormat.Type.AIFF, aiffPath.toFile());
+
+    defaultMaxSegmentSize = MappedAudioInputStream.MAX_SEGMENT_SIZE;
+  }
+
+
+  @After
+  public void tearDown() throws IOException
+  {
+    MappedAudioInputStream.MAX_SEGMENT_SIZE = defaultMaxSegmentSize;
+    Files.deleteIfExists(wavePath);
+    Files.deleteIfExists(aiffPath);
+  }
+
+
+  /**
+   * Writes a WAVE file with an odd-sized chunk between the format and the
+   * data chunk.
+   */
+  private void writeWaveWithListChunk( Path path ) throws IOException
+  {
+    ByteBuffer buf = ByteBuffer.allocate(12 + 24 + 8 + 5 + 1 + 8 + samples.length)
+      .order(ByteOrder.LITTLE_ENDIAN);
+    buf.put("RIFF".getBytes("US-ASCII")).putInt(buf.capacity() - 8)
+      .put("WAVE".getBytes("US-ASCII"));
+    buf.put("fmt ".getBytes("US-ASCII")).putInt(16)
+      .putShort((short) 1).putShort((short) FORMAT.getChannels())
+      .putInt((int) FORMAT.getSampleRate())
+      .putInt((int) FORMAT.getSampleRate() * FRAME_SIZE)
+      .putShort((short) FRAME_SIZE)
+      .putShort((short) FORMAT.getSampleSizeInBits());
+    buf.put("LIST".getBytes("US-ASCII")).putInt(5)
+      .put(new byte[]{ 1, 2, 3, 4, 5, 0 });
+    buf.put("data".getBytes("US-ASCII")).putInt(samples.length).put(samples);
+    Files.write(path, buf.array());
+  }
+
+
+  private static byte[] readFully( TarsosDSPAudioInputStream s, int len )
+    throws IOException
+  {
+    byte[] b = new byte[len];
+    int off = 0;
+    while (off < len)
+    {
+      int count = s.read(b, off, len - off);
+      if (count < 0)
+        return Arrays.copyOf(b, off);
+      off += count;
+    }
+    return b;
+  }
+
+
+  @Test
+  public void testMappedLoopAndSeek() throws Exception
+  {
+    // force several segments
+    MappedAudioInputStream.MAX_SEGMENT_SIZE = 1001;
+
+    MappedAudioInputStream s = new MappedAudioInputStream(wavePath, true);
+    try
+    {
+      assertEquals(FRAME_COUNT, s.getFrameLength());
+      assertEquals(FORMAT.getSampleRate(), s.getFormat().getSampleRate(), 0);
+
+      byte[] b = new byte[samples.length + 40];
+      assertEquals(b.length, s.read(b, 0, b.length));
+      assertArrayEquals(samples, Arrays.copyOf(b, samples.length));
+      assertArrayEquals(Arrays.copyOf(samples, 40),
+        Arrays.copyOfRange(b, samples.length, b.length));
+      assertEquals(10, s.getFramePosition());
+
+      s.setFramePosition(FRAME_COUNT - 1);
+      assertArrayEquals(
+        Arrays.copyOfRange(samples, samples.length - FRAME_SIZE, samples.length),
+        readFully(s, FRAME_SIZE));
+
+      s.reset();
+      assertArrayEquals(Arrays.copyOf(samples, 64), readFully(s, 64));
+    }
+    finally
+    {
+      s.close();
+    }
+  }
+
+
+  @Test
+  public void testMappedEnd() throws Exception
+  {
+    MappedAudioInputStream s = new MappedAudioInputStream(wavePath, false);
+    try
+    {
+      assertArrayEquals(samples, readFully(s, samples.length * 2));
+      assertEquals(-1, s.read(new byte[FRAME_SIZE], 0, FRAME_SIZE));
+    }
+    finally
+    {
+      s.close();
+    }
+  }
+
+
+  private byte[] getBigEndianSamples()
+  {
+    byte[] swapped = samples.clone();
+    for (int i = 0; i < swapped.length; i += 2)
+    {
+      byte tmp = swapped[i];
+      swapped[i] = swapped[i + 1];
+      swapped[i + 1] = tmp;
+    }
+    return swapped;
+  }
+
+
+  @Test
+  public void testConcatenation() throws Exception
+  {
+    MultiAudioInputStream s = new MultiAudioInputStream();
+    try
+    {
+      s.streams.add(AudioFiles.open(wavePath, false));
+      s.streams.add(AudioFiles.open(aiffPath, false));
+      assertTrue(s.streams.get(0) instanceof MappedAudioInputStream);
+      assertTrue(s.streams.get(1) instanceof StreamingAudioInputStream);
+      s.concatenate = true;
+
+      byte[] b = readFully(s, samples.length * 3);
+      assertEquals(samples.length * 2, b.length);
+      assertArrayEquals(samples, Arrays.copyOf(b, samples.length));
+      assertArrayEquals(getBigEndianSamples(),
+        Arrays.copyOfRange(b, samples.length, b.length));
+      assertEquals(1, s.getCurrentIdx());
+      assertEquals(-1, s.read(new byte[FRAME_SIZE], 0, FRAME_SIZE));
+
+      // Without concatenation the end of the current stream is final.
+      s.concatenate = false;
+      s.setCurrentIdx(0);
+      assertArrayEquals(samples, readFully(s, samples.length * 2));
+      assertEquals(0, s.getCurrentIdx());
+    }
+    finally
+    {
+      s.close();
+    }
+  }
+
+
+  @Test
+  public void testStreamingFallback() throws Exception
+  {
+    ResettableAudioStream s = AudioFiles.open(aiffPath, true);
+    try
+    {
+      assertTrue(s instanceof StreamingAudioInputStream);
+      assertEquals(FRAME_COUNT, s.getFrameLength());
+
+      byte[] b = readFully(s, samples.length * 2 + 8);
+      // AIFF stores big-endian samples
+      byte[] expected = getBigEndianSamples();
+      assertArrayEquals(expected, Arrays.copyOf(b, samples.length));
+      assertArrayEquals(expected,
+        Arrays.copyOfRange(b, samples.length, samples.length * 2));
+      assertArrayEquals(Arrays.copyOf(expected, 8),
+        Arrays.copyOfRange(b, samples.length * 2, b.length));
+
+      ((StreamingAudioInputStream) s).setFramePosition(FRAME_COUNT / 2);
+      assertArrayEquals(
+        Arrays.copyOfRange(expected, samples.length / 2, samples.length / 2 + 8),
+        readFully(s, 8));
+    }
+    finally
+    {
+      s.close();
+    }
+  }
+}
@@ -0,0 +1,97 @@
+package kaleidok.audio;
+
+import be.tarsos.dsp.AudioDispatcher;
+import be.tarsos.dsp.AudioEvent;
+import be.tarsos.dsp.AudioProcessor;
+import be.tarsos.dsp.io.jvm.JVMAudioInputStream;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+
+public class SteppedAudioInputStreamTest
+{
+  private static final int BUFFER_SIZE = 256, FRAME_COUNT = BUFFER_SIZE * 16;
+
+  private SteppedAudioInputStream stream;
+
+  private final AtomicInteger processedCount = new AtomicInteger();
+
+  private Thread dispatcherThread;
+
+
+  @Before
+  public void setUp()
+  {
+    AudioFormat format = new AudioFormat(8000, 16, 1, true, false);
+    stream = new SteppedAudioInputStream(new JVMAudioInputStream(
+      new AudioInputStream(
+        new ByteArrayInputStream(new byte[FRAME_COUNT * 2]), format,
+        FRAME_COUNT)));
+
+    AudioDispatcher dispatcher = new AudioDispatcher(stream, BUFFER_SIZE, 0);
+    dispatcher.addAudioProcessor(new AudioProcessor()
+      {
+        @Override
+        public boolean process( AudioEvent audioEvent )
+        {
+          processedCount.incrementAndGet();
+          return true;
+        }
+
+        @Override
+        public void processingFinished() { }
+      });
+    dispatcherThread = new Thread(dispatcher, "Audio dispatching");
+    dispatcherThread.setDaemon(true);
+    dispatcherThread.start();
+  }
+
+
+  @Test
+  public void testStepping() throws InterruptedException
+  {
+    stream.awaitIdle();
+    assertEquals(0, processedCount.get());
+    assertEquals(0, stream.getFramePosition());
+
+    stream.advanceTo(BUFFER_SIZE * 4);
+    stream.awaitIdle();
+    assertEquals(4, processedCount.get());
+    assertEquals(BUFFER_SIZE * 4, stream.getFramePosition());
+
+    // partial buffers are held back until they're complete
+    stream.advanceTo(BUFFER_SIZE * 5 - 1);
+    stream.awaitIdle();
+    assertEquals(4, processedCount.get());
+    assertEquals(BUFFER_SIZE * 5 - 1, stream.getFramePosition());
+
+    stream.advanceTo(BUFFER_SIZE * 5);
+    stream.awaitIdle();
+    assertEquals(5, processedCount.get());
+
+    // going back is ignored
+    stream.advanceTo(0);
+    stream.awaitIdle();
+    assertEquals(5, processedCount.get());
+    assertFalse(stream.isEndOfStream());
+  }
+
+
+  @Test(timeout = 10000)
+  public void testEndOfStream() throws InterruptedException
+  {
+    stream.advanceTo(FRAME_COUNT * 2);
+    stream.awaitIdle();
+    assertTrue(stream.isEndOfStream());
+    dispatcherThread.join();
+    assertEquals(FRAME_COUNT, stream.getFramePosition());
+    assertEquals(FRAME_COUNT / BUFFER_SIZE, processedCount.get());
+  }
+}
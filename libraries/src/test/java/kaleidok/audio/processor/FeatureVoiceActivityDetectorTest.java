@@ -0,0 +1,110 @@
+package kaleidok.audio.processor;
+
+import be.tarsos.dsp.AudioEvent;
+import be.tarsos.dsp.io.TarsosDSPAudioFormat;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+
+public class FeatureVoiceActivityDetectorTest
+{
+  private static final float SAMPLE_RATE = 16000;
+
+  private static final int BUFFER_SIZE = 1024;
+
+  private static final double BUFFER_DURATION = BUFFER_SIZE / SAMPLE_RATE;
+
+  private final Random random = new Random(42);
+
+  private final AudioEvent audioEvent = new AudioEvent(
+    new TarsosDSPAudioFormat(SAMPLE_RATE, 16, 1, true, false));
+
+  private MinimFFTProcessor fftProcessor;
+
+  private FeatureVoiceActivityDetector vad;
+
+  private long sampleOffset = 0;
+
+
+  @Before
+  public void setUp()
+  {
+    fftProcessor = new MinimFFTProcessor(BUFFER_SIZE);
+    vad = new FeatureVoiceActivityDetector(fftProcessor);
+  }
+
+
+  /**
+   * Feeds the given signal to the detector for the given duration.
+   *
+   * @return  The number of buffers with voice activity
+   */
+  private int process( double duration, double noiseLevel,
+    double voiceLevel )
+  {
+    int activeCount = 0;
+    for (int n = (int) Math.ceil(duration / BUFFER_DURATION); n > 0; n--)
+    {
+      float[] buf = new float[BUFFER_SIZE];
+      for (int i = 0; i < buf.length; i++, sampleOffset++)
+      {
+        double t = sampleOffset / (double) SAMPLE_RATE, voice = 0;
+        // a vowel-like harmonic series on a fundamental of 150 Hz
+        for (int h = 1; h <= 10; h++)
+          voice += Math.sin(2 * Math.PI * 150 * h * t) / h;
+        buf[i] = (float)
+          (voice * voiceLevel * 0.5 + random.nextGaussian() * noiseLevel);
+      }
+      audioEvent.setFloatBuffer(buf);
+      fftProcessor.process(audioEvent);
+      if (vad.isVoiceActive(audioEvent))
+        activeCount++;
+    }
+    return activeCount;
+  }
+
+
+  @Test
+  public void testBackgroundNoise()
+  {
+    assertEquals(0, process(2, 0.002, 0));
+    assertEquals(0.002, vad.getNoiseFloor(), 0.0005);
+  }
+
+
+  @Test
+  public void testUtterance()
+  {
+    process(1, 0.002, 0);
+    assertTrue(process(1, 0.002, 0.2) >= (int) (1 / BUFFER_DURATION) - 1);
+
+    assertEquals("Hangover",
+      (int) Math.ceil(vad.hangoverDuration / BUFFER_DURATION) - 1,
+      process(vad.hangoverDuration, 0.002, 0));
+    assertEquals(0, process(1, 0.002, 0));
+  }
+
+
+  @Test
+  public void testBroadbandNoise()
+  {
+    process(1, 0.002, 0);
+    assertEquals(0, process(1, 0.2, 0));
+  }
+
+
+  @Test
+  public void testZeroCrossingRate()
+  {
+    assertEquals(0, FeatureVoiceActivityDetector.getZeroCrossingRate(
+      new float[]{ 1, 2, 3, 0 }), 0);
+    assertEquals(1, FeatureVoiceActivityDetector.getZeroCrossingRate(
+      new float[]{ 1, -1, 1, -1 }), 0);
+    assertEquals(1 / 3.0, FeatureVoiceActivityDetector.getZeroCrossingRate(
+      new float[]{ -1, -2, 1, 2 }), 1e-9);
+  }
+}
@@ -0,0 +1,69 @@
+package kaleidok.audio.processor;
+
+import be.tarsos.dsp.AudioEvent;
+import be.tarsos.dsp.io.TarsosDSPAudioFormat;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+
+public class MinimFFTProcessorTest
+{
+  private static final int BUFFER_SIZE = 16;
+
+  private static final long FRAME_COUNT = 2_000_000;
+
+
+  /**
+   * Publishes frames as fast as possible while the consumer thread calls
+   * {@link MinimFFTProcessor#update()} repeatedly, so that updates regularly
+   * fall between the swap of a new frame and the announcement of its
+   * sequence number. The consumer must never go back to an older frame, and
+   * each frame must carry the timestamp published with it.
+   */
+  @Test(timeout = 60000)
+  public void testConcurrentUpdates() throws InterruptedException
+  {
+    MinimFFTProcessor fftProcessor = new MinimFFTProcessor(BUFFER_SIZE);
+    AtomicLong timestamp = new AtomicLong();
+    fftProcessor.timestampSource = timestamp::incrementAndGet;
+
+    AudioEvent audioEvent = new AudioEvent(
+      new TarsosDSPAudioFormat(16000, 16, 1, true, false));
+    audioEvent.setFloatBuffer(new float[BUFFER_SIZE]);
+
+    Thread audioThread = new Thread(() -> {
+        for (long i = 0; i < FRAME_COUNT; i++)
+          fftProcessor.process(audioEvent);
+      }, "audio");
+    audioThread.start();
+
+    long lastSequenceNumber = 0;
+    try
+    {
+      while (audioThread.isAlive())
+      {
+        fftProcessor.update();
+        long sequenceNumber = fftProcessor.getSequenceNumber();
+        if (sequenceNumber < lastSequenceNumber)
+        {
+          fail(String.format("Went back from frame %d to frame %d",
+            lastSequenceNumber, sequenceNumber));
+        }
+        assertEquals(sequenceNumber, fftProcessor.getTimestamp());
+        lastSequenceNumber = sequenceNumber;
+      }
+    }
+    finally
+    {
+      audioThread.join();
+    }
+
+    fftProcessor.update();
+    assertEquals(FRAME_COUNT, fftProcessor.getSequenceNumber());
+    assertEquals(FRAME_COUNT, fftProcessor.getTimestamp());
+    assertFalse(fftProcessor.update());
+  }
+}
@@ -0,0 +1,99 @@
+package kaleidok.exaleads.chromatik.data;
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonDeserializer;
+import com.google.gson.JsonSyntaxException;
+import kaleidok.google.gson.JsonStreams;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import static org.junit.Assert.*;
+
+
+public class ChromatikResponseTypeAdapterTest
+{
+  @SuppressWarnings("SpellCheckingInspection")
+  private static final String RESPONSE =
+    "[2," +
+      "{\"ind\":0,\"id\":\"1234\",\"title\":\"Sunset\"," +
+      "\"tags\":[\"sun\",\"sea\"],\"width\":500,\"height\":375," +
+      "\"thumbnailurl\":\"http://example.com/1234_t.jpg\"," +
+      "\"squarethumbnailurl\":\"http://example.com/1234_s.jpg\"," +
+      "\"colors\":{\"Red\":[0.5,0.2],\"Orange\":[0.3]}}," +
+      "{\"ind\":1,\"id\":\"5678\",\"title\":null,\"tags\":[]," +
+      "\"width\":375,\"height\":500}]";
+
+
+  @Test
+  public void testReadMatchesTreeDeserializer() throws IOException
+  {
+    ChromatikResponse expected = new GsonBuilder()
+      .registerTypeAdapter(ChromatikResponse.class,
+        (JsonDeserializer<ChromatikResponse>) ChromatikResponse::deserialize)
+      .create()
+      .fromJson(RESPONSE, ChromatikResponse.class);
+    ChromatikResponse actual = JsonStreams.read(new StringReader(RESPONSE),
+      ChromatikResponseTypeAdapter.INSTANCE);
+
+    assertEquals(expected.hits, actual.hits);
+    assertEquals(expected.results.length, actual.results.length);
+    for (int i = 0; i < expected.results.length; i++)
+    {
+      ChromatikResponse.Result e = expected.results[i], a = actual.results[i];
+      assertEquals(e.ind, a.ind);
+      assertEquals(e.id, a.id);
+      assertEquals(e.title, a.title);
+      assertArrayEquals(e.tags, a.tags);
+      assertEquals(e.width, a.width);
+      assertEquals(e.height, a.height);
+      assertEquals(e.thumbnailUrl, a.thumbnailUrl);
+      assertEquals(e.squareThumbnailUrl, a.squareThumbnailUrl);
+    }
+    assertEquals("sea", actual.results[0].tags[1]);
+    assertNull(actual.results[1].title);
+  }
+
+
+  @Test
+  public void testEmptyDocument() throws IOException
+  {
+    assertNull(JsonStreams.read(new StringReader(""),
+      ChromatikResponseTypeAdapter.INSTANCE));
+    assertNull(JsonStreams.read(new StringReader("  \n"),
+      ChromatikResponseTypeAdapter.INSTANCE));
+  }
+
+
+  @Test(expected = JsonSyntaxException.class)
+  public void testTruncatedDocument() throws IOException
+  {
+    JsonStreams.read(new StringReader("[2,{\"id\":\"1\",\"title\":\"a\"},"),
+      ChromatikResponseTypeAdapter.INSTANCE);
+  }
+
+
+  @Test
+  public void testWriteRoundTrip() throws IOException
+  {
+    ChromatikResponse expected = JsonStreams.read(new StringReader(RESPONSE),
+      ChromatikResponseTypeAdapter.INSTANCE);
+    ChromatikResponse actual = JsonStreams.read(
+      new StringReader(ChromatikResponseTypeAdapter.INSTANCE.toJson(expected)),
+      ChromatikResponseTypeAdapter.INSTANCE);
+
+    assertEquals(expected.hits, actual.hits);
+    assertEquals(expected.results.length, actual.results.length);
+    for (int i = 0; i < expected.results.length; i++)
+    {
+      ChromatikResponse.Result e = expected.results[i], a = actual.results[i];
+      assertEquals(e.id, a.id);
+      assertEquals(e.title, a.title);
+      assertArrayEquals(e.tags, a.tags);
+      assertEquals(e.width, a.width);
+      assertEquals(e.thumbnailUrl, a.thumbnailUrl);
+      assertEquals(e.squareThumbnailUrl, a.squareThumbnailUrl);
+    }
+  }
+}
@@ -0,0 +1,168 @@
+package kaleidok.exaleads.chromatik.mock;
+
+import kaleidok.exaleads.chromatik.data.ChromatikResponse;
+import kaleidok.exaleads.chromatik.data.ChromatikResponseTypeAdapter;
+import kaleidok.flickr.FlickrException;
+import kaleidok.flickr.Photo;
+import kaleidok.flickr.Size;
+import kaleidok.flickr.SizeMap;
+import kaleidok.flickr.SizeMapTypeAdapter;
+import kaleidok.flickr.TestPhoto;
+import kaleidok.google.gson.JsonStreams;
+import kaleidok.net.http.HttpConnection;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+import static org.junit.Assert.*;
+
+
+public class MockImageSearchServiceTest
+{
+  private static final MockImageCorpus corpus =
+    MockImageCorpus.synthetic(12, 640, 480, 1);
+
+  private MockImageSearchService service;
+
+
+  @Before
+  public void setUp() throws IOException
+  {
+    service = new MockImageSearchService(corpus, 1);
+  }
+
+
+  @After
+  public void tearDown()
+  {
+    service.shutdown();
+  }
+
+
+  private ChromatikResponse search( String query, int start )
+    throws IOException
+  {
+    URL url = new URL(service.getChromatikUri() + "?start=" + start +
+      "&nhits=5&q=" + query);
+    try (HttpConnection con = HttpConnection.openURL(url))
+    {
+      return JsonStreams.read(con.getReader(),
+        ChromatikResponseTypeAdapter.INSTANCE);
+    }
+  }
+
+
+  private SizeMap getSizes( String photoId ) throws IOException
+  {
+    URL url = new URL(service.getFlickrUri() +
+      "?format=json&nojsoncallback=1&method=flickr.photos.getSizes&photo_id=" +
+      photoId);
+    try (HttpConnection con = HttpConnection.openURL(url))
+    {
+      return JsonStreams.read(con.getReader(), SizeMapTypeAdapter.INSTANCE);
+    }
+  }
+
+
+  @Test
+  public void testPipeline() throws IOException
+  {
+    ChromatikResponse response = search("sunset", 2);
+    assertEquals(corpus.size(), response.hits);
+    assertEquals(5, response.results.length);
+    assertEquals(2, response.results[0].ind);
+
+    ChromatikResponse.Result result = response.results[0];
+    assertEquals(500, result.width);
+    assertEquals(375, result.height);
+    Photo photo = new TestPhoto(result.squareThumbnailUrl, 0, 0);
+    assertEquals(result.id, photo.id);
+
+    SizeMap sizes = getSizes(photo.id);
+    Size original = sizes.get(Size.Label.Original);
+    assertEquals(640, original.width);
+
+    byte[] data;
+    try (HttpConnection con = HttpConnection.openURL(new URL(original.source)))
+    {
+      assertEquals("image/jpeg", con.getContentType().getMimeType());
+      data = IOUtils.toByteArray(con.getInputStream());
+    }
+    BufferedImage img = ImageIO.read(new ByteArrayInputStream(data));
+    assertEquals(640, img.getWidth());
+    assertEquals(480, img.getHeight());
+    assertEquals(3, service.getRequestCount());
+  }
+
+
+  @Test
+  public void testSearchByTag() throws IOException
+  {
+    MockImageCorpus.Entry e = corpus.entries.get(7);
+    ChromatikResponse response =
+      search(e.tags.get(0) + "+%28OPT+color%3AX%29", 0);
+    assertTrue(response.hits >= 1);
+    assertEquals(e.id, response.results[0].id);
+
+    // results of different queries without matches differ
+    assertNotEquals(search("foo", 0).results[0].id,
+      search("bar", 0).results[0].id);
+  }
+
+
+  @Test
+  public void testPhotoNotFound() throws IOException
+  {
+    service.photoNotFoundRate = 1;
+    try
+    {
+      getSizes(corpus.entries.get(0).id);
+      fail("Expected " + FlickrException.class.getName());
+    }
+    catch (RuntimeException ex)
+    {
+      assertTrue(ex.getCause() instanceof FlickrException);
+      assertEquals(1, ((FlickrException) ex.getCause()).getErrorCode());
+    }
+  }
+
+
+  @Test
+  public void testErrorInjection() throws IOException
+  {
+    service.conditions.errorRate = 1;
+    try (HttpConnection con =
+      HttpConnection.openURL(service.getChromatikUri().toURL()))
+    {
+      assertEquals(HttpURLConnection.HTTP_UNAVAILABLE, con.getResponseCode());
+    }
+    assertEquals(1, service.getInjectedErrorCount());
+  }
+
+
+  @Test
+  public void testLatencyAndBandwidth() throws IOException
+  {
+    MockImageCorpus.Entry e = corpus.entries.get(0);
+    service.conditions.latency = 100;
+    service.conditions.bandwidth = e.size() * 5L;
+
+    long start = System.nanoTime();
+    try (HttpConnection con =
+      HttpConnection.openURL(service.getImageUri(e).toURL()))
+    {
+      assertEquals(e.size(), IOUtils.toByteArray(con.getInputStream()).length);
+    }
+    long duration = (System.nanoTime() - start) / 1000000;
+    // 100 ms latency and 200 ms transfer time
+    assertTrue(String.valueOf(duration), duration >= 290);
+  }
+}
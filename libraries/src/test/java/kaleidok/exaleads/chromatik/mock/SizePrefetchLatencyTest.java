@@ -0,0 +1,260 @@
+package kaleidok.exaleads.chromatik.mock;
+
+import com.google.gson.JsonParseException;
+import kaleidok.exaleads.chromatik.data.ChromatikResponse;
+import kaleidok.exaleads.chromatik.data.ChromatikResponseTypeAdapter;
+import kaleidok.flickr.FlickrException;
+import kaleidok.flickr.Photo;
+import kaleidok.flickr.SizeMap;
+import kaleidok.flickr.SizeMapTypeAdapter;
+import kaleidok.flickr.SizeResolver;
+import kaleidok.flickr.TestPhoto;
+import kaleidok.google.gson.JsonStreams;
+import kaleidok.net.http.HttpConnection;
+import kaleidok.util.containers.ConcurrentBoundedCompletionQueue;
+import org.apache.commons.io.IOUtils;
+import org.apache.http.concurrent.FutureCallback;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static org.junit.Assert.*;
+
+
+/**
+ * Measures how prefetching the sizes of a page of search results affects the
+ * image pipeline of {@link kaleidok.exaleads.chromatik.ChromasthetiationService}
+ * against a {@link MockImageSearchService}. The search results lack
+ * dimensions, so that every photo needs a size lookup, and half of the
+ * photos are stale. Like the service, the pipeline dispatches the photos of
+ * a page to a limited number of slots and replaces photos whose lookup
+ * failed.
+ * <p>
+ * The mean and maximum durations are logged; this test only checks that the
+ * slots fill faster with prefetching.
+ */
+public class SizePrefetchLatencyTest
+{
+  private static final Logger logger =
+    Logger.getLogger(SizePrefetchLatencyTest.class.getName());
+
+  private static final int PAGE_SIZE = 40, SLOTS = 5, RUNS = 10;
+
+  private static final long LATENCY = 100;
+
+  private static final MockImageCorpus corpus =
+    MockImageCorpus.synthetic(PAGE_SIZE, 640, 480, 1);
+
+  private MockImageSearchService service;
+
+  private ExecutorService executor;
+
+
+  @Before
+  public void setUp() throws IOException
+  {
+    service = new MockImageSearchService(corpus, 1);
+    service.conditions.latency = LATENCY;
+    service.photoNotFoundRate = 0.5;
+    service.missingDimensionsRate = 1;
+    executor = Executors.newCachedThreadPool();
+  }
+
+
+  @After
+  public void tearDown()
+  {
+    service.shutdown();
+    executor.shutdownNow();
+  }
+
+
+  private ChromatikResponse search() throws IOException
+  {
+    URL url = new URL(service.getChromatikUri() + "?nhits=" + PAGE_SIZE +
+      "&q=sunset");
+    try (HttpConnection con = HttpConnection.openURL(url))
+    {
+      return JsonStreams.read(con.getReader(),
+        ChromatikResponseTypeAdapter.INSTANCE);
+    }
+  }
+
+
+  private void getPhotoSizes( String photoId,
+    FutureCallback<SizeMap> callback )
+  {
+    executor.execute(() -> {
+        SizeMap sizes;
+        try
+        {
+          URL url = new URL(service.getFlickrUri() +
+            "?format=json&nojsoncallback=1&method=flickr.photos.getSizes" +
+            "&photo_id=" + photoId);
+          try (HttpConnection con = HttpConnection.openURL(url))
+          {
+            sizes = JsonStreams.read(con.getReader(),
+              SizeMapTypeAdapter.INSTANCE);
+          }
+        }
+        catch (JsonParseException ex)
+        {
+          callback.failed(
+            (ex.getCause() instanceof FlickrException) ?
+              (FlickrException) ex.getCause() :
+              ex);
+          return;
+        }
+        catch (IOException ex)
+        {
+          callback.failed(ex);
+          return;
+        }
+        callback.completed(sizes);
+      });
+  }
+
+
+  /**
+   * The durations of a single run from the arrival of the search results
+   */
+  private static final class Run
+  {
+    final AtomicLong firstImageTime = new AtomicLong();
+
+    final CountDownLatch slotsFilled = new CountDownLatch(SLOTS);
+
+    final long startTime = System.nanoTime();
+
+    long allImagesTime;
+
+
+    void imageDownloaded()
+    {
+      firstImageTime.compareAndSet(0, System.nanoTime() - startTime);
+      slotsFilled.countDown();
+    }
+  }
+
+
+  private Run run( boolean prefetch ) throws Exception
+  {
+    ChromatikResponse response = search();
+    SizeResolver resolver = new SizeResolver(this::getPhotoSizes,
+      SizeResolver.DEFAULT_MAX_ENTRIES);
+    Run run = new Run();
+    ConcurrentBoundedCompletionQueue<Photo> queue =
+      new ConcurrentBoundedCompletionQueue<>(SLOTS);
+    for (ChromatikResponse.Result result : response.results)
+    {
+      Photo photo =
+        new TestPhoto(result.squareThumbnailUrl, result.width, result.height);
+      queue.add(photo);
+      if (prefetch)
+        resolver.prefetch(photo);
+    }
+    assertEquals(PAGE_SIZE, queue.size());
+
+    dispatch(queue, resolver, run);
+    assertTrue("Timeout", run.slotsFilled.await(30, TimeUnit.SECONDS));
+    run.allImagesTime = System.nanoTime() - run.startTime;
+    assertEquals(0, resolver.getInferredCount());
+    return run;
+  }
+
+
+  private void dispatch( ConcurrentBoundedCompletionQueue<Photo> queue,
+    SizeResolver resolver, Run run )
+  {
+    for (Photo photo; (photo = queue.poll()) != null; )
+    {
+      resolver.resolve(photo, new FutureCallback<SizeMap>()
+        {
+          @Override
+          public void completed( SizeMap sizes )
+          {
+            executor.execute(() -> {
+                try (HttpConnection con = HttpConnection.openURL(
+                  new URL(sizes.lastEntry().getValue().source)))
+                {
+                  IOUtils.toByteArray(con.getInputStream());
+                }
+                catch (IOException ex)
+                {
+                  failed(ex);
+                  return;
+                }
+                queue.completeItem();
+                run.imageDownloaded();
+              });
+          }
+
+          @Override
+          public void failed( Exception ex )
+          {
+            queue.release();
+            dispatch(queue, resolver, run);
+          }
+
+          @Override
+          public void cancelled()
+          {
+            failed(null);
+          }
+        });
+    }
+  }
+
+
+  private long[] measure( boolean prefetch ) throws Exception
+  {
+    long firstImageSum = 0, firstImageMax = 0, allImagesSum = 0,
+      allImagesMax = 0;
+    for (int i = 0; i < RUNS; i++)
+    {
+      Run run = run(prefetch);
+      long firstImageTime = run.firstImageTime.get();
+      firstImageSum += firstImageTime;
+      firstImageMax = Math.max(firstImageMax, firstImageTime);
+      allImagesSum += run.allImagesTime;
+      allImagesMax = Math.max(allImagesMax, run.allImagesTime);
+    }
+
+    long[] result = {
+        firstImageSum / RUNS, firstImageMax, allImagesSum / RUNS, allImagesMax
+      };
+    for (int i = 0; i < result.length; i++)
+      result[i] = TimeUnit.NANOSECONDS.toMillis(result[i]);
+    logger.log(Level.INFO,
+      "{0}: first image mean {1} ms, max {2} ms; {3} images mean {4} ms, " +
+        "max {5} ms",
+      new Object[]{
+        prefetch ? "prefetched" : "sequential", result[0], result[1], SLOTS,
+        result[2], result[3]
+      });
+    return result;
+  }
+
+
+  @Test
+  public void testPrefetch() throws Exception
+  {
+    long[] sequential = measure(false), prefetched = measure(true);
+
+    // the first image needs a lookup and a download either way
+    assertTrue(sequential[0] >= 2 * LATENCY);
+    assertTrue(prefetched[0] >= 2 * LATENCY);
+    // replacements for stale photos are resolved already
+    assertTrue(prefetched[2] + LATENCY / 2 < sequential[2]);
+  }
+}
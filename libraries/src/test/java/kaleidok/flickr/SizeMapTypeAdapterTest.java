@@ -0,0 +1,105 @@
+package kaleidok.flickr;
+
+import com.google.gson.JsonParseException;
+import kaleidok.google.gson.JsonStreams;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import static org.junit.Assert.*;
+
+
+public class SizeMapTypeAdapterTest
+{
+  @SuppressWarnings("SpellCheckingInspection")
+  private static final String SIZES =
+    "{\"canblog\":0,\"canprint\":1,\"candownload\":true,\"size\":[" +
+      "{\"label\":\"Square\",\"width\":75,\"height\":75," +
+      "\"source\":\"https://farm1.staticflickr.com/1/2_3_s.jpg\"," +
+      "\"url\":\"https://www.flickr.com/photos/x/2/sizes/sq/\"," +
+      "\"media\":\"photo\"}," +
+      "{\"label\":\"Large Square\",\"width\":\"150\",\"height\":\"150\"," +
+      "\"source\":\"https://farm1.staticflickr.com/1/2_3_q.jpg\"}," +
+      "{\"label\":\"Medium 640\",\"width\":640,\"height\":480," +
+      "\"source\":\"https://farm1.staticflickr.com/1/2_3_z.jpg\"," +
+      "\"extra\":{\"nested\":[1,2,{\"deeper\":null}]}}]}";
+
+
+  private static SizeMap read( String json ) throws IOException
+  {
+    return JsonStreams.read(new StringReader(json),
+      SizeMapTypeAdapter.INSTANCE);
+  }
+
+
+  @Test
+  public void testRead() throws IOException
+  {
+    SizeMap sizes = read("{\"sizes\":" + SIZES + ",\"stat\":\"ok\"}");
+
+    assertFalse(sizes.canBlog);
+    assertTrue(sizes.canPrint);
+    assertTrue(sizes.canDownload);
+    assertEquals(3, sizes.size());
+
+    Size square = sizes.get(Size.Label.Square);
+    assertEquals(75, square.width);
+    assertEquals("https://farm1.staticflickr.com/1/2_3_s.jpg", square.source);
+    assertEquals(150, sizes.get(Size.Label.LargeSquare).height);
+    assertEquals(Size.Label.Medium640, sizes.lastKey());
+  }
+
+
+  @Test
+  public void testReadStopsEarly() throws IOException
+  {
+    // anything after the sizes and the status code remains unread
+    SizeMap sizes =
+      read("{\"stat\":\"ok\",\"sizes\":" + SIZES + ",\"garbage\":[[[");
+    assertEquals(3, sizes.size());
+  }
+
+
+  @Test
+  public void testReadFailure() throws IOException
+  {
+    try
+    {
+      read("{\"stat\":\"fail\",\"code\":1,\"message\":\"Photo not found\"}");
+      fail("Expected " + JsonParseException.class.getName());
+    }
+    catch (JsonParseException ex)
+    {
+      assertTrue(ex.getCause() instanceof FlickrException);
+      assertEquals(1, ((FlickrException) ex.getCause()).getErrorCode());
+    }
+  }
+
+
+  @Test(expected = JsonParseException.class)
+  public void testReadMalformed() throws IOException
+  {
+    read("{\"sizes\":{\"size\":[{\"label\":\"Square\",\"width\":}]}");
+  }
+
+
+  @Test
+  public void testWriteRoundTrip() throws IOException
+  {
+    SizeMap expected = read("{\"sizes\":" + SIZES + ",\"stat\":\"ok\"}");
+    String json = SizeMapTypeAdapter.INSTANCE.toJson(expected);
+    assertTrue(json, json.contains("\"label\":\"Large Square\""));
+
+    SizeMap actual = read(json);
+    assertEquals(expected.keySet(), actual.keySet());
+    assertEquals(expected.canPrint, actual.canPrint);
+    for (Size e : expected.values())
+    {
+      Size a = actual.get(e.label);
+      assertEquals(e.width, a.width);
+      assertEquals(e.height, a.height);
+      assertEquals(e.source, a.source);
+    }
+  }
+}
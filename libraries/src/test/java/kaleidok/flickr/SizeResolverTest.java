@@ -0,0 +1,218 @@
+package kaleidok.flickr;
+
+import org.apache.http.concurrent.FutureCallback;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+
+public class SizeResolverTest
+{
+  /**
+   * The callbacks of the lookups that weren't completed yet by photo ID
+   */
+  private final Map<String, List<FutureCallback<SizeMap>>> pendingLookups =
+    new HashMap<>();
+
+  private int lookupCount;
+
+  private SizeResolver resolver;
+
+
+  @Before
+  public void setUp()
+  {
+    pendingLookups.clear();
+    lookupCount = 0;
+    resolver = new SizeResolver(
+      ( photoId, callback ) -> {
+        lookupCount++;
+        pendingLookups.computeIfAbsent(photoId, ( k ) -> new ArrayList<>())
+          .add(callback);
+      },
+      2);
+  }
+
+
+  private static Photo newPhoto( String id, int width, int height )
+  {
+    return new TestPhoto(
+      "https://farm1.staticflickr.com/2/" + id + "_abc123_s.jpg",
+      width, height);
+  }
+
+
+  private void completeLookup( String photoId, SizeMap sizes )
+  {
+    for (FutureCallback<SizeMap> callback : pendingLookups.remove(photoId))
+      callback.completed(sizes);
+  }
+
+
+  private void failLookup( String photoId, Exception ex )
+  {
+    for (FutureCallback<SizeMap> callback : pendingLookups.remove(photoId))
+      callback.failed(ex);
+  }
+
+
+  private static final class ResultCallback implements FutureCallback<SizeMap>
+  {
+    SizeMap sizes = null;
+
+    Exception failure = null;
+
+
+    @Override
+    public void completed( SizeMap sizes )
+    {
+      assertNull(this.sizes);
+      this.sizes = sizes;
+    }
+
+    @Override
+    public void failed( Exception ex )
+    {
+      assertNull(failure);
+      failure = ex;
+    }
+
+    @Override
+    public void cancelled()
+    {
+      fail("Unexpected cancellation");
+    }
+  }
+
+
+  @Test
+  public void testSharedLookup()
+  {
+    Photo photo = newPhoto("1", 0, 0);
+    resolver.prefetch(photo);
+    ResultCallback cb1 = new ResultCallback(), cb2 = new ResultCallback();
+    resolver.resolve(photo, cb1);
+    resolver.resolve(newPhoto("1", 0, 0), cb2);
+    assertEquals(1, lookupCount);
+    assertNull(cb1.sizes);
+
+    SizeMap sizes = new SizeMap();
+    completeLookup("1", sizes);
+    assertSame(sizes, cb1.sizes);
+    assertSame(sizes, cb2.sizes);
+
+    ResultCallback cb3 = new ResultCallback();
+    resolver.resolve(photo, cb3);
+    assertSame(sizes, cb3.sizes);
+    assertEquals(1, lookupCount);
+    assertEquals(1, resolver.getLookupCount());
+    assertEquals(3, resolver.getHitCount());
+  }
+
+
+  @Test
+  public void testFailures()
+  {
+    resolver.setMaxEntries(3);
+    Photo photo1 = newPhoto("1", 0, 0), photo2 = newPhoto("2", 0, 0),
+      photo3 = newPhoto("3", 0, 0);
+    ResultCallback cb1 = new ResultCallback(), cb2 = new ResultCallback(),
+      cb3 = new ResultCallback();
+    resolver.resolve(photo1, cb1);
+    resolver.resolve(photo2, cb2);
+    resolver.resolve(photo3, cb3);
+
+    FlickrException flickrException =
+      new FlickrException("Photo not found", 1, null);
+    failLookup("1", flickrException);
+    failLookup("2", new IOException());
+    failLookup("3", new FlickrException("Service currently unavailable", 105,
+      null));
+    assertSame(flickrException, cb1.failure);
+    assertTrue(cb2.failure instanceof IOException);
+    assertEquals(105, ((FlickrException) cb3.failure).getErrorCode());
+
+    // missing photos are cached, I/O and transient Flickr errors are retried
+    ResultCallback cb4 = new ResultCallback(), cb5 = new ResultCallback(),
+      cb6 = new ResultCallback();
+    resolver.resolve(photo1, cb4);
+    resolver.resolve(photo2, cb5);
+    resolver.resolve(photo3, cb6);
+    assertSame(flickrException, cb4.failure);
+    assertEquals(5, lookupCount);
+    assertTrue(pendingLookups.containsKey("2"));
+    assertTrue(pendingLookups.containsKey("3"));
+  }
+
+
+  @Test
+  public void testEviction()
+  {
+    for (String id : new String[]{ "1", "2", "3" })
+    {
+      resolver.prefetch(newPhoto(id, 0, 0));
+      completeLookup(id, new SizeMap());
+    }
+    assertEquals(2, resolver.getEntryCount());
+
+    resolver.prefetch(newPhoto("3", 0, 0));
+    assertEquals(3, lookupCount);
+    resolver.prefetch(newPhoto("1", 0, 0));
+    assertEquals(4, lookupCount);
+  }
+
+
+  @Test
+  public void testInferSizes()
+  {
+    ResultCallback cb = new ResultCallback();
+    resolver.resolve(newPhoto("1", 1280, 960), cb);
+    assertEquals(0, lookupCount);
+    assertEquals(1, resolver.getInferredCount());
+
+    SizeMap sizes = cb.sizes;
+    assertEquals(Size.Label.Large, sizes.lastKey());
+    assertEquals(Size.Label.values().length - 3, sizes.size());
+
+    Size large = sizes.get(Size.Label.Large);
+    assertEquals(1024, large.width);
+    assertEquals(768, large.height);
+    assertEquals("https://farm1.static.flickr.com/2/1_abc123_b.jpg",
+      large.source);
+
+    Size medium = sizes.get(Size.Label.Medium);
+    assertEquals(500, medium.width);
+    assertEquals(375, medium.height);
+    assertEquals("https://farm1.static.flickr.com/2/1_abc123.jpg",
+      medium.source);
+
+    Size square = sizes.get(Size.Label.LargeSquare);
+    assertEquals(150, square.width);
+    assertEquals(150, square.height);
+  }
+
+
+  @Test
+  public void testInferSizesTooSmall()
+  {
+    // a rendition smaller than the minimum inferred size needs a lookup
+    resolver.prefetch(newPhoto("1", 500, 375));
+    assertEquals(1, lookupCount);
+
+    resolver.minInferredSize = Size.Label.Medium;
+    SizeMap sizes = resolver.inferSizes(newPhoto("2", 375, 500));
+    assertNotNull(sizes);
+    assertEquals(Size.Label.Medium, sizes.lastKey());
+    assertEquals(375, sizes.get(Size.Label.Medium).width);
+
+    resolver.minInferredSize = null;
+    assertNull(resolver.inferSizes(newPhoto("3", 1280, 960)));
+  }
+}
@@ -0,0 +1,34 @@
+package kaleidok.flickr;
+
+
+/**
+ * A photo without access to the Flickr API for tests; its sizes must be
+ * {@link #setSizes(SizeMap) set} or resolved elsewhere.
+ */
+public class TestPhoto extends Photo
+{
+  private static final long serialVersionUID = 1L;
+
+
+  public TestPhoto() { }
+
+
+  /**
+   * @param url  A static photo URL
+   * @param width  The width of some rendition of the photo; 0 if unknown
+   * @param height  The height of some rendition of the photo; 0 if unknown
+   */
+  public TestPhoto( CharSequence url, int width, int height )
+  {
+    parseUrl(url);
+    this.width = width;
+    this.height = height;
+  }
+
+
+  @Override
+  public SizeMap getSizesThrow()
+  {
+    throw new UnsupportedOperationException();
+  }
+}
@@ -0,0 +1,91 @@
+package kaleidok.google.speech;
+
+import kaleidok.net.http.HttpConnectionPool;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.URL;
+
+import static kaleidok.net.http.HttpConnection.HTTP_PROTOCOL;
+import static org.junit.Assert.*;
+
+
+public class TranscriptionTest
+{
+  /**
+   * More than the pool allows per host, so that leaked leases block
+   */
+  private static final int ATTEMPTS =
+    HttpConnectionPool.DEFAULT_MAX_CONNECTIONS_PER_HOST * 2 + 1;
+
+  private final HttpConnectionPool pool = HttpConnectionPool.getDefault();
+
+  private long acquireTimeout;
+
+  private URL url;
+
+
+  @Before
+  public void setUp() throws IOException
+  {
+    acquireTimeout = pool.acquireTimeout;
+    pool.acquireTimeout = 500;
+
+    // a port that refuses connections
+    int port;
+    try (ServerSocket socket =
+      new ServerSocket(0, 1, InetAddress.getByName(null)))
+    {
+      port = socket.getLocalPort();
+    }
+    url = new URL(HTTP_PROTOCOL, "localhost", port, "/recognize");
+  }
+
+
+  @After
+  public void tearDown()
+  {
+    pool.acquireTimeout = acquireTimeout;
+  }
+
+
+  @Test
+  public void testConnectFailureReleasesLease() throws IOException
+  {
+    int leased = pool.getStatistics().leased;
+    for (int i = 0; i < ATTEMPTS; i++)
+    {
+      // fails like a transcription that connects in its constructor
+      try
+      {
+        new Transcription(url, "audio/x-flac", 16000)
+          {
+            {
+              getOutputStream();
+            }
+          };
+        fail("Connection to " + url + " should have been refused");
+      }
+      catch (ConnectException ignored)
+      {
+        // expected; an IOException from the pool fails the test
+      }
+    }
+    assertEquals(leased, pool.getStatistics().leased);
+  }
+
+
+  @Test
+  public void testDisposeUnconnected() throws IOException
+  {
+    int leased = pool.getStatistics().leased;
+    for (int i = 0; i < ATTEMPTS; i++)
+      new Transcription(url, "audio/x-flac", 16000).dispose();
+    assertEquals(leased, pool.getStatistics().leased);
+  }
+}
@@ -0,0 +1,74 @@
+package kaleidok.google.speech.mock;
+
+import javaFlacEncoder.FLACEncoder;
+import javaFlacEncoder.FLACStreamOutputStream;
+import javaFlacEncoder.StreamConfiguration;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+
+public class FlacStreamInfoTest
+{
+  private static final int SAMPLE_RATE = 16000, BLOCK_SIZE = 1024;
+
+
+  private static byte[] encode( int sampleCount ) throws IOException
+  {
+    FLACEncoder encoder = new FLACEncoder();
+    encoder.setStreamConfiguration(new StreamConfiguration(1, BLOCK_SIZE,
+      Math.max(BLOCK_SIZE, StreamConfiguration.DEFAULT_MAX_BLOCK_SIZE),
+      SAMPLE_RATE, Short.SIZE));
+    ByteArrayOutputStream buf = new ByteArrayOutputStream();
+    encoder.setOutputStream(new FLACStreamOutputStream(buf));
+    encoder.openFLACStream();
+
+    int[] samples = new int[sampleCount];
+    for (int i = 0; i < sampleCount; i++)
+      samples[i] = (int) (Math.sin(i * 0.05) * 8000);
+    encoder.addSamples(samples, sampleCount);
+    encoder.encodeSamples(sampleCount, true);
+    return buf.toByteArray();
+  }
+
+
+  @Test
+  public void testRead() throws IOException
+  {
+    byte[] data = encode(SAMPLE_RATE * 5 / 2);
+    FlacStreamInfo streamInfo = FlacStreamInfo.read(data);
+    assertEquals(SAMPLE_RATE, streamInfo.sampleRate);
+    assertEquals(1, streamInfo.channels);
+    assertEquals(Short.SIZE, streamInfo.bitsPerSample);
+    assertEquals(SAMPLE_RATE * 5 / 2, streamInfo.getSampleCount(data));
+    assertEquals(2.5, streamInfo.getDuration(data), 0);
+  }
+
+
+  @Test
+  public void testNoFrames() throws IOException
+  {
+    byte[] data = encode(0);
+    assertTrue(Double.isNaN(FlacStreamInfo.read(data).getDuration(data)));
+  }
+
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNoMarker() throws IOException
+  {
+    byte[] data = encode(BLOCK_SIZE);
+    data[0] = 'F';
+    FlacStreamInfo.read(data);
+  }
+
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testTruncated() throws IOException
+  {
+    FlacStreamInfo.read(Arrays.copyOf(encode(BLOCK_SIZE), 20));
+  }
+}
@@ -0,0 +1,137 @@
+package kaleidok.image.filter;
+
+import kaleidok.image.filter.HSBAdjustFilter.FilterMode;
+import kaleidok.util.function.BinaryFloatFunction;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertTrue;
+
+
+public class HSBAdjustFilterTest
+{
+  private static final int TOLERANCE = 1;
+
+  private static final int SAMPLE_COUNT = 1 << 16;
+
+  private static final float[][] PARAMETERS = {
+      { 0.1f, -0.2f, 0.05f },
+      { 0.5f, 0.3f, -0.3f },
+      { 1, 0.75f, 1.1f },
+      { 2, 0.5f, 1.7f },
+      { 0.3f, 0.2f, 3 },
+    };
+
+
+  private static void testFilterMode( FilterMode filterMode )
+  {
+    for (float[] p : PARAMETERS)
+    {
+      testFilter(new HSBAdjustFilter(p[0], p[1], p[2], filterMode));
+    }
+  }
+
+
+  private static void testFilter( HSBAdjustFilter filter )
+  {
+    // A filter mode that isn't a FilterMode constant bypasses the lookup tables
+    BinaryFloatFunction filterMode = filter.filterMode;
+    HSBAdjustFilter reference = new HSBAdjustFilter(
+      filter.hue, filter.saturation, filter.brightness,
+      (BinaryFloatFunction) filterMode::applyAsFloat);
+
+    Random rnd = new Random(SAMPLE_COUNT);
+    for (int i = 0; i < SAMPLE_COUNT; i++)
+    {
+      // include all shades of grey
+      int rgb = (i < 256) ? i * 0x010101 : rnd.nextInt() & 0xffffff;
+      assertWithinTolerance(filter, rgb,
+        reference.filterRGB(0, 0, rgb), filter.filterRGB(0, 0, rgb));
+    }
+  }
+
+
+  private static void assertWithinTolerance( HSBAdjustFilter filter,
+    int rgb, int expected, int actual )
+  {
+    for (int shift = 0; shift < 32; shift += 8)
+    {
+      int delta = ((expected >>> shift) & 0xff) - ((actual >>> shift) & 0xff);
+      assertTrue(
+        String.format("%s: expected %08x but got %08x for %06x",
+          filter, expected, actual, rgb),
+        Math.abs(delta) <= TOLERANCE);
+    }
+  }
+
+
+  @Test
+  public void testAdd()
+  {
+    testFilterMode(FilterMode.ADD);
+  }
+
+
+  @Test
+  public void testSubtract()
+  {
+    testFilterMode(FilterMode.SUBTRACT);
+  }
+
+
+  @Test
+  public void testMultiply()
+  {
+    testFilterMode(FilterMode.MULTIPLY);
+  }
+
+
+  @Test
+  public void testDivide()
+  {
+    testFilterMode(FilterMode.DIVIDE);
+  }
+
+
+  @Test
+  public void testPower()
+  {
+    testFilterMode(FilterMode.POWER);
+  }
+
+
+  @Test
+  public void testParameterChange()
+  {
+    HSBAdjustFilter filter =
+      new HSBAdjustFilter(1, 0.75f, 1.1f, FilterMode.POWER);
+    testFilter(filter);
+
+    filter.brightness = 0.5f;
+    filter.hue = 0.8f;
+    testFilter(filter);
+
+    filter.filterMode = FilterMode.MULTIPLY;
+    testFilter(filter);
+  }
+
+
+  @Test
+  public void testPowerNegativeHue()
+  {
+    HSBAdjustFilter filter = new HSBAdjustFilter(-0.5f, 1, 1, FilterMode.POWER);
+    HSBAdjustFilter reference = new HSBAdjustFilter(
+      filter.hue, filter.saturation, filter.brightness,
+      (BinaryFloatFunction) FilterMode.POWER::applyAsFloat);
+
+    // 0 ^ -0.5 is infinite; a hue of 0 remains unchanged
+    for (int rgb : new int[]{ 0xc86464, 0xff0000, 0x808080, 0x000000 })
+    {
+      assertWithinTolerance(filter, rgb, rgb | 0xff000000,
+        reference.filterRGB(0, 0, rgb));
+      assertWithinTolerance(filter, rgb, rgb | 0xff000000,
+        filter.filterRGB(0, 0, rgb));
+    }
+  }
+}
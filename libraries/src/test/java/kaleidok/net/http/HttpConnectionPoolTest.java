@@ -0,0 +1,313 @@
+package kaleidok.net.http;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static kaleidok.net.http.HttpConnection.HTTP_PROTOCOL;
+import static org.junit.Assert.*;
+
+
+public class HttpConnectionPoolTest
+{
+  private static final String PATH = "/", BODY = "{\"stat\":\"ok\"}";
+
+  /**
+   * A response body, whose end neither fits into the buffers of the JSON
+   * reader nor is skipped by {@link java.net.HttpURLConnection} on close
+   */
+  private static final String LARGE_BODY;
+  static
+  {
+    StringBuilder sb = new StringBuilder(BODY.length() + 300000)
+      .append(BODY, 0, BODY.length() - 1).append(",\"padding\":[0");
+    for (int i = 0; i < 100000; i++)
+      sb.append(",0");
+    LARGE_BODY = sb.append("]}").toString();
+  }
+
+  private HttpServer server;
+
+  private ExecutorService serverExecutor;
+
+  private URL url;
+
+  /**
+   * The client ports of the connections that the server saw
+   */
+  private final Set<Integer> clientPorts = ConcurrentHashMap.newKeySet();
+
+  private final AtomicInteger activeRequests = new AtomicInteger(),
+    maxActiveRequests = new AtomicInteger();
+
+  private volatile long responseDelay = 0;
+
+  private volatile String responseBody = BODY;
+
+
+  @Before
+  public void setUp() throws IOException
+  {
+    server = HttpServer.create(
+      new InetSocketAddress(InetAddress.getByName(null), 0), 0);
+    server.createContext(PATH, this::handle);
+    serverExecutor = Executors.newCachedThreadPool();
+    server.setExecutor(serverExecutor);
+    server.start();
+    url = new URL(HTTP_PROTOCOL, server.getAddress().getHostString(),
+      server.getAddress().getPort(), PATH);
+  }
+
+
+  @After
+  public void tearDown()
+  {
+    server.stop(0);
+    serverExecutor.shutdownNow();
+  }
+
+
+  private void handle( HttpExchange exchange ) throws IOException
+  {
+    clientPorts.add(exchange.getRemoteAddress().getPort());
+    int active = activeRequests.incrementAndGet();
+    maxActiveRequests.accumulateAndGet(active, Math::max);
+    try
+    {
+      if (responseDelay > 0)
+        Thread.sleep(responseDelay);
+
+      byte[] body = responseBody.getBytes(StandardCharsets.UTF_8);
+      exchange.getResponseHeaders()
+        .set("Content-Type", "application/json;charset=UTF-8");
+      exchange.sendResponseHeaders(200, body.length);
+      try (OutputStream os = exchange.getResponseBody())
+      {
+        os.write(body);
+      }
+    }
+    catch (InterruptedException ex)
+    {
+      Thread.currentThread().interrupt();
+    }
+    finally
+    {
+      activeRequests.decrementAndGet();
+    }
+  }
+
+
+  @Test
+  public void testKeepAlive() throws IOException
+  {
+    HttpConnectionPool pool = new HttpConnectionPool(2);
+    for (int i = 0; i < 10; i++)
+    {
+      try (HttpConnection con = pool.open(url))
+      {
+        assertEquals(BODY, con.getBody());
+      }
+    }
+
+    assertEquals(1, clientPorts.size());
+    HttpConnectionPool.Statistics stats = pool.getStatistics();
+    assertEquals(10, stats.leases);
+    assertEquals(10, stats.keptAlive);
+    assertEquals(0, stats.disconnected);
+    assertEquals(0, stats.leased);
+  }
+
+
+  @Test
+  public void testJsonKeepAlive() throws IOException
+  {
+    HttpConnectionPool pool = new HttpConnectionPool(2);
+    for (int i = 0; i < 5; i++)
+    {
+      try (JsonHttpConnection con = pool.open(url, JsonHttpConnection.class))
+      {
+        assertEquals("ok",
+          con.get().getAsJsonObject().get("stat").getAsString());
+      }
+    }
+
+    assertEquals(1, clientPorts.size());
+    assertEquals(5, pool.getStatistics().keptAlive);
+  }
+
+
+  /**
+   * Reads the first property of an object and ignores the rest
+   */
+  private static final TypeAdapter<String> FIRST_VALUE_ADAPTER =
+    new TypeAdapter<String>()
+    {
+      @Override
+      public String read( JsonReader in ) throws IOException
+      {
+        in.beginObject();
+        in.nextName();
+        return in.nextString();
+      }
+
+      @Override
+      public void write( JsonWriter out, String value )
+      {
+        throw new UnsupportedOperationException();
+      }
+    };
+
+
+  @Test
+  public void testJsonEarlyExitKeepAlive() throws IOException
+  {
+    responseBody = LARGE_BODY;
+    HttpConnectionPool pool = new HttpConnectionPool(2);
+    for (int i = 0; i < 3; i++)
+    {
+      try (JsonHttpConnection con = pool.open(url, JsonHttpConnection.class))
+      {
+        assertEquals("ok", con.get(FIRST_VALUE_ADAPTER));
+      }
+    }
+
+    // the rest of each response was skipped, so the socket was reused
+    assertEquals(1, clientPorts.size());
+    HttpConnectionPool.Statistics stats = pool.getStatistics();
+    assertEquals(3, stats.keptAlive);
+    assertEquals(0, stats.disconnected);
+  }
+
+
+  @Test
+  public void testDisconnectUnread() throws IOException
+  {
+    HttpConnectionPool pool = new HttpConnectionPool(2);
+    try (HttpConnection con = pool.open(url))
+    {
+      assertEquals(200, con.getResponseCode());
+    }
+    try (HttpConnection con = pool.open(url))
+    {
+      assertEquals(BODY, con.getBody());
+    }
+
+    // the unread response prevented the reuse of the first socket
+    assertEquals(2, clientPorts.size());
+    HttpConnectionPool.Statistics stats = pool.getStatistics();
+    assertEquals(1, stats.disconnected);
+    assertEquals(1, stats.keptAlive);
+    assertEquals(0.5, stats.getKeepAliveRatio(), 0);
+  }
+
+
+  @Test
+  public void testPerHostLimit() throws Exception
+  {
+    final int limit = 2, requests = 8;
+    final HttpConnectionPool pool = new HttpConnectionPool(limit);
+    responseDelay = 50;
+
+    ExecutorService clients = Executors.newFixedThreadPool(requests);
+    try
+    {
+      final CountDownLatch start = new CountDownLatch(1);
+      List<Future<String>> results = new ArrayList<>(requests);
+      for (int i = 0; i < requests; i++)
+      {
+        results.add(clients.submit(() -> {
+          start.await();
+          try (HttpConnection con = pool.open(url))
+          {
+            return con.getBody();
+          }
+        }));
+      }
+      start.countDown();
+      for (Future<String> result : results)
+        assertEquals(BODY, result.get(10, TimeUnit.SECONDS));
+    }
+    finally
+    {
+      clients.shutdownNow();
+    }
+
+    assertTrue(maxActiveRequests.get() <= limit);
+    assertTrue(clientPorts.size() <= limit);
+    HttpConnectionPool.Statistics stats = pool.getStatistics();
+    assertEquals(requests, stats.leases);
+    assertTrue(stats.waits > 0);
+    assertEquals(0, stats.leased);
+  }
+
+
+  @Test
+  public void testAcquireTimeout() throws IOException
+  {
+    HttpConnectionPool pool = new HttpConnectionPool(1);
+    pool.acquireTimeout = 50;
+    try (HttpConnection ignored = pool.open(url))
+    {
+      try
+      {
+        pool.open(url);
+        fail("Expected " + IOException.class.getName());
+      }
+      catch (IOException ex)
+      {
+        // expected
+      }
+    }
+
+    // the permit is available again
+    try (HttpConnection con = pool.open(url))
+    {
+      assertEquals(BODY, con.getBody());
+    }
+  }
+
+
+  @Test
+  public void testEvictIdleHosts() throws Exception
+  {
+    HttpConnectionPool pool = new HttpConnectionPool(1);
+    pool.idleTimeout = 0;
+
+    HttpConnection con = pool.open(url);
+    assertEquals(0, pool.evictIdleHosts());
+    assertEquals(BODY, con.getBody());
+
+    Thread.sleep(1);
+    assertEquals(1, pool.evictIdleHosts());
+    HttpConnectionPool.Statistics stats = pool.getStatistics();
+    assertEquals(0, stats.hosts);
+    assertEquals(1, stats.evictedHosts);
+
+    try (HttpConnection con2 = pool.open(url))
+    {
+      assertEquals(BODY, con2.getBody());
+    }
+  }
+}
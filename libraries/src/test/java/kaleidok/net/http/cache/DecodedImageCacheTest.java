@@ -0,0 +1,101 @@
+package kaleidok.net.http.cache;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.awt.Dimension;
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+
+import static org.junit.Assert.*;
+
+
+public class DecodedImageCacheTest
+{
+  private static final String
+    URL1 = "https://farm1.staticflickr.com:443/53/158856832_bf22c667e6_z.jpg",
+    URL2 = "https://farm1.staticflickr.com:443/63/195742611_b9200758a4_z.jpg",
+    URL3 = "https://farm1.staticflickr.com:443/55/169230094_65f714eb01_o.jpg";
+
+  /**
+   * The size of a 100×100 pixel ARGB image in bytes
+   */
+  private static final long IMAGE_SIZE = 100 * 100 * 4;
+
+  private final Dimension targetSize = new Dimension(640, 480);
+
+  private DecodedImageCache cache;
+
+
+  @Before
+  public void setUp()
+  {
+    cache = new DecodedImageCache(IMAGE_SIZE * 2, () -> targetSize);
+  }
+
+
+  private static Image newImage()
+  {
+    return new BufferedImage(100, 100, BufferedImage.TYPE_INT_ARGB);
+  }
+
+
+  @Test
+  public void testHitAndMiss()
+  {
+    DecodedImageCache.Key key = cache.newKey(URL1);
+    assertNull(cache.get(key));
+
+    Image img = newImage();
+    cache.put(key, img);
+    assertSame(img, cache.get(cache.newKey(URL1)));
+    assertNull(cache.get(cache.newKey(URL2)));
+
+    assertEquals(1, cache.getHitCount());
+    assertEquals(2, cache.getMissCount());
+    assertEquals(1 / 3., cache.getHitRate(), 0);
+    assertEquals(IMAGE_SIZE, cache.size());
+  }
+
+
+  @Test
+  public void testTargetSize()
+  {
+    cache.put(cache.newKey(URL1), newImage());
+    targetSize.setSize(1920, 1080);
+    assertNull(cache.get(cache.newKey(URL1)));
+  }
+
+
+  @Test
+  public void testEviction()
+  {
+    Image img1 = newImage(), img2 = newImage(), img3 = newImage();
+    cache.put(cache.newKey(URL1), img1);
+    cache.put(cache.newKey(URL2), img2);
+    assertSame(img1, cache.get(cache.newKey(URL1)));
+
+    // evicts the least recently used entry for URL2
+    cache.put(cache.newKey(URL3), img3);
+    assertEquals(2, cache.getEntryCount());
+    assertEquals(1, cache.getEvictionCount());
+    assertEquals(IMAGE_SIZE * 2, cache.size());
+    assertNull(cache.get(cache.newKey(URL2)));
+    assertSame(img1, cache.get(cache.newKey(URL1)));
+    assertSame(img3, cache.get(cache.newKey(URL3)));
+
+    cache.setMaxSize(IMAGE_SIZE);
+    assertEquals(1, cache.getEntryCount());
+    assertSame(img3, cache.get(cache.newKey(URL3)));
+  }
+
+
+  @Test
+  public void testOversized()
+  {
+    cache.setMaxSize(IMAGE_SIZE - 1);
+    cache.put(cache.newKey(URL1), newImage());
+    assertEquals(0, cache.getEntryCount());
+    assertEquals(0, cache.size());
+  }
+}
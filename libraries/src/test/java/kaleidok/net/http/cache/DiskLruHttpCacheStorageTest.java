@@ -0,0 +1,194 @@
+package kaleidok.net.http.cache;
+
+import com.jakewharton.disklrucache.DiskLruCache;
+import org.apache.commons.io.IOUtils;
+import org.apache.http.Header;
+import org.apache.http.HttpStatus;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.cache.HttpCacheEntry;
+import org.apache.http.client.cache.Resource;
+import org.apache.http.impl.client.cache.HeapResource;
+import org.apache.http.message.BasicHeader;
+import org.apache.http.message.BasicStatusLine;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+
+public class DiskLruHttpCacheStorageTest
+{
+  private static final String KEY =
+    "https://farm1.staticflickr.com:443/53/158856832_bf22c667e6_z.jpg";
+
+  private File cacheDir;
+
+  private DiskLruHttpCacheStorage storage;
+
+  private long savedMemoryMapThreshold;
+
+
+  @Before
+  public void setUp() throws IOException
+  {
+    cacheDir = Files.createTempDirectory(getClass().getSimpleName()).toFile();
+    storage = new DiskLruHttpCacheStorage(cacheDir, 1, 1L << 24);
+    savedMemoryMapThreshold = DiskLruHttpCacheStorage.MEMORY_MAP_THRESHOLD;
+  }
+
+
+  @After
+  public void tearDown() throws IOException
+  {
+    DiskLruHttpCacheStorage.MEMORY_MAP_THRESHOLD = savedMemoryMapThreshold;
+    storage.delete();
+  }
+
+
+  private static HttpCacheEntry newEntry( int bodyLength )
+  {
+    byte[] body = new byte[bodyLength];
+    new Random(bodyLength).nextBytes(body);
+    return new HttpCacheEntry(new Date(1000000), new Date(1001000),
+      new BasicStatusLine(HttpVersion.HTTP_1_1, HttpStatus.SC_OK, "OK"),
+      new Header[]{
+        new BasicHeader("Content-Type", "image/jpeg"),
+        new BasicHeader("Cache-Control", "max-age=315360000"),
+        new BasicHeader("X-Photo-Title", "Ünïcödé")
+      },
+      new HeapResource(body),
+      Collections.singletonMap("{Accept-Encoding=gzip}", "variant"),
+      "GET");
+  }
+
+
+  private static byte[] toByteArray( Resource resource ) throws IOException
+  {
+    try (InputStream is = resource.getInputStream())
+    {
+      return IOUtils.toByteArray(is);
+    }
+  }
+
+
+  private static void assertEntryEquals( HttpCacheEntry expected,
+    HttpCacheEntry actual )
+    throws IOException
+  {
+    assertNotNull(actual);
+    assertEquals(expected.getRequestDate(), actual.getRequestDate());
+    assertEquals(expected.getResponseDate(), actual.getResponseDate());
+    assertEquals(expected.getRequestMethod(), actual.getRequestMethod());
+    assertEquals(expected.getProtocolVersion(), actual.getProtocolVersion());
+    assertEquals(expected.getStatusCode(), actual.getStatusCode());
+    assertEquals(expected.getReasonPhrase(), actual.getReasonPhrase());
+
+    Header[] expectedHeaders = expected.getAllHeaders(),
+      actualHeaders = actual.getAllHeaders();
+    assertEquals(expectedHeaders.length, actualHeaders.length);
+    for (int i = 0; i < expectedHeaders.length; i++)
+    {
+      assertEquals(expectedHeaders[i].getName(), actualHeaders[i].getName());
+      assertEquals(expectedHeaders[i].getValue(), actualHeaders[i].getValue());
+    }
+
+    assertEquals(expected.getVariantMap(), actual.getVariantMap());
+    assertEquals(expected.getResource().length(),
+      actual.getResource().length());
+    assertArrayEquals(toByteArray(expected.getResource()),
+      toByteArray(actual.getResource()));
+  }
+
+
+  @Test
+  public void testPutAndGet() throws IOException
+  {
+    HttpCacheEntry entry = newEntry(1 << 10);
+    storage.putEntry(KEY, entry);
+    assertEntryEquals(entry, storage.getEntry(KEY));
+    assertNull(storage.getEntry(KEY + "?other"));
+  }
+
+
+  @Test
+  public void testMemoryMapped() throws IOException
+  {
+    DiskLruHttpCacheStorage.MEMORY_MAP_THRESHOLD = 1 << 10;
+    HttpCacheEntry entry = newEntry(1 << 20);
+    storage.putEntry(KEY, entry);
+    HttpCacheEntry actual = storage.getEntry(KEY);
+    assertEntryEquals(entry, actual);
+
+    // the mapped body survives the replacement of the cache file
+    storage.putEntry(KEY, newEntry(1 << 11));
+    assertArrayEquals(toByteArray(entry.getResource()),
+      toByteArray(actual.getResource()));
+  }
+
+
+  @Test
+  public void testUpdate() throws Exception
+  {
+    HttpCacheEntry entry = newEntry(1 << 10), updated = newEntry(1 << 11);
+    storage.putEntry(KEY, entry);
+    storage.updateEntry(KEY, (existing) -> {
+        assertNotNull(existing);
+        return updated;
+      });
+    assertEntryEquals(updated, storage.getEntry(KEY));
+
+    storage.updateEntry(KEY, (existing) -> null);
+    assertNull(storage.getEntry(KEY));
+  }
+
+
+  private static String toInternalKey( String key )
+    throws NoSuchAlgorithmException
+  {
+    return new KeyHasher(MessageDigest.getInstance("SHA-384"))
+      .toInternalKey(key);
+  }
+
+
+  @SuppressWarnings("deprecation")
+  @Test
+  public void testLegacyMigration() throws Exception
+  {
+    HttpCacheEntry entry = newEntry(1 << 10);
+    storage.close();
+    try (DiskLruCache diskCache = DiskLruCache.open(cacheDir, 1, 1, 1L << 24))
+    {
+      DiskLruCache.Editor editor = diskCache.edit(toInternalKey(KEY));
+      DiskLruHttpCacheStorage.serializeLegacy(
+        KEY, entry, editor.newOutputStream(0));
+      editor.commit();
+    }
+
+    storage = new DiskLruHttpCacheStorage(cacheDir, 1, 1L << 24);
+    assertEntryEquals(entry, storage.getEntry(KEY));
+    storage.close();
+
+    // the entry has been converted to the current format
+    try (DiskLruCache diskCache = DiskLruCache.open(cacheDir, 1, 1, 1L << 24);
+      DiskLruCache.Snapshot snapshot = diskCache.get(toInternalKey(KEY)))
+    {
+      assertEquals(DiskLruHttpCacheStorage.FORMAT_MAGIC,
+        new DataInputStream(snapshot.getInputStream(0)).readInt());
+    }
+
+    storage = new DiskLruHttpCacheStorage(cacheDir, 1, 1L << 24);
+    assertEntryEquals(entry, storage.getEntry(KEY));
+  }
+}
@@ -0,0 +1,178 @@
+package kaleidok.processing.export;
+
+import kaleidok.processing.export.ScreenshotWriter.OverflowPolicy;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import processing.core.PConstants;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+
+public class ScreenshotWriterTest
+{
+  private static final int WIDTH = 64, HEIGHT = 48;
+
+  private Path tempDir;
+
+  private int[] pixels;
+
+
+  @Before
+  public void setUp() throws IOException
+  {
+    tempDir = Files.createTempDirectory(getClass().getSimpleName());
+    pixels = new int[WIDTH * HEIGHT];
+    for (int i = 0; i < pixels.length; i++)
+      pixels[i] = i * 0x01010101;
+  }
+
+
+  @After
+  public void tearDown() throws IOException
+  {
+    try (Stream<Path> files = Files.list(tempDir)) {
+      for (Path p : (Iterable<Path>) files::iterator)
+        Files.delete(p);
+    }
+    Files.delete(tempDir);
+  }
+
+
+  private static int[] readBmp32( Path path ) throws IOException
+  {
+    ByteBuffer buf = ByteBuffer.wrap(Files.readAllBytes(path))
+      .order(ByteOrder.LITTLE_ENDIAN);
+    buf.position(buf.getInt(10));
+    IntBuffer data = buf.asIntBuffer();
+    int[] a = new int[data.remaining()];
+    data.get(a);
+    return a;
+  }
+
+
+  @Test
+  public void testCopiesPixels() throws Exception
+  {
+    ScreenshotWriter writer = new ScreenshotWriter(2, OverflowPolicy.BLOCK);
+    int[] expected = pixels.clone();
+    Path path = tempDir.resolve("frame.bmp"),
+      encodedPath = tempDir.resolve("frame.png");
+
+    assertTrue(writer.submit(
+      path.toString(), pixels, WIDTH, HEIGHT, PConstants.ARGB));
+    assertTrue(writer.submit(
+      encodedPath.toString(), pixels, WIDTH, HEIGHT, PConstants.ARGB));
+    // the next frame overwrites the pixels immediately
+    Arrays.fill(pixels, 0);
+    assertTrue(writer.shutdown(10, TimeUnit.SECONDS));
+
+    assertArrayEquals(expected, readBmp32(path));
+    assertTrue(Files.size(encodedPath) > 0);
+    assertEquals(2, writer.getEncodedCount());
+    assertEquals(0, writer.getFailedCount());
+    assertEquals(0, writer.getQueueDepth());
+    assertTrue(writer.getMaxEncodeTime() >= writer.getLastEncodeTime());
+    assertTrue(writer.getLastEncodeTime() > 0);
+  }
+
+
+  private static class BlockingScreenshotWriter extends ScreenshotWriter
+  {
+    final CountDownLatch started = new CountDownLatch(1),
+      release = new CountDownLatch(1);
+
+
+    BlockingScreenshotWriter( int bufferCount, OverflowPolicy overflowPolicy )
+    {
+      super(bufferCount, overflowPolicy);
+    }
+
+
+    @Override
+    protected boolean encode( Path path, int[] pixels, int width, int height,
+      int format )
+      throws IOException
+    {
+      started.countDown();
+      try
+      {
+        release.await();
+      }
+      catch (InterruptedException ex)
+      {
+        throw new AssertionError(ex);
+      }
+      return super.encode(path, pixels, width, height, format);
+    }
+  }
+
+
+  @Test
+  public void testDropPolicy() throws Exception
+  {
+    BlockingScreenshotWriter writer =
+      new BlockingScreenshotWriter(2, OverflowPolicy.DROP);
+
+    for (int i = 0; i < 2; i++)
+    {
+      assertTrue(writer.submit(tempDir.resolve(i + ".bmp").toString(),
+        pixels, WIDTH, HEIGHT, PConstants.RGB));
+    }
+    assertTrue(writer.started.await(10, TimeUnit.SECONDS));
+    assertEquals(2, writer.getQueueDepth());
+    assertFalse(writer.submit(tempDir.resolve("dropped.bmp").toString(),
+      pixels, WIDTH, HEIGHT, PConstants.RGB));
+
+    writer.release.countDown();
+    assertTrue(writer.shutdown(10, TimeUnit.SECONDS));
+    assertEquals(3, writer.getSubmittedCount());
+    assertEquals(1, writer.getDroppedCount());
+    assertEquals(2, writer.getEncodedCount());
+    assertEquals(0, writer.getQueueDepth());
+    assertFalse(Files.exists(tempDir.resolve("dropped.bmp")));
+  }
+
+
+  @Test
+  public void testBlockPolicy() throws Exception
+  {
+    BlockingScreenshotWriter writer =
+      new BlockingScreenshotWriter(1, OverflowPolicy.BLOCK);
+
+    assertTrue(writer.submit(tempDir.resolve("0.bmp").toString(),
+      pixels, WIDTH, HEIGHT, PConstants.RGB));
+    assertTrue(writer.started.await(10, TimeUnit.SECONDS));
+
+    Thread releaser = new Thread(() -> {
+        try
+        {
+          Thread.sleep(50);
+        }
+        catch (InterruptedException ignored)
+        {
+          // release early
+        }
+        writer.release.countDown();
+      });
+    releaser.start();
+    assertTrue(writer.submit(tempDir.resolve("1.bmp").toString(),
+      pixels, WIDTH, HEIGHT, PConstants.RGB));
+    releaser.join();
+
+    assertTrue(writer.shutdown(10, TimeUnit.SECONDS));
+    assertEquals(0, writer.getDroppedCount());
+    assertEquals(2, writer.getEncodedCount());
+  }
+}
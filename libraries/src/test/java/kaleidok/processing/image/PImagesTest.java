@@ -0,0 +1,161 @@
+package kaleidok.processing.image;
+
+import kaleidok.image.filter.HSBAdjustFilter;
+import kaleidok.image.filter.HSBAdjustFilter.FilterMode;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import processing.core.PConstants;
+import processing.core.PImage;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.BufferedImage;
+import java.awt.image.RGBImageFilter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+
+public class PImagesTest
+{
+  private static final int WIDTH = 517, HEIGHT = 389;
+
+  private PImage src;
+
+  private static ForkJoinPool pool;
+
+
+  @BeforeClass
+  public static void setUpClass()
+  {
+    pool = new ForkJoinPool(4);
+  }
+
+
+  @AfterClass
+  public static void tearDownClass()
+  {
+    pool.shutdown();
+  }
+
+
+  @Before
+  public void setUp()
+  {
+    assertTrue(WIDTH * HEIGHT > PImages.PARALLEL_FILTER_TILE_SIZE * 4);
+
+    src = new PImage(WIDTH, HEIGHT, PConstants.ARGB);
+    Random rnd = new Random(WIDTH * HEIGHT);
+    int[] pixels = src.pixels;
+    for (int i = 0; i < pixels.length; i++)
+      pixels[i] = rnd.nextInt();
+    src.updatePixels();
+  }
+
+
+  private void testFilter( RGBImageFilter filter )
+  {
+    PImage sequential = PImages.filter(src, null, filter, null);
+    PImage parallel = PImages.filter(src, null, filter, pool);
+
+    assertNotSame(src, sequential);
+    assertEquals(WIDTH, parallel.width);
+    assertEquals(HEIGHT, parallel.height);
+    assertArrayEquals(sequential.pixels, parallel.pixels);
+  }
+
+
+  @Test
+  public void testHSBFilterParallel()
+  {
+    testFilter(new HSBAdjustFilter(0.5f, 0.75f, 1.25f, FilterMode.MULTIPLY));
+  }
+
+
+  @Test
+  public void testGenericFilterParallel()
+  {
+    testFilter(new RGBImageFilter()
+      {
+        @Override
+        public int filterRGB( int x, int y, int rgb )
+        {
+          return (rgb ^ (x * 31 + y)) & PImages.RGB_MASK;
+        }
+      });
+  }
+
+
+  @Test
+  public void testFilterInPlace()
+  {
+    HSBAdjustFilter filter =
+      new HSBAdjustFilter(0.1f, -0.2f, 0.1f, FilterMode.ADD);
+    PImage expected = PImages.filter(src, null, filter, null);
+    PImage actual = PImages.filter(src, src, filter, pool);
+
+    assertSame(src, actual);
+    assertArrayEquals(expected.pixels, actual.pixels);
+  }
+
+
+  private static BufferedImage decode( int srcWidth, int srcHeight,
+    int targetWidth, int targetHeight, ImageResizeMode resizeMode )
+    throws IOException
+  {
+    BufferedImage img =
+      new BufferedImage(srcWidth, srcHeight, BufferedImage.TYPE_INT_RGB);
+    ByteArrayOutputStream buf = new ByteArrayOutputStream();
+    assertTrue(ImageIO.write(img, "png", buf));
+
+    try (ImageInputStream iis = ImageIO.createImageInputStream(
+      new ByteArrayInputStream(buf.toByteArray())))
+    {
+      ImageReader r = PImages.getSuitableReader(iis, "image/png", null);
+      try
+      {
+        return PImages.getSuitableImage(
+          r, iis, targetWidth, targetHeight, resizeMode);
+      }
+      finally
+      {
+        r.dispose();
+      }
+    }
+  }
+
+
+  private static void assertSize( int expectedWidth, int expectedHeight,
+    BufferedImage actual )
+  {
+    assertEquals(expectedWidth, actual.getWidth());
+    assertEquals(expectedHeight, actual.getHeight());
+  }
+
+
+  @Test
+  public void testDecodeSubsampled() throws IOException
+  {
+    assertSize(334, 200, decode(1000, 600, 200, 200, null));
+    assertSize(200, 200, decode(1000, 600, 200, 200, ImageResizeMode.ZOOM));
+    assertSize(200, 200, decode(1000, 600, 200, 200, ImageResizeMode.STRETCH));
+    // crops to 1000×563 and subsamples by 6
+    assertSize(167, 94, decode(1000, 600, 160, 90, ImageResizeMode.ZOOM));
+  }
+
+
+  @Test
+  public void testDecodeNotSubsampled() throws IOException
+  {
+    assertSize(1000, 600, decode(1000, 600, 0, 0, null));
+    assertSize(1000, 600, decode(1000, 600, 800, 800, null));
+    assertSize(600, 600, decode(1000, 600, 800, 800, ImageResizeMode.ZOOM));
+  }
+}
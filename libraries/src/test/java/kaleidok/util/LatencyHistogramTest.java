@@ -0,0 +1,113 @@
+package kaleidok.util;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.lang.Math;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+
+public class LatencyHistogramTest
+{
+  @Rule
+  public final TemporaryFolder tmp = new TemporaryFolder();
+
+
+  @Test
+  public void testBucketBounds()
+  {
+    for (long v: new long[]{ 0, 1, 31, 32, 63, 64, 65, 1000, 16666667,
+      Long.MAX_VALUE })
+    {
+      int i = LatencyHistogram.indexOf(v);
+      assertTrue(v + " < lower bound", v >= LatencyHistogram.lowestValueAt(i));
+      assertTrue(v + " > upper bound", v <= LatencyHistogram.highestValueAt(i));
+      if (v > 0)
+      {
+        assertEquals(LatencyHistogram.highestValueAt(i - 1) + 1,
+          LatencyHistogram.lowestValueAt(i));
+      }
+    }
+  }
+
+
+  @Test
+  public void testPercentiles()
+  {
+    final int n = 10000;
+    long[] values = new long[n];
+    Random rnd = new Random(n);
+    LatencyHistogram h = new LatencyHistogram();
+    for (int i = 0; i < n; i++)
+    {
+      values[i] = (long) (Math.exp(rnd.nextGaussian()) * 5e6);
+      h.record(values[i]);
+    }
+    Arrays.sort(values);
+
+    assertEquals(n, h.getTotalCount());
+    assertEquals(values[0], h.getMin());
+    assertEquals(values[n - 1], h.getMax());
+    assertEquals(values[n - 1], h.getValueAtPercentile(100));
+    for (double p: new double[]{ 1, 50, 90, 99, 99.9 })
+    {
+      long expected = values[(int) Math.ceil(p * 0.01 * n) - 1],
+        actual = h.getValueAtPercentile(p);
+      assertTrue("p" + p, actual >= expected);
+      assertEquals("p" + p, expected, actual,
+        expected / (double) LatencyHistogram.SUB_BUCKET_COUNT);
+    }
+  }
+
+
+  @Test
+  public void testAddAndReset()
+  {
+    LatencyHistogram a = new LatencyHistogram(), b = new LatencyHistogram();
+    a.record(10);
+    b.record(1000);
+    b.record(20);
+    a.add(b);
+    assertEquals(3, a.getTotalCount());
+    assertEquals(10, a.getMin());
+    assertEquals(1000, a.getMax());
+    assertEquals(20, a.getValueAtPercentile(50));
+
+    a.reset();
+    assertEquals(0, a.getTotalCount());
+    assertEquals(0, a.getValueAtPercentile(99));
+    assertTrue(Double.isNaN(a.getMean()));
+  }
+
+
+  @Test
+  public void testAppendLines() throws IOException
+  {
+    LatencyHistogram h = new LatencyHistogram();
+    h.record(2000000);
+    List<String> lines = LatencyHistogram.formatLines(new Date(0),
+      Collections.singletonMap("draw", h));
+    assertEquals(1, lines.size());
+    assertTrue(lines.get(0),
+      lines.get(0).endsWith("\tdraw\t1\t2.000\t2.000\t2.000\t2.000\t2.000"));
+
+    Path path = tmp.getRoot().toPath().resolve("profile.tsv");
+    LatencyHistogram.appendLines(path, "phase", lines);
+    LatencyHistogram.appendLines(path, "phase", lines);
+    List<String> written = Files.readAllLines(path, StandardCharsets.UTF_8);
+    assertEquals(Arrays.asList(
+        LatencyHistogram.getLinesHeader("phase"), lines.get(0), lines.get(0)),
+      written);
+  }
+}
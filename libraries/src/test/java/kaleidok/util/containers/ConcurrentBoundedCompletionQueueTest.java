@@ -0,0 +1,215 @@
+package kaleidok.util.containers;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+
+public class ConcurrentBoundedCompletionQueueTest
+{
+  private static final int
+    PRODUCERS = 8, CONSUMERS = 8, ITEMS_PER_PRODUCER = 500, PERMITS = 20,
+    ROUNDS = 50;
+
+
+  @Test
+  public void testSequential()
+  {
+    ConcurrentBoundedCompletionQueue<Integer> q =
+      new ConcurrentBoundedCompletionQueue<>(2);
+    List<Collection<Integer>> callbacks = new ArrayList<>();
+    q.completionCallback = callbacks::add;
+
+    q.add(1);
+    q.add(2);
+    q.add(3);
+    assertEquals(Integer.valueOf(1), q.poll());
+    assertEquals(Integer.valueOf(2), q.poll());
+    assertNull(q.poll());
+    assertEquals(0, q.availablePermits());
+
+    q.release();
+    assertEquals(Integer.valueOf(3), q.poll());
+    q.completeItem();
+    assertTrue(callbacks.isEmpty());
+    q.completeItem();
+    assertEquals(1, callbacks.size());
+    assertEquals(new HashSet<>(Arrays.asList(1, 2, 3)),
+      new HashSet<>(callbacks.get(0)));
+
+    try
+    {
+      q.completeItem();
+      fail("Expected " + IllegalStateException.class.getName());
+    }
+    catch (IllegalStateException ignored)
+    {
+      // expected
+    }
+  }
+
+
+  @Test
+  public void testReleaseAll()
+  {
+    ConcurrentBoundedCompletionQueue<Integer> q =
+      new ConcurrentBoundedCompletionQueue<>(3);
+    AtomicInteger callbacks = new AtomicInteger();
+    q.completionCallback = ( items ) -> callbacks.incrementAndGet();
+
+    q.add(1);
+    assertEquals(Integer.valueOf(1), q.poll());
+    q.release();
+    assertEquals(1, callbacks.get());
+
+    try
+    {
+      q.release();
+      fail("Expected " + IllegalStateException.class.getName());
+    }
+    catch (IllegalStateException ignored)
+    {
+      // expected
+    }
+  }
+
+
+  /**
+   * Many producers offer items while many consumers take them and either
+   * complete them or hand their permit back, like the photo queue of a
+   * chromasthetiation whose downloads succeed or fail. A sentinel item holds
+   * back one permit until all producers are done, so that the queue cannot
+   * complete early while it runs empty in between.
+   */
+  @Test
+  public void testConcurrentProducersAndConsumers() throws Exception
+  {
+    for (int round = 0; round < ROUNDS; round++)
+      runStressRound(round % 2 == 0);
+  }
+
+
+  private static void runStressRound( final boolean allFail )
+    throws Exception
+  {
+    final ConcurrentBoundedCompletionQueue<Integer> q =
+      new ConcurrentBoundedCompletionQueue<>(PERMITS);
+    final AtomicInteger callbackCount = new AtomicInteger(),
+      callbackItems = new AtomicInteger(), inFlight = new AtomicInteger(),
+      polled = new AtomicInteger(), completed = new AtomicInteger();
+    final AtomicReference<Throwable> error = new AtomicReference<>();
+    final CountDownLatch start = new CountDownLatch(1),
+      producersDone = new CountDownLatch(PRODUCERS),
+      callbackDone = new CountDownLatch(1);
+    q.completionCallback = ( items ) -> {
+      callbackItems.set(items.size());
+      callbackCount.incrementAndGet();
+      callbackDone.countDown();
+    };
+
+    q.add(-1);
+    assertEquals(Integer.valueOf(-1), q.poll());
+
+    List<Thread> threads = new ArrayList<>(PRODUCERS + CONSUMERS);
+    for (int i = 0; i < PRODUCERS; i++)
+    {
+      final int base = i * ITEMS_PER_PRODUCER;
+      threads.add(new Thread(() -> {
+        awaitUninterruptibly(start);
+        for (int j = 0; j < ITEMS_PER_PRODUCER; j++)
+          q.add(base + j);
+        producersDone.countDown();
+      }));
+    }
+    for (int i = 0; i < CONSUMERS; i++)
+    {
+      threads.add(new Thread(() -> {
+        awaitUninterruptibly(start);
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        try
+        {
+          while (callbackDone.getCount() != 0 &&
+            (producersDone.getCount() != 0 || !q.isEmpty()))
+          {
+            Integer item = q.poll();
+            if (item == null)
+            {
+              Thread.yield();
+              continue;
+            }
+            polled.incrementAndGet();
+            if (inFlight.incrementAndGet() >= PERMITS)
+              throw new AssertionError("More items in flight than permits");
+            boolean fail = allFail || rnd.nextInt(4) != 0;
+            inFlight.decrementAndGet();
+            if (fail)
+            {
+              q.release();
+            }
+            else
+            {
+              completed.incrementAndGet();
+              q.completeItem();
+            }
+          }
+        }
+        catch (Throwable ex)
+        {
+          error.compareAndSet(null, ex);
+        }
+      }));
+    }
+
+    for (Thread t : threads)
+      t.start();
+    start.countDown();
+    producersDone.await();
+    q.release();
+    assertTrue(callbackDone.await(30, TimeUnit.SECONDS));
+    for (Thread t : threads)
+      t.join();
+
+    if (error.get() != null)
+      throw new AssertionError(error.get());
+    if (allFail)
+    {
+      assertEquals(0, completed.get());
+      assertEquals(PRODUCERS * ITEMS_PER_PRODUCER, polled.get());
+      assertEquals(polled.get() + 1, callbackItems.get());
+    }
+    else
+    {
+      assertEquals(PERMITS, completed.get());
+      assertEquals(PERMITS, q.getCompleted());
+    }
+    assertEquals(1, callbackCount.get());
+  }
+
+
+  private static void awaitUninterruptibly( CountDownLatch latch )
+  {
+    while (true)
+    {
+      try
+      {
+        latch.await();
+        return;
+      }
+      catch (InterruptedException ignored)
+      {
+        // retry
+      }
+    }
+  }
+}
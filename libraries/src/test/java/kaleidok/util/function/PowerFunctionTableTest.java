@@ -0,0 +1,91 @@
+package kaleidok.util.function;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+public class PowerFunctionTableTest
+{
+  private static final double[] EXPONENTS = { 0, 0.25, 0.5, 1, 1.125, 2, 4 };
+
+
+  private static double getObservedMaxError( PowerFunctionTable t )
+  {
+    final int samples = 1 << 16;
+    double maxError = 0;
+    for (int i = 0; i <= samples; i++)
+    {
+      float x = (float) i / samples;
+      maxError = Math.max(maxError,
+        Math.abs(t.applyAsFloat(x) - Math.pow(x, t.exponent)));
+    }
+    return maxError;
+  }
+
+
+  @Test
+  public void testMaxError()
+  {
+    for (double exponent: EXPONENTS)
+    {
+      for (int resolution: new int[]{ 1, 16, 256, 4096 })
+      {
+        PowerFunctionTable t = new PowerFunctionTable(exponent, resolution);
+        double observed = getObservedMaxError(t);
+        assertTrue(t + ": observed error " + observed,
+          observed <= t.getMaxError());
+      }
+    }
+  }
+
+
+  @Test
+  public void testForMaxError()
+  {
+    // Exponents well below 1 require excessive resolutions near 0.
+    for (double exponent: new double[]{ 0, 0.5, 1, 1.125, 2, 4 })
+    {
+      PowerFunctionTable t = PowerFunctionTable.forMaxError(exponent, 1e-3);
+      assertTrue(t.toString(), t.getMaxError() <= 1e-3);
+      if (t.getResolution() > 1)
+      {
+        assertTrue(t.toString(),
+          new PowerFunctionTable(exponent, t.getResolution() / 2)
+            .getMaxError() > 1e-3);
+      }
+    }
+
+    assertEquals(1,
+      PowerFunctionTable.forMaxError(1, 1e-3).getResolution());
+  }
+
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testForMaxErrorUnreachable()
+  {
+    PowerFunctionTable.forMaxError(0.25, 1e-3);
+  }
+
+
+  @Test
+  public void testEndpoints()
+  {
+    for (double exponent: EXPONENTS)
+    {
+      PowerFunctionTable t = new PowerFunctionTable(exponent, 100);
+      assertEquals((float) Math.pow(0, exponent), t.applyAsFloat(0), 0);
+      assertEquals(1, t.applyAsFloat(1), 0);
+    }
+  }
+
+
+  @Test
+  public void testOutsideOfTable()
+  {
+    PowerFunctionTable t = new PowerFunctionTable(1.5, 100);
+    assertEquals((float) Math.pow(2.5, 1.5), t.applyAsFloat(2.5f), 0);
+    assertTrue(Float.isNaN(t.applyAsFloat(-0.5f)));
+    assertTrue(Float.isNaN(t.applyAsFloat(Float.NaN)));
+  }
+}